@@ -0,0 +1,85 @@
+package school;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH comparison of the fork-join ReportEngine against the same analytics written as serial loops
+// over the records, the way the console reports are. The school has one student per 100 rows.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar AnalyticsBenchmark -jvmArgsAppend -Xmx3g
+// The engine runs on one worker and on every core, to show how it scales with the pool.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+    @Benchmark
+    public ReportEngine.Analytics engineOneWorker(History history) {
+        return history.school.getReportService().analyticsReport(history.oneWorker);
+    }
+
+    @Benchmark
+    public ReportEngine.Analytics engineAllCores(History history) {
+        return history.school.getReportService().analyticsReport(ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public Object serialLoops(History history) {
+        Map<String, long[]> salaries = new TreeMap<>();
+        for (Teacher teacher : history.school.getTeacherService().list()) {
+            long[] department = salaries.computeIfAbsent(teacher.getDepartment(), key -> new long[2]);
+            department[0]++;
+            department[1] += teacher.getSalaryCents();
+        }
+
+        Map<String, long[]> byStudent = new HashMap<>();
+        Map<String, long[]> byCourse = new TreeMap<>();
+        Map<LocalDate, long[]> byWeek = new TreeMap<>();
+        Map<String, long[]> byGrade = new TreeMap<>();
+        for (AttendanceRecord record : history.school.getAttendanceService().list()) {
+            int slot = record.isPresent() ? 0 : 1;
+            byStudent.computeIfAbsent(record.getStudent().getId(), key -> new long[2])[slot]++;
+            byCourse.computeIfAbsent(record.getCourse().getCode(), key -> new long[2])[slot]++;
+            byWeek.computeIfAbsent(record.getDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)),
+                    key -> new long[2])[slot]++;
+            byGrade.computeIfAbsent(record.getStudent().getGrade(), key -> new long[2])[slot]++;
+        }
+
+        List<String> chronic = new ArrayList<>();
+        for (Map.Entry<String, long[]> student : byStudent.entrySet()) {
+            long total = student.getValue()[0] + student.getValue()[1];
+            if (total >= ReportEngine.CHRONIC_MIN_SESSIONS && student.getValue()[1] >= ReportEngine.CHRONIC_ABSENCE_RATE * total) {
+                chronic.add(student.getKey());
+            }
+        }
+        return new Object[] {salaries, byCourse, byWeek, byGrade, chronic};
+    }
+
+    // History class holding a school with `rows` attendance records
+    @State(Scope.Benchmark)
+    public static class History {
+        @Param({"1000000", "10000000"})
+        public int rows;
+
+        School school;
+        ForkJoinPool oneWorker;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int students = Math.max(1_000, rows / 100);
+            school = SyntheticSchool.build(students, SyntheticSchool.teachersFor(students),
+                    SyntheticSchool.coursesFor(students), rows, SyntheticSchool.DEFAULT_SEED);
+            oneWorker = new ForkJoinPool(1);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            oneWorker.shutdown();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH benchmarks for marking attendance through AttendanceService.mark, one writer and several.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar AttendanceBenchmark -p size=1000,100000
+// Every mark appends a row, so runs are kept short; the 10^7 roster needs -jvmArgsAppend -Xmx16g.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttendanceBenchmark {
+    @Benchmark
+    public ServiceResult<AttendanceRecord> markAttendance(Roster roster) {
+        return roster.mark();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ServiceResult<AttendanceRecord> markAttendanceFourWriters(Roster roster) {
+        return roster.mark();
+    }
+
+    // Roster class holding a school with `size` students and the default course catalogue
+    @State(Scope.Benchmark)
+    public static class Roster {
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        AttendanceService attendance;
+        String[] studentIds;
+        String[] courseCodes;
+        LocalDate[] dates;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int courses = SyntheticSchool.coursesFor(size);
+            School school = SyntheticSchool.build(size, 0, courses, 0, SyntheticSchool.DEFAULT_SEED);
+            attendance = school.getAttendanceService();
+            studentIds = new String[size];
+            for (int i = 0; i < size; i++) {
+                studentIds[i] = SyntheticSchool.studentId(i);
+            }
+            courseCodes = new String[courses];
+            for (int i = 0; i < courses; i++) {
+                courseCodes[i] = SyntheticSchool.courseCode(i);
+            }
+            dates = new LocalDate[SyntheticSchool.TERM_DAYS];
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = SyntheticSchool.TERM_START.plusDays(i);
+            }
+        }
+
+        ServiceResult<AttendanceRecord> mark() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int student = random.nextInt(studentIds.length);
+            return attendance.mark(studentIds[student],
+                    courseCodes[SyntheticSchool.courseOf(student, random.nextInt(SyntheticSchool.COURSES_PER_CLASS), courseCodes.length)],
+                    dates[random.nextInt(dates.length)], random.nextInt(10) != 0);
+        }
+    }
+}
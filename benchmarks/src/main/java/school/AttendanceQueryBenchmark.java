@@ -0,0 +1,96 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH benchmarks for indexed attendance queries, with the full scan they replace as a baseline.
+// The school has one student per 100 rows, spread over a term.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar AttendanceQueryBenchmark
+// 10^8 rows need about 8 GB: add -p rows=100000000 -jvmArgsAppend -Xmx12g.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttendanceQueryBenchmark {
+    // "Absences for one student in March"
+    @Benchmark
+    public int studentAbsencesInMonth(History history) {
+        return history.find(new AttendanceService.Query()
+                .student(history.randomStudent())
+                .between(history.monthStart, history.monthEnd)
+                .present(false));
+    }
+
+    // "Who missed this course today"
+    @Benchmark
+    public int courseAbsencesOnDay(History history) {
+        return history.find(new AttendanceService.Query()
+                .course(history.randomCourse())
+                .on(history.randomDay())
+                .present(false));
+    }
+
+    // "Everything recorded for this course in one week"
+    @Benchmark
+    public int courseInWeek(History history) {
+        LocalDate start = history.randomDay();
+        return history.find(new AttendanceService.Query()
+                .course(history.randomCourse())
+                .between(start, start.plusDays(6)));
+    }
+
+    // The old way to answer studentAbsencesInMonth: walk every record
+    @Benchmark
+    public int studentAbsencesInMonthByScan(History history) {
+        String studentId = history.randomStudent();
+        int found = 0;
+        for (AttendanceRecord record : history.attendance.list()) {
+            if (!record.isPresent() && record.getStudent().getId().equals(studentId)
+                    && !record.getDate().isBefore(history.monthStart) && !record.getDate().isAfter(history.monthEnd)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    // History class holding a school with `rows` attendance records
+    @State(Scope.Benchmark)
+    public static class History {
+        @Param({"1000000", "10000000"})
+        public int rows;
+
+        AttendanceService attendance;
+        int students;
+        int courses;
+        final LocalDate monthStart = LocalDate.of(2025, 3, 1);
+        final LocalDate monthEnd = LocalDate.of(2025, 3, 31);
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            students = Math.max(1_000, rows / 100);
+            courses = SyntheticSchool.coursesFor(students);
+            attendance = SyntheticSchool.build(students, 0, courses, rows, SyntheticSchool.DEFAULT_SEED).getAttendanceService();
+        }
+
+        String randomStudent() {
+            return SyntheticSchool.studentId(ThreadLocalRandom.current().nextInt(students));
+        }
+
+        String randomCourse() {
+            return SyntheticSchool.courseCode(ThreadLocalRandom.current().nextInt(courses));
+        }
+
+        LocalDate randomDay() {
+            return SyntheticSchool.TERM_START.plusDays(ThreadLocalRandom.current().nextInt(SyntheticSchool.TERM_DAYS));
+        }
+
+        int find(AttendanceService.Query query) {
+            ServiceResult<List<AttendanceRecord>> result = attendance.find(query);
+            return result.getValue().size();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package school;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH timings of removing a student with `rows` attendance records on file, one student per 100
+// rows. removeStudent deletes the student's rows through their postings list; findRowsByScan is
+// the full pass over the history that finding them would take without it. Each batch removes the
+// next 500 students in turn, so no student is removed twice; scores are per batch.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar AttendanceRemovalBenchmark -jvmArgsAppend -Xmx3g
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = 500)
+@Measurement(iterations = 5, batchSize = 500)
+@Fork(1)
+public class AttendanceRemovalBenchmark {
+    @Benchmark
+    public ServiceResult<Student> removeStudent(History history) {
+        return history.school.getStudentService().remove(SyntheticSchool.studentId(history.next()));
+    }
+
+    @Benchmark
+    public int findRowsByScan(History history) {
+        AttendanceStore store = history.store;
+        int student = store.studentIndexOf(history.school.getStudentService().find(SyntheticSchool.studentId(history.next())));
+        int[] found = {0};
+        store.scan(0, store.size(), (rowStudent, course, epochDay, isPresent) -> {
+            if (rowStudent == student) {
+                found[0]++;
+            }
+        });
+        return found[0];
+    }
+
+    // History class holding a school with `rows` attendance records
+    @State(Scope.Benchmark)
+    public static class History {
+        @Param({"1000000", "10000000"})
+        public int rows;
+
+        School school;
+        AttendanceStore store;
+        private int students;
+        private int removed;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            students = Math.max(1_000, rows / 100);
+            school = SyntheticSchool.build(students, 0, SyntheticSchool.coursesFor(students), rows, SyntheticSchool.DEFAULT_SEED);
+            store = new AttendanceStore();
+            // The scan baseline reads a store of its own, so removals do not shrink its history
+            school.getAttendanceService().list().forEach(store::add);
+        }
+
+        int next() {
+            return removed++ % students;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package school;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+// Measures attendance marking throughput as the writer count grows, on an in-memory School and on
+// one journaled to a temporary directory, where every mark waits for its group commit. Add
+// -Dschool.journal.sync=false to see the journal's own locking without the disk.
+// Run from the project root:
+//   mvn -B package && java -cp benchmarks/target/benchmarks.jar school.ConcurrencyBenchmark
+public class ConcurrencyBenchmark {
+    private static final int STUDENTS = 100_000;
+    private static final int COURSES = 50;
+    private static final int MARKS_PER_THREAD = 500_000;
+    private static final int JOURNALED_MARKS_PER_THREAD = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        System.out.printf("%-8s %16s %20s%n", "threads", "marks/sec", "journaled marks/sec");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            run(threads, MARKS_PER_THREAD / 10, false);
+            double inMemory = run(threads, MARKS_PER_THREAD, false);
+            double journaled = run(threads, JOURNALED_MARKS_PER_THREAD, true);
+            System.out.printf("%-8d %16.0f %20.0f%n", threads, inMemory, journaled);
+        }
+    }
+
+    private static double run(int threads, int marks, boolean journaled) throws Exception {
+        Path directory = journaled ? Files.createTempDirectory("school-concurrency") : null;
+        SchoolJournal journal = journaled ? SchoolJournal.open(directory) : null;
+        try {
+            School school = new School("Benchmark School", journal);
+            String[] studentIds = new String[STUDENTS];
+            school.writeAll(() -> {
+                for (int i = 0; i < STUDENTS; i++) {
+                    school.getStudentService().add("X" + i, "Student " + i, "x" + i + "@school.com", "10th Grade",
+                            LocalDate.of(2023, 9, 1));
+                }
+                for (int i = 0; i < COURSES; i++) {
+                    school.getCourseService().add("C" + i, "Course " + i, "Benchmark course");
+                }
+                // Each student takes one course, which every mark for them is in
+                for (int i = 0; i < STUDENTS; i++) {
+                    studentIds[i] = "X" + i;
+                    school.getEnrollmentService().enroll(studentIds[i], "C" + (i % COURSES));
+                }
+            });
+            LocalDate date = LocalDate.of(2024, 3, 1);
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                pool.submit(() -> {
+                    AttendanceService attendance = school.getAttendanceService();
+                    start.await();
+                    for (int i = 0; i < marks; i++) {
+                        int student = (i * 31 + offset * 7919) % STUDENTS;
+                        attendance.mark(studentIds[student], "C" + (student % COURSES), date, (i & 7) != 0);
+                    }
+                    return null;
+                });
+            }
+            long began = System.nanoTime();
+            start.countDown();
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - began;
+            return threads * (double) marks * 1e9 / elapsed;
+        } finally {
+            if (journal != null) {
+                journal.close();
+                delete(directory);
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
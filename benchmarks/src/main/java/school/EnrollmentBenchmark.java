@@ -0,0 +1,91 @@
+package school;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH comparison of enrollment queries over a school of `size` students, each in six courses:
+// membership, one course's roster, one student's courses, and the students taking both of two
+// courses, against the same intersection done with sets of student IDs.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar EnrollmentBenchmark -jvmArgsAppend -Xmx3g
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnrollmentBenchmark {
+    @Benchmark
+    public boolean isEnrolled(Catalogue catalogue) {
+        int student = catalogue.student();
+        return catalogue.enrollments.isEnrolled(SyntheticSchool.studentId(student),
+                catalogue.courseOf(student, ThreadLocalRandom.current().nextInt(SyntheticSchool.COURSES_PER_CLASS)));
+    }
+
+    @Benchmark
+    public ServiceResult<EnrollmentService.CourseRoster> courseRoster(Catalogue catalogue) {
+        return catalogue.enrollments.roster(catalogue.courseOf(catalogue.student(), 0));
+    }
+
+    @Benchmark
+    public ServiceResult<List<Course>> coursesOfStudent(Catalogue catalogue) {
+        return catalogue.enrollments.coursesOfStudent(SyntheticSchool.studentId(catalogue.student()));
+    }
+
+    @Benchmark
+    public ServiceResult<List<Student>> studentsInBoth(Catalogue catalogue) {
+        int student = catalogue.student();
+        return catalogue.enrollments.studentsInAll(List.of(catalogue.courseOf(student, 0), catalogue.courseOf(student, 1)));
+    }
+
+    // The same intersection over sets of IDs, the way a per-course Set<String> would answer it
+    @Benchmark
+    public Set<String> studentsInBothWithSets(Catalogue catalogue) {
+        int student = catalogue.student();
+        int first = SyntheticSchool.courseOf(student, 0, catalogue.courses);
+        int second = SyntheticSchool.courseOf(student, 1, catalogue.courses);
+        Set<String> both = new HashSet<>(catalogue.idSets.get(first));
+        both.retainAll(catalogue.idSets.get(second));
+        return both;
+    }
+
+    // Catalogue class holding a school of `size` students with their enrollments, and the same
+    // rosters as sets of student IDs
+    @State(Scope.Benchmark)
+    public static class Catalogue {
+        @Param({"100000", "1000000"})
+        public int size;
+
+        EnrollmentService enrollments;
+        int courses;
+        List<Set<String>> idSets;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            courses = SyntheticSchool.coursesFor(size);
+            School school = SyntheticSchool.build(size, SyntheticSchool.teachersFor(size), courses, 0,
+                    SyntheticSchool.DEFAULT_SEED);
+            enrollments = school.getEnrollmentService();
+            idSets = new ArrayList<>(courses);
+            for (int i = 0; i < courses; i++) {
+                idSets.add(new HashSet<>());
+            }
+            for (int i = 0; i < size; i++) {
+                for (int k = 0; k < SyntheticSchool.COURSES_PER_CLASS; k++) {
+                    idSets.get(SyntheticSchool.courseOf(i, k, courses)).add(SyntheticSchool.studentId(i));
+                }
+            }
+        }
+
+        int student() {
+            return ThreadLocalRandom.current().nextInt(size);
+        }
+
+        String courseOf(int student, int k) {
+            return SyntheticSchool.courseCode(SyntheticSchool.courseOf(student, k, courses));
+        }
+    }
+}
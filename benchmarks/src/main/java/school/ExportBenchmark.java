@@ -0,0 +1,106 @@
+package school;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH throughput of writers on a school of `size` students with ten marks each on file, alone and
+// while a full export runs beside them. Each writing group is timed twice: with the writer alone,
+// and with one more thread writing the students, teachers, courses and attendance exports from a
+// point-in-time view over and over, whose rate is reported as exports per second. mark appends
+// attendance; rename changes a student, keeping a copy of the old state while a view is open. The
+// writers never wait for the export, so with a core to spare the two rates should match; on one
+// core they share it.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar ExportBenchmark -jvmArgsAppend -Xmx3g
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+    @Benchmark
+    @Group("marking")
+    public ServiceResult<AttendanceRecord> markAlone(Busy busy) {
+        return busy.mark();
+    }
+
+    @Benchmark
+    @Group("markingWhileExporting")
+    public ServiceResult<AttendanceRecord> mark(Busy busy) {
+        return busy.mark();
+    }
+
+    @Benchmark
+    @Group("markingWhileExporting")
+    public long exportWhileMarking(Busy busy) throws IOException {
+        return busy.export();
+    }
+
+    @Benchmark
+    @Group("renaming")
+    public ServiceResult<Student> renameAlone(Busy busy) {
+        return busy.rename();
+    }
+
+    @Benchmark
+    @Group("renamingWhileExporting")
+    public ServiceResult<Student> rename(Busy busy) {
+        return busy.rename();
+    }
+
+    @Benchmark
+    @Group("renamingWhileExporting")
+    public long exportWhileRenaming(Busy busy) throws IOException {
+        return busy.export();
+    }
+
+    // Busy class holding a school of `size` students with ten attendance marks each
+    @State(Scope.Benchmark)
+    public static class Busy {
+        private static final ReportWriter.Report[] EXPORTS = {
+                ReportWriter.Report.STUDENTS, ReportWriter.Report.TEACHERS, ReportWriter.Report.COURSES,
+                ReportWriter.Report.ATTENDANCE
+        };
+
+        @Param({"100000"})
+        public int size;
+
+        School school;
+        int courses;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            school = SyntheticSchool.build(size, size * 10);
+            courses = SyntheticSchool.coursesFor(size);
+        }
+
+        ServiceResult<AttendanceRecord> mark() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int student = random.nextInt(size);
+            String courseCode = SyntheticSchool.courseCode(SyntheticSchool.courseOf(student,
+                    random.nextInt(SyntheticSchool.COURSES_PER_CLASS), courses));
+            return school.getAttendanceService().mark(SyntheticSchool.studentId(student), courseCode,
+                    SyntheticSchool.TERM_START.plusDays(random.nextInt(90)), random.nextInt(10) != 0);
+        }
+
+        ServiceResult<Student> rename() {
+            int student = ThreadLocalRandom.current().nextInt(size);
+            return school.getStudentService().update(SyntheticSchool.studentId(student),
+                    new StudentService.StudentUpdate().name("Renamed " + student));
+        }
+
+        // Every export of the school, all from one view so they agree with each other
+        long export() throws IOException {
+            long rows = 0;
+            try (SchoolView view = school.openView();
+                 ReportWriter writer = new ReportWriter(Writer.nullWriter(), ReportWriter.Layout.CSV)) {
+                for (ReportWriter.Report report : EXPORTS) {
+                    rows += writer.write(view, report);
+                }
+            }
+            return rows;
+        }
+    }
+}
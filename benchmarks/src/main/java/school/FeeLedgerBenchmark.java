@@ -0,0 +1,81 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH timings of the fee ledger over a school of `size` students who have been billed three terms
+// and have paid some of it: a bulk invoicing run over every student, a balance lookup against a
+// full statement, and the aged-debt report. Each invoicing run adds `size` rows to the ledger, so
+// later runs append to a larger ledger.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar FeeLedgerBenchmark -jvmArgsAppend -Xmx3g
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeeLedgerBenchmark {
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ServiceResult<FeeService.InvoiceRun> invoiceRun(Accounts accounts) {
+        return accounts.fees.invoiceAll(null, "Activity Fee", Money.of(25), Accounts.AS_OF, Accounts.AS_OF.plusDays(30));
+    }
+
+    @Benchmark
+    public ServiceResult<Money> balance(Accounts accounts) {
+        return accounts.fees.balance(SyntheticSchool.studentId(accounts.student()));
+    }
+
+    // The balance the long way, by walking every posting of the student
+    @Benchmark
+    public ServiceResult<FeeService.Statement> statement(Accounts accounts) {
+        return accounts.fees.statement(SyntheticSchool.studentId(accounts.student()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ReportService.AgedDebtReport agedDebt(Accounts accounts) {
+        return accounts.reports.agedDebtReport(Accounts.AS_OF);
+    }
+
+    // Accounts class holding a school of `size` students with three terms of fees and payments
+    @State(Scope.Benchmark)
+    public static class Accounts {
+        static final LocalDate AS_OF = SyntheticSchool.TERM_START.plusDays(SyntheticSchool.TERM_DAYS);
+
+        @Param({"100000", "1000000"})
+        public int size;
+
+        FeeService fees;
+        ReportService reports;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            School school = SyntheticSchool.build(size, 0);
+            fees = school.getFeeService();
+            reports = school.getReportService();
+            SplittableRandom random = new SplittableRandom(SyntheticSchool.DEFAULT_SEED);
+            for (int term = 0; term < 3; term++) {
+                LocalDate billed = SyntheticSchool.TERM_START.plusDays(term * 90L);
+                System.out.println(fees.invoiceAll(null, "Tuition Term " + (term + 1), Money.of(1_500), billed,
+                        billed.plusDays(30)).getMessage());
+                // Most students pay each term in full, some in part and some not at all
+                for (int i = 0; i < size; i++) {
+                    int share = random.nextInt(10);
+                    if (share > 0) {
+                        fees.pay(SyntheticSchool.studentId(i), Money.of(share >= 7 ? 1_500 : 150 * share),
+                                billed.plusDays(random.nextInt(60)), null);
+                    }
+                }
+            }
+        }
+
+        int student() {
+            return ThreadLocalRandom.current().nextInt(size);
+        }
+    }
+}
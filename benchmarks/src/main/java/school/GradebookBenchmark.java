@@ -0,0 +1,116 @@
+package school;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH timings of the gradebook over a school of `size` students, each marked in all six of their
+// courses: recording a mark, which moves the student in their course's and year group's rankings,
+// a course grade with its rank, a transcript with a rank per course and in the year group, and the
+// top of a year group. yearRankBySorting ranks one GPA by sorting its year group's GPAs, which is
+// what each rank query would cost without the rankings.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar GradebookBenchmark -jvmArgsAppend -Xmx3g
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GradebookBenchmark {
+    @Benchmark
+    public ServiceResult<GradebookService.CourseGrade> recordMark(Marked marked) {
+        int student = marked.student();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return marked.grades.recordMark(SyntheticSchool.studentId(student), marked.courseOf(student, random.nextInt(
+                SyntheticSchool.COURSES_PER_CLASS)), "Exam", random.nextInt(101));
+    }
+
+    @Benchmark
+    public ServiceResult<GradebookService.CourseGrade> courseGrade(Marked marked) {
+        int student = marked.student();
+        return marked.grades.courseGrade(SyntheticSchool.studentId(student), marked.courseOf(student, 0));
+    }
+
+    @Benchmark
+    public ServiceResult<GradebookService.Transcript> transcript(Marked marked) {
+        return marked.grades.transcript(SyntheticSchool.studentId(marked.student()));
+    }
+
+    @Benchmark
+    public ServiceResult<java.util.List<Gradebook.Ranked>> yearTopTen(Marked marked) {
+        return marked.grades.yearRanking(marked.yearGroup, 0, 10);
+    }
+
+    @Benchmark
+    public int yearRankBySorting(Marked marked) {
+        long[] sorted = marked.yearGpas.clone();
+        Arrays.sort(sorted);
+        long gpa = marked.yearGpas[ThreadLocalRandom.current().nextInt(sorted.length)];
+        // One plus the number of GPAs above this one
+        int above = sorted.length - upperBound(sorted, gpa);
+        return above + 1;
+    }
+
+    private static int upperBound(long[] sorted, long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Marked class holding a school of `size` students with a coursework and an exam mark in every course
+    @State(Scope.Benchmark)
+    public static class Marked {
+        @Param({"100000", "1000000"})
+        public int size;
+
+        GradebookService grades;
+        int courses;
+        String yearGroup;
+        long[] yearGpas;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            School school = SyntheticSchool.build(size, 0);
+            grades = school.getGradebookService();
+            courses = SyntheticSchool.coursesFor(size);
+            for (int i = 0; i < courses; i++) {
+                grades.addAssessment(SyntheticSchool.courseCode(i), "Coursework", 40, 50);
+                grades.addAssessment(SyntheticSchool.courseCode(i), "Exam", 60, 100);
+            }
+            SplittableRandom random = new SplittableRandom(SyntheticSchool.DEFAULT_SEED);
+            for (int i = 0; i < size; i++) {
+                for (int k = 0; k < SyntheticSchool.COURSES_PER_CLASS; k++) {
+                    String courseCode = courseOf(i, k);
+                    grades.recordMark(SyntheticSchool.studentId(i), courseCode, "Coursework", 20 + random.nextInt(31));
+                    grades.recordMark(SyntheticSchool.studentId(i), courseCode, "Exam", 30 + random.nextInt(71));
+                }
+            }
+            Student first = school.getStudentService().find(SyntheticSchool.studentId(0));
+            yearGroup = first.getGrade();
+            yearGpas = school.getStudentService().list().stream()
+                    .filter(student -> student.getGrade().equals(yearGroup))
+                    .mapToLong(student -> Math.round(Double.parseDouble(
+                            grades.transcript(student.getId()).getValue().getGpa()) * Gradebook.SCALE))
+                    .toArray();
+            System.out.println(grades.yearRanking(yearGroup, 0, 1).getMessage() + " " + yearGpas.length + " in "
+                    + yearGroup + ".");
+        }
+
+        int student() {
+            return ThreadLocalRandom.current().nextInt(size);
+        }
+
+        String courseOf(int student, int k) {
+            return SyntheticSchool.courseCode(SyntheticSchool.courseOf(student, k, courses));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package school;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+// Measures the heap held by students and teachers with dictionary-encoded grades, departments and
+// email domains, against the same rows with every attribute kept as its own String, which is how
+// the entities stored them before. Rows are split from CSV lines, as an import would, so no two
+// entities share a String unless the entity itself shares it. There are as many teachers as
+// students, so both are large enough for the per-entity figures to be steady.
+// Run from the project root:
+//   mvn -B package && java -Xmx4g -cp benchmarks/target/benchmarks.jar school.HeapFootprintBenchmark [entities]
+public class HeapFootprintBenchmark {
+    public static void main(String[] args) {
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] studentLines = new String[entities];
+        String[] teacherLines = new String[entities];
+        SplittableRandom random = new SplittableRandom(SyntheticSchool.DEFAULT_SEED);
+        for (int i = 0; i < entities; i++) {
+            Student student = SyntheticSchool.student(random, i);
+            studentLines[i] = String.join(",", student.getId(), student.getName(), student.getEmail(),
+                    student.getGrade(), student.getEnrollmentDate().toString());
+        }
+        for (int i = 0; i < entities; i++) {
+            Teacher teacher = SyntheticSchool.teacher(random, i);
+            teacherLines[i] = String.join(",", teacher.getId(), teacher.getName(), teacher.getEmail(),
+                    teacher.getDepartment(), teacher.getSalary().toString());
+        }
+
+        // Loads and warms everything the measurements touch, so none of it is counted
+        measure(Arrays.copyOf(studentLines, 10_000), f -> new Student(f[0], f[1], f[2], f[3], LocalDate.parse(f[4])));
+        measure(Arrays.copyOf(teacherLines, 10_000), f -> new Teacher(f[0], f[1], f[2], f[3], Money.parse(f[4])));
+
+        System.out.printf("%d students and %d teachers%n", entities, entities);
+        report("Students", entities,
+                measure(studentLines, f -> new PlainStudent(f[0], f[1], f[2], f[3], LocalDate.parse(f[4]))),
+                measure(studentLines, f -> new Student(f[0], f[1], f[2], f[3], LocalDate.parse(f[4]))));
+        // Released before measuring teachers, so the student lines are not collected midway
+        studentLines = null;
+        report("Teachers", entities,
+                measure(teacherLines, f -> new PlainTeacher(f[0], f[1], f[2], f[3], Money.parse(f[4]))),
+                measure(teacherLines, f -> new Teacher(f[0], f[1], f[2], f[3], Money.parse(f[4]))));
+        System.out.printf("Symbols: %d grades, %d departments, %d email domains%n", SymbolTable.GRADES.size(),
+                SymbolTable.DEPARTMENTS.size(), SymbolTable.EMAIL_DOMAINS.size());
+    }
+
+    // Bytes retained by one entity per line, built by the factory from the split line
+    private static long measure(String[] lines, Function<String[], Object> factory) {
+        long before = usedHeap();
+        Object[] entities = new Object[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            entities[i] = factory.apply(lines[i].split(","));
+        }
+        long after = usedHeap();
+        // Both must survive the collections, or the lines freed by the last measurement count against it
+        Reference.reachabilityFence(entities);
+        Reference.reachabilityFence(lines);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void report(String kind, int count, long plain, long encoded) {
+        System.out.printf("%s: %.1f MB as strings (%d B each), %.1f MB encoded (%d B each), %.1f MB saved (%.0f%%)%n",
+                kind, plain / 1e6, plain / count, encoded / 1e6, encoded / count, (plain - encoded) / 1e6,
+                100.0 * (plain - encoded) / plain);
+    }
+
+    // PlainStudent class with the field layout Student had before encoding
+    private static class PlainStudent {
+        final String id;
+        final String name;
+        final String email;
+        final String grade;
+        final LocalDate enrollmentDate;
+
+        PlainStudent(String id, String name, String email, String grade, LocalDate enrollmentDate) {
+            this.id = id;
+            this.name = name;
+            this.email = email;
+            this.grade = grade;
+            this.enrollmentDate = enrollmentDate;
+        }
+    }
+
+    // PlainTeacher class with the field layout Teacher had before encoding
+    private static class PlainTeacher {
+        final String id;
+        final String name;
+        final String email;
+        final String department;
+        final long salaryCents;
+
+        PlainTeacher(String id, String name, String email, String department, Money salary) {
+            this.id = id;
+            this.name = name;
+            this.email = email;
+            this.department = department;
+            this.salaryCents = salary.getCents();
+        }
+    }
+}
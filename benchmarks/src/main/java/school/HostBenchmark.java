@@ -0,0 +1,79 @@
+package school;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH scaling of a SchoolHost with the number of shards: `schools` schools of `students` students,
+// with ten marks each, spread over 1, 2 and 4 shards. mark runs eight client threads marking
+// attendance at random schools through their shards; districtReport summarises every school on the
+// report pool, off the shards, and merges them. Both should scale close to linearly while there is
+// a core per shard.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar HostBenchmark -jvmArgsAppend -Xmx3g
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HostBenchmark {
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(8)
+    public ServiceResult<AttendanceRecord> mark(District district) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String tenantId = district.tenantIds.get(random.nextInt(district.tenantIds.size()));
+        int student = random.nextInt(district.students);
+        String courseCode = SyntheticSchool.courseCode(SyntheticSchool.courseOf(student,
+                random.nextInt(SyntheticSchool.COURSES_PER_CLASS), district.courses));
+        return district.host.call(tenantId, school -> school.getAttendanceService().mark(
+                SyntheticSchool.studentId(student), courseCode,
+                SyntheticSchool.TERM_START.plusDays(random.nextInt(90)), random.nextInt(10) != 0));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SchoolHost.DistrictReport districtReport(District district) {
+        return district.host.districtReport();
+    }
+
+    // District class holding a host of synthetic schools
+    @State(Scope.Benchmark)
+    public static class District {
+        @Param({"1", "2", "4"})
+        public int shards;
+
+        @Param({"32"})
+        public int schools;
+
+        @Param({"2000"})
+        public int students;
+
+        SchoolHost host;
+        List<String> tenantIds;
+        int courses;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // One report worker per shard, so the shard count sets the parallelism of both
+            host = new SchoolHost(null, shards, new ForkJoinPool(shards));
+            courses = SyntheticSchool.coursesFor(students);
+            tenantIds = new ArrayList<>(schools);
+            List<CompletableFuture<School>> building = new ArrayList<>(schools);
+            for (int i = 0; i < schools; i++) {
+                String tenantId = String.format("school-%03d", i);
+                tenantIds.add(tenantId);
+                building.add(host.add(tenantId, () -> SyntheticSchool.build(students, students * 10)));
+            }
+            CompletableFuture.allOf(building.toArray(CompletableFuture[]::new)).join();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            host.close();
+        }
+    }
+}
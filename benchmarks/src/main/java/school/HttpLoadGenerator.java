@@ -0,0 +1,142 @@
+package school;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Closed-loop load generator for the JSON API: each connection sends its next request as soon
+// as the previous response arrives, and latencies are reported as percentiles.
+// Run from the project root:
+//   mvn -B package && java -cp benchmarks/target/benchmarks.jar school.HttpLoadGenerator [connections] [seconds] [baseUrl]
+// Without a baseUrl an in-memory school is served on an ephemeral local port. The mix is 80% student
+// lookups and 20% attendance marks. Past a few thousand connections, raise `ulimit -n` first.
+public class HttpLoadGenerator {
+    private static final int STUDENTS = 10_000;
+    private static final int COURSES = 50;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        SchoolHttpServer server = null;
+        String baseUrl;
+        if (args.length > 2) {
+            baseUrl = args[2].replaceAll("/+$", "");
+        } else {
+            School school = new School("Load Test School");
+            for (int i = 0; i < STUDENTS; i++) {
+                school.getStudentService().add("X" + i, "Student " + i, "x" + i + "@school.com", "10th Grade", LocalDate.of(2023, 9, 1));
+            }
+            for (int i = 0; i < COURSES; i++) {
+                school.getCourseService().add("C" + i, "Course " + i, "Load test course");
+            }
+            server = new SchoolHttpServer(school, new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            baseUrl = "http://127.0.0.1:" + server.getPort();
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        System.out.printf("%d connections against %s for %d s (after %d s warm-up)%n",
+                connections, baseUrl, seconds, Math.max(2, seconds / 5));
+        run(client, baseUrl, connections, Math.max(2, seconds / 5));
+        Recorder recorder = run(client, baseUrl, connections, seconds);
+        recorder.print(seconds);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static Recorder run(HttpClient client, String baseUrl, int connections, int seconds) throws InterruptedException {
+        Recorder recorder = new Recorder(connections);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch finished = new CountDownLatch(connections);
+        for (int c = 0; c < connections; c++) {
+            next(client, baseUrl, c, new Random(c), recorder, deadline, finished);
+        }
+        finished.await();
+        return recorder;
+    }
+
+    // Sends one request and chains the next from its completion, so no thread waits per connection
+    private static void next(HttpClient client, String baseUrl, int connection, Random random, Recorder recorder,
+                             long deadline, CountDownLatch finished) {
+        if (System.nanoTime() >= deadline) {
+            finished.countDown();
+            return;
+        }
+        HttpRequest request;
+        String studentId = "X" + random.nextInt(STUDENTS);
+        if (random.nextInt(5) == 0) {
+            String body = "{\"studentId\":\"" + studentId + "\",\"courseCode\":\"C" + random.nextInt(COURSES)
+                    + "\",\"date\":\"2024-03-01\",\"present\":" + random.nextBoolean() + "}";
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/attendance"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        } else {
+            request = HttpRequest.newBuilder(URI.create(baseUrl + "/students/" + studentId)).GET().build();
+        }
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            recorder.record(connection, System.nanoTime() - start, error == null && response.statusCode() < 300);
+            next(client, baseUrl, connection, random, recorder, deadline, finished);
+        });
+    }
+
+    // Recorder class collecting per-connection latencies without contention
+    private static class Recorder {
+        private final long[][] latencies;
+        private final int[] counts;
+        private final AtomicLong failures = new AtomicLong();
+
+        Recorder(int connections) {
+            latencies = new long[connections][1024];
+            counts = new int[connections];
+        }
+
+        // Each connection has one request in flight, so its slot is only ever written by one callback at a time
+        void record(int connection, long nanos, boolean ok) {
+            if (!ok) {
+                failures.incrementAndGet();
+            }
+            if (counts[connection] == latencies[connection].length) {
+                latencies[connection] = Arrays.copyOf(latencies[connection], counts[connection] * 2);
+            }
+            latencies[connection][counts[connection]++] = nanos;
+        }
+
+        void print(int seconds) {
+            int total = 0;
+            for (int count : counts) {
+                total += count;
+            }
+            long[] all = new long[total];
+            int offset = 0;
+            for (int c = 0; c < counts.length; c++) {
+                System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+                offset += counts[c];
+            }
+            Arrays.sort(all);
+            System.out.printf("requests: %d (%.0f/sec), failures: %d%n", total, total / (double) seconds, failures.get());
+            if (total > 0) {
+                System.out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                        percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9),
+                        all[total - 1] / 1e6);
+            }
+        }
+
+        private static double percentile(long[] sorted, double percent) {
+            int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package school;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH cost of timing every operation on a school of `size` students with ten marks each. mark and
+// rename run as ExportBenchmark's do, once with metrics on, as they ship, and once in a JVM started
+// with -Dschool.metrics=false; metrics reads the Prometheus text of the busy school. The timed and
+// untimed rates should be within noise of each other.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar MetricsBenchmark -jvmArgsAppend -Xmx3g
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ServiceResult<AttendanceRecord> mark(Busy busy) {
+        return busy.mark();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Fork(value = 1, jvmArgsPrepend = "-Dschool.metrics=false")
+    public ServiceResult<AttendanceRecord> markUntimed(Busy busy) {
+        return busy.mark();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ServiceResult<Student> rename(Busy busy) {
+        return busy.rename();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Fork(value = 1, jvmArgsPrepend = "-Dschool.metrics=false")
+    public ServiceResult<Student> renameUntimed(Busy busy) {
+        return busy.rename();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String metrics(Busy busy) {
+        return Metrics.prometheus(List.of(busy.school.getMetrics()));
+    }
+
+    // Busy class holding a school of `size` students with ten attendance marks each
+    @State(Scope.Benchmark)
+    public static class Busy {
+        @Param({"100000"})
+        public int size;
+
+        School school;
+        int courses;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            school = SyntheticSchool.build(size, size * 10);
+            courses = SyntheticSchool.coursesFor(size);
+        }
+
+        ServiceResult<AttendanceRecord> mark() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int student = random.nextInt(size);
+            String courseCode = SyntheticSchool.courseCode(SyntheticSchool.courseOf(student,
+                    random.nextInt(SyntheticSchool.COURSES_PER_CLASS), courses));
+            return school.getAttendanceService().mark(SyntheticSchool.studentId(student), courseCode,
+                    SyntheticSchool.TERM_START.plusDays(random.nextInt(90)), random.nextInt(10) != 0);
+        }
+
+        ServiceResult<Student> rename() {
+            int student = ThreadLocalRandom.current().nextInt(size);
+            return school.getStudentService().update(SyntheticSchool.studentId(student),
+                    new StudentService.StudentUpdate().name("Renamed " + student));
+        }
+    }
+}
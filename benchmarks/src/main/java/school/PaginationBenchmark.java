@@ -0,0 +1,89 @@
+package school;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// JMH benchmarks for fetching one 50-row page from anywhere in a listing with a cursor, against
+// skipping to the same offset, which is what paging over the unpaged listing costs.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar PaginationBenchmark -jvmArgsAppend -Xmx3g
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaginationBenchmark {
+    static final int PAGE_SIZE = 50;
+
+    @Benchmark
+    public Page<Student> studentsByName(Listing listing) {
+        return listing.school.getStudentService().page("name", listing.randomCursor(listing.nameCursors), PAGE_SIZE).getValue();
+    }
+
+    @Benchmark
+    public Page<Student> studentsByEnrollmentDate(Listing listing) {
+        return listing.school.getStudentService().page("enrollmentDate", listing.randomCursor(listing.dateCursors), PAGE_SIZE).getValue();
+    }
+
+    @Benchmark
+    public void attendanceByDate(Listing listing, Blackhole blackhole) {
+        for (AttendanceRecord record : listing.school.getAttendanceService()
+                .page(listing.randomCursor(listing.attendanceCursors), PAGE_SIZE).getValue().getItems()) {
+            blackhole.consume(record);
+        }
+    }
+
+    // The same page found by skipping offset entities of the insertion-ordered listing
+    @Benchmark
+    public void studentsByOffset(Listing listing, Blackhole blackhole) {
+        int offset = ThreadLocalRandom.current().nextInt(listing.size);
+        int seen = 0;
+        for (Student student : listing.school.getStudentService().list()) {
+            if (seen >= offset + PAGE_SIZE) {
+                break;
+            }
+            if (seen++ >= offset) {
+                blackhole.consume(student);
+            }
+        }
+    }
+
+    // Listing class holding a school of `size` students and attendance rows, with cursors spread
+    // evenly through each listing
+    @State(Scope.Benchmark)
+    public static class Listing {
+        @Param({"100000", "1000000"})
+        public int size;
+
+        School school;
+        List<String> nameCursors;
+        List<String> dateCursors;
+        List<String> attendanceCursors;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            school = SyntheticSchool.build(size, size);
+            nameCursors = cursors(cursor -> school.getStudentService().page("name", cursor, Page.MAX_SIZE));
+            dateCursors = cursors(cursor -> school.getStudentService().page("enrollmentDate", cursor, Page.MAX_SIZE));
+            attendanceCursors = cursors(cursor -> school.getAttendanceService().page(cursor, Page.MAX_SIZE));
+        }
+
+        private static <T> List<String> cursors(Function<String, ServiceResult<Page<T>>> pages) {
+            List<String> cursors = new ArrayList<>();
+            String cursor = null;
+            do {
+                cursors.add(cursor);
+                cursor = pages.apply(cursor).getValue().getNextCursor();
+            } while (cursor != null);
+            return cursors;
+        }
+
+        String randomCursor(List<String> cursors) {
+            return cursors.get(ThreadLocalRandom.current().nextInt(cursors.size()));
+        }
+    }
+}
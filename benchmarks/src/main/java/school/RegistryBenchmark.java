@@ -0,0 +1,87 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// Compares EntityRegistry lookups and removals against the old List scans as the roster grows.
+// Build and run from the project root:
+//   mvn -B package && java -cp benchmarks/target/benchmarks.jar school.RegistryBenchmark
+public class RegistryBenchmark {
+    private static final int[] ROSTER_SIZES = {1_000, 10_000, 50_000, 200_000};
+    private static final int OPERATIONS = 2_000;
+
+    public static void main(String[] args) {
+        System.out.printf("%-10s %-10s %14s %16s%n", "roster", "operation", "list (us/op)", "registry (us/op)");
+        for (int size : ROSTER_SIZES) {
+            // Warm up once at each size so the JIT has compiled both paths
+            run(size, false);
+            run(size, true);
+        }
+    }
+
+    private static void run(int size, boolean print) {
+        List<Student> list = new ArrayList<>(size);
+        EntityRegistry<Student> registry = new EntityRegistry<>(Student::getId);
+        for (int i = 0; i < size; i++) {
+            Student student = new Student("S" + i, "Student " + i, "s" + i + "@school.com", "10th Grade", LocalDate.of(2023, 9, 1));
+            list.add(student);
+            registry.add(student);
+        }
+
+        Random random = new Random(42);
+        String[] keys = new String[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            keys[i] = "S" + random.nextInt(size);
+        }
+
+        long hits = 0;
+        long start = System.nanoTime();
+        for (String key : keys) {
+            for (Student s : list) {
+                if (s.getId().equals(key)) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+        long listLookup = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String key : keys) {
+            if (registry.get(key) != null) {
+                hits++;
+            }
+        }
+        long registryLookup = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String key : keys) {
+            Iterator<Student> iterator = list.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getId().equals(key)) {
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+        long listRemove = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String key : keys) {
+            registry.remove(key);
+        }
+        long registryRemove = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf("%-10d %-10s %14.2f %16.2f%n", size, "lookup", perOp(listLookup), perOp(registryLookup));
+            System.out.printf("%-10d %-10s %14.2f %16.2f%n", size, "remove", perOp(listRemove), perOp(registryRemove));
+        }
+        if (hits < 0) {
+            System.out.println(hits);
+        }
+    }
+
+    private static double perOp(long nanos) {
+        return nanos / 1_000.0 / OPERATIONS;
+    }
+}
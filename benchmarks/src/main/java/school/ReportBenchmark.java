@@ -0,0 +1,80 @@
+package school;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// JMH benchmarks for the four reports, each built and read in full the way the console prints it.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar ReportBenchmark -p size=1000,100000
+// The 10^7 school needs -jvmArgsAppend -Xmx16g.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+    @Benchmark
+    public void generateStudentReport(Synthetic school, Blackhole blackhole) {
+        ReportService.RosterReport<Student> report = school.reports.studentReport();
+        for (Student student : report.getEntries()) {
+            blackhole.consume(student.getId());
+            blackhole.consume(student.getName());
+            blackhole.consume(student.getEmail());
+            blackhole.consume(student.getGrade());
+            blackhole.consume(student.getEnrollmentDate());
+        }
+        blackhole.consume(report.getTotal());
+    }
+
+    @Benchmark
+    public void generateTeacherReport(Synthetic school, Blackhole blackhole) {
+        ReportService.TeacherReport report = school.reports.teacherReport();
+        for (Teacher teacher : report.getEntries()) {
+            blackhole.consume(teacher.getId());
+            blackhole.consume(teacher.getName());
+            blackhole.consume(teacher.getEmail());
+            blackhole.consume(teacher.getDepartment());
+            blackhole.consume(teacher.getSalary());
+        }
+        blackhole.consume(report.getTotal());
+        blackhole.consume(report.getTotalSalary());
+    }
+
+    @Benchmark
+    public void generateCourseReport(Synthetic school, Blackhole blackhole) {
+        ReportService.RosterReport<Course> report = school.reports.courseReport();
+        for (Course course : report.getEntries()) {
+            blackhole.consume(course.getCode());
+            blackhole.consume(course.getName());
+            blackhole.consume(course.getDescription());
+        }
+        blackhole.consume(report.getTotal());
+    }
+
+    @Benchmark
+    public void generateAttendanceReport(Synthetic school, Blackhole blackhole) {
+        ReportService.AttendanceReport report = school.reports.attendanceReport();
+        blackhole.consume(report.getTotal().getRate());
+        for (Map.Entry<String, AttendanceAggregates.Tally> course : report.getByCourse().entrySet()) {
+            blackhole.consume(course.getKey());
+            blackhole.consume(course.getValue().getPresent());
+            blackhole.consume(course.getValue().getAbsent());
+        }
+    }
+
+    // Synthetic class holding a school with `size` students, the default staff and courses,
+    // and one attendance mark per student
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        ReportService reports;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            reports = SyntheticSchool.build(size, size).getReportService();
+        }
+    }
+}
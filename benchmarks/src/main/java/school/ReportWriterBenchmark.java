@@ -0,0 +1,108 @@
+package school;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH comparison of printing reports with println(toString()), as the console used to, against
+// ReportWriter. Output goes down a pipe to `cat > /dev/null`, the way console output reaches a
+// terminal or pager; rows/sec is size divided by the score.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar ReportWriterBenchmark
+// The console baseline is set up like System.out: autoflush over a 128-byte buffer, so each line
+// is its own write. The buffered baseline gives println a 64 KB buffer, the same as ReportWriter.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportWriterBenchmark {
+    @Benchmark
+    public void studentsPrintlnConsole(Reports reports) {
+        for (Student student : reports.roster.getStudentService().list()) {
+            reports.console.println(student);
+        }
+        reports.console.flush();
+    }
+
+    @Benchmark
+    public void studentsPrintlnBuffered(Reports reports) {
+        for (Student student : reports.roster.getStudentService().list()) {
+            reports.buffered.println(student);
+        }
+        reports.buffered.flush();
+    }
+
+    @Benchmark
+    public long studentsCsv(Reports reports) throws IOException {
+        return reports.write(reports.roster, ReportWriter.Layout.CSV, ReportWriter.Report.STUDENTS);
+    }
+
+    @Benchmark
+    public long studentsFixedWidth(Reports reports) throws IOException {
+        return reports.write(reports.roster, ReportWriter.Layout.FIXED_WIDTH, ReportWriter.Report.STUDENTS);
+    }
+
+    @Benchmark
+    public void attendancePrintlnConsole(Reports reports) {
+        for (AttendanceRecord record : reports.history.getAttendanceService().list()) {
+            reports.console.println(record);
+        }
+        reports.console.flush();
+    }
+
+    @Benchmark
+    public void attendancePrintlnBuffered(Reports reports) {
+        for (AttendanceRecord record : reports.history.getAttendanceService().list()) {
+            reports.buffered.println(record);
+        }
+        reports.buffered.flush();
+    }
+
+    @Benchmark
+    public long attendanceCsv(Reports reports) throws IOException {
+        return reports.write(reports.history, ReportWriter.Layout.CSV, ReportWriter.Report.ATTENDANCE);
+    }
+
+    @Benchmark
+    public long attendanceFixedWidth(Reports reports) throws IOException {
+        return reports.write(reports.history, ReportWriter.Layout.FIXED_WIDTH, ReportWriter.Report.ATTENDANCE);
+    }
+
+    // Reports class holding a roster of `size` students and a history of `size` attendance
+    // records, twenty for each of its students
+    @State(Scope.Benchmark)
+    public static class Reports {
+        @Param({"100000", "500000"})
+        public int size;
+
+        School roster;
+        School history;
+        PrintStream console;
+        PrintStream buffered;
+        private OutputStream pipe;
+        private Process cat;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            roster = SyntheticSchool.build(size, 0);
+            history = SyntheticSchool.build(size / 20, size);
+            cat = new ProcessBuilder("sh", "-c", "cat > /dev/null").start();
+            pipe = cat.getOutputStream();
+            console = new PrintStream(new BufferedOutputStream(pipe, 128), true);
+            buffered = new PrintStream(new BufferedOutputStream(pipe, 64 * 1024), false);
+        }
+
+        long write(School school, ReportWriter.Layout layout, ReportWriter.Report report) throws IOException {
+            ReportWriter writer = new ReportWriter(pipe, layout);
+            long rows = writer.write(school, report);
+            writer.flush();
+            return rows;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            pipe.close();
+            cat.waitFor();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package school;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// JMH comparison of marking a 35-pupil class one record at a time against a single roll call.
+// Scores are classes marked per second, with and without a journal behind the school.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar RollCallBenchmark
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RollCallBenchmark {
+    static final int CLASS_SIZE = SyntheticSchool.CLASS_SIZE;
+
+    @Benchmark
+    public void perRecord(Classes classes, Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int cohortIndex = random.nextInt(classes.cohorts.size());
+        List<String> cohort = classes.cohorts.get(cohortIndex);
+        String courseCode = classes.courseOf(cohortIndex, random);
+        LocalDate date = classes.dates[random.nextInt(classes.dates.length)];
+        int absentee = random.nextInt(CLASS_SIZE);
+        for (int i = 0; i < CLASS_SIZE; i++) {
+            blackhole.consume(classes.attendance.mark(cohort.get(i), courseCode, date, i != absentee));
+        }
+    }
+
+    @Benchmark
+    public ServiceResult<AttendanceService.RollCall> rollCall(Classes classes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int cohortIndex = random.nextInt(classes.cohorts.size());
+        List<String> cohort = classes.cohorts.get(cohortIndex);
+        return classes.attendance.rollCall(classes.courseOf(cohortIndex, random),
+                classes.dates[random.nextInt(classes.dates.length)], cohort,
+                List.of(cohort.get(random.nextInt(CLASS_SIZE))));
+    }
+
+    // Classes class holding a school of `size` students split into classes of 35
+    @State(Scope.Benchmark)
+    public static class Classes {
+        @Param({"10000", "100000"})
+        public int size;
+
+        @Param({"false", "true"})
+        public boolean journaled;
+
+        AttendanceService attendance;
+        List<List<String>> cohorts;
+        String[] courseCodes;
+        LocalDate[] dates;
+        private SchoolJournal journal;
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            int courses = SyntheticSchool.coursesFor(size);
+            School school;
+            if (journaled) {
+                directory = Files.createTempDirectory("school-rollcall");
+                journal = SchoolJournal.open(directory);
+                school = new School("Synthetic School", journal);
+            } else {
+                school = new School("Synthetic School");
+            }
+            SyntheticSchool.populate(school, size, 0, courses, 0, SyntheticSchool.DEFAULT_SEED);
+            attendance = school.getAttendanceService();
+            cohorts = new ArrayList<>(size / CLASS_SIZE);
+            for (int c = 0; c < size / CLASS_SIZE; c++) {
+                List<String> cohort = new ArrayList<>(CLASS_SIZE);
+                for (int i = 0; i < CLASS_SIZE; i++) {
+                    cohort.add(SyntheticSchool.studentId(c * CLASS_SIZE + i));
+                }
+                cohorts.add(cohort);
+            }
+            courseCodes = new String[courses];
+            for (int i = 0; i < courses; i++) {
+                courseCodes[i] = SyntheticSchool.courseCode(i);
+            }
+            dates = new LocalDate[SyntheticSchool.TERM_DAYS];
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = SyntheticSchool.TERM_START.plusDays(i);
+            }
+        }
+
+        // One of the courses the class is enrolled in
+        String courseOf(int cohort, ThreadLocalRandom random) {
+            return courseCodes[SyntheticSchool.courseOf(cohort * CLASS_SIZE, random.nextInt(SyntheticSchool.COURSES_PER_CLASS),
+                    courseCodes.length)];
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (journal != null) {
+                journal.close();
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        Files.delete(file);
+                    }
+                }
+                Files.delete(directory);
+            }
+        }
+    }
+}
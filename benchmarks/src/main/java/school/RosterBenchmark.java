@@ -0,0 +1,149 @@
+package school;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// JMH benchmarks for ID lookup, add and remove on the student, teacher and course services.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar RosterBenchmark -p size=1000,100000
+// The 10^7 rosters need a larger heap: add -jvmArgsAppend -Xmx16g.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RosterBenchmark {
+    // Adds and removes are timed in batches so the roster can be restored between invocations
+    static final int BATCH = 10_000;
+
+    @Benchmark
+    public Object lookup(Roster roster) {
+        return roster.ops.find(roster.keys[ThreadLocalRandom.current().nextInt(roster.keys.length)]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void add(Roster roster, Absent absent, Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(roster.ops.add(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void remove(Roster roster, Present present, Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(roster.ops.remove(roster.freshKeys[i]));
+        }
+    }
+
+    // Roster class holding a school with `size` entities of one kind, plus a batch not yet added
+    @State(Scope.Benchmark)
+    public static class Roster {
+        @Param({"student", "teacher", "course"})
+        public String entity;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        Ops ops;
+        String[] keys;
+        String[] freshKeys;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            School school;
+            SplittableRandom random = new SplittableRandom(SyntheticSchool.DEFAULT_SEED);
+            keys = new String[size];
+            freshKeys = new String[BATCH];
+            switch (entity) {
+                case "student" -> {
+                    school = SyntheticSchool.build(size, 0, 0, 0, SyntheticSchool.DEFAULT_SEED);
+                    StudentService service = school.getStudentService();
+                    Student[] fresh = new Student[BATCH];
+                    for (int i = 0; i < BATCH; i++) {
+                        fresh[i] = SyntheticSchool.student(random, size + i);
+                    }
+                    ops = new Ops() {
+                        Object find(String key) { return service.find(key); }
+                        Object add(int index) { return service.add(fresh[index]); }
+                        Object remove(String key) { return service.remove(key); }
+                    };
+                    fillKeys(SyntheticSchool::studentId);
+                }
+                case "teacher" -> {
+                    school = SyntheticSchool.build(0, size, 0, 0, SyntheticSchool.DEFAULT_SEED);
+                    TeacherService service = school.getTeacherService();
+                    Teacher[] fresh = new Teacher[BATCH];
+                    for (int i = 0; i < BATCH; i++) {
+                        fresh[i] = SyntheticSchool.teacher(random, size + i);
+                    }
+                    ops = new Ops() {
+                        Object find(String key) { return service.find(key); }
+                        Object add(int index) { return service.add(fresh[index]); }
+                        Object remove(String key) { return service.remove(key); }
+                    };
+                    fillKeys(SyntheticSchool::teacherId);
+                }
+                case "course" -> {
+                    school = SyntheticSchool.build(0, 0, size, 0, SyntheticSchool.DEFAULT_SEED);
+                    CourseService service = school.getCourseService();
+                    Course[] fresh = new Course[BATCH];
+                    for (int i = 0; i < BATCH; i++) {
+                        fresh[i] = SyntheticSchool.course(random, size + i);
+                    }
+                    ops = new Ops() {
+                        Object find(String key) { return service.find(key); }
+                        Object add(int index) { return service.add(fresh[index]); }
+                        Object remove(String key) { return service.remove(key); }
+                    };
+                    fillKeys(SyntheticSchool::courseCode);
+                }
+                default -> throw new IllegalArgumentException("Unknown entity " + entity);
+            }
+        }
+
+        private void fillKeys(IntFunction<String> keyOf) {
+            for (int i = 0; i < size; i++) {
+                keys[i] = keyOf.apply(i);
+            }
+            for (int i = 0; i < BATCH; i++) {
+                freshKeys[i] = keyOf.apply(size + i);
+            }
+        }
+    }
+
+    // Absent class making sure the batch is not in the roster before each add
+    @State(Scope.Benchmark)
+    public static class Absent {
+        @Setup(Level.Invocation)
+        public void clear(Roster roster) {
+            for (String key : roster.freshKeys) {
+                roster.ops.remove(key);
+            }
+        }
+    }
+
+    // Present class making sure the batch is in the roster before each remove
+    @State(Scope.Benchmark)
+    public static class Present {
+        @Setup(Level.Invocation)
+        public void fill(Roster roster) {
+            for (int i = 0; i < BATCH; i++) {
+                roster.ops.add(i);
+            }
+        }
+    }
+
+    // Ops class giving the benchmarks one shape for all three services
+    abstract static class Ops {
+        abstract Object find(String key);
+
+        abstract Object add(int freshIndex);
+
+        abstract Object remove(String key);
+    }
+}
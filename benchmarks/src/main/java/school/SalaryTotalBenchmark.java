@@ -0,0 +1,98 @@
+package school;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+import org.openjdk.jmh.annotations.*;
+
+// JMH comparison of summing salaries as doubles, the way the teacher report used to, against
+// summing them as whole cents. Both run serially and in parallel over the same payroll, and the
+// teacher report and analytics payroll are timed on a school of the same staff.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar SalaryTotalBenchmark
+// Setup prints how far the parallel double total strays from the serial one; the cent totals must
+// agree exactly or the trial fails.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SalaryTotalBenchmark {
+    @Benchmark
+    public double doubleSerial(Payroll payroll) {
+        double total = 0;
+        for (double salary : payroll.dollars) {
+            total += salary;
+        }
+        return total;
+    }
+
+    // Plain pairwise addition, as a parallel += loop would do, not DoubleStream.sum's compensated sum
+    @Benchmark
+    public double doubleParallel(Payroll payroll) {
+        return DoubleStream.of(payroll.dollars).parallel().reduce(0, Double::sum);
+    }
+
+    @Benchmark
+    public long centsSerial(Payroll payroll) {
+        long total = 0;
+        for (long salary : payroll.cents) {
+            total += salary;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long centsParallel(Payroll payroll) {
+        return LongStream.of(payroll.cents).parallel().sum();
+    }
+
+    @Benchmark
+    public Money teacherReport(Payroll payroll) {
+        return payroll.school.getReportService().teacherReport().getTotalSalary();
+    }
+
+    @Benchmark
+    public Money analyticsPayroll(Payroll payroll) {
+        Money total = Money.ZERO;
+        for (ReportEngine.Payroll department : payroll.school.getReportService().analyticsReport().getSalaryByDepartment().values()) {
+            total = total.plus(department.getTotal());
+        }
+        return total;
+    }
+
+    // Payroll class holding `teachers` salaries as doubles and as cents, in registry order
+    @State(Scope.Benchmark)
+    public static class Payroll {
+        @Param({"10000", "1000000"})
+        public int teachers;
+
+        School school;
+        double[] dollars;
+        long[] cents;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            school = SyntheticSchool.build(0, teachers, 0, 0, SyntheticSchool.DEFAULT_SEED);
+            List<Teacher> staff = new ArrayList<>(school.getTeacherService().list());
+            dollars = new double[staff.size()];
+            cents = new long[staff.size()];
+            for (int i = 0; i < cents.length; i++) {
+                cents[i] = staff.get(i).getSalaryCents();
+                // The double the same salary text used to parse to
+                dollars[i] = Double.parseDouble(staff.get(i).getSalary().toString());
+            }
+
+            SalaryTotalBenchmark benchmark = new SalaryTotalBenchmark();
+            long exact = benchmark.centsSerial(this);
+            if (benchmark.centsParallel(this) != exact
+                    || benchmark.teacherReport(this).getCents() != exact
+                    || benchmark.analyticsPayroll(this).getCents() != exact) {
+                throw new IllegalStateException("Cent totals disagree");
+            }
+            System.out.printf("%nExact total %s; double serial %.6f, double parallel %.6f%n", Money.ofCents(exact),
+                    benchmark.doubleSerial(this), benchmark.doubleParallel(this));
+        }
+    }
+}
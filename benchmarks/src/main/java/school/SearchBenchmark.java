@@ -0,0 +1,102 @@
+package school;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH latency distributions for student search over a school of `size` students: prefix, full-name,
+// filtered, email and fuzzy queries, a query no student matches, and the rename that keeps the index
+// current. Sample mode reports p99 alongside the mean.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar SearchBenchmark -jvmArgsAppend -Xmx3g
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Benchmark
+    public List<Student> surnamePrefix(Directory directory) {
+        return directory.search(new SearchIndex.Query(directory.surname().substring(0, 3)));
+    }
+
+    // "the Brown kid in 10th grade"
+    @Benchmark
+    public List<Student> surnameInGrade(Directory directory) {
+        Student student = directory.student();
+        return directory.search(new SearchIndex.Query(directory.surnameOf(student)).filter(student.getGrade()));
+    }
+
+    @Benchmark
+    public List<Student> fullName(Directory directory) {
+        return directory.search(new SearchIndex.Query(directory.student().getName()));
+    }
+
+    @Benchmark
+    public List<Student> emailPrefix(Directory directory) {
+        String email = directory.student().getEmail();
+        return directory.search(new SearchIndex.Query(email.substring(0, Math.min(6, email.indexOf('@')))));
+    }
+
+    @Benchmark
+    public List<Student> fuzzySurname(Directory directory) {
+        return directory.search(new SearchIndex.Query(directory.misspell(directory.surname())).fuzzy(true));
+    }
+
+    // Two first names: no student has both, so every candidate of the rarer word is checked
+    @Benchmark
+    public List<Student> noMatch(Directory directory) {
+        return directory.search(new SearchIndex.Query("alice zoe"));
+    }
+
+    @Benchmark
+    public ServiceResult<Student> rename(Directory directory) {
+        Student student = directory.student();
+        String[] parts = student.getName().split(" ");
+        return directory.school.getStudentService().update(student.getId(),
+                new StudentService.StudentUpdate().name(parts[1] + " " + parts[0]));
+    }
+
+    // Directory class holding a school of `size` students
+    @State(Scope.Benchmark)
+    public static class Directory {
+        @Param({"1000000"})
+        public int size;
+
+        School school;
+        Student[] students;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            school = SyntheticSchool.build(size, SyntheticSchool.teachersFor(size), SyntheticSchool.coursesFor(size), 0,
+                    SyntheticSchool.DEFAULT_SEED);
+            students = school.getStudentService().list().toArray(new Student[0]);
+        }
+
+        List<Student> search(SearchIndex.Query query) {
+            return school.getStudentService().search(query).getValue();
+        }
+
+        Student student() {
+            return students[ThreadLocalRandom.current().nextInt(students.length)];
+        }
+
+        String surname() {
+            return surnameOf(student());
+        }
+
+        String surnameOf(Student student) {
+            String name = student.getName();
+            return name.substring(name.lastIndexOf(' ') + 1);
+        }
+
+        // One substituted letter
+        String misspell(String word) {
+            SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+            char[] letters = word.toLowerCase().toCharArray();
+            letters[random.nextInt(letters.length)] = (char) ('a' + random.nextInt(26));
+            return new String(letters);
+        }
+    }
+}
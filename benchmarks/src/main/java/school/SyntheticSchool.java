@@ -0,0 +1,227 @@
+package school;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+// Generates reproducible schools of any size for benchmarks and import tests.
+//
+// Rosters follow fixed proportions by default (one teacher per 20 students, one course per 200
+// students, at least 10 of each), names and emails are drawn from small pools the way real rosters
+// repeat them, and attendance rows spread over a school year. Students are taught in classes of 35
+// consecutive IDs, each class takes six courses spread evenly over the catalogue, each teacher
+// teaches one course, and attendance is only marked for enrolled students. The same seed always
+// gives the same school.
+// To write the data as CSV files for the bulk importer:
+//   mvn -B package && java -cp benchmarks/target/benchmarks.jar school.SyntheticSchool <dir> <students> [attendanceRows]
+public final class SyntheticSchool {
+    static final long DEFAULT_SEED = 42;
+    static final LocalDate TERM_START = LocalDate.of(2024, 9, 2);
+    static final int TERM_DAYS = 270;
+    static final int CLASS_SIZE = 35;
+    static final int COURSES_PER_CLASS = 6;
+
+    private static final String[] FIRST_NAMES = {
+            "Alice", "Bob", "Charlie", "Diana", "Ethan", "Fatima", "George", "Hana", "Ivan", "Julia",
+            "Kofi", "Laila", "Mateo", "Nina", "Omar", "Priya", "Quinn", "Rosa", "Sam", "Tariq",
+            "Uma", "Victor", "Wei", "Xena", "Yusuf", "Zoe"
+    };
+    private static final String[] LAST_NAMES = {
+            "Brown", "Smith", "Doe", "Johnson", "Garcia", "Nguyen", "Okafor", "Patel", "Kim", "Silva",
+            "Muller", "Rossi", "Khan", "Cohen", "Ivanova", "Tanaka", "Lopez", "Wilson", "Haddad", "Novak"
+    };
+    private static final String[] GRADES = {
+            "1st Grade", "2nd Grade", "3rd Grade", "4th Grade", "5th Grade", "6th Grade",
+            "7th Grade", "8th Grade", "9th Grade", "10th Grade", "11th Grade", "12th Grade"
+    };
+    private static final String[] DEPARTMENTS = {
+            "Mathematics", "English", "Science", "History", "Geography", "Art", "Music",
+            "Physical Education", "Computer Science", "Languages"
+    };
+    private static final String[] SUBJECTS = {
+            "Mathematics", "English", "Biology", "Chemistry", "Physics", "History", "Geography",
+            "Art", "Music", "Computing", "French", "Spanish"
+    };
+    private static final String[] EMAIL_DOMAINS = {"school.com", "mail.com", "example.org", "home.net"};
+
+    private SyntheticSchool() {
+    }
+
+    static String studentId(int index) {
+        return "S" + index;
+    }
+
+    static String teacherId(int index) {
+        return "T" + index;
+    }
+
+    static String courseCode(int index) {
+        return "C" + index;
+    }
+
+    // Index of course k, from 0 to COURSES_PER_CLASS - 1, taken by the student's class; classes that
+    // follow each other take the courses that follow each other, so every course gets as many classes
+    static int courseOf(int student, int k, int courses) {
+        return (int) (((long) (student / CLASS_SIZE) * COURSES_PER_CLASS + k) % courses);
+    }
+
+    static int teachersFor(int students) {
+        return Math.max(10, students / 20);
+    }
+
+    static int coursesFor(int students) {
+        return Math.max(10, students / 200);
+    }
+
+    static Student student(SplittableRandom random, int index) {
+        String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        return new Student(studentId(index), first + " " + last, email(random, first, last, index),
+                GRADES[random.nextInt(GRADES.length)], TERM_START.minusDays(random.nextInt(365 * 6)));
+    }
+
+    static Teacher teacher(SplittableRandom random, int index) {
+        String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        // Salaries to the cent between 35,000 and 95,000
+        Money salary = Money.ofCents(3_500_000 + random.nextInt(6_000_001));
+        return new Teacher(teacherId(index), first + " " + last, email(random, first, last, index),
+                DEPARTMENTS[random.nextInt(DEPARTMENTS.length)], salary);
+    }
+
+    static Course course(SplittableRandom random, int index) {
+        String subject = SUBJECTS[index % SUBJECTS.length];
+        return new Course(courseCode(index), subject + " " + (index / SUBJECTS.length + 1),
+                "Level " + (random.nextInt(4) + 1) + " " + subject);
+    }
+
+    private static String email(SplittableRandom random, String first, String last, int index) {
+        return (first.charAt(0) + last + index).toLowerCase() + "@" + EMAIL_DOMAINS[random.nextInt(EMAIL_DOMAINS.length)];
+    }
+
+    // Builds an in-memory school with the default proportions
+    static School build(int students, int attendanceRows) {
+        return build(students, teachersFor(students), coursesFor(students), attendanceRows, DEFAULT_SEED);
+    }
+
+    static School build(int students, int teachers, int courses, int attendanceRows, long seed) {
+        School school = new School("Synthetic School");
+        populate(school, students, teachers, courses, attendanceRows, seed);
+        return school;
+    }
+
+    // Adds the synthetic data to an existing school, such as one backed by a journal, which it
+    // syncs once at the end rather than after every change
+    static void populate(School school, int students, int teachers, int courses, int attendanceRows, long seed) {
+        try {
+            school.writeAll(() -> load(school, students, teachers, courses, attendanceRows, seed));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void load(School school, int students, int teachers, int courses, int attendanceRows, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < courses; i++) {
+            school.getCourseService().add(course(random, i));
+        }
+        for (int i = 0; i < teachers; i++) {
+            school.getTeacherService().add(teacher(random, i));
+        }
+        Student[] roster = new Student[students];
+        for (int i = 0; i < students; i++) {
+            roster[i] = student(random, i);
+            school.getStudentService().add(roster[i]);
+        }
+        if (courses == 0) {
+            return;
+        }
+        EnrollmentService enrollments = school.getEnrollmentService();
+        for (int i = 0; i < teachers; i++) {
+            enrollments.assign(teacherId(i), courseCode(i % courses));
+        }
+        for (int i = 0; i < students; i++) {
+            for (int k = 0; k < COURSES_PER_CLASS; k++) {
+                enrollments.enroll(studentId(i), courseCode(courseOf(i, k, courses)));
+            }
+        }
+        if (attendanceRows > 0 && students > 0) {
+            Course[] catalogue = new Course[courses];
+            for (int i = 0; i < courses; i++) {
+                catalogue[i] = school.getCourseService().find(courseCode(i));
+            }
+            AttendanceService attendance = school.getAttendanceService();
+            for (int i = 0; i < attendanceRows; i++) {
+                int student = random.nextInt(students);
+                // Roughly nine in ten marks are present
+                attendance.record(roster[student], catalogue[courseOf(student, random.nextInt(COURSES_PER_CLASS), courses)],
+                        TERM_START.plusDays(random.nextInt(TERM_DAYS)), random.nextInt(10) != 0);
+            }
+        }
+    }
+
+    // Writes students.csv, teachers.csv, courses.csv, enrollments.csv and attendance.csv in the bulk
+    // importer's format
+    static void writeCsv(Path directory, int students, int teachers, int courses, long attendanceRows, long seed) throws IOException {
+        Files.createDirectories(directory);
+        SplittableRandom random = new SplittableRandom(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("courses.csv"), StandardCharsets.UTF_8)) {
+            out.write("code,name,description\n");
+            for (int i = 0; i < courses; i++) {
+                Course course = course(random, i);
+                out.write(course.getCode() + "," + course.getName() + "," + course.getDescription() + "\n");
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("teachers.csv"), StandardCharsets.UTF_8)) {
+            out.write("id,name,email,department,salary\n");
+            for (int i = 0; i < teachers; i++) {
+                Teacher teacher = teacher(random, i);
+                out.write(teacher.getId() + "," + teacher.getName() + "," + teacher.getEmail() + ","
+                        + teacher.getDepartment() + "," + teacher.getSalary() + "\n");
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("students.csv"), StandardCharsets.UTF_8)) {
+            out.write("id,name,email,grade,enrollmentDate\n");
+            for (int i = 0; i < students; i++) {
+                Student student = student(random, i);
+                out.write(student.getId() + "," + student.getName() + "," + student.getEmail() + ","
+                        + student.getGrade() + "," + student.getEnrollmentDate() + "\n");
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("enrollments.csv"), StandardCharsets.UTF_8)) {
+            out.write("studentId,courseCode\n");
+            for (int i = 0; i < students; i++) {
+                for (int k = 0; k < COURSES_PER_CLASS; k++) {
+                    out.write(studentId(i) + "," + courseCode(courseOf(i, k, courses)) + "\n");
+                }
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("attendance.csv"), StandardCharsets.UTF_8)) {
+            out.write("studentId,courseCode,date,present\n");
+            for (long i = 0; i < attendanceRows; i++) {
+                int student = random.nextInt(students);
+                out.write(studentId(student) + "," + courseCode(courseOf(student, random.nextInt(COURSES_PER_CLASS), courses)) + ","
+                        + TERM_START.plusDays(random.nextInt(TERM_DAYS)) + "," + (random.nextInt(10) != 0 ? "Y" : "N") + "\n");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: SyntheticSchool <dir> <students> [attendanceRows]");
+            return;
+        }
+        Path directory = Path.of(args[0]);
+        int students = Integer.parseInt(args[1]);
+        long attendanceRows = args.length > 2 ? Long.parseLong(args[2]) : students * 10L;
+        writeCsv(directory, students, teachersFor(students), coursesFor(students), attendanceRows, DEFAULT_SEED);
+        System.out.println("Wrote " + students + " students, " + teachersFor(students) + " teachers, "
+                + coursesFor(students) + " courses, " + students * COURSES_PER_CLASS + " enrollments and "
+                + attendanceRows + " attendance rows to " + directory);
+    }
+}
@@ -0,0 +1,61 @@
+package school;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// JMH timings of building a whole weekly timetable for generated schools of `size` students, each
+// class of 35 taking six courses four periods a week, with the solver's attempts spread over
+// `threads` workers (0 for one per core). Also times the clash check of a finished timetable.
+//   mvn -B package && java -jar benchmarks/target/benchmarks.jar TimetableBenchmark -jvmArgsAppend -Xmx3g
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TimetableBenchmark {
+    @Benchmark
+    public Timetable solve(Timetables timetables) {
+        return timetables.service.generate(timetables.rooms, TimetableService.DEFAULT_MEETINGS, timetables.pool).getValue();
+    }
+
+    @Benchmark
+    public List<Timetable.Conflict> conflicts(Timetables timetables) {
+        return timetables.solved.conflicts();
+    }
+
+    // Timetables class holding a school of `size` students and the rooms its timetable needs
+    @State(Scope.Benchmark)
+    public static class Timetables {
+        @Param({"500", "2000", "10000"})
+        public int size;
+
+        @Param({"1", "0"})
+        public int threads;
+
+        TimetableService service;
+        List<Timetable.Room> rooms;
+        ForkJoinPool pool;
+        Timetable solved;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            School school = SyntheticSchool.build(size, 0);
+            service = school.getTimetableService();
+            pool = threads == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(threads);
+            ServiceResult<Timetable> first = service.generate(0, TimetableService.DEFAULT_ROOM_CAPACITY,
+                    TimetableService.DEFAULT_MEETINGS);
+            solved = first.getValue();
+            rooms = solved.getRooms();
+            System.out.println(first.getMessage());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// AttendanceAggregates class that keeps running present/absent counts; safe for concurrent writers
+class AttendanceAggregates {
+    private final Tally total;
+    private final Map<String, Tally> byStudent;
+    private final Map<String, Tally> byCourse;
+    private final Map<LocalDate, Tally> byDate;
+
+    public AttendanceAggregates() {
+        this.total = new Tally();
+        this.byStudent = new ConcurrentHashMap<>();
+        this.byCourse = new ConcurrentHashMap<>();
+        this.byDate = new ConcurrentSkipListMap<>();
+    }
+
+    // Counts a newly marked row
+    public void record(Student student, Course course, LocalDate date, boolean isPresent) {
+        apply(student.getId(), course.getCode(), date, isPresent, 1);
+    }
+
+    // Counts a roll call; the course and date totals take one update for the whole class
+    public void record(Course course, LocalDate date, Student[] students, boolean[] present) {
+        int presentCount = 0;
+        for (int i = 0; i < students.length; i++) {
+            add(byStudent, students[i].getId(), present[i], 1);
+            if (present[i]) {
+                presentCount++;
+            }
+        }
+        int absentCount = students.length - presentCount;
+        total.add(presentCount, absentCount);
+        tally(byCourse, course.getCode()).add(presentCount, absentCount);
+        tally(byDate, date).add(presentCount, absentCount);
+    }
+
+    // Takes back a row that was corrected or deleted
+    public void retract(Student student, Course course, LocalDate date, boolean isPresent) {
+        apply(student.getId(), course.getCode(), date, isPresent, -1);
+    }
+
+    // Counts every live row of the store, working on dictionary indexes so large restores stay fast
+    public void recordAll(AttendanceStore store) {
+        int rows = store.size();
+        int[] range = store.dayRange();
+        if (rows == 0 || range == null) {
+            return;
+        }
+        int firstDay = range[0];
+
+        // Slot 2 * i holds presents and 2 * i + 1 absents
+        long[] students = new long[store.studentCount() * 2];
+        long[] courses = new long[store.courseCount() * 2];
+        long[] days = new long[(range[1] - firstDay + 1) * 2];
+        store.scan(0, rows, (student, course, epochDay, isPresent) -> {
+            int slot = isPresent ? 0 : 1;
+            students[student * 2 + slot]++;
+            courses[course * 2 + slot]++;
+            days[(epochDay - firstDay) * 2 + slot]++;
+        });
+
+        // Retired entries have no live rows, and may have been let go
+        for (int i = 0; i < store.studentCount(); i++) {
+            if (students[i * 2] + students[i * 2 + 1] > 0) {
+                merge(byStudent, store.studentAt(i).getId(), students[i * 2], students[i * 2 + 1]);
+            }
+        }
+        for (int i = 0; i < store.courseCount(); i++) {
+            if (courses[i * 2] + courses[i * 2 + 1] > 0) {
+                merge(byCourse, store.courseAt(i).getCode(), courses[i * 2], courses[i * 2 + 1]);
+            }
+        }
+        for (int i = 0; i < days.length / 2; i++) {
+            merge(byDate, LocalDate.ofEpochDay(firstDay + i), days[i * 2], days[i * 2 + 1]);
+            total.present.add(days[i * 2]);
+            total.absent.add(days[i * 2 + 1]);
+        }
+    }
+
+    public Tally getTotal() {
+        return total;
+    }
+
+    public Tally getForStudent(String studentId) {
+        return byStudent.getOrDefault(studentId, Tally.EMPTY);
+    }
+
+    public Tally getForCourse(String courseCode) {
+        return byCourse.getOrDefault(courseCode, Tally.EMPTY);
+    }
+
+    public Tally getForDate(LocalDate date) {
+        return byDate.getOrDefault(date, Tally.EMPTY);
+    }
+
+    public Map<String, Tally> getByStudent() {
+        return Collections.unmodifiableMap(byStudent);
+    }
+
+    public Map<String, Tally> getByCourse() {
+        return Collections.unmodifiableMap(byCourse);
+    }
+
+    public Map<LocalDate, Tally> getByDate() {
+        return Collections.unmodifiableMap(byDate);
+    }
+
+    // Rebuilds the counts from a full scan of the live rows and throws if they differ from the running ones
+    public void verifyAgainst(AttendanceStore store) {
+        AttendanceAggregates rescan = new AttendanceAggregates();
+        store.scan(0, store.size(), (student, course, epochDay, isPresent) -> rescan.record(store.studentAt(student),
+                store.courseAt(course), LocalDate.ofEpochDay(epochDay), isPresent));
+        check("total", Map.of("all", total), Map.of("all", rescan.total));
+        check("student", byStudent, rescan.byStudent);
+        check("course", byCourse, rescan.byCourse);
+        check("date", byDate, rescan.byDate);
+    }
+
+    private void apply(String studentId, String courseCode, LocalDate date, boolean isPresent, int delta) {
+        total.add(isPresent, delta);
+        add(byStudent, studentId, isPresent, delta);
+        add(byCourse, courseCode, isPresent, delta);
+        add(byDate, date, isPresent, delta);
+    }
+
+    // Tallies that drop to zero are kept, since removing them could lose a concurrent update
+    private static <K> void add(Map<K, Tally> tallies, K key, boolean isPresent, int delta) {
+        tally(tallies, key).add(isPresent, delta);
+    }
+
+    private static <K> Tally tally(Map<K, Tally> tallies, K key) {
+        Tally tally = tallies.get(key);
+        if (tally == null) {
+            tally = tallies.computeIfAbsent(key, k -> new Tally());
+        }
+        return tally;
+    }
+
+    private static <K> void merge(Map<K, Tally> tallies, K key, long present, long absent) {
+        if (present + absent == 0) {
+            return;
+        }
+        Tally tally = tallies.computeIfAbsent(key, k -> new Tally());
+        tally.present.add(present);
+        tally.absent.add(absent);
+    }
+
+    private static <K> void check(String dimension, Map<K, Tally> running, Map<K, Tally> rescanned) {
+        Set<K> keys = new HashSet<>(running.keySet());
+        keys.addAll(rescanned.keySet());
+        for (K key : keys) {
+            Tally expected = rescanned.getOrDefault(key, Tally.EMPTY);
+            Tally actual = running.getOrDefault(key, Tally.EMPTY);
+            if (expected.getPresent() != actual.getPresent() || expected.getAbsent() != actual.getAbsent()) {
+                throw new IllegalStateException("Attendance " + dimension + " count for " + key + " is " + actual
+                        + " but a full scan gives " + expected);
+            }
+        }
+    }
+
+    // Tally class holding one present/absent pair
+    static class Tally {
+        static final Tally EMPTY = new Tally();
+
+        private final LongAdder present = new LongAdder();
+        private final LongAdder absent = new LongAdder();
+
+        private void add(boolean isPresent, int delta) {
+            if (isPresent) {
+                present.add(delta);
+            } else {
+                absent.add(delta);
+            }
+        }
+
+        // A tally holding these counts, as reports read from a view hand out
+        static Tally of(long present, long absent) {
+            Tally tally = new Tally();
+            tally.add(present, absent);
+            return tally;
+        }
+
+        private void add(long presentDelta, long absentDelta) {
+            present.add(presentDelta);
+            absent.add(absentDelta);
+        }
+
+        public long getPresent() { return present.sum(); }
+
+        public long getAbsent() { return absent.sum(); }
+
+        public long getTotal() { return getPresent() + getAbsent(); }
+
+        public double getRate() {
+            long presentCount = getPresent();
+            long total = presentCount + getAbsent();
+            return total == 0 ? 0 : (double) presentCount / total * 100;
+        }
+
+        @Override
+        public String toString() {
+            return "[Present: " + getPresent() + ", Absent: " + getAbsent() + "]";
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package school;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntPredicate;
+
+// AttendanceIndex class with postings lists of attendance rows by student, by course and by date.
+//
+// Rows are indexed by the one thread publishing them, in row order, so every postings list is
+// sorted. Readers take no lock: they see a prefix of each list and bound it by the store's
+// published row count. Lists are only changed under this index's lock, by the publishing thread
+// appending, by a removal dropping a student's or course's list, and by compaction replacing a
+// list with a copy that leaves out reclaimed rows; a reader still holding the old list is unaffected.
+class AttendanceIndex {
+    private static final Postings EMPTY = new Postings();
+
+    // Indexed by the store's student and course dictionary indexes
+    private volatile Postings[] byStudent = new Postings[16];
+    private volatile Postings[] byCourse = new Postings[16];
+    private final ConcurrentSkipListMap<Integer, Postings> byDate = new ConcurrentSkipListMap<>();
+
+    // Only called while publishing, under this index's lock, so calls arrive in row order
+    void add(int row, int student, int course, int epochDay) {
+        byStudent = append(byStudent, student, row);
+        byCourse = append(byCourse, course, row);
+        Postings day = byDate.get(epochDay);
+        if (day == null) {
+            day = new Postings();
+            byDate.put(epochDay, day);
+        }
+        day.add(row);
+    }
+
+    // Drops a removed student's list; every row in it has been deleted
+    synchronized void dropStudent(int student) {
+        byStudent = drop(byStudent, student);
+    }
+
+    synchronized void dropCourse(int course) {
+        byCourse = drop(byCourse, course);
+    }
+
+    // Copies the lists of the given students, courses and days without the rows compaction has
+    // reclaimed. Each list is copied under the lock on its own, so appends wait for one list at a time.
+    void purge(BitSet students, BitSet courses, Set<Integer> days, IntPredicate reclaimed) {
+        for (int student = students.nextSetBit(0); student >= 0; student = students.nextSetBit(student + 1)) {
+            synchronized (this) {
+                byStudent = purge(byStudent, student, reclaimed);
+            }
+        }
+        for (int course = courses.nextSetBit(0); course >= 0; course = courses.nextSetBit(course + 1)) {
+            synchronized (this) {
+                byCourse = purge(byCourse, course, reclaimed);
+            }
+        }
+        for (int epochDay : days) {
+            synchronized (this) {
+                Postings day = byDate.get(epochDay);
+                if (day != null) {
+                    Postings kept = day.without(reclaimed);
+                    if (kept.size() == 0) {
+                        byDate.remove(epochDay);
+                    } else {
+                        byDate.put(epochDay, kept);
+                    }
+                }
+            }
+        }
+    }
+
+    Postings forStudent(int student) {
+        return get(byStudent, student);
+    }
+
+    Postings forCourse(int course) {
+        return get(byCourse, course);
+    }
+
+    Postings forDate(int epochDay) {
+        return byDate.getOrDefault(epochDay, EMPTY);
+    }
+
+    // Rough bytes held by the postings lists, counting capacity not yet used
+    long estimatedBytes() {
+        long bytes = estimatedBytes(byStudent) + estimatedBytes(byCourse);
+        for (Postings day : byDate.values()) {
+            // Each day also takes a skip list node and a boxed key
+            bytes += 64 + day.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    private static long estimatedBytes(Postings[] postings) {
+        long bytes = 16 + 4L * postings.length;
+        for (Postings list : postings) {
+            if (list != null) {
+                bytes += list.estimatedBytes();
+            }
+        }
+        return bytes;
+    }
+
+    // First and last indexed day, or null before the first row
+    int[] dayRange() {
+        try {
+            return new int[] {byDate.firstKey(), byDate.lastKey()};
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    // Postings for every day from fromDay on, in date order
+    NavigableMap<Integer, Postings> fromDate(int fromDay) {
+        return byDate.tailMap(fromDay, true);
+    }
+
+    // Postings for every day in the inclusive range, in date order
+    Collection<Postings> forDates(int fromDay, int toDay) {
+        return byDate.subMap(fromDay, true, toDay, true).values();
+    }
+
+    private static Postings get(Postings[] postings, int index) {
+        Postings found = index < postings.length ? postings[index] : null;
+        return found == null ? EMPTY : found;
+    }
+
+    private static Postings[] drop(Postings[] postings, int index) {
+        if (index < postings.length) {
+            postings[index] = null;
+        }
+        // Returned to be re-published, so readers see the change
+        return postings;
+    }
+
+    private static Postings[] purge(Postings[] postings, int index, IntPredicate reclaimed) {
+        if (index < postings.length && postings[index] != null) {
+            Postings kept = postings[index].without(reclaimed);
+            postings[index] = kept.size() == 0 ? null : kept;
+        }
+        return postings;
+    }
+
+    private static Postings[] append(Postings[] postings, int index, int row) {
+        if (index >= postings.length) {
+            postings = Arrays.copyOf(postings, Math.max(index + 1, postings.length * 2));
+        }
+        if (postings[index] == null) {
+            postings[index] = new Postings();
+        }
+        postings[index].add(row);
+        return postings;
+    }
+
+    // Postings class holding a sorted, append-only list of row numbers
+    static final class Postings {
+        private volatile int[] rows = new int[4];
+        private volatile int size;
+
+        private void add(int row) {
+            int[] current = rows;
+            int count = size;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, count + (count >> 1) + 4);
+                current[count] = row;
+                rows = current;
+            } else {
+                current[count] = row;
+            }
+            size = count + 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        // The list object and its row array, with their headers
+        long estimatedBytes() {
+            return 24 + 16 + 4L * rows.length;
+        }
+
+        // A new list of the rows that are not reclaimed
+        private Postings without(IntPredicate reclaimed) {
+            int count = size;
+            int[] current = rows;
+            Postings kept = new Postings();
+            int[] keptRows = new int[count];
+            int keptCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (!reclaimed.test(current[i])) {
+                    keptRows[keptCount++] = current[i];
+                }
+            }
+            kept.rows = Arrays.copyOf(keptRows, keptCount);
+            kept.size = keptCount;
+            return kept;
+        }
+
+        // Position of the first entry greater than row, found by binary search
+        int positionAfter(int row) {
+            int count = size;
+            int[] current = rows;
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (current[middle] <= row) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // Offers each row below end to visitor, in order, until it returns false; returns false if it stopped early
+        boolean forEach(int end, IntPredicate visitor) {
+            return forEach(0, end, visitor);
+        }
+
+        // As forEach(end, visitor), starting at the entry at position start
+        boolean forEach(int start, int end, IntPredicate visitor) {
+            // Read size before rows, so the array always holds at least count entries
+            int count = size;
+            int[] current = rows;
+            for (int i = start; i < count; i++) {
+                int row = current[i];
+                if (row >= end) {
+                    break;
+                }
+                if (!visitor.test(row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
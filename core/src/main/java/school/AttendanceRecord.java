@@ -0,0 +1,37 @@
+package school;
+
+import java.time.LocalDate;
+
+// AttendanceRecord class
+class AttendanceRecord {
+    private volatile Student student;
+    private volatile Course course;
+    private volatile LocalDate date;
+    private volatile boolean isPresent;
+    
+    public AttendanceRecord(Student student, Course course, LocalDate date, boolean isPresent) {
+        this.student = student;
+        this.course = course;
+        this.date = date;
+        this.isPresent = isPresent;
+    }
+    
+    // Getters and setters
+    public Student getStudent() { return student; }
+    public void setStudent(Student student) { this.student = student; }
+    
+    public Course getCourse() { return course; }
+    public void setCourse(Course course) { this.course = course; }
+    
+    public LocalDate getDate() { return date; }
+    public void setDate(LocalDate date) { this.date = date; }
+    
+    public boolean isPresent() { return isPresent; }
+    public void setPresent(boolean present) { isPresent = present; }
+    
+    @Override
+    public String toString() {
+        return "Attendance [Student: " + student.getName() + ", Course: " + course.getName() + 
+               ", Date: " + date + ", Present: " + (isPresent ? "Yes" : "No") + "]";
+    }
+}
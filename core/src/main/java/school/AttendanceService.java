@@ -0,0 +1,315 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// AttendanceService class with the non-interactive attendance operations
+class AttendanceService {
+    private final School school;
+    private final EntityRegistry<Student> students;
+    private final EntityRegistry<Course> courses;
+    private final AttendanceStore attendanceRecords;
+    private final AttendanceAggregates attendanceTotals;
+    private final EnrollmentService enrollments;
+    private final Metrics.Timer markTimer;
+    private final Metrics.Timer rollCallTimer;
+    private final Metrics.Timer findTimer;
+    private final Metrics.Timer pageTimer;
+
+    AttendanceService(School school, EntityRegistry<Student> students, EntityRegistry<Course> courses,
+                      AttendanceStore attendanceRecords, AttendanceAggregates attendanceTotals,
+                      EnrollmentService enrollments) {
+        this.school = school;
+        this.students = students;
+        this.courses = courses;
+        this.attendanceRecords = attendanceRecords;
+        this.attendanceTotals = attendanceTotals;
+        this.enrollments = enrollments;
+        this.markTimer = school.getMetrics().timer("attendance.mark");
+        this.rollCallTimer = school.getMetrics().timer("attendance.rollCall");
+        this.findTimer = school.getMetrics().timer("attendance.find");
+        this.pageTimer = school.getMetrics().timer("attendance.page");
+    }
+
+    // Holds the student and course shared, so neither can be changed or removed mid-mark, nor the
+    // student withdrawn, while marks for other students, or the same course, go ahead in parallel
+    public ServiceResult<AttendanceRecord> mark(String studentId, String courseCode, LocalDate date, boolean isPresent) {
+        return school.write(markTimer, () -> students.read(studentId,
+                () -> courses.read(courseCode, () -> markLocked(studentId, courseCode, date, isPresent))));
+    }
+
+    private ServiceResult<AttendanceRecord> markLocked(String studentId, String courseCode, LocalDate date, boolean isPresent) {
+        Student student = students.get(studentId);
+        if (student == null) {
+            return ServiceResult.notFound("Student not found.");
+        }
+        Course course = courses.get(courseCode);
+        if (course == null) {
+            return ServiceResult.notFound("Course not found.");
+        }
+        if (date == null) {
+            return ServiceResult.invalid("Attendance date is required.");
+        }
+        if (!enrollments.isEnrolled(studentId, courseCode)) {
+            return ServiceResult.invalid("Student " + studentId + " is not enrolled in " + courseCode + ".");
+        }
+        record(student, course, date, isPresent);
+        return ServiceResult.ok(new AttendanceRecord(student, course, date, isPresent), "Attendance recorded successfully!");
+    }
+
+    // Marks everyone enrolled in the course: present unless listed as absent
+    public ServiceResult<RollCall> rollCall(String courseCode, LocalDate date, Collection<String> absentees) {
+        ServiceResult<EnrollmentService.CourseRoster> roster = enrollments.roster(courseCode);
+        if (!roster.isOk()) {
+            return ServiceResult.notFound(roster.getMessage());
+        }
+        List<String> cohort = new ArrayList<>(roster.getValue().getStudents().size());
+        for (Student student : roster.getValue().getStudents()) {
+            cohort.add(student.getId());
+        }
+        return rollCall(courseCode, date, cohort, absentees);
+    }
+
+    // Marks a whole class at once: every student in the cohort is present unless listed as absent.
+    // Every student must be enrolled in the course. The rows, the running counts and the journal
+    // entry are each written once for the class.
+    public ServiceResult<RollCall> rollCall(String courseCode, LocalDate date, Collection<String> cohort,
+                                            Collection<String> absentees) {
+        return school.write(rollCallTimer, () -> {
+            if (date == null) {
+                return ServiceResult.invalid("Attendance date is required.");
+            }
+            Set<String> studentIds = new LinkedHashSet<>(cohort);
+            if (studentIds.isEmpty()) {
+                return ServiceResult.invalid("The class has no students.");
+            }
+            for (String absentee : absentees) {
+                if (!studentIds.contains(absentee)) {
+                    return ServiceResult.invalid("Student " + absentee + " is not in this class.");
+                }
+            }
+            Set<String> absent = new HashSet<>(absentees);
+            return students.readAll(studentIds, () -> courses.read(courseCode,
+                    () -> rollCallLocked(courseCode, date, studentIds, absent)));
+        });
+    }
+
+    private ServiceResult<RollCall> rollCallLocked(String courseCode, LocalDate date, Set<String> studentIds, Set<String> absent) {
+        Course course = courses.get(courseCode);
+        if (course == null) {
+            return ServiceResult.notFound("Course not found.");
+        }
+        Student[] cohort = new Student[studentIds.size()];
+        boolean[] present = new boolean[cohort.length];
+        int index = 0;
+        for (String studentId : studentIds) {
+            Student student = students.get(studentId);
+            if (student == null) {
+                return ServiceResult.notFound("Student " + studentId + " not found.");
+            }
+            if (!enrollments.isEnrolled(studentId, courseCode)) {
+                return ServiceResult.invalid("Student " + studentId + " is not enrolled in " + courseCode + ".");
+            }
+            cohort[index] = student;
+            present[index++] = !absent.contains(studentId);
+        }
+        attendanceRecords.addAll(course, date, cohort, present, visible -> {
+            if (!school.log(journal -> journal.rollCall(course, date, cohort, present, visible))) {
+                visible.run();
+            }
+        });
+        attendanceTotals.record(course, date, cohort, present);
+        RollCall rollCall = new RollCall(course, date, cohort.length - absent.size(), absent.size());
+        return ServiceResult.ok(rollCall, "Roll call recorded: " + rollCall.getPresent() + " present, "
+                + rollCall.getAbsent() + " absent.");
+    }
+
+    // Records a mark for entities the caller has already resolved
+    void record(Student student, Course course, LocalDate date, boolean isPresent) {
+        // A persistent school makes the row visible inside the journal write, so snapshots cut both at
+        // the same point; only that step runs under the journal's lock, the rest of the row before it
+        attendanceRecords.add(student, course, date, isPresent, visible -> {
+            if (!school.log(journal -> journal.attendanceMarked(student, course, date, isPresent, visible))) {
+                visible.run();
+            }
+        });
+        attendanceTotals.record(student, course, date, isPresent);
+    }
+
+    // Finds the attendance records matching every criterion of the query, in the order they were
+    // recorded. Records of removed students and courses are not returned.
+    public ServiceResult<List<AttendanceRecord>> find(Query query) {
+        return findTimer.time(() -> {
+            int student = AttendanceStore.ANY;
+            if (query.studentId != null) {
+                Student found = students.get(query.studentId);
+                if (found == null) {
+                    return ServiceResult.notFound("Student not found.");
+                }
+                student = attendanceRecords.studentIndexOf(found);
+                if (student == AttendanceStore.ANY) {
+                    return ServiceResult.ok(List.of(), "0 attendance records found.");
+                }
+            }
+            int course = AttendanceStore.ANY;
+            if (query.courseCode != null) {
+                Course found = courses.get(query.courseCode);
+                if (found == null) {
+                    return ServiceResult.notFound("Course not found.");
+                }
+                course = attendanceRecords.courseIndexOf(found);
+                if (course == AttendanceStore.ANY) {
+                    return ServiceResult.ok(List.of(), "0 attendance records found.");
+                }
+            }
+            if (query.from != null && query.to != null && query.from.isAfter(query.to)) {
+                return ServiceResult.invalid("The start date is after the end date.");
+            }
+            int fromDay = query.from == null ? Integer.MIN_VALUE : (int) query.from.toEpochDay();
+            int toDay = query.to == null ? Integer.MAX_VALUE : (int) query.to.toEpochDay();
+            int[] rows = attendanceRecords.find(student, course, fromDay, toDay, query.present, query.limit);
+            List<AttendanceRecord> found = records(rows, rows.length);
+            return ServiceResult.ok(found, found.size() + " attendance records found.");
+        });
+    }
+
+    // One page of attendance records in date order; a null cursor starts from the first page
+    public ServiceResult<Page<AttendanceRecord>> page(String cursor, int limit) {
+        return pageTimer.time(() -> {
+            try {
+                Page.checkSize(limit);
+                int afterDay = Integer.MIN_VALUE;
+                int afterRow = -1;
+                if (cursor != null) {
+                    String[] position = Page.decodeCursor(cursor, 2);
+                    afterDay = Integer.parseInt(position[0]);
+                    afterRow = Integer.parseInt(position[1]);
+                }
+                // One extra row tells whether another page follows
+                int[] rows = attendanceRecords.pageByDate(afterDay, afterRow, limit + 1);
+                int size = Math.min(rows.length, limit);
+                String next = null;
+                if (rows.length > limit) {
+                    int last = rows[limit - 1];
+                    next = Page.encodeCursor(String.valueOf(attendanceRecords.epochDay(last)), String.valueOf(last));
+                }
+                List<AttendanceRecord> listed = records(rows, size);
+                return ServiceResult.ok(new Page<>(listed, next), listed.size() + " attendance records listed.");
+            } catch (IllegalArgumentException e) {
+                return ServiceResult.invalid(e instanceof NumberFormatException ? "Invalid page cursor." : e.getMessage());
+            }
+        });
+    }
+
+    // The records of the rows, built while the query runs: compaction may reclaim a row a pass after
+    // it is deleted, so a result must not read the store later. Rows of a student or course removed
+    // since the query found them are left out.
+    private List<AttendanceRecord> records(int[] rows, int size) {
+        List<AttendanceRecord> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            AttendanceRecord record = attendanceRecords.get(rows[i]);
+            if (record.getStudent() != null && record.getCourse() != null) {
+                records.add(record);
+            }
+        }
+        return Collections.unmodifiableList(records);
+    }
+
+    // Called by the student and course services, under the entity's write lock, when it is removed:
+    // deletes its rows and takes them out of the running counts, in O(rows it had)
+    int retire(Student student) {
+        return attendanceRecords.retireStudent(student, this::retract);
+    }
+
+    int retire(Course course) {
+        return attendanceRecords.retireCourse(course, this::retract);
+    }
+
+    private void retract(int student, int course, int epochDay, boolean isPresent) {
+        attendanceTotals.retract(attendanceRecords.studentAt(student), attendanceRecords.courseAt(course),
+                LocalDate.ofEpochDay(epochDay), isPresent);
+    }
+
+    public Iterable<AttendanceRecord> list() {
+        return attendanceRecords;
+    }
+
+    // Records of removed students and courses are not counted
+    public int count() {
+        return attendanceRecords.count();
+    }
+
+    // Every record marked since the store was loaded, deleted ones included
+    public int recorded() {
+        return attendanceRecords.size();
+    }
+
+    // Runs a compaction pass now rather than waiting for the background one; returns the rows reclaimed
+    public int compact() {
+        return attendanceRecords.compact();
+    }
+
+    // Query class listing the criteria to match; criteria left unset match every record
+    static class Query {
+        private String studentId;
+        private String courseCode;
+        private LocalDate from;
+        private LocalDate to;
+        private Boolean present;
+        private int limit = Integer.MAX_VALUE;
+
+        public Query student(String studentId) {
+            this.studentId = studentId;
+            return this;
+        }
+
+        public Query course(String courseCode) {
+            this.courseCode = courseCode;
+            return this;
+        }
+
+        // Both ends are inclusive; null leaves that end open
+        public Query between(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        public Query on(LocalDate date) {
+            return between(date, date);
+        }
+
+        public Query present(Boolean present) {
+            this.present = present;
+            return this;
+        }
+
+        public Query limit(int limit) {
+            this.limit = Math.max(0, limit);
+            return this;
+        }
+    }
+
+    // RollCall class summarising one recorded roll call
+    static class RollCall {
+        private final Course course;
+        private final LocalDate date;
+        private final int present;
+        private final int absent;
+
+        RollCall(Course course, LocalDate date, int present, int absent) {
+            this.course = course;
+            this.date = date;
+            this.present = present;
+            this.absent = absent;
+        }
+
+        public Course getCourse() { return course; }
+
+        public LocalDate getDate() { return date; }
+
+        public int getPresent() { return present; }
+
+        public int getAbsent() { return absent; }
+    }
+}
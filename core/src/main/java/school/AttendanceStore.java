@@ -0,0 +1,940 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+// AttendanceStore class that keeps attendance rows in primitive columns.
+//
+// Writers reserve rows with an atomic counter and fill them in without locking; a row becomes
+// visible to readers once every row before it is complete, so reads never take a lock.
+// Columns live in fixed-size chunks that are never copied, so a reader can keep using a
+// chunk while writers append. Rows are indexed by student, course and date as they are published.
+//
+// Removing a student or course deletes its rows, which are found through its postings list, so it
+// costs the rows it had rather than a pass over the whole history. Deleted rows keep their numbers
+// and are marked in a bitmap per chunk that every read checks first. Compaction, run in the
+// background, rewrites full chunks down to the rows they still need and drops the rest from the
+// postings lists. A row is only reclaimed on the pass after the one that saw it deleted, so a reader
+// that found it just before has a whole pass to finish with it.
+//
+// Retiring a student or course is a commit of the store's Versions, recorded on its dictionary
+// entry before any of its rows is deleted. A point-in-time view reads the rows below the count it
+// was opened with and, for each deleted row, asks whether the commit that deleted it is newer than
+// the view; compaction holds off while views are open, so no such row is reclaimed under them.
+class AttendanceStore implements Iterable<AttendanceRecord> {
+    // Wildcard for the student and course arguments of find
+    static final int ANY = -1;
+    // A full chunk is compacted once this many of its rows are deleted but still held
+    static final int COMPACT_MIN_ROWS = 1 << 13;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final int CHUNK_WORDS = CHUNK_ROWS >>> 6;
+    private static final int NO_SLOT = -1;
+    private static final RowVisitor IGNORE = (student, course, epochDay, isPresent) -> { };
+    // Version passed by live reads, which skip every deleted row
+    private static final long LIVE = -1;
+
+    // Dictionaries mapping each distinct student and course to a dense index
+    private final Dictionary<Student> studentDictionary = new Dictionary<>();
+    private final Dictionary<Course> courseDictionary = new Dictionary<>();
+
+    private final Object growLock = new Object();
+    private volatile Chunk[] chunks = new Chunk[0];
+    private final AtomicInteger reserved = new AtomicInteger();
+    private volatile int published;
+    private final AtomicInteger deleted = new AtomicInteger();
+    private final AttendanceIndex index = new AttendanceIndex();
+    // Chunks to compact on the next pass, with the deleted rows each may drop
+    private final Object compactLock = new Object();
+    private final Map<Integer, long[]> reclaimNext = new HashMap<>();
+    private final Versions versions;
+
+    public AttendanceStore() {
+        this(new Versions());
+    }
+
+    // A store whose retirements are commits of these versions, so views of them see both at one point
+    public AttendanceStore(Versions versions) {
+        this.versions = versions;
+    }
+
+    public void add(Student student, Course course, LocalDate date, boolean isPresent) {
+        add(student, course, date, isPresent, Runnable::run);
+    }
+
+    // Hands the step that makes the row visible to publisher, which must run it. Rows become
+    // visible one writer at a time in row order, so a caller that logs the row in that step logs
+    // rows in the same order, and size() read under the log's lock cuts the store and the log at
+    // the same point. Everything else, reserving and filling the row, runs before it.
+    public void add(Student student, Course course, LocalDate date, boolean isPresent, Consumer<Runnable> publisher) {
+        int studentIndex = studentDictionary.encode(student);
+        int courseIndex = courseDictionary.encode(course);
+        int row = reserve(1);
+        chunk(row).set(row & CHUNK_MASK, studentIndex, courseIndex, (int) date.toEpochDay(), isPresent);
+        publish(row, 1, publisher);
+    }
+
+    public void add(AttendanceRecord record) {
+        add(record.getStudent(), record.getCourse(), record.getDate(), record.isPresent());
+    }
+
+    // Appends one row per student for the same course and date, published together
+    public void addAll(Course course, LocalDate date, Student[] students, boolean[] present) {
+        addAll(course, date, students, present, Runnable::run);
+    }
+
+    // Appends the rows as addAll does, making them visible through publisher as add does
+    public void addAll(Course course, LocalDate date, Student[] students, boolean[] present, Consumer<Runnable> publisher) {
+        if (students.length == 0) {
+            return;
+        }
+        int courseIndex = courseDictionary.encode(course);
+        int[] studentIndexes = new int[students.length];
+        for (int i = 0; i < students.length; i++) {
+            studentIndexes[i] = studentDictionary.encode(students[i]);
+        }
+        int epochDay = (int) date.toEpochDay();
+        int first = reserve(students.length);
+        for (int i = 0; i < students.length; i++) {
+            int row = first + i;
+            chunk(row).set(row & CHUNK_MASK, studentIndexes[i], courseIndex, epochDay, present[i]);
+        }
+        publish(first, students.length, publisher);
+    }
+
+    // Appends rows whose student and course columns already hold dictionary indexes
+    public void addRows(int count, int[] studentIndexColumn, int[] courseIndexColumn, int[] epochDays, long[] presence) {
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (studentIndexColumn[i] >= studentDictionary.size() || courseIndexColumn[i] >= courseDictionary.size()) {
+                throw new IllegalArgumentException("Attendance row refers to an undefined student or course index");
+            }
+        }
+        int first = reserve(count);
+        int born = 0;
+        for (int i = 0; i < count; i++) {
+            int row = first + i;
+            chunk(row).set(row & CHUNK_MASK, studentIndexColumn[i], courseIndexColumn[i], epochDays[i],
+                    (presence[i >>> 6] & (1L << i)) != 0);
+            // Rows of an entry recovered as already removed are deleted from the start
+            if (studentDictionary.isRetired(studentIndexColumn[i]) || courseDictionary.isRetired(courseIndexColumn[i])) {
+                chunk(row).delete(row & CHUNK_MASK);
+                born++;
+            }
+        }
+        publish(first, count, Runnable::run);
+        deleted.addAndGet(born);
+    }
+
+    // Builds an AttendanceRecord view of a row; changes to the view are not written back. A deleted
+    // row can still be read until compaction reclaims it.
+    public AttendanceRecord get(int row) {
+        checkRow(row);
+        Chunk chunk = chunks[row >>> CHUNK_BITS];
+        int slot = slot(chunk, row);
+        return new AttendanceRecord(studentDictionary.get(chunk.students[slot]), courseDictionary.get(chunk.courses[slot]),
+                LocalDate.ofEpochDay(chunk.epochDays[slot]), chunk.isPresent(slot));
+    }
+
+    public Student getStudent(int row) {
+        return studentDictionary.get(studentIndex(row));
+    }
+
+    public Course getCourse(int row) {
+        return courseDictionary.get(courseIndex(row));
+    }
+
+    public LocalDate getDate(int row) {
+        return LocalDate.ofEpochDay(epochDay(row));
+    }
+
+    public boolean isPresent(int row) {
+        checkRow(row);
+        Chunk chunk = chunks[row >>> CHUNK_BITS];
+        return chunk.isPresent(slot(chunk, row));
+    }
+
+    public int studentIndex(int row) {
+        checkRow(row);
+        Chunk chunk = chunks[row >>> CHUNK_BITS];
+        return chunk.students[slot(chunk, row)];
+    }
+
+    public int courseIndex(int row) {
+        checkRow(row);
+        Chunk chunk = chunks[row >>> CHUNK_BITS];
+        return chunk.courses[slot(chunk, row)];
+    }
+
+    public int epochDay(int row) {
+        checkRow(row);
+        Chunk chunk = chunks[row >>> CHUNK_BITS];
+        return chunk.epochDays[slot(chunk, row)];
+    }
+
+    public boolean isDeleted(int row) {
+        checkRow(row);
+        return chunks[row >>> CHUNK_BITS].isDeleted(row & CHUNK_MASK);
+    }
+
+    // Returns the dictionary index for this student, adding it if it is new
+    public int defineStudent(Student student) {
+        return studentDictionary.encode(student);
+    }
+
+    // Returns the dictionary index for this course, adding it if it is new
+    public int defineCourse(Course course) {
+        return courseDictionary.encode(course);
+    }
+
+    // Dictionary index of this student, or ANY if it has never been marked
+    public int studentIndexOf(Student student) {
+        return studentDictionary.indexOf(student);
+    }
+
+    // Dictionary index of this course, or ANY if it has never been marked
+    public int courseIndexOf(Course course) {
+        return courseDictionary.indexOf(course);
+    }
+
+    public void retireStudent(Student student) {
+        retireStudent(student, IGNORE);
+    }
+
+    // Deletes every row of a removed student, passing each to removed, and returns how many there
+    // were. The student's postings list leads to the rows, so this costs O(rows of the student).
+    // Its rows are deleted before it is marked retired, so whoever sees the mark sees them deleted.
+    public int retireStudent(Student student, RowVisitor removed) {
+        int entry = studentDictionary.indexOf(student);
+        if (entry == ANY) {
+            return 0;
+        }
+        Versions.Commit commit = versions.begin();
+        try {
+            studentDictionary.retiring(entry, commit);
+            int count = delete(index.forStudent(entry), removed);
+            index.dropStudent(entry);
+            studentDictionary.retire(entry);
+            return count;
+        } finally {
+            versions.end(commit);
+        }
+    }
+
+    public void retireCourse(Course course) {
+        retireCourse(course, IGNORE);
+    }
+
+    // As retireStudent, for a removed course; rows already deleted with their student are skipped
+    public int retireCourse(Course course, RowVisitor removed) {
+        int entry = courseDictionary.indexOf(course);
+        if (entry == ANY) {
+            return 0;
+        }
+        Versions.Commit commit = versions.begin();
+        try {
+            courseDictionary.retiring(entry, commit);
+            int count = delete(index.forCourse(entry), removed);
+            index.dropCourse(entry);
+            courseDictionary.retire(entry);
+            return count;
+        } finally {
+            versions.end(commit);
+        }
+    }
+
+    // The entity's rows were all published before it was removed, as writers hold it shared
+    private int delete(AttendanceIndex.Postings postings, RowVisitor removed) {
+        int[] count = {0};
+        postings.forEach(published, row -> {
+            Chunk chunk = chunks[row >>> CHUNK_BITS];
+            int offset = row & CHUNK_MASK;
+            if (chunk.isDeleted(offset)) {
+                return true;
+            }
+            // Read the row before deleting it, while every version of the chunk still holds it
+            int slot = chunk.slot(offset);
+            int student = chunk.students[slot];
+            int course = chunk.courses[slot];
+            int epochDay = chunk.epochDays[slot];
+            boolean isPresent = chunk.isPresent(slot);
+            if (chunk.delete(offset)) {
+                count[0]++;
+                removed.visit(student, course, epochDay, isPresent);
+            }
+            return true;
+        });
+        deleted.addAndGet(count[0]);
+        return count[0];
+    }
+
+    // Finds the rows matching every criterion, in the order they were recorded, up to limit rows.
+    // Pass ANY for no student or course, Integer.MIN_VALUE/MAX_VALUE for an open date range and
+    // null for either presence. Deleted rows are left out.
+    //
+    // The smallest matching postings list drives the search: the student's if given, otherwise the
+    // course's or the date range's, whichever holds fewer rows. The full table is scanned only when
+    // no criterion has an index.
+    public int[] find(int student, int course, int fromDay, int toDay, Boolean present, int limit) {
+        int end = published;
+        boolean dateRange = fromDay != Integer.MIN_VALUE || toDay != Integer.MAX_VALUE;
+        if (student == ANY && dateRange && (course == ANY || datePostings(fromDay, toDay) < index.forCourse(course).size())) {
+            // Days are visited in date order, so collect every match and put them back in recorded order
+            RowCollector matches = new RowCollector(Integer.MAX_VALUE);
+            IntPredicate visitor = row -> !matches(row, ANY, course, fromDay, toDay, present) || matches.add(row);
+            for (AttendanceIndex.Postings day : index.forDates(fromDay, toDay)) {
+                day.forEach(end, visitor);
+            }
+            int[] rows = matches.toArray();
+            Arrays.sort(rows);
+            return rows.length > limit ? Arrays.copyOf(rows, limit) : rows;
+        }
+
+        RowCollector matches = new RowCollector(limit);
+        IntPredicate visitor = row -> !matches(row, student, course, fromDay, toDay, present) || matches.add(row);
+        if (student != ANY) {
+            index.forStudent(student).forEach(end, visitor);
+        } else if (course != ANY) {
+            index.forCourse(course).forEach(end, visitor);
+        } else {
+            for (int row = 0; row < end; row++) {
+                if (!visitor.test(row)) {
+                    break;
+                }
+            }
+        }
+        return matches.toArray();
+    }
+
+    // Up to limit rows ordered by date and then by recorded order, starting after the row at
+    // (afterDay, afterRow); pass Integer.MIN_VALUE as afterDay to start from the first row. The date
+    // index is entered at afterDay and the row found by binary search, so a page costs
+    // O(log n + limit) plus any deleted rows it skips.
+    public int[] pageByDate(int afterDay, int afterRow, int limit) {
+        int end = published;
+        RowCollector page = new RowCollector(limit);
+        IntPredicate visitor = row -> !matches(row, ANY, ANY, Integer.MIN_VALUE, Integer.MAX_VALUE, null) || page.add(row);
+        for (Map.Entry<Integer, AttendanceIndex.Postings> day : index.fromDate(afterDay).entrySet()) {
+            AttendanceIndex.Postings postings = day.getValue();
+            int start = day.getKey() == afterDay ? postings.positionAfter(afterRow) : 0;
+            if (!postings.forEach(start, end, visitor)) {
+                break;
+            }
+        }
+        return page.toArray();
+    }
+
+    // Checks every postings list against the columns and throws if one is missing, unsorted or wrong.
+    // Postings lists may hold deleted rows until compaction reclaims them, but no reclaimed row, and
+    // no live row may belong to a retired student or course.
+    public void verifyIndex() {
+        synchronized (compactLock) {
+            int end = published;
+            Map<Integer, Integer> days = new HashMap<>();
+            int[] students = new int[studentDictionary.size()];
+            int[] courses = new int[courseDictionary.size()];
+            int deletedRows = 0;
+            for (int row = 0; row < end; row++) {
+                if (isDeleted(row)) {
+                    deletedRows++;
+                    continue;
+                }
+                int student = studentIndex(row);
+                int course = courseIndex(row);
+                if (studentDictionary.isRetired(student) || courseDictionary.isRetired(course)) {
+                    throw new IllegalStateException("Attendance row " + row + " of a removed student or course is not deleted");
+                }
+                students[student]++;
+                courses[course]++;
+                days.merge(epochDay(row), 1, Integer::sum);
+            }
+            if (deletedRows != deleted.get()) {
+                throw new IllegalStateException("Attendance store counts " + deleted.get() + " deleted rows but holds " + deletedRows);
+            }
+            for (int i = 0; i < students.length; i++) {
+                verifyPostings("student " + i, index.forStudent(i), end, students[i], i, this::studentIndex);
+            }
+            for (int i = 0; i < courses.length; i++) {
+                verifyPostings("course " + i, index.forCourse(i), end, courses[i], i, this::courseIndex);
+            }
+            for (Map.Entry<Integer, Integer> day : days.entrySet()) {
+                verifyPostings("day " + day.getKey(), index.forDate(day.getKey()), end, day.getValue(), day.getKey(), this::epochDay);
+            }
+        }
+    }
+
+    private void verifyPostings(String label, AttendanceIndex.Postings postings, int end, int expected,
+                                int key, IntUnaryOperator keyOfRow) {
+        int[] seen = {0, -1};
+        postings.forEach(end, row -> {
+            if (row <= seen[1] || isReclaimed(row) || keyOfRow.applyAsInt(row) != key) {
+                throw new IllegalStateException("Attendance index for " + label + " holds row " + row + " out of place");
+            }
+            if (!isDeleted(row)) {
+                seen[0]++;
+            }
+            seen[1] = row;
+            return true;
+        });
+        if (seen[0] != expected) {
+            throw new IllegalStateException("Attendance index for " + label + " holds " + seen[0] + " rows but the table has " + expected);
+        }
+    }
+
+    private long datePostings(int fromDay, int toDay) {
+        long rows = 0;
+        for (AttendanceIndex.Postings day : index.forDates(fromDay, toDay)) {
+            rows += day.size();
+        }
+        return rows;
+    }
+
+    private boolean matches(int row, int student, int course, int fromDay, int toDay, Boolean present) {
+        Chunk chunk = chunks[row >>> CHUNK_BITS];
+        int offset = row & CHUNK_MASK;
+        if (chunk.isDeleted(offset)) {
+            return false;
+        }
+        int slot = chunk.slot(offset);
+        int day = chunk.epochDays[slot];
+        return (student == ANY || chunk.students[slot] == student)
+                && (course == ANY || chunk.courses[slot] == course)
+                && day >= fromDay && day <= toDay
+                && (present == null || chunk.isPresent(slot) == present);
+    }
+
+    // Runs one compaction pass with the default threshold; returns the number of rows reclaimed
+    public int compact() {
+        return compact(COMPACT_MIN_ROWS);
+    }
+
+    // Rewrites the chunks the previous pass picked without the rows it saw deleted, and drops those
+    // rows from the postings lists they were in. Then picks the full chunks with at least minRows
+    // deleted rows still held for the next pass, and lets go of the students and courses retired
+    // before the previous pass. Readers and writers carry on meanwhile; passes run one at a time.
+    // A pass does nothing while a view is open, as a view may still read rows deleted after it opened.
+    int compact(int minRows) {
+        synchronized (compactLock) {
+            if (versions.anyOpen()) {
+                return 0;
+            }
+            BitSet students = new BitSet();
+            BitSet courses = new BitSet();
+            Set<Integer> days = new HashSet<>();
+            RowVisitor dropped = (student, course, epochDay, isPresent) -> {
+                students.set(student);
+                courses.set(course);
+                days.add(epochDay);
+            };
+            int reclaimed = 0;
+            for (Map.Entry<Integer, long[]> picked : reclaimNext.entrySet()) {
+                Chunk chunk = chunks[picked.getKey()];
+                Chunk compacted = chunk.without(picked.getValue(), dropped);
+                reclaimed += chunk.held() - compacted.held();
+                synchronized (growLock) {
+                    Chunk[] current = chunks.clone();
+                    current[picked.getKey()] = compacted;
+                    chunks = current;
+                }
+            }
+            reclaimNext.clear();
+            if (reclaimed > 0) {
+                index.purge(students, courses, days, this::isReclaimed);
+            }
+            studentDictionary.release();
+            courseDictionary.release();
+            Chunk[] current = chunks;
+            int full = published >>> CHUNK_BITS;
+            for (int i = 0; i < full; i++) {
+                long[] drop = current[i].deletedHeld(minRows);
+                if (drop != null) {
+                    reclaimNext.put(i, drop);
+                }
+            }
+            return reclaimed;
+        }
+    }
+
+    // A deleted row was deleted by whichever of its student's and course's retirements came first
+    private boolean deletedAfter(int student, int course, long version) {
+        return Math.min(studentDictionary.retiredAt(student), courseDictionary.retiredAt(course)) > version;
+    }
+
+    private boolean isReclaimed(int row) {
+        return chunks[row >>> CHUNK_BITS].slot(row & CHUNK_MASK) == NO_SLOT;
+    }
+
+    public int studentCount() {
+        return studentDictionary.size();
+    }
+
+    // null once a retired student has been let go by compaction
+    public Student studentAt(int index) {
+        return studentDictionary.get(index);
+    }
+
+    public int courseCount() {
+        return courseDictionary.size();
+    }
+
+    public boolean isStudentRetired(int index) {
+        return studentDictionary.isRetired(index);
+    }
+
+    public boolean isCourseRetired(int index) {
+        return courseDictionary.isRetired(index);
+    }
+
+    // Earliest and latest recorded days, or null if there are no rows
+    public int[] dayRange() {
+        return index.dayRange();
+    }
+
+    // Offers every live row in [from, to) to the visitor, reading the columns a chunk at a time;
+    // meant for bulk scans that split the table between threads. Each row is read from one version
+    // of its chunk, so a row reclaimed mid-scan is skipped rather than lost.
+    public void scan(int from, int to, RowVisitor visitor) {
+        scan(from, to, LIVE, visitor);
+    }
+
+    // As scan, but offers the rows a view opened at this version sees: a row deleted by a commit
+    // stamped after it is still offered. Rows must be below the count the view was opened with.
+    public void scan(int from, int to, long version, RowVisitor visitor) {
+        if (from < 0 || to > published || from > to) {
+            throw new IndexOutOfBoundsException("Rows " + from + " to " + to + " of " + published);
+        }
+        int row = from;
+        while (row < to) {
+            Chunk chunk = chunks[row >>> CHUNK_BITS];
+            int offset = row & CHUNK_MASK;
+            int last = Math.min(CHUNK_ROWS, offset + (to - row));
+            long deletedWord = 0;
+            for (int i = offset; i < last; i++) {
+                if (i == offset || (i & 63) == 0) {
+                    deletedWord = chunk.deletedBits.get(i >>> 6);
+                }
+                if ((deletedWord & (1L << i)) == 0) {
+                    int slot = chunk.slot(i);
+                    visitor.visit(chunk.students[slot], chunk.courses[slot], chunk.epochDays[slot], chunk.isPresent(slot));
+                } else if (version != LIVE) {
+                    int slot = chunk.slot(i);
+                    if (slot != NO_SLOT && deletedAfter(chunk.students[slot], chunk.courses[slot], version)) {
+                        visitor.visit(chunk.students[slot], chunk.courses[slot], chunk.epochDays[slot], chunk.isPresent(slot));
+                    }
+                }
+            }
+            row += last - offset;
+        }
+    }
+
+    // Copies the live rows in [from, to) into the columns, which need room for to - from rows, and
+    // returns how many were copied
+    public int copyRows(int from, int to, int[] studentColumn, int[] courseColumn, int[] epochDays, boolean[] present) {
+        return copyRows(from, to, LIVE, studentColumn, courseColumn, epochDays, present);
+    }
+
+    // As copyRows, for the rows a view opened at this version sees
+    public int copyRows(int from, int to, long version, int[] studentColumn, int[] courseColumn, int[] epochDays,
+                        boolean[] present) {
+        int[] count = {0};
+        scan(from, to, version, (student, course, epochDay, isPresent) -> {
+            studentColumn[count[0]] = student;
+            courseColumn[count[0]] = course;
+            epochDays[count[0]] = epochDay;
+            present[count[0]++] = isPresent;
+        });
+        return count[0];
+    }
+
+    // null once a retired course has been let go by compaction
+    public Course courseAt(int index) {
+        return courseDictionary.get(index);
+    }
+
+    // Number of rows visible to readers, deleted ones included; row numbers run below it
+    public int size() {
+        return published;
+    }
+
+    // Number of visible rows that are not deleted
+    public int count() {
+        return published - deleted.get();
+    }
+
+    public boolean isEmpty() {
+        return count() == 0;
+    }
+
+    // Rough bytes held by the rows and their index, counting capacity not yet used
+    public long estimatedBytes() {
+        long bytes = index.estimatedBytes();
+        for (Chunk chunk : chunks) {
+            bytes += chunk.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    // Iterates over the live rows that were visible when the iterator was created
+    @Override
+    public Iterator<AttendanceRecord> iterator() {
+        int end = published;
+        return new Iterator<>() {
+            private int row = live(0);
+
+            @Override
+            public boolean hasNext() {
+                return row < end;
+            }
+
+            @Override
+            public AttendanceRecord next() {
+                if (row >= end) {
+                    throw new NoSuchElementException();
+                }
+                AttendanceRecord record = get(row);
+                row = live(row + 1);
+                return record;
+            }
+
+            private int live(int from) {
+                while (from < end && isDeleted(from)) {
+                    from++;
+                }
+                return from;
+            }
+        };
+    }
+
+    private int reserve(int count) {
+        int first = reserved.getAndAdd(count);
+        if (first < 0 || first + count < 0) {
+            throw new IllegalStateException("Attendance store is full");
+        }
+        int lastChunk = (first + count - 1) >>> CHUNK_BITS;
+        if (lastChunk >= chunks.length) {
+            synchronized (growLock) {
+                Chunk[] current = chunks;
+                if (lastChunk >= current.length) {
+                    Chunk[] grown = Arrays.copyOf(current, Math.max(lastChunk + 1, current.length * 2));
+                    for (int i = current.length; i < grown.length; i++) {
+                        grown[i] = new Chunk();
+                    }
+                    chunks = grown;
+                }
+            }
+        }
+        return first;
+    }
+
+    // Rows are published in order, so wait for earlier writers to finish theirs. Only one thread
+    // at a time gets past the wait, so the index's lock is only ever contended by removals and
+    // compaction rewriting postings lists.
+    private void publish(int first, int count, Consumer<Runnable> publisher) {
+        int spins = 0;
+        while (published != first) {
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        synchronized (index) {
+            for (int row = first; row < first + count; row++) {
+                Chunk chunk = chunk(row);
+                int offset = row & CHUNK_MASK;
+                index.add(row, chunk.students[offset], chunk.courses[offset], chunk.epochDays[offset]);
+            }
+        }
+        try {
+            publisher.accept(() -> published = first + count);
+        } finally {
+            // Later rows wait on these, so they are published even if the publisher failed. Once
+            // they are, a later writer may already have moved published on past them.
+            if (published == first) {
+                published = first + count;
+            }
+        }
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= published) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range for " + published + " attendance records");
+        }
+    }
+
+    // Where the row's columns are in its chunk; throws if compaction has reclaimed it
+    private static int slot(Chunk chunk, int row) {
+        int slot = chunk.slot(row & CHUNK_MASK);
+        if (slot == NO_SLOT) {
+            throw new IllegalStateException("Attendance row " + row + " was deleted and has been reclaimed");
+        }
+        return slot;
+    }
+
+    // Chunk class holding the columns for a fixed block of rows. A chunk starts out holding every
+    // row at its offset; compaction replaces it with a copy that holds only the rows set in kept,
+    // packed together, and finds a row's slot by counting the kept rows before it. Chunks are never
+    // changed once published, except for the bits of rows being written and deleted.
+    private static class Chunk {
+        final int[] students;
+        final int[] courses;
+        final int[] epochDays;
+        // Neighbouring rows share a word, so presence bits are set atomically
+        final AtomicLongArray presentBits;
+        // A bit per row, set when the row is deleted; shared by every version of the chunk
+        final AtomicLongArray deletedBits;
+        // null while the chunk holds every row; otherwise a bit per row held and the rows held before each word
+        final long[] kept;
+        final int[] keptBefore;
+
+        Chunk() {
+            this(new int[CHUNK_ROWS], new int[CHUNK_ROWS], new int[CHUNK_ROWS], new AtomicLongArray(CHUNK_WORDS),
+                    new AtomicLongArray(CHUNK_WORDS), null, null);
+        }
+
+        private Chunk(int[] students, int[] courses, int[] epochDays, AtomicLongArray presentBits,
+                      AtomicLongArray deletedBits, long[] kept, int[] keptBefore) {
+            this.students = students;
+            this.courses = courses;
+            this.epochDays = epochDays;
+            this.presentBits = presentBits;
+            this.deletedBits = deletedBits;
+            this.kept = kept;
+            this.keptBefore = keptBefore;
+        }
+
+        // Array headers are counted at 16 bytes; compacted chunks may share columns with older ones
+        long estimatedBytes() {
+            long bytes = 3 * (16 + 4L * students.length) + 2 * (16 + 8L * presentBits.length());
+            if (kept != null) {
+                bytes += 16 + 8L * kept.length + 16 + 4L * keptBefore.length;
+            }
+            return bytes;
+        }
+
+        void set(int offset, int student, int course, int epochDay, boolean isPresent) {
+            students[offset] = student;
+            courses[offset] = course;
+            epochDays[offset] = epochDay;
+            if (isPresent) {
+                presentBits.getAndAccumulate(offset >>> 6, 1L << offset, (bits, bit) -> bits | bit);
+            }
+        }
+
+        // Position of the row's columns, or NO_SLOT if it is no longer held
+        int slot(int offset) {
+            if (kept == null) {
+                return offset;
+            }
+            long word = kept[offset >>> 6];
+            long bit = 1L << offset;
+            return (word & bit) == 0 ? NO_SLOT : keptBefore[offset >>> 6] + Long.bitCount(word & (bit - 1));
+        }
+
+        boolean isPresent(int slot) {
+            return (presentBits.get(slot >>> 6) & (1L << slot)) != 0;
+        }
+
+        boolean isDeleted(int offset) {
+            return (deletedBits.get(offset >>> 6) & (1L << offset)) != 0;
+        }
+
+        // Returns false if the row was already deleted
+        boolean delete(int offset) {
+            long bit = 1L << offset;
+            return (deletedBits.getAndAccumulate(offset >>> 6, bit, (bits, set) -> bits | set) & bit) == 0;
+        }
+
+        int held() {
+            return kept == null ? CHUNK_ROWS : keptBefore[CHUNK_WORDS - 1] + Long.bitCount(kept[CHUNK_WORDS - 1]);
+        }
+
+        // The deleted rows still held, or null if there are fewer than minRows
+        long[] deletedHeld(int minRows) {
+            long[] words = new long[CHUNK_WORDS];
+            int count = 0;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                words[i] = deletedBits.get(i) & (kept == null ? -1L : kept[i]);
+                count += Long.bitCount(words[i]);
+            }
+            return count >= minRows ? words : null;
+        }
+
+        // A copy without the rows in drop, each of which is passed to dropped
+        Chunk without(long[] drop, RowVisitor dropped) {
+            long[] keep = new long[CHUNK_WORDS];
+            int[] before = new int[CHUNK_WORDS];
+            int count = 0;
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                before[i] = count;
+                keep[i] = (kept == null ? -1L : kept[i]) & ~drop[i];
+                count += Long.bitCount(keep[i]);
+            }
+            int[] keptStudents = new int[count];
+            int[] keptCourses = new int[count];
+            int[] keptDays = new int[count];
+            long[] present = new long[(count + 63) >>> 6];
+            int next = 0;
+            for (int offset = 0; offset < CHUNK_ROWS; offset++) {
+                int slot = slot(offset);
+                if (slot == NO_SLOT) {
+                    continue;
+                }
+                if ((keep[offset >>> 6] & (1L << offset)) == 0) {
+                    dropped.visit(students[slot], courses[slot], epochDays[slot], isPresent(slot));
+                    continue;
+                }
+                keptStudents[next] = students[slot];
+                keptCourses[next] = courses[slot];
+                keptDays[next] = epochDays[slot];
+                if (isPresent(slot)) {
+                    present[next >>> 6] |= 1L << next;
+                }
+                next++;
+            }
+            return new Chunk(keptStudents, keptCourses, keptDays, new AtomicLongArray(present), deletedBits, keep, before);
+        }
+    }
+
+    // RowVisitor interface receiving the columns of one row during a scan
+    interface RowVisitor {
+        void visit(int student, int course, int epochDay, boolean isPresent);
+    }
+
+    // RowCollector class gathering matching row numbers up to a limit
+    private static class RowCollector {
+        private final int limit;
+        private int[] rows = new int[16];
+        private int size;
+
+        RowCollector(int limit) {
+            this.limit = limit;
+        }
+
+        // Returns false once the limit is reached
+        boolean add(int row) {
+            if (size == limit) {
+                return false;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+            return size < limit;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+
+    // Dictionary class assigning dense indexes; lookups are lock-free and only new values lock
+    private static class Dictionary<T> {
+        private final Map<T, Integer> indexes = new ConcurrentHashMap<>();
+        private volatile Object[] values = new Object[16];
+        private volatile int size;
+        // Bit per index, set once the value has been removed from the school
+        private volatile long[] retired = new long[1];
+        // Commit that retired each retired index, recorded before any of its rows is deleted
+        private final Map<Integer, Versions.Commit> retiredBy = new ConcurrentHashMap<>();
+        // Indexes retired since the last compaction pass, and those retired in the pass before it
+        private List<Integer> retiring = new ArrayList<>();
+        private List<Integer> releasable = new ArrayList<>();
+
+        int encode(T value) {
+            Integer index = indexes.get(value);
+            if (index != null) {
+                return index;
+            }
+            synchronized (this) {
+                index = indexes.get(value);
+                if (index == null) {
+                    index = size;
+                    Object[] current = values;
+                    if (index == current.length) {
+                        current = Arrays.copyOf(current, current.length * 2);
+                    }
+                    current[index] = value;
+                    values = current;
+                    size = index + 1;
+                    indexes.put(value, index);
+                }
+                return index;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Dictionary index " + index + " out of range for " + size);
+            }
+            return (T) values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int indexOf(T value) {
+            Integer index = indexes.get(value);
+            return index == null ? ANY : index;
+        }
+
+        void retiring(int index, Versions.Commit commit) {
+            retiredBy.putIfAbsent(index, commit);
+        }
+
+        // Stamp of the commit that retired the index, waiting for it if it is still running, or
+        // PENDING if the index is not retired
+        long retiredAt(int index) {
+            Versions.Commit commit = retiredBy.get(index);
+            return commit == null ? Versions.PENDING : commit.stamp();
+        }
+
+        synchronized void retire(int index) {
+            if (isRetired(index)) {
+                return;
+            }
+            long[] current = retired;
+            if ((index >>> 6) >= current.length) {
+                current = Arrays.copyOf(current, Math.max((index >>> 6) + 1, current.length * 2));
+            }
+            current[index >>> 6] |= 1L << index;
+            // Re-publish the array so readers see the new bit
+            retired = current;
+            retiring.add(index);
+        }
+
+        // Lets go of the values retired before the previous pass, whose rows nothing reads any more
+        synchronized void release() {
+            Object[] current = values;
+            for (int index : releasable) {
+                indexes.remove(current[index]);
+                current[index] = null;
+                // Its rows stay deleted for every view from now on
+                retiredBy.put(index, Versions.BASE);
+            }
+            releasable = retiring;
+            retiring = new ArrayList<>();
+        }
+
+        boolean isRetired(int index) {
+            long[] current = retired;
+            return (index >>> 6) < current.length && (current[index >>> 6] & (1L << index)) != 0;
+        }
+    }
+}
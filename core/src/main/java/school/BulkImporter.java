@@ -0,0 +1,331 @@
+package school;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+// BulkImporter class that streams CSV files into a school.
+//
+// Lines are read in batches and parsed on a worker pool while the calling thread validates
+// and inserts finished batches in file order. Only a bounded window of batches is in flight,
+// so the file is never held in memory. Every file starts with a header row.
+class BulkImporter {
+    private static final int BATCH_LINES = 8_192;
+
+    private final School school;
+    private final int parallelism;
+
+    public BulkImporter(School school) {
+        this(school, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkImporter(School school, int parallelism) {
+        this.school = school;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Imports one file; each rejected row is written to rejects as "line,reason"
+    public Result importFile(Kind kind, Path file, Writer rejects) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result(kind);
+        PrintWriter rejectOut = new PrintWriter(new BufferedWriter(rejects));
+        rejectOut.println("line,reason");
+
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<List<Row>>> inFlight = new ArrayDeque<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            reader.readLine(); // header
+            long firstLine = 2;
+            List<String> lines = new ArrayList<>(BATCH_LINES);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == BATCH_LINES) {
+                    inFlight.add(submit(parsers, kind, firstLine, lines));
+                    firstLine += lines.size();
+                    lines = new ArrayList<>(BATCH_LINES);
+                    // Keep a bounded window of parsed batches ahead of the inserter
+                    if (inFlight.size() >= parallelism * 2) {
+                        insert(kind, await(inFlight.poll()), result, rejectOut);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                inFlight.add(submit(parsers, kind, firstLine, lines));
+            }
+            while (!inFlight.isEmpty()) {
+                insert(kind, await(inFlight.poll()), result, rejectOut);
+            }
+        } finally {
+            parsers.shutdownNow();
+            rejectOut.flush();
+        }
+
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static Future<List<Row>> submit(ExecutorService parsers, Kind kind, long firstLine, List<String> lines) {
+        return parsers.submit(() -> {
+            List<Row> rows = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                if (!lines.get(i).isBlank()) {
+                    rows.add(parse(kind, firstLine + i, lines.get(i)));
+                }
+            }
+            return rows;
+        });
+    }
+
+    private static List<Row> await(Future<List<Row>> batch) throws IOException {
+        try {
+            return batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse import batch", e.getCause());
+        }
+    }
+
+    // Validates the whole batch against the school first, then inserts the survivors in one pass,
+    // waiting for the journal once for the batch
+    private void insert(Kind kind, List<Row> batch, Result result, PrintWriter rejects) throws IOException {
+        for (Row row : batch) {
+            if (row.error == null) {
+                row.error = validate(kind, row);
+            }
+        }
+        school.writeAll(() -> insertValidated(kind, batch, result, rejects));
+    }
+
+    private void insertValidated(Kind kind, List<Row> batch, Result result, PrintWriter rejects) {
+        for (Row row : batch) {
+            result.rows++;
+            if (row.error == null) {
+                ServiceResult<?> applied = apply(kind, row);
+                if (!applied.isOk()) {
+                    row.error = applied.getMessage();
+                }
+            }
+            if (row.error != null) {
+                result.rejected++;
+                rejects.println(row.lineNumber + "," + csvQuote(row.error));
+            } else {
+                result.imported++;
+            }
+        }
+    }
+
+    private String validate(Kind kind, Row row) {
+        String[] f = row.fields;
+        switch (kind) {
+            case STUDENTS -> {
+                return school.getStudentService().find(f[0]) != null ? "student with this ID already exists" : null;
+            }
+            case TEACHERS -> {
+                return school.getTeacherService().find(f[0]) != null ? "teacher with this ID already exists" : null;
+            }
+            case COURSES -> {
+                return school.getCourseService().find(f[0]) != null ? "course with this code already exists" : null;
+            }
+            case ENROLLMENTS, ATTENDANCE -> {
+                if (school.getStudentService().find(f[0]) == null) {
+                    return "student " + f[0] + " not found";
+                }
+                if (school.getCourseService().find(f[1]) == null) {
+                    return "course " + f[1] + " not found";
+                }
+                return kind == Kind.ATTENDANCE && !school.getEnrollmentService().isEnrolled(f[0], f[1])
+                        ? "student " + f[0] + " is not enrolled in " + f[1] : null;
+            }
+            default -> throw new IllegalArgumentException("Unknown import kind " + kind);
+        }
+    }
+
+    // Duplicates within the file are caught here because rows are inserted in file order; so is
+    // every other reason the service refuses a row, such as a journal that can no longer save it
+    private ServiceResult<?> apply(Kind kind, Row row) {
+        String[] f = row.fields;
+        switch (kind) {
+            case STUDENTS -> {
+                return school.getStudentService().add(f[0], f[1], f[2], f[3], row.date);
+            }
+            case TEACHERS -> {
+                return school.getTeacherService().add(f[0], f[1], f[2], f[3], row.salary);
+            }
+            case COURSES -> {
+                return school.getCourseService().add(f[0], f[1], f[2]);
+            }
+            case ENROLLMENTS -> {
+                return school.getEnrollmentService().enroll(f[0], f[1]);
+            }
+            case ATTENDANCE -> {
+                return school.getAttendanceService().mark(f[0], f[1], row.date, row.present);
+            }
+            default -> throw new IllegalArgumentException("Unknown import kind " + kind);
+        }
+    }
+
+    // Parsing and per-row format checks run on the worker pool
+    static Row parse(Kind kind, long lineNumber, String line) {
+        Row row = new Row(lineNumber);
+        List<String> fields = splitCsv(line);
+        if (fields.size() < kind.columns) {
+            row.error = "expected " + kind.columns + " columns but found " + fields.size();
+            return row;
+        }
+        row.fields = fields.toArray(new String[0]);
+        if (row.fields[0].isEmpty()) {
+            row.error = "missing " + (kind == Kind.COURSES ? "code" : "ID");
+            return row;
+        }
+        try {
+            switch (kind) {
+                case STUDENTS -> row.date = row.fields.length > 4 && !row.fields[4].isEmpty()
+                        ? LocalDate.parse(row.fields[4]) : LocalDate.now();
+                case TEACHERS -> row.salary = Money.parse(row.fields[4]);
+                case ATTENDANCE -> {
+                    row.date = LocalDate.parse(row.fields[2]);
+                    String present = row.fields[3];
+                    row.present = present.equalsIgnoreCase("Y") || present.equalsIgnoreCase("true");
+                    if (!row.present && !present.equalsIgnoreCase("N") && !present.equalsIgnoreCase("false")) {
+                        row.error = "present must be Y or N";
+                    }
+                }
+                default -> { }
+            }
+        } catch (RuntimeException e) {
+            row.error = "invalid value: " + e.getMessage();
+        }
+        return row;
+    }
+
+    // Splits one CSV line, honouring double-quoted fields with "" escapes
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static String csvQuote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    // Command-line entry point: import <students|teachers|courses|enrollments|attendance> <file>...
+    static void run(School school, String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java SchoolManagementSystem import <students|teachers|courses|enrollments|attendance> <file>...");
+            return;
+        }
+        Kind kind = Kind.fromName(args[1]);
+        if (kind == null) {
+            System.out.println("Unknown import kind: " + args[1]);
+            return;
+        }
+        BulkImporter importer = new BulkImporter(school);
+        for (int i = 2; i < args.length; i++) {
+            Path file = Path.of(args[i]);
+            Path rejectFile = Path.of(args[i] + ".rejects.csv");
+            try (Writer rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+                Result result = importer.importFile(kind, file, rejects);
+                System.out.println(file + ": " + result);
+                if (result.rejected > 0) {
+                    System.out.println("Rejected rows written to " + rejectFile);
+                }
+            }
+        }
+    }
+
+    // Import file kinds and their required columns
+    enum Kind {
+        STUDENTS("student", 4),       // id,name,email,grade[,enrollmentDate]
+        TEACHERS("teacher", 5),       // id,name,email,department,salary
+        COURSES("course", 3),         // code,name,description
+        ENROLLMENTS("enrollment", 2), // studentId,courseCode
+        ATTENDANCE("attendance", 4);  // studentId,courseCode,date,present
+
+        final String label;
+        final int columns;
+
+        Kind(String label, int columns) {
+            this.label = label;
+            this.columns = columns;
+        }
+
+        static Kind fromName(String name) {
+            for (Kind kind : values()) {
+                if (kind.name().equalsIgnoreCase(name)) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Row class holding one parsed line
+    static class Row {
+        final long lineNumber;
+        String[] fields;
+        LocalDate date;
+        Money salary;
+        boolean present;
+        String error;
+
+        Row(long lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    // Result class summarising one imported file
+    static class Result {
+        final Kind kind;
+        long rows;
+        long imported;
+        long rejected;
+        long elapsedNanos;
+
+        Result(Kind kind) {
+            this.kind = kind;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %s rows, %d imported, %d rejected in %.2f s (%.0f rows/sec)",
+                    rows, kind.label, imported, rejected, elapsedNanos / 1e9, getRowsPerSecond());
+        }
+    }
+}
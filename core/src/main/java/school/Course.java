@@ -0,0 +1,31 @@
+package school;
+
+// Course class
+class Course {
+    private volatile String code;
+    private volatile String name;
+    private volatile String description;
+    
+    public Course(String code, String name, String description) {
+        this.code = code;
+        this.name = name;
+        this.description = description;
+    }
+    
+    public Course copy() { return new Course(code, name, description); }
+    
+    // Getters and setters
+    public String getCode() { return code; }
+    public void setCode(String code) { this.code = code; }
+    
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+    
+    @Override
+    public String toString() {
+        return "Course [Code: " + code + ", Name: " + name + ", Description: " + description + "]";
+    }
+}
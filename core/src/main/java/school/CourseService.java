@@ -0,0 +1,119 @@
+package school;
+
+import java.util.Collection;
+
+// CourseService class with the non-interactive course operations
+class CourseService {
+    private final School school;
+    private final EntityRegistry<Course> courses;
+    private final Metrics.Timer addTimer;
+    private final Metrics.Timer updateTimer;
+    private final Metrics.Timer removeTimer;
+
+    CourseService(School school, EntityRegistry<Course> courses) {
+        this.school = school;
+        this.courses = courses;
+        this.addTimer = school.getMetrics().timer("course.add");
+        this.updateTimer = school.getMetrics().timer("course.update");
+        this.removeTimer = school.getMetrics().timer("course.remove");
+        courses.sortBy("code", Course::getCode);
+        courses.sortBy("name", Course::getName);
+    }
+
+    public ServiceResult<Course> add(String code, String name, String description) {
+        return add(new Course(code, name, description));
+    }
+
+    public ServiceResult<Course> add(Course course) {
+        return school.write(addTimer, () -> {
+            if (course.getCode() == null || course.getCode().isBlank()) {
+                return ServiceResult.invalid("Course code cannot be empty.");
+            }
+            // Journal under the key's lock so the log sees changes to one course in the order they happened
+            return courses.write(course.getCode(), () -> {
+                if (!courses.add(course)) {
+                    return ServiceResult.duplicate("Course with this code already exists.");
+                }
+                school.log(journal -> journal.courseAdded(course));
+                return ServiceResult.ok(course, "Course added successfully!");
+            });
+        });
+    }
+
+    public Course find(String code) {
+        return courses.get(code);
+    }
+
+    public boolean exists(String code) {
+        return courses.contains(code);
+    }
+
+    public Collection<Course> list() {
+        return courses.values();
+    }
+
+    public int count() {
+        return courses.size();
+    }
+
+    // One page of courses in a sort order: code, name; a null cursor starts from the first page
+    public ServiceResult<Page<Course>> page(String order, String cursor, int limit) {
+        try {
+            Page<Course> page = courses.page(order, cursor, limit);
+            return ServiceResult.ok(page, page.size() + " courses listed.");
+        } catch (IllegalArgumentException e) {
+            return ServiceResult.invalid(e.getMessage());
+        }
+    }
+
+    // Applies the non-null fields of the update
+    public ServiceResult<Course> update(String code, CourseUpdate update) {
+        return school.write(updateTimer, () -> courses.write(code, () -> apply(code, update)));
+    }
+
+    private ServiceResult<Course> apply(String code, CourseUpdate update) {
+        Course course = courses.update(code, changed -> {
+            if (update.name != null) {
+                changed.setName(update.name);
+            }
+            if (update.description != null) {
+                changed.setDescription(update.description);
+            }
+        });
+        if (course == null) {
+            return ServiceResult.notFound("Course with code " + code + " not found.");
+        }
+        school.log(journal -> journal.courseUpdated(course));
+        return ServiceResult.ok(course, "Course information updated successfully!");
+    }
+
+    public ServiceResult<Course> remove(String code) {
+        return school.write(removeTimer, () -> {
+            return courses.write(code, () -> school.commit(() -> {
+                Course course = courses.remove(code);
+                if (course == null) {
+                    return ServiceResult.notFound("Course with code " + code + " not found.");
+                }
+                school.getAttendanceService().retire(course);
+                school.log(journal -> journal.courseRemoved(code));
+                return ServiceResult.ok(course, "Course removed successfully!");
+            }));
+        });
+    }
+
+    // CourseUpdate class listing the fields to change; null leaves a field as it is
+    static class CourseUpdate {
+        private String name;
+        private String description;
+
+        public CourseUpdate name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public CourseUpdate description(String description) {
+            this.description = description;
+            return this;
+        }
+    }
+}
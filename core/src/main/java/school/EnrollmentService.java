@@ -0,0 +1,195 @@
+package school;
+
+import java.util.*;
+
+// EnrollmentService class with the non-interactive enrollment operations.
+//
+// Changes hold the student or teacher and then the course exclusively, the order marking attendance
+// takes them shared, and are journaled under both locks so the log sees them in the order they happened.
+class EnrollmentService {
+    private final School school;
+    private final EntityRegistry<Student> students;
+    private final EntityRegistry<Teacher> teachers;
+    private final EntityRegistry<Course> courses;
+    private final Enrollments enrollments;
+    private final Gradebook gradebook;
+    private final Metrics.Timer enrollTimer;
+    private final Metrics.Timer withdrawTimer;
+    private final Metrics.Timer assignTimer;
+    private final Metrics.Timer unassignTimer;
+
+    EnrollmentService(School school, EntityRegistry<Student> students, EntityRegistry<Teacher> teachers,
+                      EntityRegistry<Course> courses, Enrollments enrollments, Gradebook gradebook) {
+        this.school = school;
+        this.students = students;
+        this.teachers = teachers;
+        this.courses = courses;
+        this.enrollments = enrollments;
+        this.gradebook = gradebook;
+        this.enrollTimer = school.getMetrics().timer("enrollment.enroll");
+        this.withdrawTimer = school.getMetrics().timer("enrollment.withdraw");
+        this.assignTimer = school.getMetrics().timer("enrollment.assign");
+        this.unassignTimer = school.getMetrics().timer("enrollment.unassign");
+    }
+
+    public ServiceResult<Course> enroll(String studentId, String courseCode) {
+        return school.write(enrollTimer, () -> {
+            return students.write(studentId, () -> courses.write(courseCode, () -> {
+                int student = students.ordinalOf(studentId);
+                if (student == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Student not found.");
+                }
+                int course = courses.ordinalOf(courseCode);
+                if (course == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Course not found.");
+                }
+                if (!enrollments.enroll(student, course)) {
+                    return ServiceResult.duplicate("Student " + studentId + " is already enrolled in " + courseCode + ".");
+                }
+                school.log(journal -> journal.studentEnrolled(studentId, courseCode));
+                return ServiceResult.ok(courses.get(courseCode), "Student enrolled successfully!");
+            }));
+        });
+    }
+
+    public ServiceResult<Course> withdraw(String studentId, String courseCode) {
+        return school.write(withdrawTimer, () -> {
+            return students.write(studentId, () -> courses.write(courseCode, () -> {
+                int student = students.ordinalOf(studentId);
+                if (student == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Student not found.");
+                }
+                int course = courses.ordinalOf(courseCode);
+                if (course == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Course not found.");
+                }
+                if (!enrollments.withdraw(student, course)) {
+                    return ServiceResult.notFound("Student " + studentId + " is not enrolled in " + courseCode + ".");
+                }
+                // A student who leaves a course is no longer graded or ranked in it
+                gradebook.withdraw(student, course);
+                school.log(journal -> journal.studentWithdrawn(studentId, courseCode));
+                return ServiceResult.ok(courses.get(courseCode), "Student withdrawn successfully!");
+            }));
+        });
+    }
+
+    public ServiceResult<Course> assign(String teacherId, String courseCode) {
+        return school.write(assignTimer, () -> {
+            return teachers.write(teacherId, () -> courses.write(courseCode, () -> {
+                int teacher = teachers.ordinalOf(teacherId);
+                if (teacher == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Teacher not found.");
+                }
+                int course = courses.ordinalOf(courseCode);
+                if (course == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Course not found.");
+                }
+                if (!enrollments.assign(teacher, course)) {
+                    return ServiceResult.duplicate("Teacher " + teacherId + " is already assigned to " + courseCode + ".");
+                }
+                school.log(journal -> journal.teacherAssigned(teacherId, courseCode));
+                return ServiceResult.ok(courses.get(courseCode), "Teacher assigned successfully!");
+            }));
+        });
+    }
+
+    public ServiceResult<Course> unassign(String teacherId, String courseCode) {
+        return school.write(unassignTimer, () -> {
+            return teachers.write(teacherId, () -> courses.write(courseCode, () -> {
+                int teacher = teachers.ordinalOf(teacherId);
+                if (teacher == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Teacher not found.");
+                }
+                int course = courses.ordinalOf(courseCode);
+                if (course == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Course not found.");
+                }
+                if (!enrollments.unassign(teacher, course)) {
+                    return ServiceResult.notFound("Teacher " + teacherId + " is not assigned to " + courseCode + ".");
+                }
+                school.log(journal -> journal.teacherUnassigned(teacherId, courseCode));
+                return ServiceResult.ok(courses.get(courseCode), "Teacher unassigned successfully!");
+            }));
+        });
+    }
+
+    // Whether the student is enrolled in the course: a lookup in the course's roster bitmap.
+    // The caller holds the course's lock, or the answer may be out of date by the time it is used.
+    boolean isEnrolled(String studentId, String courseCode) {
+        return enrollments.isEnrolled(students.ordinalOf(studentId), courses.ordinalOf(courseCode));
+    }
+
+    // The students and teachers of one course, copied under the course's read lock
+    public ServiceResult<CourseRoster> roster(String courseCode) {
+        return courses.read(courseCode, () -> {
+            int course = courses.ordinalOf(courseCode);
+            if (course == EntityRegistry.NO_ORDINAL) {
+                return ServiceResult.notFound("Course not found.");
+            }
+            Roster enrolled = enrollments.studentRoster(course);
+            Roster teaching = enrollments.teacherRoster(course);
+            CourseRoster roster = new CourseRoster(courses.get(courseCode), enrollments.students(enrolled),
+                    enrollments.teachers(teaching));
+            return ServiceResult.ok(roster, roster.getStudents().size() + " students and " + roster.getTeachers().size()
+                    + " teachers in " + courseCode + ".");
+        });
+    }
+
+    public ServiceResult<List<Course>> coursesOfStudent(String studentId) {
+        int student = students.ordinalOf(studentId);
+        if (student == EntityRegistry.NO_ORDINAL) {
+            return ServiceResult.notFound("Student not found.");
+        }
+        List<Course> found = enrollments.coursesOfStudent(student);
+        return ServiceResult.ok(found, studentId + " is enrolled in " + found.size() + " courses.");
+    }
+
+    public ServiceResult<List<Course>> coursesOfTeacher(String teacherId) {
+        int teacher = teachers.ordinalOf(teacherId);
+        if (teacher == EntityRegistry.NO_ORDINAL) {
+            return ServiceResult.notFound("Teacher not found.");
+        }
+        List<Course> found = enrollments.coursesOfTeacher(teacher);
+        return ServiceResult.ok(found, teacherId + " teaches " + found.size() + " courses.");
+    }
+
+    // Students enrolled in every one of the courses, by intersecting their rosters
+    public ServiceResult<List<Student>> studentsInAll(Collection<String> courseCodes) {
+        Set<String> codes = new LinkedHashSet<>(courseCodes);
+        if (codes.isEmpty()) {
+            return ServiceResult.invalid("At least one course code is required.");
+        }
+        return courses.readAll(codes, () -> {
+            int[] ordinals = new int[codes.size()];
+            int index = 0;
+            for (String code : codes) {
+                ordinals[index] = courses.ordinalOf(code);
+                if (ordinals[index++] == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Course " + code + " not found.");
+                }
+            }
+            List<Student> found = enrollments.students(enrollments.studentsInAll(ordinals));
+            return ServiceResult.ok(found, found.size() + " students enrolled in " + String.join(" and ", codes) + ".");
+        });
+    }
+
+    // CourseRoster class with the students and teachers of one course, in the order they joined the school
+    static class CourseRoster {
+        private final Course course;
+        private final List<Student> students;
+        private final List<Teacher> teachers;
+
+        CourseRoster(Course course, List<Student> students, List<Teacher> teachers) {
+            this.course = course;
+            this.students = students;
+            this.teachers = teachers;
+        }
+
+        public Course getCourse() { return course; }
+
+        public List<Student> getStudents() { return students; }
+
+        public List<Teacher> getTeachers() { return teachers; }
+    }
+}
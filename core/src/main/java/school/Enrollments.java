@@ -0,0 +1,279 @@
+package school;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Enrollments class linking students and teachers to the courses they take and teach.
+//
+// Each course keeps two rosters, compressed bitmaps of the registry ordinals of its students and of
+// its teachers, so "who takes X", "is S in X" and "who takes both X and Y" are set operations rather
+// than scans. Each student and teacher keeps the sorted ordinals of their courses for the reverse
+// question. A course's rosters change only under that course's write lock and are read under its
+// read lock; a person's course list changes only under that person's write lock and is replaced,
+// never changed in place, so it is read without one. Removing a person takes them off every roster.
+// Removing a course drops its rosters; ordinals are never reused, so the course is skipped in
+// course lists and pruned from a person's list the next time it changes.
+class Enrollments {
+    private final EntityRegistry<Student> students;
+    private final EntityRegistry<Teacher> teachers;
+    private final EntityRegistry<Course> courses;
+    // By course ordinal
+    private final OrdinalTable<Roster> studentRosters = new OrdinalTable<>();
+    private final OrdinalTable<Roster> teacherRosters = new OrdinalTable<>();
+    // By student and teacher ordinal
+    private final OrdinalTable<int[]> studentCourses = new OrdinalTable<>();
+    private final OrdinalTable<int[]> teacherCourses = new OrdinalTable<>();
+
+    Enrollments(EntityRegistry<Student> students, EntityRegistry<Teacher> teachers, EntityRegistry<Course> courses) {
+        this.students = students;
+        this.teachers = teachers;
+        this.courses = courses;
+        students.listen(new Leaver<>(studentRosters, studentCourses));
+        teachers.listen(new Leaver<>(teacherRosters, teacherCourses));
+        courses.listen(new EntityRegistry.Listener<>() {
+            @Override
+            public void added(String key, int ordinal, Course course) {
+            }
+
+            @Override
+            public void updated(String key, int ordinal, Course course) {
+            }
+
+            @Override
+            public void removed(String key, int ordinal, Course course) {
+                studentRosters.set(ordinal, null);
+                teacherRosters.set(ordinal, null);
+            }
+        });
+    }
+
+    // The caller holds the student's and the course's write locks; returns false if already enrolled
+    boolean enroll(int student, int course) {
+        return join(studentRosters, studentCourses, student, course);
+    }
+
+    boolean withdraw(int student, int course) {
+        return leave(studentRosters, studentCourses, student, course);
+    }
+
+    // The caller holds the teacher's and the course's write locks; returns false if already assigned
+    boolean assign(int teacher, int course) {
+        return join(teacherRosters, teacherCourses, teacher, course);
+    }
+
+    boolean unassign(int teacher, int course) {
+        return leave(teacherRosters, teacherCourses, teacher, course);
+    }
+
+    // The caller holds the course's read lock
+    boolean isEnrolled(int student, int course) {
+        Roster roster = studentRosters.get(course);
+        return roster != null && roster.contains(student);
+    }
+
+    boolean isAssigned(int teacher, int course) {
+        Roster roster = teacherRosters.get(course);
+        return roster != null && roster.contains(teacher);
+    }
+
+    // A copy of the course's student roster; the caller holds the course's read lock
+    Roster studentRoster(int course) {
+        Roster roster = studentRosters.get(course);
+        return roster == null ? new Roster() : roster.copy();
+    }
+
+    Roster teacherRoster(int course) {
+        Roster roster = teacherRosters.get(course);
+        return roster == null ? new Roster() : roster.copy();
+    }
+
+    // Students in every one of the courses, smallest roster first so each step shrinks the result;
+    // the caller holds the courses' read locks
+    Roster studentsInAll(int[] courseOrdinals) {
+        Roster[] rosters = new Roster[courseOrdinals.length];
+        for (int i = 0; i < rosters.length; i++) {
+            rosters[i] = studentRosters.get(courseOrdinals[i]);
+            if (rosters[i] == null) {
+                return new Roster();
+            }
+        }
+        Arrays.sort(rosters, Comparator.comparingInt(Roster::size));
+        Roster result = rosters[0].copy();
+        for (int i = 1; i < rosters.length && !result.isEmpty(); i++) {
+            result = Roster.and(result, rosters[i]);
+        }
+        return result;
+    }
+
+    // Courses of a student or teacher, in the order they were added to the school
+    List<Course> coursesOfStudent(int student) {
+        return coursesIn(studentCourses.get(student));
+    }
+
+    List<Course> coursesOfTeacher(int teacher) {
+        return coursesIn(teacherCourses.get(teacher));
+    }
+
+    List<Student> students(Roster roster) {
+        return entities(roster, students);
+    }
+
+    List<Teacher> teachers(Roster roster) {
+        return entities(roster, teachers);
+    }
+
+    // Throws IllegalStateException unless every roster and course list agree with each other.
+    // Only meaningful while no writers are running.
+    void verify() {
+        verify("student", students, Student::getId, studentRosters, studentCourses);
+        verify("teacher", teachers, Teacher::getId, teacherRosters, teacherCourses);
+    }
+
+    private <T> void verify(String label, EntityRegistry<T> people, Function<T, String> keyOf,
+                            OrdinalTable<Roster> rosters, OrdinalTable<int[]> courseLists) {
+        long memberships = 0;
+        for (Course course : courses) {
+            int courseOrdinal = courses.ordinalOf(course.getCode());
+            Roster roster = rosters.get(courseOrdinal);
+            if (roster == null) {
+                continue;
+            }
+            int[] members = roster.toArray();
+            for (int member : members) {
+                int[] list = courseLists.get(member);
+                if (people.atOrdinal(member) == null || list == null || Arrays.binarySearch(list, courseOrdinal) < 0) {
+                    throw new IllegalStateException("The roster of " + course.getCode() + " holds " + label + " ordinal "
+                            + member + " that does not list the course");
+                }
+            }
+            memberships += members.length;
+        }
+        long listed = 0;
+        for (T person : people) {
+            listed += coursesIn(courseLists.get(people.ordinalOf(keyOf.apply(person)))).size();
+        }
+        if (listed != memberships) {
+            throw new IllegalStateException(label + " course lists hold " + listed + " enrollments but the rosters hold "
+                    + memberships);
+        }
+    }
+
+    private boolean join(OrdinalTable<Roster> rosters, OrdinalTable<int[]> courseLists, int person, int course) {
+        Roster roster = rosters.get(course);
+        if (roster == null) {
+            roster = new Roster();
+            rosters.set(course, roster);
+        }
+        if (!roster.add(person)) {
+            return false;
+        }
+        courseLists.set(person, insert(courseLists.get(person), course));
+        return true;
+    }
+
+    private boolean leave(OrdinalTable<Roster> rosters, OrdinalTable<int[]> courseLists, int person, int course) {
+        Roster roster = rosters.get(course);
+        if (roster == null || !roster.remove(person)) {
+            return false;
+        }
+        courseLists.set(person, delete(courseLists.get(person), course));
+        return true;
+    }
+
+    // A copy of the sorted list with the course added and removed courses pruned
+    private int[] insert(int[] list, int course) {
+        int[] current = list == null ? new int[0] : list;
+        int[] grown = new int[current.length + 1];
+        int count = 0;
+        boolean placed = false;
+        for (int existing : current) {
+            if (!placed && course < existing) {
+                grown[count++] = course;
+                placed = true;
+            }
+            if (courses.atOrdinal(existing) != null) {
+                grown[count++] = existing;
+            }
+        }
+        if (!placed) {
+            grown[count++] = course;
+        }
+        return count == grown.length ? grown : Arrays.copyOf(grown, count);
+    }
+
+    // A copy of the sorted list with the course and removed courses taken out, or null if none remain
+    private int[] delete(int[] list, int course) {
+        int[] shrunk = new int[list.length];
+        int count = 0;
+        for (int existing : list) {
+            if (existing != course && courses.atOrdinal(existing) != null) {
+                shrunk[count++] = existing;
+            }
+        }
+        return count == 0 ? null : Arrays.copyOf(shrunk, count);
+    }
+
+    private List<Course> coursesIn(int[] list) {
+        if (list == null) {
+            return List.of();
+        }
+        List<Course> found = new ArrayList<>(list.length);
+        for (int ordinal : list) {
+            Course course = courses.atOrdinal(ordinal);
+            if (course != null) {
+                found.add(course);
+            }
+        }
+        return found;
+    }
+
+    // Members are looked up by ordinal; anyone removed since the roster was copied is left out
+    private static <T> List<T> entities(Roster roster, EntityRegistry<T> registry) {
+        List<T> found = new ArrayList<>(roster.size());
+        roster.forEach(ordinal -> {
+            T entity = registry.atOrdinal(ordinal);
+            if (entity != null) {
+                found.add(entity);
+            }
+        });
+        return found;
+    }
+
+    // Leaver class taking a removed student or teacher off the roster of every course they were in.
+    // It runs under the person's write lock and takes each course's, the order enrolling takes them in.
+    private class Leaver<T> implements EntityRegistry.Listener<T> {
+        private final OrdinalTable<Roster> rosters;
+        private final OrdinalTable<int[]> courseLists;
+
+        Leaver(OrdinalTable<Roster> rosters, OrdinalTable<int[]> courseLists) {
+            this.rosters = rosters;
+            this.courseLists = courseLists;
+        }
+
+        @Override
+        public void added(String key, int ordinal, T entity) {
+        }
+
+        @Override
+        public void updated(String key, int ordinal, T entity) {
+        }
+
+        @Override
+        public void removed(String key, int ordinal, T entity) {
+            int[] list = courseLists.get(ordinal);
+            if (list == null) {
+                return;
+            }
+            for (int courseOrdinal : list) {
+                Course course = courses.atOrdinal(courseOrdinal);
+                if (course != null) {
+                    courses.write(course.getCode(), () -> {
+                        Roster roster = rosters.get(courseOrdinal);
+                        return roster != null && roster.remove(ordinal);
+                    });
+                }
+            }
+            courseLists.set(ordinal, null);
+        }
+    }
+}
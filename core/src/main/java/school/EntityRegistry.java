@@ -0,0 +1,546 @@
+package school;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Registry class that keeps entities in insertion order and indexes them by key.
+//
+// Lookups and listing never lock. Writers serialise per key through a fixed set of lock
+// stripes, so changes to different entities almost never wait on each other. Named sort orders
+// keep every entity in a skip list under (sort value, key), which pages are read from. Listeners
+// keep other indexes, such as search, in step with every change. Every entity also gets a dense
+// ordinal in arrival order that is never reused, so other indexes can refer to it by position in
+// arrays and bitmaps rather than by key.
+//
+// A versioned registry can also be read as it was at a point in time. Entities are still changed
+// in place; each change first keeps a copy of the state it replaces, and a removed entity stays
+// reachable by ordinal, for as long as an open view might read them.
+class EntityRegistry<T> implements Iterable<T> {
+    private static final int STRIPES = 1024;
+    // Ordinal of a key with no entity
+    static final int NO_ORDINAL = -1;
+
+    private final Function<T, String> keyOf;
+    private final Map<String, Entry<T>> entries;
+    // Insertion sequence to entity, for listing in insertion order without locking
+    private final ConcurrentSkipListMap<Long, T> order;
+    private final AtomicLong sequence;
+    // Ordinal to entity; the insertion sequence doubles as the ordinal
+    private final OrdinalTable<T> byOrdinal;
+    private final ReadWriteLock[] stripes;
+    // Sort orders by name, in the order they were added; fixed before the first entity arrives
+    private final Map<String, Ordering<T>> orderings;
+    private final List<Listener<T>> listeners;
+    // Set by versioned; null while the registry keeps no versions
+    private Versions versions;
+    private UnaryOperator<T> copyOf;
+    // Ordinal to entry, kept after a removal while an open view may still read the entity
+    private final OrdinalTable<Entry<T>> entryAt;
+    // Removed entries still kept, by entity, which registries compare by identity
+    private final Map<T, Entry<T>> retired;
+    // Entries holding versions for open views, looked at again as views close
+    private final Queue<Entry<T>> kept;
+
+    public EntityRegistry(Function<T, String> keyOf) {
+        this.keyOf = keyOf;
+        this.entries = new ConcurrentHashMap<>();
+        this.order = new ConcurrentSkipListMap<>();
+        this.sequence = new AtomicLong();
+        this.byOrdinal = new OrdinalTable<>();
+        this.orderings = new LinkedHashMap<>();
+        this.listeners = new ArrayList<>();
+        this.entryAt = new OrdinalTable<>();
+        this.retired = new ConcurrentHashMap<>();
+        this.kept = new ConcurrentLinkedQueue<>();
+        this.stripes = new ReadWriteLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    // Adds a sort order to page through; a null sort value sorts as the empty string
+    public void sortBy(String name, Function<T, String> valueOf) {
+        if (!entries.isEmpty()) {
+            throw new IllegalStateException("Sort orders must be added before any entity");
+        }
+        orderings.put(name, new Ordering<>(orderings.size(), valueOf));
+    }
+
+    // Adds a listener told of every add, update and removal from then on
+    public void listen(Listener<T> listener) {
+        if (!entries.isEmpty()) {
+            throw new IllegalStateException("Listeners must be added before any entity");
+        }
+        listeners.add(listener);
+    }
+
+    // Keeps the versions that views opened on versions read; copyOf makes a detached copy of an entity
+    public void versioned(Versions versions, UnaryOperator<T> copyOf) {
+        if (!entries.isEmpty()) {
+            throw new IllegalStateException("Versions must be kept from before the first entity");
+        }
+        this.versions = versions;
+        this.copyOf = copyOf;
+        versions.whenClosed(this::prune);
+    }
+
+    // Adds the entity unless its key is already taken; returns false on duplicates
+    public boolean add(T entity) {
+        String key = keyOf.apply(entity);
+        return write(key, () -> {
+            if (entries.containsKey(key)) {
+                return false;
+            }
+            Versions.Commit commit = begin();
+            try {
+                long position = sequence.getAndIncrement();
+                Entry<T> entry = new Entry<>(position, entity, orderings.size());
+                if (commit != null) {
+                    entry.commit = commit;
+                    entryAt.set(entry.ordinal(), entry);
+                    commit.afterwards(() -> settle(entry));
+                }
+                byOrdinal.set(entry.ordinal(), entity);
+                entries.put(key, entry);
+                order.put(position, entity);
+                for (Ordering<T> ordering : orderings.values()) {
+                    SortKey sortKey = ordering.keyOf(entity, key);
+                    entry.sortKeys[ordering.slot] = sortKey;
+                    ordering.sorted.put(sortKey, entity);
+                }
+                for (Listener<T> listener : listeners) {
+                    listener.added(key, entry.ordinal(), entity);
+                }
+                return true;
+            } finally {
+                end(commit);
+            }
+        });
+    }
+
+    public T get(String key) {
+        Entry<T> entry = entries.get(key);
+        return entry == null ? null : entry.entity;
+    }
+
+    public boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    // Ordinal of the key's entity, or NO_ORDINAL if there is none
+    public int ordinalOf(String key) {
+        Entry<T> entry = entries.get(key);
+        return entry == null ? NO_ORDINAL : entry.ordinal();
+    }
+
+    // Entity with this ordinal, or null if it has been removed
+    public T atOrdinal(int ordinal) {
+        return ordinal < 0 ? null : byOrdinal.get(ordinal);
+    }
+
+    // Removes and returns the entity with this key, or null if there was none
+    public T remove(String key) {
+        return write(key, () -> {
+            Entry<T> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            Versions.Commit commit = begin();
+            try {
+                if (commit != null) {
+                    // Marked before it goes, so a view that can no longer find it by key finds it here
+                    retired.put(entry.entity, entry);
+                    entry.removedBy = commit;
+                    commit.afterwards(() -> settle(entry));
+                }
+                entries.remove(key);
+                order.remove(entry.position);
+                for (Ordering<T> ordering : orderings.values()) {
+                    ordering.sorted.remove(entry.sortKeys[ordering.slot]);
+                }
+                for (Listener<T> listener : listeners) {
+                    listener.removed(key, entry.ordinal(), entry.entity);
+                }
+                byOrdinal.set(entry.ordinal(), null);
+                return entry.entity;
+            } finally {
+                end(commit);
+            }
+        });
+    }
+
+    // Applies the change to the key's entity and moves it within every sort order whose value
+    // changed; returns the entity, or null if there is none. An entity being moved can be missing
+    // from a page read at that moment.
+    public T update(String key, Consumer<T> change) {
+        return write(key, () -> {
+            Entry<T> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            Versions.Commit commit = begin();
+            try {
+                // A second change in the same commit has no earlier state of its own to keep
+                if (commit != null && entry.commit != commit) {
+                    Versions.Commit previous = entry.commit;
+                    entry.before = new Version<>(previous, copyOf.apply(entry.entity),
+                            versions.anyOpen() ? trim(entry.before, previous.stamp(), versions.oldest()) : null);
+                    // Views that read the entity from here on wait for this commit to be stamped
+                    entry.commit = commit;
+                    commit.afterwards(() -> settle(entry));
+                }
+                change.accept(entry.entity);
+                for (Ordering<T> ordering : orderings.values()) {
+                    SortKey previous = entry.sortKeys[ordering.slot];
+                    SortKey current = ordering.keyOf(entry.entity, key);
+                    if (!current.equals(previous)) {
+                        ordering.sorted.remove(previous);
+                        ordering.sorted.put(current, entry.entity);
+                        entry.sortKeys[ordering.slot] = current;
+                    }
+                }
+                for (Listener<T> listener : listeners) {
+                    listener.updated(key, entry.ordinal(), entry.entity);
+                }
+                return entry.entity;
+            } finally {
+                end(commit);
+            }
+        });
+    }
+
+    // The entities as a view opened at this version sees them, in insertion order. Each is a detached
+    // copy, so it holds still while writers carry on. Walks every ordinal handed out so far in
+    // parallel-friendly ranges; removed ones that no view needs any more are skipped.
+    public Stream<T> at(long version) {
+        checkVersioned();
+        int end = Math.toIntExact(sequence.get());
+        return IntStream.range(0, end).mapToObj(ordinal -> {
+            Entry<T> entry = entryAt.get(ordinal);
+            return entry == null ? null : readAt(entry, version);
+        }).filter(Objects::nonNull);
+    }
+
+    // The entity as a view opened at this version sees it, given the entity itself, or null if the
+    // view does not hold it
+    public T at(T entity, long version) {
+        checkVersioned();
+        Entry<T> entry = entries.get(keyOf.apply(entity));
+        if (entry == null || entry.entity != entity) {
+            entry = retired.get(entity);
+        }
+        return entry == null ? null : readAt(entry, version);
+    }
+
+    // Reads the entry at the version. The live entity is copied when the commit that last changed it
+    // is within the view; the copy is taken again if another change starts meanwhile, since every
+    // change marks the entry before touching the entity.
+    private T readAt(Entry<T> entry, long version) {
+        while (true) {
+            Versions.Commit removedBy = entry.removedBy;
+            if (removedBy != null && removedBy.stamp() <= version) {
+                return null;
+            }
+            Versions.Commit commit = entry.commit;
+            if (commit.stamp() > version) {
+                for (Version<T> older = entry.before; older != null; older = older.older) {
+                    if (older.commit.stamp() <= version) {
+                        return older.state;
+                    }
+                }
+                // Added after the view opened
+                return null;
+            }
+            T copy = copyOf.apply(entry.entity);
+            if (entry.commit == commit) {
+                return copy;
+            }
+        }
+    }
+
+    // Runs once the entry's commit is stamped: with no view open it keeps nothing, otherwise it waits
+    // for the views to close
+    private void settle(Entry<T> entry) {
+        if (versions.anyOpen() || !release(entry, Versions.PENDING)) {
+            kept.add(entry);
+        }
+    }
+
+    // Lets go of whatever the entry keeps that no view opened at or after oldest can read, under the
+    // entity's write lock; returns true once it keeps nothing
+    private boolean release(Entry<T> entry, long oldest) {
+        long stamp = entry.commit.stamp();
+        entry.before = trim(entry.before, stamp, oldest);
+        if (stamp <= oldest) {
+            // Every view there is or will be reads at or after the commit
+            entry.commit = Versions.BASE;
+        }
+        if (entry.removedBy != null) {
+            if (entry.removedBy.stamp() > oldest) {
+                return false;
+            }
+            entryAt.set(entry.ordinal(), null);
+            retired.remove(entry.entity);
+            return true;
+        }
+        return entry.before == null;
+    }
+
+    // Drops the kept states that were replaced, at the stamp newer, by the time the oldest view opened
+    private static <T> Version<T> trim(Version<T> version, long newer, long oldest) {
+        if (version == null || newer <= oldest) {
+            return null;
+        }
+        Version<T> older = trim(version.older, version.commit.stamp(), oldest);
+        return older == version.older ? version : new Version<>(version.commit, version.state, older);
+    }
+
+    // Called as each view closes
+    private void prune() {
+        long oldest = versions.oldest();
+        List<Entry<T>> held = new ArrayList<>();
+        for (Entry<T> entry = kept.poll(); entry != null; entry = kept.poll()) {
+            held.add(entry);
+        }
+        for (Entry<T> entry : held) {
+            if (!write(keyOf.apply(entry.entity), () -> release(entry, oldest))) {
+                kept.add(entry);
+            }
+        }
+    }
+
+    private Versions.Commit begin() {
+        return versions == null ? null : versions.begin();
+    }
+
+    private void end(Versions.Commit commit) {
+        if (commit != null) {
+            versions.end(commit);
+        }
+    }
+
+    private void checkVersioned() {
+        if (versions == null) {
+            throw new IllegalStateException("This registry keeps no versions");
+        }
+    }
+
+    // Up to limit entities in the named order, starting after the cursor, or from the start if it is
+    // null. The sorted index is entered at the cursor and walked forward, so a page costs
+    // O(log n + limit) however deep into the listing it is.
+    public Page<T> page(String orderName, String cursor, int limit) {
+        Ordering<T> ordering = orderings.get(orderName);
+        if (ordering == null) {
+            throw new IllegalArgumentException("Unknown sort order; expected " + String.join(", ", orderings.keySet()) + ".");
+        }
+        Page.checkSize(limit);
+        NavigableMap<SortKey, T> sorted = ordering.sorted;
+        if (cursor != null) {
+            String[] position = Page.decodeCursor(cursor, 2);
+            sorted = sorted.tailMap(new SortKey(position[0], position[1]), false);
+        }
+        List<T> items = new ArrayList<>(Math.min(limit, 64));
+        SortKey last = null;
+        for (Map.Entry<SortKey, T> entry : sorted.entrySet()) {
+            if (items.size() == limit) {
+                return new Page<>(items, Page.encodeCursor(last.value, last.key));
+            }
+            items.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Page<>(items, null);
+    }
+
+    // Throws if a sort order is missing an entity or holds one under an out-of-date value
+    public void verifyOrders() {
+        for (Map.Entry<String, Ordering<T>> named : orderings.entrySet()) {
+            Ordering<T> ordering = named.getValue();
+            if (ordering.sorted.size() != entries.size()) {
+                throw new IllegalStateException("Sort order " + named.getKey() + " holds " + ordering.sorted.size()
+                        + " entries but the registry holds " + entries.size());
+            }
+            for (Map.Entry<SortKey, T> entry : ordering.sorted.entrySet()) {
+                if (!ordering.keyOf(entry.getValue(), entry.getKey().key).equals(entry.getKey())) {
+                    throw new IllegalStateException("Sort order " + named.getKey() + " holds " + entry.getKey().key
+                            + " under an out-of-date value");
+                }
+            }
+        }
+    }
+
+    public Set<String> sortOrders() {
+        return Collections.unmodifiableSet(orderings.keySet());
+    }
+
+    // Runs the action while holding the key's stripe exclusively
+    public <R> R write(String key, Supplier<R> action) {
+        ReadWriteLock stripe = stripe(key);
+        stripe.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            stripe.writeLock().unlock();
+        }
+    }
+
+    // Runs the action while the key's entity cannot be changed or removed; shared with other readers
+    public <R> R read(String key, Supplier<R> action) {
+        ReadWriteLock stripe = stripe(key);
+        stripe.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            stripe.readLock().unlock();
+        }
+    }
+
+    // Runs the action while none of the keys' entities can be changed or removed. Stripes are taken in
+    // index order, so two multi-key readers can never deadlock behind writers queued on each other's stripes.
+    public <R> R readAll(Collection<String> keys, Supplier<R> action) {
+        BitSet needed = new BitSet(STRIPES);
+        for (String key : keys) {
+            needed.set(stripeIndex(key));
+        }
+        int[] order = needed.stream().toArray();
+        int locked = 0;
+        try {
+            for (int index : order) {
+                stripes[index].readLock().lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            while (locked > 0) {
+                stripes[order[--locked]].readLock().unlock();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    // A live, weakly consistent view in insertion order
+    public Collection<T> values() {
+        return Collections.unmodifiableCollection(order.values());
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return values().iterator();
+    }
+
+    private ReadWriteLock stripe(String key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    private static int stripeIndex(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    // Listener interface for an index kept beside the registry. Calls are made under the key's write
+    // lock, so calls for one key arrive in order, while calls for different keys can run at once.
+    interface Listener<T> {
+        void added(String key, int ordinal, T entity);
+
+        void updated(String key, int ordinal, T entity);
+
+        void removed(String key, int ordinal, T entity);
+    }
+
+    // Entry class pairing an entity with its insertion position and current sort keys
+    private static class Entry<T> {
+        final long position;
+        final T entity;
+        // Only changed under the key's write lock
+        final SortKey[] sortKeys;
+        // In a versioned registry: the commit that made the entity what it is, the one that removed
+        // it, and the states it had before, newest first, that an open view may still read
+        volatile Versions.Commit commit = Versions.BASE;
+        volatile Versions.Commit removedBy;
+        volatile Version<T> before;
+
+        Entry(long position, T entity, int orderings) {
+            this.position = position;
+            this.entity = entity;
+            this.sortKeys = new SortKey[orderings];
+        }
+
+        int ordinal() {
+            return Math.toIntExact(position);
+        }
+    }
+
+    // Version class holding a state an entity had from its commit until the next one
+    private static final class Version<T> {
+        final Versions.Commit commit;
+        final T state;
+        final Version<T> older;
+
+        Version(Versions.Commit commit, T state, Version<T> older) {
+            this.commit = commit;
+            this.state = state;
+            this.older = older;
+        }
+    }
+
+    // Ordering class holding one named sort order
+    private static class Ordering<T> {
+        final int slot;
+        final Function<T, String> valueOf;
+        final ConcurrentSkipListMap<SortKey, T> sorted = new ConcurrentSkipListMap<>();
+
+        Ordering(int slot, Function<T, String> valueOf) {
+            this.slot = slot;
+            this.valueOf = valueOf;
+        }
+
+        SortKey keyOf(T entity, String key) {
+            String value = valueOf.apply(entity);
+            return new SortKey(value == null ? "" : value, key);
+        }
+    }
+
+    // SortKey class ordering by sort value, then by key so that equal values still have a position
+    private static final class SortKey implements Comparable<SortKey> {
+        final String value;
+        final String key;
+
+        SortKey(String value, String key) {
+            this.value = value;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            int byValue = value.compareTo(other.value);
+            return byValue != 0 ? byValue : key.compareTo(other.key);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SortKey && compareTo((SortKey) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode() * 31 + key.hashCode();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package school;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// FeeLedger class that keeps every invoice, payment and adjustment as a row of an append-only ledger.
+//
+// Rows live in primitive columns in fixed-size chunks and are reserved and published in order, as
+// in AttendanceStore. Amounts are signed cents: what a student is charged is positive and what they
+// pay is negative, so a balance is a plain sum. Each row also holds the previous row of the same
+// student, so a statement walks back along one student's rows only, and every student's running
+// balance and newest row sit in arrays indexed by registry ordinal, so a balance is one array read.
+// Both are written while a row is published, which only one thread does at a time, so postings need
+// no lock of their own. Rows are never changed; a correction is an adjustment. Descriptions are
+// held as given: the rows of one invoicing run share its string, and a payment reference belongs
+// to its row alone, so there is no dictionary to outlive the ledger.
+class FeeLedger {
+    // Row of a student with no postings
+    static final int NO_ROW = -1;
+    // Aging buckets by days past due: not yet due, then up to 30, 60, 90 and beyond
+    static final String[] AGING_BUCKETS = {"Current", "1-30 days", "31-60 days", "61-90 days", "Over 90 days"};
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final int ACCOUNT_BITS = 12;
+    private static final int ACCOUNT_CHUNK = 1 << ACCOUNT_BITS;
+    private static final int ACCOUNT_MASK = ACCOUNT_CHUNK - 1;
+
+    enum Kind {
+        INVOICE,
+        PAYMENT,
+        ADJUSTMENT
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final Object growLock = new Object();
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile Accounts[] accounts = new Accounts[0];
+    private final AtomicInteger reserved = new AtomicInteger();
+    private volatile int published;
+
+    // Appends one posting for the student with this ordinal and returns its row
+    public int post(int student, Kind kind, long cents, int epochDay, int dueDay, String description) {
+        int row = reserve(1);
+        chunk(row).set(row & CHUNK_MASK, student, kind, cents, epochDay, dueDay, description);
+        publish(row, 1);
+        return row;
+    }
+
+    // Appends the same posting for each of the first count students, published together; returns the
+    // first row, or NO_ROW if count is 0
+    public int postAll(int[] students, int count, Kind kind, long cents, int epochDay, int dueDay, String description) {
+        if (count == 0) {
+            return NO_ROW;
+        }
+        int first = reserve(count);
+        for (int i = 0; i < count; i++) {
+            int row = first + i;
+            chunk(row).set(row & CHUNK_MASK, students[i], kind, cents, epochDay, dueDay, description);
+        }
+        publish(first, count);
+        return first;
+    }
+
+    // Appends rows given column by column, as a snapshot holds them; kinds are Kind ordinals
+    public void addRows(int count, int[] students, byte[] kinds, long[] cents, int[] epochDays, int[] dueDays,
+                        String[] descriptions) {
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (kinds[i] < 0 || kinds[i] >= KINDS.length) {
+                throw new IllegalArgumentException("Fee row has an unknown kind " + kinds[i]);
+            }
+        }
+        int first = reserve(count);
+        for (int i = 0; i < count; i++) {
+            int row = first + i;
+            chunk(row).set(row & CHUNK_MASK, students[i], KINDS[kinds[i]], cents[i], epochDays[i], dueDays[i],
+                    descriptions[i]);
+        }
+        publish(first, count);
+    }
+
+    // Running balance in cents of the student with this ordinal; positive means money is owed
+    public long balance(int student) {
+        Accounts[] current = accounts;
+        int chunk = student >>> ACCOUNT_BITS;
+        return chunk < current.length ? current[chunk].balances.get(student & ACCOUNT_MASK) : 0;
+    }
+
+    // Newest published row of the student, or NO_ROW if they have none
+    public int lastRow(int student) {
+        int end = published;
+        Accounts[] current = accounts;
+        int chunk = student >>> ACCOUNT_BITS;
+        int row = chunk < current.length ? current[chunk].lastRows.get(student & ACCOUNT_MASK) - 1 : NO_ROW;
+        // A row being published is linked before it is visible; step back past it
+        while (row >= end) {
+            row = chunks[row >>> CHUNK_BITS].previous[row & CHUNK_MASK];
+        }
+        return row;
+    }
+
+    // The same student's row before this one, or NO_ROW
+    public int previousRow(int row) {
+        checkRow(row);
+        return chunks[row >>> CHUNK_BITS].previous[row & CHUNK_MASK];
+    }
+
+    public int studentOrdinal(int row) {
+        checkRow(row);
+        return chunks[row >>> CHUNK_BITS].students[row & CHUNK_MASK];
+    }
+
+    public Kind kind(int row) {
+        checkRow(row);
+        return KINDS[chunks[row >>> CHUNK_BITS].kinds[row & CHUNK_MASK]];
+    }
+
+    public long cents(int row) {
+        checkRow(row);
+        return chunks[row >>> CHUNK_BITS].cents[row & CHUNK_MASK];
+    }
+
+    public int epochDay(int row) {
+        checkRow(row);
+        return chunks[row >>> CHUNK_BITS].epochDays[row & CHUNK_MASK];
+    }
+
+    public int dueDay(int row) {
+        checkRow(row);
+        return chunks[row >>> CHUNK_BITS].dueDays[row & CHUNK_MASK];
+    }
+
+    public String description(int row) {
+        checkRow(row);
+        return chunks[row >>> CHUNK_BITS].descriptions[row & CHUNK_MASK];
+    }
+
+    // Adds what the student owes to the aging buckets by how far past due it is on asOfDay. Payments
+    // and credits settle the oldest charges first, so what is owed is made of the newest charges:
+    // the walk goes back from the newest row and stops as soon as the balance is accounted for.
+    // Returns the balance, which is added to no bucket unless it is positive.
+    public long age(int student, int asOfDay, long[] buckets) {
+        long balance = balance(student);
+        long remaining = balance;
+        for (int row = lastRow(student); row != NO_ROW && remaining > 0; row = previousRow(row)) {
+            long charged = cents(row);
+            if (charged > 0) {
+                long owed = Math.min(charged, remaining);
+                buckets[agingBucket(asOfDay - dueDay(row))] += owed;
+                remaining -= owed;
+            }
+        }
+        return balance;
+    }
+
+    static int agingBucket(int daysPastDue) {
+        if (daysPastDue <= 0) {
+            return 0;
+        }
+        return Math.min(AGING_BUCKETS.length - 1, (daysPastDue - 1) / 30 + 1);
+    }
+
+    // Number of rows visible to readers
+    public int size() {
+        return published;
+    }
+
+    // Rough bytes held by the columns and balances, counting capacity not yet used: 29 bytes a row
+    // and 12 a student account, with descriptions as references and the strings themselves left out
+    public long estimatedBytes() {
+        return chunks.length * 29L * CHUNK_ROWS + accounts.length * 12L * ACCOUNT_CHUNK;
+    }
+
+    // Throws unless every student's balance is the sum of their rows and their chain holds exactly those rows
+    public void verify() {
+        int end = published;
+        long[] sums = new long[0];
+        int[] counts = new int[0];
+        for (int row = 0; row < end; row++) {
+            int student = studentOrdinal(row);
+            if (student >= sums.length) {
+                sums = Arrays.copyOf(sums, Math.max(student + 1, sums.length * 2));
+                counts = Arrays.copyOf(counts, sums.length);
+            }
+            sums[student] += cents(row);
+            counts[student]++;
+        }
+        for (int student = 0; student < sums.length; student++) {
+            if (balance(student) != sums[student]) {
+                throw new IllegalStateException("Fee balance of student " + student + " is " + balance(student)
+                        + " but its rows add up to " + sums[student]);
+            }
+            int chained = 0;
+            for (int row = lastRow(student); row != NO_ROW; row = previousRow(row)) {
+                if (studentOrdinal(row) != student) {
+                    throw new IllegalStateException("Fee rows of student " + student + " lead to row " + row
+                            + " of student " + studentOrdinal(row));
+                }
+                chained++;
+            }
+            if (chained != counts[student]) {
+                throw new IllegalStateException("Fee rows of student " + student + " chain " + chained
+                        + " rows but the ledger has " + counts[student]);
+            }
+        }
+    }
+
+    private int reserve(int count) {
+        int first = reserved.getAndAdd(count);
+        if (first < 0 || first + count < 0) {
+            throw new IllegalStateException("Fee ledger is full");
+        }
+        int lastChunk = (first + count - 1) >>> CHUNK_BITS;
+        if (lastChunk >= chunks.length) {
+            synchronized (growLock) {
+                Chunk[] current = chunks;
+                if (lastChunk >= current.length) {
+                    Chunk[] grown = Arrays.copyOf(current, Math.max(lastChunk + 1, current.length * 2));
+                    for (int i = current.length; i < grown.length; i++) {
+                        grown[i] = new Chunk();
+                    }
+                    chunks = grown;
+                }
+            }
+        }
+        return first;
+    }
+
+    // Rows are published in order, so wait for earlier writers to finish theirs. Only one thread at
+    // a time gets past the wait, which is what lets the chains and balances be updated without locking.
+    private void publish(int first, int count) {
+        int spins = 0;
+        while (published != first) {
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        for (int row = first; row < first + count; row++) {
+            Chunk chunk = chunk(row);
+            int offset = row & CHUNK_MASK;
+            int student = chunk.students[offset];
+            Accounts account = account(student);
+            int slot = student & ACCOUNT_MASK;
+            // Last rows are stored plus one so the zeroed array means no rows
+            chunk.previous[offset] = account.lastRows.get(slot) - 1;
+            account.lastRows.set(slot, row + 1);
+            account.balances.set(slot, account.balances.get(slot) + chunk.cents[offset]);
+        }
+        published = first + count;
+    }
+
+    private Accounts account(int student) {
+        int chunk = student >>> ACCOUNT_BITS;
+        Accounts[] current = accounts;
+        if (chunk >= current.length) {
+            // Only the publishing thread grows the accounts, so this needs no lock
+            Accounts[] grown = Arrays.copyOf(current, Math.max(chunk + 1, current.length * 2));
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = new Accounts();
+            }
+            accounts = grown;
+            current = grown;
+        }
+        return current[chunk];
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= published) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range for " + published + " fee rows");
+        }
+    }
+
+    // Chunk class holding the columns for a fixed block of rows
+    private static class Chunk {
+        final int[] students = new int[CHUNK_ROWS];
+        final byte[] kinds = new byte[CHUNK_ROWS];
+        final long[] cents = new long[CHUNK_ROWS];
+        final int[] epochDays = new int[CHUNK_ROWS];
+        final int[] dueDays = new int[CHUNK_ROWS];
+        final String[] descriptions = new String[CHUNK_ROWS];
+        // Set when the row is published
+        final int[] previous = new int[CHUNK_ROWS];
+
+        void set(int offset, int student, Kind kind, long amount, int epochDay, int dueDay, String description) {
+            students[offset] = student;
+            kinds[offset] = (byte) kind.ordinal();
+            cents[offset] = amount;
+            epochDays[offset] = epochDay;
+            dueDays[offset] = dueDay;
+            descriptions[offset] = description;
+        }
+    }
+
+    // Accounts class holding the balance and newest row of a fixed block of student ordinals
+    private static class Accounts {
+        final AtomicLongArray balances = new AtomicLongArray(ACCOUNT_CHUNK);
+        final AtomicIntegerArray lastRows = new AtomicIntegerArray(ACCOUNT_CHUNK);
+    }
+}
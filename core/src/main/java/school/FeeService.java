@@ -0,0 +1,305 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// FeeService class with the fee and payment operations on students' ledger accounts.
+//
+// Postings hold the student shared, as marking attendance does, so the student cannot be removed
+// mid-posting while postings for other students, or the same one, go ahead in parallel; the ledger
+// puts them in order itself. A persistent school appends the rows inside the journal write, so a
+// snapshot cuts the ledger and the log at the same point. A removed student's rows stay in the
+// ledger but are no longer reachable, and a student added again under the same ID starts afresh.
+class FeeService {
+    // Days from an invoice to its due date when none is given
+    static final int DEFAULT_TERMS_DAYS = 30;
+    // Students invoiced per lock acquisition and journal record in a bulk run
+    static final int INVOICE_RUN_BATCH = 4096;
+    private static final String PAYMENT_DESCRIPTION = "Payment";
+
+    private final School school;
+    private final EntityRegistry<Student> students;
+    private final FeeLedger ledger;
+    private final Metrics.Timer invoiceTimer;
+    private final Metrics.Timer payTimer;
+    private final Metrics.Timer adjustTimer;
+    private final Metrics.Timer invoiceAllTimer;
+
+    FeeService(School school, EntityRegistry<Student> students, FeeLedger ledger) {
+        this.school = school;
+        this.students = students;
+        this.ledger = ledger;
+        this.invoiceTimer = school.getMetrics().timer("fee.invoice");
+        this.payTimer = school.getMetrics().timer("fee.pay");
+        this.adjustTimer = school.getMetrics().timer("fee.adjust");
+        this.invoiceAllTimer = school.getMetrics().timer("fee.invoiceAll");
+    }
+
+    // Charges the student; the invoice falls due on dueDate, or DEFAULT_TERMS_DAYS after date if it is null
+    public ServiceResult<Entry> invoice(String studentId, String description, Money amount, LocalDate date,
+                                        LocalDate dueDate) {
+        return school.write(invoiceTimer, () -> {
+            if (date == null) {
+                return ServiceResult.invalid("Invoice date is required.");
+            }
+            LocalDate due = dueDate == null ? date.plusDays(DEFAULT_TERMS_DAYS) : dueDate;
+            if (due.isBefore(date)) {
+                return ServiceResult.invalid("The due date is before the invoice date.");
+            }
+            if (amount.getCents() <= 0) {
+                return ServiceResult.invalid("An invoice must be for more than zero.");
+            }
+            if (description == null || description.isBlank()) {
+                return ServiceResult.invalid("Invoice description is required.");
+            }
+            return post(studentId, FeeLedger.Kind.INVOICE, amount.getCents(), date, due, description,
+                    "Invoice posted successfully!");
+        });
+    }
+
+    public ServiceResult<Entry> pay(String studentId, Money amount, LocalDate date, String description) {
+        return school.write(payTimer, () -> {
+            if (date == null) {
+                return ServiceResult.invalid("Payment date is required.");
+            }
+            if (amount.getCents() <= 0) {
+                return ServiceResult.invalid("A payment must be for more than zero.");
+            }
+            String text = description == null || description.isBlank() ? PAYMENT_DESCRIPTION : description;
+            return post(studentId, FeeLedger.Kind.PAYMENT, -amount.getCents(), date, date, text,
+                    "Payment recorded successfully!");
+        });
+    }
+
+    // Corrects the balance: a positive amount adds to what the student owes, due at once, and a
+    // negative one is a credit
+    public ServiceResult<Entry> adjust(String studentId, Money amount, LocalDate date, String description) {
+        return school.write(adjustTimer, () -> {
+            if (date == null) {
+                return ServiceResult.invalid("Adjustment date is required.");
+            }
+            if (amount.getCents() == 0) {
+                return ServiceResult.invalid("An adjustment of zero changes nothing.");
+            }
+            if (description == null || description.isBlank()) {
+                return ServiceResult.invalid("Adjustment description is required.");
+            }
+            return post(studentId, FeeLedger.Kind.ADJUSTMENT, amount.getCents(), date, date, description,
+                    "Adjustment posted successfully!");
+        });
+    }
+
+    private ServiceResult<Entry> post(String studentId, FeeLedger.Kind kind, long cents, LocalDate date, LocalDate due,
+                                      String description, String message) {
+        return students.read(studentId, () -> {
+            int student = students.ordinalOf(studentId);
+            if (student == EntityRegistry.NO_ORDINAL) {
+                return ServiceResult.notFound("Student not found.");
+            }
+            int epochDay = (int) date.toEpochDay();
+            int dueDay = (int) due.toEpochDay();
+            Runnable append = () -> ledger.post(student, kind, cents, epochDay, dueDay, description);
+            if (!school.log(journal -> journal.feePosted(studentId, kind, cents, epochDay, dueDay, description, append))) {
+                append.run();
+            }
+            Entry entry = new Entry(kind, Money.ofCents(cents), date, kind == FeeLedger.Kind.INVOICE ? due : null,
+                    description, Money.ofCents(ledger.balance(student)));
+            return ServiceResult.ok(entry, message + " " + studentId + " " + entry.getBalance().describeBalance() + ".");
+        });
+    }
+
+    // O(1): the running balance kept beside the ledger
+    public ServiceResult<Money> balance(String studentId) {
+        int student = students.ordinalOf(studentId);
+        if (student == EntityRegistry.NO_ORDINAL) {
+            return ServiceResult.notFound("Student not found.");
+        }
+        Money balance = Money.ofCents(ledger.balance(student));
+        return ServiceResult.ok(balance, studentId + " " + balance.describeBalance() + ".");
+    }
+
+    // Every posting of the student in the order they were posted, each with the balance after it
+    public ServiceResult<Statement> statement(String studentId) {
+        Student found = students.get(studentId);
+        int student = students.ordinalOf(studentId);
+        if (found == null || student == EntityRegistry.NO_ORDINAL) {
+            return ServiceResult.notFound("Student not found.");
+        }
+        int[] rows = new int[16];
+        int count = 0;
+        for (int row = ledger.lastRow(student); row != FeeLedger.NO_ROW; row = ledger.previousRow(row)) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+            }
+            rows[count++] = row;
+        }
+        List<Entry> entries = new ArrayList<>(count);
+        long balance = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            int row = rows[i];
+            FeeLedger.Kind kind = ledger.kind(row);
+            long cents = ledger.cents(row);
+            balance += cents;
+            entries.add(new Entry(kind, Money.ofCents(cents), LocalDate.ofEpochDay(ledger.epochDay(row)),
+                    kind == FeeLedger.Kind.INVOICE ? LocalDate.ofEpochDay(ledger.dueDay(row)) : null,
+                    ledger.description(row), Money.ofCents(balance)));
+        }
+        Statement statement = new Statement(found, entries, Money.ofCents(balance));
+        return ServiceResult.ok(statement, count + " postings; " + studentId + " " + statement.getBalance().describeBalance() + ".");
+    }
+
+    // Invoices every student, or only those in the grade if it is not null, in one pass over the
+    // registry. Students are taken INVOICE_RUN_BATCH at a time: each batch is locked shared once,
+    // journaled as one record and appended to the ledger as one block of rows.
+    public ServiceResult<InvoiceRun> invoiceAll(String grade, String description, Money amount, LocalDate date,
+                                                LocalDate dueDate) {
+        return school.write(invoiceAllTimer, () -> {
+            if (date == null) {
+                return ServiceResult.invalid("Invoice date is required.");
+            }
+            LocalDate due = dueDate == null ? date.plusDays(DEFAULT_TERMS_DAYS) : dueDate;
+            if (due.isBefore(date)) {
+                return ServiceResult.invalid("The due date is before the invoice date.");
+            }
+            if (amount.getCents() <= 0) {
+                return ServiceResult.invalid("An invoice must be for more than zero.");
+            }
+            if (description == null || description.isBlank()) {
+                return ServiceResult.invalid("Invoice description is required.");
+            }
+            int gradeCode = grade == null ? SymbolTable.NULL : SymbolTable.GRADES.find(grade);
+            if (grade != null && gradeCode == SymbolTable.NULL) {
+                return ServiceResult.notFound("No students in grade " + grade + ".");
+            }
+            Batch batch = new Batch(amount.getCents(), (int) date.toEpochDay(), (int) due.toEpochDay(), description);
+            long invoiced = 0;
+            for (Student student : students) {
+                if (grade == null || student.getGradeCode() == gradeCode) {
+                    batch.ids.add(student.getId());
+                    if (batch.ids.size() == INVOICE_RUN_BATCH) {
+                        invoiced += invoiceBatch(batch);
+                    }
+                }
+            }
+            if (!batch.ids.isEmpty()) {
+                invoiced += invoiceBatch(batch);
+            }
+            InvoiceRun run = new InvoiceRun(invoiced, Money.ofCents(Math.multiplyExact(amount.getCents(), invoiced)));
+            return ServiceResult.ok(run, "Invoiced " + invoiced + " students $" + amount + " each, $" + run.getTotal()
+                    + " in total.");
+        });
+    }
+
+    // Invoices the batch's students that are still registered, then empties it
+    private int invoiceBatch(Batch batch) {
+        int count = students.readAll(batch.ids, () -> {
+            int live = 0;
+            for (String id : batch.ids) {
+                int ordinal = students.ordinalOf(id);
+                if (ordinal != EntityRegistry.NO_ORDINAL) {
+                    batch.liveIds[live] = id;
+                    batch.ordinals[live++] = ordinal;
+                }
+            }
+            int invoiced = live;
+            if (invoiced == 0) {
+                return 0;
+            }
+            Runnable append = () -> ledger.postAll(batch.ordinals, invoiced, FeeLedger.Kind.INVOICE, batch.cents,
+                    batch.epochDay, batch.dueDay, batch.description);
+            if (!school.log(journal -> journal.feesInvoiced(batch.liveIds, invoiced, batch.cents, batch.epochDay,
+                    batch.dueDay, batch.description, append))) {
+                append.run();
+            }
+            return invoiced;
+        });
+        batch.ids.clear();
+        return count;
+    }
+
+    // Batch class reusing the buffers of a bulk invoicing run from one batch to the next
+    private static class Batch {
+        final List<String> ids = new ArrayList<>(INVOICE_RUN_BATCH);
+        final String[] liveIds = new String[INVOICE_RUN_BATCH];
+        final int[] ordinals = new int[INVOICE_RUN_BATCH];
+        final long cents;
+        final int epochDay;
+        final int dueDay;
+        final String description;
+
+        Batch(long cents, int epochDay, int dueDay, String description) {
+            this.cents = cents;
+            this.epochDay = epochDay;
+            this.dueDay = dueDay;
+            this.description = description;
+        }
+    }
+
+    // Entry class for one posting on a statement; amounts are positive for charges and negative
+    // for payments and credits
+    static class Entry {
+        private final FeeLedger.Kind kind;
+        private final Money amount;
+        private final LocalDate date;
+        private final LocalDate dueDate;
+        private final String description;
+        private final Money balance;
+
+        Entry(FeeLedger.Kind kind, Money amount, LocalDate date, LocalDate dueDate, String description, Money balance) {
+            this.kind = kind;
+            this.amount = amount;
+            this.date = date;
+            this.dueDate = dueDate;
+            this.description = description;
+            this.balance = balance;
+        }
+
+        public FeeLedger.Kind getKind() { return kind; }
+
+        public Money getAmount() { return amount; }
+
+        public LocalDate getDate() { return date; }
+
+        // null unless this is an invoice
+        public LocalDate getDueDate() { return dueDate; }
+
+        public String getDescription() { return description; }
+
+        // The student's balance after this posting
+        public Money getBalance() { return balance; }
+    }
+
+    // Statement class with a student's postings and what they owe
+    static class Statement {
+        private final Student student;
+        private final List<Entry> entries;
+        private final Money balance;
+
+        Statement(Student student, List<Entry> entries, Money balance) {
+            this.student = student;
+            this.entries = entries;
+            this.balance = balance;
+        }
+
+        public Student getStudent() { return student; }
+
+        public List<Entry> getEntries() { return entries; }
+
+        public Money getBalance() { return balance; }
+    }
+
+    // InvoiceRun class summarising a bulk invoicing run
+    static class InvoiceRun {
+        private final long invoiced;
+        private final Money total;
+
+        InvoiceRun(long invoiced, Money total) {
+            this.invoiced = invoiced;
+            this.total = total;
+        }
+
+        public long getInvoiced() { return invoiced; }
+
+        public Money getTotal() { return total; }
+    }
+}
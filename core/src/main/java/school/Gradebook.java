@@ -0,0 +1,598 @@
+package school;
+
+import java.util.*;
+
+// Gradebook class holding the assessments of each course, every student's marks, and the rankings
+// they lead to.
+//
+// A student's score in a course is the weighted average of the assessments they have been marked
+// on, as a percentage, and their GPA is the mean of the grade points of their scores. Both are
+// updated when a mark arrives, and the student is moved within two RankTrees: one for the course,
+// ranked by score, and one for their year group, ranked by GPA. A key is the score above the
+// student's ordinal, so keys are distinct, ordered by score, and a student's rank is one plus the
+// number of keys above their score, found in O(log n) without sorting the cohort.
+//
+// Assessments and course rankings change only under the course's write lock and are read under its
+// read lock. A student's marks are guarded by their Record's monitor, taken after the student's and
+// course's locks, so dropping a removed course can reach them while holding only the course's lock;
+// a year group's ranking is guarded by its own monitor, taken last. Removing a student takes them
+// off every ranking; removing a course drops its assessments and ranking and its marks from GPAs.
+class Gradebook {
+    // Scores and GPAs are held in ranking keys to this fraction of a point
+    static final int SCALE = 10_000;
+    // Letter grades, the lowest percentage that earns each, and their grade points in tenths
+    static final String[] LETTERS = {"A", "A-", "B+", "B", "B-", "C+", "C", "C-", "D+", "D", "D-", "F"};
+    private static final int[] LETTER_FLOORS = {93, 90, 87, 83, 80, 77, 73, 70, 67, 63, 60, 0};
+    private static final int[] GRADE_POINTS = {40, 37, 33, 30, 27, 23, 20, 17, 13, 10, 7, 0};
+    // Points of an assessment the student has not been marked on
+    static final int UNMARKED = -1;
+    // Score of a student with no marks
+    static final long NO_SCORE = -1;
+
+    private final EntityRegistry<Student> students;
+    private final EntityRegistry<Course> courses;
+    // By course ordinal; replaced, never changed in place, so a copy can be read without the lock
+    private final OrdinalTable<Assessment[]> assessments = new OrdinalTable<>();
+    private final OrdinalTable<RankTree> courseRanks = new OrdinalTable<>();
+    // By year group, the student's grade code
+    private final OrdinalTable<RankTree> yearRanks = new OrdinalTable<>();
+    // By student ordinal
+    private final OrdinalTable<Record> records = new OrdinalTable<>();
+
+    Gradebook(EntityRegistry<Student> students, EntityRegistry<Course> courses) {
+        this.students = students;
+        this.courses = courses;
+        students.listen(new EntityRegistry.Listener<>() {
+            @Override
+            public void added(String key, int ordinal, Student student) {
+            }
+
+            @Override
+            public void updated(String key, int ordinal, Student student) {
+                Record record = records.get(ordinal);
+                if (record != null) {
+                    synchronized (record) {
+                        moveYear(record, ordinal, record.gpa(), student.getGradeCode());
+                    }
+                }
+            }
+
+            @Override
+            public void removed(String key, int ordinal, Student student) {
+                leave(ordinal);
+            }
+        });
+        courses.listen(new EntityRegistry.Listener<>() {
+            @Override
+            public void added(String key, int ordinal, Course course) {
+            }
+
+            @Override
+            public void updated(String key, int ordinal, Course course) {
+            }
+
+            @Override
+            public void removed(String key, int ordinal, Course course) {
+                drop(ordinal);
+            }
+        });
+    }
+
+    // The course's assessments in the order they were added; the caller holds the course's lock
+    Assessment[] assessments(int course) {
+        Assessment[] list = assessments.get(course);
+        return list == null ? new Assessment[0] : list;
+    }
+
+    // Index of the course's assessment with this name ignoring case, or -1
+    int assessmentIndex(int course, String name) {
+        Assessment[] list = assessments(course);
+        for (int i = 0; i < list.length; i++) {
+            if (list[i].getName().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The caller holds the course's write lock; returns false if it already has one of that name.
+    // Only marked assessments count towards a score, so adding one changes no score.
+    boolean addAssessment(int course, Assessment assessment) {
+        if (assessmentIndex(course, assessment.getName()) >= 0) {
+            return false;
+        }
+        Assessment[] list = assessments(course);
+        Assessment[] grown = Arrays.copyOf(list, list.length + 1);
+        grown[list.length] = assessment;
+        assessments.set(course, grown);
+        return true;
+    }
+
+    // Sets the student's mark, in hundredths of a point, for one of the course's assessments, replacing
+    // any earlier one, and moves the student within the course's and their year group's rankings.
+    // The caller holds the student's and the course's write locks. Returns the new score.
+    long record(int student, int course, int assessment, int points) {
+        Assessment[] list = assessments(course);
+        if (assessment < 0 || assessment >= list.length) {
+            throw new IllegalArgumentException("Course " + course + " has no assessment " + assessment);
+        }
+        Record record = records.get(student);
+        if (record == null) {
+            record = new Record(students.atOrdinal(student).getGradeCode());
+            records.set(student, record);
+        }
+        RankTree ranking = courseRanks.get(course);
+        if (ranking == null) {
+            ranking = new RankTree();
+            courseRanks.set(course, ranking);
+        }
+        synchronized (record) {
+            long gpa = record.gpa();
+            Marks marks = record.marks(course, list.length);
+            if (marks.score != NO_SCORE) {
+                ranking.remove(key(marks.score, student));
+                record.gradePoints -= gradePoints(marks.score);
+                record.graded--;
+            }
+            marks.points[assessment] = points;
+            marks.score = score(list, marks.points);
+            ranking.add(key(marks.score, student));
+            record.gradePoints += gradePoints(marks.score);
+            record.graded++;
+            moveYear(record, student, gpa, record.yearGroup);
+            return marks.score;
+        }
+    }
+
+    // Drops the student's marks in the course, e.g. when they withdraw from it; the caller holds the
+    // student's and the course's write locks. Returns false if they had none.
+    boolean withdraw(int student, int course) {
+        Record record = records.get(student);
+        if (record == null) {
+            return false;
+        }
+        synchronized (record) {
+            long gpa = record.gpa();
+            Marks marks = record.remove(course);
+            if (marks == null) {
+                return false;
+            }
+            RankTree ranking = courseRanks.get(course);
+            if (ranking != null) {
+                ranking.remove(key(marks.score, student));
+            }
+            record.gradePoints -= gradePoints(marks.score);
+            record.graded--;
+            moveYear(record, student, gpa, record.yearGroup);
+            return true;
+        }
+    }
+
+    // The student's score in the course, or NO_SCORE; the caller holds the course's lock
+    long score(int student, int course) {
+        Record record = records.get(student);
+        if (record == null) {
+            return NO_SCORE;
+        }
+        synchronized (record) {
+            Marks marks = record.find(course);
+            return marks == null ? NO_SCORE : marks.score;
+        }
+    }
+
+    // The student's marks in the course by assessment, UNMARKED where they have none, or null if
+    // they have no marks in it; the caller holds the course's lock
+    int[] marks(int student, int course) {
+        Record record = records.get(student);
+        if (record == null) {
+            return null;
+        }
+        synchronized (record) {
+            Marks marks = record.find(course);
+            if (marks == null) {
+                return null;
+            }
+            int[] copy = Arrays.copyOf(marks.points, assessments(course).length);
+            Arrays.fill(copy, marks.points.length, copy.length, UNMARKED);
+            return copy;
+        }
+    }
+
+    // Ordinals of the courses the student has marks in, in the order the courses were added
+    int[] coursesOf(int student) {
+        Record record = records.get(student);
+        if (record == null) {
+            return new int[0];
+        }
+        synchronized (record) {
+            return Arrays.copyOf(record.courses, record.count);
+        }
+    }
+
+    // The student's GPA scaled by SCALE, or NO_SCORE if they have no marks
+    long gpa(int student) {
+        Record record = records.get(student);
+        if (record == null) {
+            return NO_SCORE;
+        }
+        synchronized (record) {
+            return record.gpa();
+        }
+    }
+
+    // Where the student stands in the course by score, or null if they have no marks in it; the
+    // caller holds the course's lock
+    Standing courseStanding(int student, int course) {
+        long score = score(student, course);
+        RankTree ranking = courseRanks.get(course);
+        return score == NO_SCORE || ranking == null ? null : standing(ranking, score);
+    }
+
+    // Where the student stands in their year group by GPA, or null if they have no marks or no grade
+    Standing yearStanding(int student) {
+        Record record = records.get(student);
+        if (record == null) {
+            return null;
+        }
+        synchronized (record) {
+            long gpa = record.gpa();
+            RankTree ranking = record.yearGroup == SymbolTable.NULL ? null : yearRanks.get(record.yearGroup);
+            if (gpa == NO_SCORE || ranking == null) {
+                return null;
+            }
+            synchronized (ranking) {
+                return standing(ranking, gpa);
+            }
+        }
+    }
+
+    // Up to limit students of the course from the top, skipping the first `from`; the caller holds
+    // the course's read lock
+    List<Ranked> courseRanking(int course, int from, int limit) {
+        RankTree ranking = courseRanks.get(course);
+        return ranking == null ? List.of() : ranking(ranking, from, limit);
+    }
+
+    List<Ranked> yearRanking(int yearGroup, int from, int limit) {
+        RankTree ranking = yearGroup < 0 ? null : yearRanks.get(yearGroup);
+        if (ranking == null) {
+            return List.of();
+        }
+        synchronized (ranking) {
+            return ranking(ranking, from, limit);
+        }
+    }
+
+    // Ordinals of the students with marks in the course, lowest score first; the caller holds the
+    // course's lock
+    int[] studentsOf(int course) {
+        RankTree ranking = courseRanks.get(course);
+        if (ranking == null) {
+            return new int[0];
+        }
+        int[] ranked = new int[ranking.size()];
+        int[] count = {0};
+        ranking.forEach(key -> ranked[count[0]++] = (int) key);
+        return ranked;
+    }
+
+    // Students ranked in the course; the caller holds the course's lock
+    int cohort(int course) {
+        RankTree ranking = courseRanks.get(course);
+        return ranking == null ? 0 : ranking.size();
+    }
+
+    // Letter for a score scaled by SCALE
+    static String letter(long score) {
+        return LETTERS[letterIndex(score)];
+    }
+
+    private static int letterIndex(long score) {
+        int letter = 0;
+        while (score < (long) LETTER_FLOORS[letter] * SCALE) {
+            letter++;
+        }
+        return letter;
+    }
+
+    private static int gradePoints(long score) {
+        return GRADE_POINTS[letterIndex(score)];
+    }
+
+    // The weighted average of the marked assessments as a percentage scaled by SCALE, or 0 if none
+    // are marked. Always summed in assessment order, so the same marks give the same score.
+    static long score(Assessment[] list, int[] points) {
+        double weighted = 0;
+        long weights = 0;
+        for (int i = 0; i < points.length && i < list.length; i++) {
+            if (points[i] != UNMARKED) {
+                weighted += (double) list[i].getWeight() * points[i] / list[i].getMaxPoints();
+                weights += list[i].getWeight();
+            }
+        }
+        return weights == 0 ? 0 : Math.round(weighted * 100 * SCALE / weights);
+    }
+
+    private static long key(long score, int student) {
+        return score << 32 | student;
+    }
+
+    private static Standing standing(RankTree ranking, long score) {
+        int cohort = ranking.size();
+        int above = cohort - ranking.countBelow(key(score + 1, 0));
+        return new Standing(score, above + 1, cohort);
+    }
+
+    private List<Ranked> ranking(RankTree ranking, int from, int limit) {
+        int cohort = ranking.size();
+        List<Ranked> ranked = new ArrayList<>(Math.max(0, Math.min(limit, cohort - from)));
+        for (int i = from; i < cohort && ranked.size() < limit; i++) {
+            long key = ranking.select(cohort - 1 - i);
+            Student student = students.atOrdinal((int) key);
+            if (student != null) {
+                ranked.add(new Ranked(student, standing(ranking, key >>> 32)));
+            }
+        }
+        return ranked;
+    }
+
+    // Moves the student's GPA from `from` in their current year group to their current GPA in
+    // yearGroup; the caller holds the record's monitor
+    private void moveYear(Record record, int student, long from, int yearGroup) {
+        long to = record.gpa();
+        if (from == to && yearGroup == record.yearGroup) {
+            return;
+        }
+        if (from != NO_SCORE && record.yearGroup != SymbolTable.NULL) {
+            RankTree ranking = yearRanks.get(record.yearGroup);
+            synchronized (ranking) {
+                ranking.remove(key(from, student));
+            }
+        }
+        record.yearGroup = yearGroup;
+        if (to != NO_SCORE && yearGroup != SymbolTable.NULL) {
+            RankTree ranking = yearTree(yearGroup);
+            synchronized (ranking) {
+                ranking.add(key(to, student));
+            }
+        }
+    }
+
+    private RankTree yearTree(int yearGroup) {
+        RankTree ranking = yearRanks.get(yearGroup);
+        if (ranking == null) {
+            synchronized (yearRanks) {
+                ranking = yearRanks.get(yearGroup);
+                if (ranking == null) {
+                    ranking = new RankTree();
+                    yearRanks.set(yearGroup, ranking);
+                }
+            }
+        }
+        return ranking;
+    }
+
+    // Takes a removed student off every ranking. Runs under the student's write lock and takes each
+    // course's, the order marking takes them in.
+    private void leave(int student) {
+        Record record = records.get(student);
+        if (record == null) {
+            return;
+        }
+        for (int course : coursesOf(student)) {
+            Course found = courses.atOrdinal(course);
+            if (found != null) {
+                courses.write(found.getCode(), () -> withdraw(student, course));
+            }
+        }
+        synchronized (record) {
+            moveYear(record, student, record.gpa(), SymbolTable.NULL);
+        }
+        records.set(student, null);
+    }
+
+    // Drops a removed course and takes its marks out of its students' GPAs. Runs under the course's
+    // write lock, so its ranking cannot change meanwhile.
+    private void drop(int course) {
+        int[] ranked = studentsOf(course);
+        courseRanks.set(course, null);
+        assessments.set(course, null);
+        for (int student : ranked) {
+            withdraw(student, course);
+        }
+    }
+
+    // Throws IllegalStateException unless every score and GPA agrees with the marks it comes from and
+    // every ranking holds exactly the students it should. Only meaningful while no writers are running.
+    void verify() {
+        Map<Integer, Integer> courseCounts = new HashMap<>();
+        Map<Integer, Integer> yearCounts = new HashMap<>();
+        for (Student student : students) {
+            int ordinal = students.ordinalOf(student.getId());
+            Record record = records.get(ordinal);
+            if (record == null) {
+                continue;
+            }
+            int gradePoints = 0;
+            for (int i = 0; i < record.count; i++) {
+                int course = record.courses[i];
+                Marks marks = record.marks[i];
+                long score = score(assessments(course), marks.points);
+                RankTree ranking = courseRanks.get(course);
+                if (marks.score != score || ranking == null || !ranking.contains(key(score, ordinal))) {
+                    throw new IllegalStateException("Student " + student.getId() + " is not ranked in course "
+                            + course + " at their score of " + score);
+                }
+                courseCounts.merge(course, 1, Integer::sum);
+                gradePoints += gradePoints(score);
+            }
+            if (record.gradePoints != gradePoints || record.graded != record.count) {
+                throw new IllegalStateException("Student " + student.getId() + " has " + record.gradePoints
+                        + " grade points over " + record.graded + " courses but their marks give " + gradePoints
+                        + " over " + record.count);
+            }
+            if (record.yearGroup != student.getGradeCode()) {
+                throw new IllegalStateException("Student " + student.getId() + " is ranked in the wrong year group");
+            }
+            if (record.gpa() != NO_SCORE && record.yearGroup != SymbolTable.NULL) {
+                RankTree ranking = yearRanks.get(record.yearGroup);
+                if (ranking == null || !ranking.contains(key(record.gpa(), ordinal))) {
+                    throw new IllegalStateException("Student " + student.getId() + " is not ranked in their year group");
+                }
+                yearCounts.merge(record.yearGroup, 1, Integer::sum);
+            }
+        }
+        for (Course course : courses) {
+            int ordinal = courses.ordinalOf(course.getCode());
+            verifySize("course " + course.getCode(), courseRanks.get(ordinal), courseCounts.getOrDefault(ordinal, 0));
+        }
+        for (int yearGroup = 0; yearGroup < SymbolTable.GRADES.size(); yearGroup++) {
+            verifySize("year group " + SymbolTable.GRADES.decode(yearGroup), yearRanks.get(yearGroup),
+                    yearCounts.getOrDefault(yearGroup, 0));
+        }
+    }
+
+    private static void verifySize(String label, RankTree ranking, int expected) {
+        if (ranking == null) {
+            if (expected != 0) {
+                throw new IllegalStateException("The ranking of " + label + " is missing");
+            }
+            return;
+        }
+        ranking.verify();
+        if (ranking.size() != expected) {
+            throw new IllegalStateException("The ranking of " + label + " holds " + ranking.size()
+                    + " students but " + expected + " have marks");
+        }
+    }
+
+    // Assessment class for one piece of assessed work in a course: its share of the course score
+    // relative to the other assessments' weights, and the points it is marked out of, in hundredths
+    static class Assessment {
+        private final String name;
+        private final int weight;
+        private final int maxPoints;
+
+        Assessment(String name, int weight, int maxPoints) {
+            this.name = name;
+            this.weight = weight;
+            this.maxPoints = maxPoints;
+        }
+
+        public String getName() { return name; }
+
+        public int getWeight() { return weight; }
+
+        public int getMaxPoints() { return maxPoints; }
+    }
+
+    // Standing class with a score or GPA scaled by SCALE, its rank (1 for the top, equal scores
+    // sharing a rank) and the size of the cohort it is ranked in
+    static class Standing {
+        private final long score;
+        private final int rank;
+        private final int cohort;
+
+        Standing(long score, int rank, int cohort) {
+            this.score = score;
+            this.rank = rank;
+            this.cohort = cohort;
+        }
+
+        public long getScore() { return score; }
+
+        public int getRank() { return rank; }
+
+        public int getCohort() { return cohort; }
+
+        // Share of the cohort ranked at or below this score, as a percentage
+        public double getPercentile() { return 100.0 * (cohort - rank + 1) / cohort; }
+    }
+
+    // Ranked class pairing a student with their standing
+    static class Ranked {
+        private final Student student;
+        private final Standing standing;
+
+        Ranked(Student student, Standing standing) {
+            this.student = student;
+            this.standing = standing;
+        }
+
+        public Student getStudent() { return student; }
+
+        public Standing getStanding() { return standing; }
+    }
+
+    // Record class with one student's marks, kept in parallel arrays sorted by course ordinal, and
+    // the grade points that make up their GPA
+    private static class Record {
+        int yearGroup;
+        int[] courses = new int[2];
+        Marks[] marks = new Marks[2];
+        int count;
+        // Sum over the courses with marks, in tenths of a point
+        int gradePoints;
+        int graded;
+
+        Record(int yearGroup) {
+            this.yearGroup = yearGroup;
+        }
+
+        long gpa() {
+            return graded == 0 ? NO_SCORE : Math.round((double) gradePoints * SCALE / (10 * graded));
+        }
+
+        Marks find(int course) {
+            int index = Arrays.binarySearch(courses, 0, count, course);
+            return index < 0 ? null : marks[index];
+        }
+
+        // The marks for the course, added unmarked if there are none, with room for every assessment
+        Marks marks(int course, int assessments) {
+            int index = Arrays.binarySearch(courses, 0, count, course);
+            if (index < 0) {
+                index = -index - 1;
+                if (count == courses.length) {
+                    courses = Arrays.copyOf(courses, count * 2);
+                    marks = Arrays.copyOf(marks, count * 2);
+                }
+                System.arraycopy(courses, index, courses, index + 1, count - index);
+                System.arraycopy(marks, index, marks, index + 1, count - index);
+                courses[index] = course;
+                marks[index] = new Marks(assessments);
+                count++;
+            }
+            Marks found = marks[index];
+            if (found.points.length < assessments) {
+                int marked = found.points.length;
+                found.points = Arrays.copyOf(found.points, assessments);
+                Arrays.fill(found.points, marked, assessments, UNMARKED);
+            }
+            return found;
+        }
+
+        Marks remove(int course) {
+            int index = Arrays.binarySearch(courses, 0, count, course);
+            if (index < 0) {
+                return null;
+            }
+            Marks removed = marks[index];
+            System.arraycopy(courses, index + 1, courses, index, count - index - 1);
+            System.arraycopy(marks, index + 1, marks, index, count - index - 1);
+            marks[--count] = null;
+            return removed;
+        }
+    }
+
+    // Marks class with one student's points in one course by assessment, and the score they make
+    private static class Marks {
+        int[] points;
+        long score = NO_SCORE;
+
+        Marks(int assessments) {
+            points = new int[assessments];
+            Arrays.fill(points, UNMARKED);
+        }
+    }
+}
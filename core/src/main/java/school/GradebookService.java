@@ -0,0 +1,316 @@
+package school;
+
+import java.util.*;
+
+// GradebookService class with the assessment, marking and ranking operations.
+//
+// Marking holds the student and then the course exclusively, as enrolling does, and is journaled
+// under both locks, so the log sees one student's marks in one course in the order they were given.
+// A mark replaces any earlier one for the same assessment, so replaying it is idempotent. Scores
+// are percentages and GPAs are on a 4-point scale, both given to two decimal places.
+class GradebookService {
+    static final int DEFAULT_RANKING_SIZE = 10;
+
+    private final School school;
+    private final EntityRegistry<Student> students;
+    private final EntityRegistry<Course> courses;
+    private final Enrollments enrollments;
+    private final Gradebook gradebook;
+    private final Metrics.Timer addAssessmentTimer;
+    private final Metrics.Timer recordMarkTimer;
+
+    GradebookService(School school, EntityRegistry<Student> students, EntityRegistry<Course> courses,
+                     Enrollments enrollments, Gradebook gradebook) {
+        this.school = school;
+        this.students = students;
+        this.courses = courses;
+        this.enrollments = enrollments;
+        this.gradebook = gradebook;
+        this.addAssessmentTimer = school.getMetrics().timer("grade.addAssessment");
+        this.recordMarkTimer = school.getMetrics().timer("grade.recordMark");
+    }
+
+    // Adds a piece of assessed work to the course; a course score weighs each marked assessment by
+    // its weight relative to the others the student has been marked on
+    public ServiceResult<Gradebook.Assessment> addAssessment(String courseCode, String name, int weight, double maxPoints) {
+        return school.write(addAssessmentTimer, () -> {
+            if (name == null || name.isBlank()) {
+                return ServiceResult.invalid("Assessment name is required.");
+            }
+            if (weight < 1) {
+                return ServiceResult.invalid("An assessment's weight must be at least 1.");
+            }
+            if (!(maxPoints > 0) || maxPoints * 100 > Integer.MAX_VALUE) {
+                return ServiceResult.invalid("An assessment must be marked out of more than zero points.");
+            }
+            Gradebook.Assessment assessment = new Gradebook.Assessment(name.trim(), weight, (int) Math.round(maxPoints * 100));
+            return courses.write(courseCode, () -> {
+                int course = courses.ordinalOf(courseCode);
+                if (course == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Course not found.");
+                }
+                if (!gradebook.addAssessment(course, assessment)) {
+                    return ServiceResult.duplicate(courseCode + " already has an assessment called " + assessment.getName() + ".");
+                }
+                school.log(journal -> journal.assessmentAdded(courseCode, assessment));
+                return ServiceResult.ok(assessment, "Assessment added successfully!");
+            });
+        });
+    }
+
+    public ServiceResult<List<Gradebook.Assessment>> assessments(String courseCode) {
+        return courses.read(courseCode, () -> {
+            int course = courses.ordinalOf(courseCode);
+            if (course == EntityRegistry.NO_ORDINAL) {
+                return ServiceResult.notFound("Course not found.");
+            }
+            List<Gradebook.Assessment> found = List.of(gradebook.assessments(course));
+            return ServiceResult.ok(found, courseCode + " has " + found.size() + " assessments.");
+        });
+    }
+
+    // Gives an enrolled student a mark for one of the course's assessments, replacing any earlier one
+    public ServiceResult<CourseGrade> recordMark(String studentId, String courseCode, String assessmentName, double points) {
+        return school.write(recordMarkTimer, () -> {
+            if (!(points >= 0)) {
+                return ServiceResult.invalid("A mark cannot be negative.");
+            }
+            return students.write(studentId, () -> courses.write(courseCode, () -> {
+                int student = students.ordinalOf(studentId);
+                if (student == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Student not found.");
+                }
+                int course = courses.ordinalOf(courseCode);
+                if (course == EntityRegistry.NO_ORDINAL) {
+                    return ServiceResult.notFound("Course not found.");
+                }
+                if (!enrollments.isEnrolled(student, course)) {
+                    return ServiceResult.invalid("Student " + studentId + " is not enrolled in " + courseCode + ".");
+                }
+                int index = gradebook.assessmentIndex(course, assessmentName);
+                if (index < 0) {
+                    return ServiceResult.notFound(courseCode + " has no assessment called " + assessmentName + ".");
+                }
+                Gradebook.Assessment assessment = gradebook.assessments(course)[index];
+                long rounded = Math.round(points * 100);
+                if (rounded > assessment.getMaxPoints()) {
+                    return ServiceResult.invalid(assessment.getName() + " is marked out of "
+                            + points(assessment.getMaxPoints()) + ".");
+                }
+                int hundredths = (int) rounded;
+                gradebook.record(student, course, index, hundredths);
+                school.log(journal -> journal.markRecorded(studentId, courseCode, assessment.getName(), hundredths));
+                CourseGrade grade = courseGrade(student, course);
+                return ServiceResult.ok(grade, "Mark recorded successfully! " + studentId + " has " + grade.getScore()
+                        + "% in " + courseCode + ", ranked " + grade.getStanding().getRank() + " of "
+                        + grade.getStanding().getCohort() + ".");
+            }));
+        });
+    }
+
+    // The student's marks, score and rank in one course
+    public ServiceResult<CourseGrade> courseGrade(String studentId, String courseCode) {
+        int student = students.ordinalOf(studentId);
+        if (student == EntityRegistry.NO_ORDINAL) {
+            return ServiceResult.notFound("Student not found.");
+        }
+        return courses.read(courseCode, () -> {
+            int course = courses.ordinalOf(courseCode);
+            if (course == EntityRegistry.NO_ORDINAL) {
+                return ServiceResult.notFound("Course not found.");
+            }
+            CourseGrade grade = courseGrade(student, course);
+            if (grade == null) {
+                return ServiceResult.notFound(studentId + " has no marks in " + courseCode + ".");
+            }
+            return ServiceResult.ok(grade, studentId + " has " + grade.getScore() + "% in " + courseCode
+                    + ", ranked " + grade.getStanding().getRank() + " of " + grade.getStanding().getCohort() + ".");
+        });
+    }
+
+    // Every course the student has marks in, their GPA, and their rank by GPA in their year group
+    public ServiceResult<Transcript> transcript(String studentId) {
+        return students.read(studentId, () -> {
+            Student found = students.get(studentId);
+            int student = students.ordinalOf(studentId);
+            if (found == null || student == EntityRegistry.NO_ORDINAL) {
+                return ServiceResult.notFound("Student not found.");
+            }
+            List<CourseGrade> grades = new ArrayList<>();
+            for (int course : gradebook.coursesOf(student)) {
+                Course marked = courses.atOrdinal(course);
+                CourseGrade grade = marked == null ? null : courses.read(marked.getCode(), () -> courseGrade(student, course));
+                if (grade != null) {
+                    grades.add(grade);
+                }
+            }
+            Transcript transcript = new Transcript(found, grades, gradebook.gpa(student), gradebook.yearStanding(student));
+            if (grades.isEmpty()) {
+                return ServiceResult.ok(transcript, studentId + " has no marks yet.");
+            }
+            String message = studentId + " has a GPA of " + transcript.getGpa() + " over " + grades.size() + " courses";
+            Gradebook.Standing standing = transcript.getYearStanding();
+            return ServiceResult.ok(transcript, standing == null ? message + "."
+                    : message + ", ranked " + standing.getRank() + " of " + standing.getCohort() + " in " + found.getGrade() + ".");
+        });
+    }
+
+    // Up to limit of the course's students by score from the top, after skipping `from` of them
+    public ServiceResult<List<Gradebook.Ranked>> courseRanking(String courseCode, int from, int limit) {
+        if (from < 0 || limit < 1 || limit > Page.MAX_SIZE) {
+            return ServiceResult.invalid("A ranking starts at the top or below and lists 1 to " + Page.MAX_SIZE + " students.");
+        }
+        return courses.read(courseCode, () -> {
+            int course = courses.ordinalOf(courseCode);
+            if (course == EntityRegistry.NO_ORDINAL) {
+                return ServiceResult.notFound("Course not found.");
+            }
+            List<Gradebook.Ranked> ranked = gradebook.courseRanking(course, from, limit);
+            return ServiceResult.ok(ranked, ranked.size() + " of " + gradebook.cohort(course) + " students with marks in "
+                    + courseCode + " listed.");
+        });
+    }
+
+    // Up to limit of the grade's students by GPA from the top, after skipping `from` of them
+    public ServiceResult<List<Gradebook.Ranked>> yearRanking(String grade, int from, int limit) {
+        if (from < 0 || limit < 1 || limit > Page.MAX_SIZE) {
+            return ServiceResult.invalid("A ranking starts at the top or below and lists 1 to " + Page.MAX_SIZE + " students.");
+        }
+        int yearGroup = SymbolTable.GRADES.find(grade);
+        if (yearGroup == SymbolTable.NULL) {
+            return ServiceResult.notFound("No students in grade " + grade + ".");
+        }
+        List<Gradebook.Ranked> ranked = gradebook.yearRanking(yearGroup, from, limit);
+        return ServiceResult.ok(ranked, ranked.size() + " students of " + grade + " listed by GPA.");
+    }
+
+    // The course's assessments and every mark given in it, copied under the course's read lock
+    Marksheet marksheet(String courseCode) {
+        return courses.read(courseCode, () -> {
+            int course = courses.ordinalOf(courseCode);
+            if (course == EntityRegistry.NO_ORDINAL) {
+                return null;
+            }
+            Gradebook.Assessment[] list = gradebook.assessments(course);
+            int[] marked = gradebook.studentsOf(course);
+            List<String> studentIds = new ArrayList<>(marked.length);
+            int[] points = new int[marked.length * list.length];
+            for (int student : marked) {
+                int[] marks = gradebook.marks(student, course);
+                System.arraycopy(marks, 0, points, studentIds.size() * list.length, list.length);
+                studentIds.add(students.atOrdinal(student).getId());
+            }
+            return new Marksheet(List.of(list), studentIds, points);
+        });
+    }
+
+    // The caller holds the course's lock; null if the student has no marks in it
+    private CourseGrade courseGrade(int student, int course) {
+        Gradebook.Standing standing = gradebook.courseStanding(student, course);
+        int[] marks = gradebook.marks(student, course);
+        if (standing == null || marks == null) {
+            return null;
+        }
+        Gradebook.Assessment[] list = gradebook.assessments(course);
+        List<Mark> found = new ArrayList<>(list.length);
+        for (int i = 0; i < list.length; i++) {
+            found.add(new Mark(list[i], marks[i] == Gradebook.UNMARKED ? null : points(marks[i])));
+        }
+        return new CourseGrade(courses.atOrdinal(course), found, standing);
+    }
+
+    // Hundredths of a point as a number of points
+    static String points(int hundredths) {
+        return hundredths % 100 == 0 ? String.valueOf(hundredths / 100)
+                : String.format(Locale.ROOT, "%d.%02d", hundredths / 100, hundredths % 100);
+    }
+
+    // A score or GPA scaled by Gradebook.SCALE, to two decimal places
+    static String scaled(long value) {
+        return String.format(Locale.ROOT, "%.2f", (double) value / Gradebook.SCALE);
+    }
+
+    // Marksheet class with a course's assessments and, for each student with marks, a row of points
+    // in hundredths by assessment, Gradebook.UNMARKED where there is none
+    static class Marksheet {
+        private final List<Gradebook.Assessment> assessments;
+        private final List<String> studentIds;
+        private final int[] points;
+
+        Marksheet(List<Gradebook.Assessment> assessments, List<String> studentIds, int[] points) {
+            this.assessments = assessments;
+            this.studentIds = studentIds;
+            this.points = points;
+        }
+
+        public List<Gradebook.Assessment> getAssessments() { return assessments; }
+
+        public List<String> getStudentIds() { return studentIds; }
+
+        public int[] getPoints() { return points; }
+    }
+
+    // Mark class pairing an assessment with the points given for it, null if not yet marked
+    static class Mark {
+        private final Gradebook.Assessment assessment;
+        private final String points;
+
+        Mark(Gradebook.Assessment assessment, String points) {
+            this.assessment = assessment;
+            this.points = points;
+        }
+
+        public Gradebook.Assessment getAssessment() { return assessment; }
+
+        public String getPoints() { return points; }
+    }
+
+    // CourseGrade class with a student's marks in one course, their score and where it ranks them
+    static class CourseGrade {
+        private final Course course;
+        private final List<Mark> marks;
+        private final Gradebook.Standing standing;
+
+        CourseGrade(Course course, List<Mark> marks, Gradebook.Standing standing) {
+            this.course = course;
+            this.marks = marks;
+            this.standing = standing;
+        }
+
+        public Course getCourse() { return course; }
+
+        public List<Mark> getMarks() { return marks; }
+
+        public Gradebook.Standing getStanding() { return standing; }
+
+        // Percentage, e.g. 87.50
+        public String getScore() { return scaled(standing.getScore()); }
+
+        public String getLetter() { return Gradebook.letter(standing.getScore()); }
+    }
+
+    // Transcript class with a student's course grades, GPA and rank in their year group
+    static class Transcript {
+        private final Student student;
+        private final List<CourseGrade> courses;
+        private final long gpa;
+        private final Gradebook.Standing yearStanding;
+
+        Transcript(Student student, List<CourseGrade> courses, long gpa, Gradebook.Standing yearStanding) {
+            this.student = student;
+            this.courses = courses;
+            this.gpa = gpa;
+            this.yearStanding = yearStanding;
+        }
+
+        public Student getStudent() { return student; }
+
+        public List<CourseGrade> getCourses() { return courses; }
+
+        // e.g. 3.67, or null with no marks
+        public String getGpa() { return gpa == Gradebook.NO_SCORE ? null : scaled(gpa); }
+
+        // null with no marks or no grade
+        public Gradebook.Standing getYearStanding() { return yearStanding; }
+    }
+}
@@ -0,0 +1,276 @@
+package school;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Metrics class with a school's operation timers, collection sizes and estimated heap per store.
+//
+// Each timed operation counts its calls and failures and keeps its latencies in a log-linear
+// histogram, as HdrHistogram does: 16 buckets per power of two, so a percentile is within 6.25%
+// of the true value, over a fixed array of counters with nothing allocated per call. Timing costs
+// two clock reads and a few uncontended increments; a school's writes mostly run one at a time,
+// and on a SchoolHost always on one shard, so the counters seldom bounce between cores. Sizes and
+// heap estimates are read only when the metrics are. Running with -Dschool.metrics=false turns
+// timing off entirely.
+class Metrics {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("school.metrics", "true"));
+
+    private final String school;
+    // Sorted, so dumps list them in a stable order
+    private final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> sizes = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> heap = new ConcurrentSkipListMap<>();
+
+    Metrics(String school) {
+        this.school = school;
+    }
+
+    public String getSchool() { return school; }
+
+    // The operation's timer, created on first use; callers keep it rather than look it up per call
+    Timer timer(String operation) {
+        return timers.computeIfAbsent(operation, Timer::new);
+    }
+
+    // Reports the number of entries in a collection
+    void size(String collection, LongSupplier size) {
+        sizes.put(collection, size);
+    }
+
+    // Reports an estimate of the heap a store holds
+    void heap(String store, LongSupplier bytes) {
+        heap.put(store, bytes);
+    }
+
+    // A readable table of the operations that have run, the sizes and the heap estimates
+    public String dump() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append(String.format("%-22s %10s %8s %10s %10s %10s %10s %10s %10s%n", "Operation", "Calls", "Failed",
+                "Mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "Max us"));
+        for (Timer timer : timers.values()) {
+            Snapshot snapshot = timer.snapshot();
+            if (snapshot.getCalls() == 0) {
+                continue;
+            }
+            out.append(String.format(Locale.ROOT, "%-22s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    timer.operation, snapshot.getCalls(), snapshot.getFailures(), snapshot.getMeanNanos() / 1e3,
+                    snapshot.percentile(0.5) / 1e3, snapshot.percentile(0.9) / 1e3, snapshot.percentile(0.99) / 1e3,
+                    snapshot.percentile(0.999) / 1e3, snapshot.getMaxNanos() / 1e3));
+        }
+        out.append(String.format("%n%-22s %12s%n", "Collection", "Entries"));
+        sizes.forEach((collection, size) -> out.append(String.format("%-22s %12d%n", collection, size.getAsLong())));
+        out.append(String.format("%n%-22s %12s%n", "Store", "Heap (est.)"));
+        long total = 0;
+        for (Map.Entry<String, LongSupplier> store : heap.entrySet()) {
+            long bytes = store.getValue().getAsLong();
+            total += bytes;
+            out.append(String.format(Locale.ROOT, "%-22s %9.1f MB%n", store.getKey(), bytes / 1e6));
+        }
+        out.append(String.format(Locale.ROOT, "%-22s %9.1f MB%n", "Total", total / 1e6));
+        return out.toString();
+    }
+
+    // The metrics of every school in the Prometheus text format, labelled with the school's name.
+    // Samples of one metric must follow its header together, so each metric walks all the schools.
+    static String prometheus(Iterable<Metrics> schools) {
+        StringBuilder out = new StringBuilder(8192);
+        out.append("# HELP school_operation_duration_seconds Time taken by each school operation.\n")
+                .append("# TYPE school_operation_duration_seconds summary\n");
+        for (Metrics metrics : schools) {
+            for (Timer timer : metrics.timers.values()) {
+                Snapshot snapshot = timer.snapshot();
+                for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+                    metrics.sample(out, "school_operation_duration_seconds", "operation", timer.operation,
+                            "quantile", String.valueOf(quantile)).append(snapshot.percentile(quantile) / 1e9).append('\n');
+                }
+                metrics.sample(out, "school_operation_duration_seconds_sum", "operation", timer.operation, null, null)
+                        .append(snapshot.getTotalNanos() / 1e9).append('\n');
+                metrics.sample(out, "school_operation_duration_seconds_count", "operation", timer.operation, null, null)
+                        .append(snapshot.getCalls()).append('\n');
+            }
+        }
+        out.append("# HELP school_operation_duration_max_seconds Longest run of each school operation.\n")
+                .append("# TYPE school_operation_duration_max_seconds gauge\n");
+        for (Metrics metrics : schools) {
+            for (Timer timer : metrics.timers.values()) {
+                metrics.sample(out, "school_operation_duration_max_seconds", "operation", timer.operation, null, null)
+                        .append(timer.maxNanos.get() / 1e9).append('\n');
+            }
+        }
+        out.append("# HELP school_operation_failures_total Operations that returned an error or threw.\n")
+                .append("# TYPE school_operation_failures_total counter\n");
+        for (Metrics metrics : schools) {
+            for (Timer timer : metrics.timers.values()) {
+                metrics.sample(out, "school_operation_failures_total", "operation", timer.operation, null, null)
+                        .append(timer.failures.sum()).append('\n');
+            }
+        }
+        out.append("# HELP school_collection_entries Entries held by each collection.\n")
+                .append("# TYPE school_collection_entries gauge\n");
+        for (Metrics metrics : schools) {
+            metrics.sizes.forEach((collection, size) -> metrics.sample(out, "school_collection_entries", "collection",
+                    collection, null, null).append(size.getAsLong()).append('\n'));
+        }
+        out.append("# HELP school_heap_bytes Estimated heap held by each store.\n")
+                .append("# TYPE school_heap_bytes gauge\n");
+        for (Metrics metrics : schools) {
+            metrics.heap.forEach((store, bytes) -> metrics.sample(out, "school_heap_bytes", "store", store, null, null)
+                    .append(bytes.getAsLong()).append('\n'));
+        }
+        return out.toString();
+    }
+
+    private StringBuilder sample(StringBuilder out, String name, String label, String value, String extraLabel,
+                                 String extraValue) {
+        out.append(name).append("{school=");
+        quoteLabel(out, school).append(',').append(label).append('=');
+        quoteLabel(out, value);
+        if (extraLabel != null) {
+            out.append(',').append(extraLabel).append('=');
+            quoteLabel(out, extraValue);
+        }
+        return out.append("} ");
+    }
+
+    private static StringBuilder quoteLabel(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+        return out.append('"');
+    }
+
+    // Timer class counting one operation's calls, failures and latencies
+    static final class Timer {
+        // Values below 2^SUB_BITS have a bucket each; above, each power of two has 2^SUB_BITS buckets
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        // Latencies are tracked up to 2^40 ns, about 18 minutes; longer ones count in the last bucket
+        private static final int MAX_EXPONENT = 39;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+
+        private final String operation;
+        // The buckets add up to the number of calls
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private Timer(String operation) {
+            this.operation = operation;
+        }
+
+        public String getOperation() { return operation; }
+
+        // Runs the operation and records how long it took. It failed if it threw, or returned a
+        // ServiceResult that is not OK.
+        <R> R time(Supplier<R> operation) {
+            if (!ENABLED) {
+                return operation.get();
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                R result = operation.get();
+                failed = result instanceof ServiceResult<?> serviceResult && !serviceResult.isOk();
+                return result;
+            } finally {
+                record(System.nanoTime() - start, failed);
+            }
+        }
+
+        void record(long nanos, boolean failed) {
+            long value = Math.max(0, nanos);
+            if (failed) {
+                failures.increment();
+            }
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+            buckets.incrementAndGet(bucketOf(value));
+        }
+
+        // The counts so far; taken while calls are recorded, so it may be a few calls out of step
+        Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long recorded = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                recorded += counts[i];
+            }
+            return new Snapshot(recorded, failures.sum(), totalNanos.sum(), maxNanos.get(), counts);
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent > MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        }
+
+        // Largest value that falls in the bucket
+        static long highestIn(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = (bucket >>> SUB_BITS) - 1;
+            long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+    }
+
+    // Snapshot class with a timer's counts at one moment
+    static final class Snapshot {
+        private final long calls;
+        private final long failures;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] counts;
+
+        Snapshot(long calls, long failures, long totalNanos, long maxNanos, long[] counts) {
+            this.calls = calls;
+            this.failures = failures;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.counts = counts;
+        }
+
+        public long getCalls() { return calls; }
+
+        public long getFailures() { return failures; }
+
+        public long getTotalNanos() { return totalNanos; }
+
+        public long getMaxNanos() { return maxNanos; }
+
+        public double getMeanNanos() { return calls == 0 ? 0 : (double) totalNanos / calls; }
+
+        // The latency that the given share of calls took no longer than, in nanoseconds; 0 if none ran
+        public long percentile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * calls));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(Timer.highestIn(i), maxNanos);
+                }
+            }
+            return calls == 0 ? 0 : maxNanos;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package school;
+
+import java.math.BigDecimal;
+
+// Money class holding an exact amount as a whole number of cents.
+//
+// Amounts are parsed from decimal text rather than through a double, so "0.10" is ten cents and
+// not the nearest binary fraction. Sums of cents are long additions, which give the same total in
+// any order, so a parallel or incremental payroll matches a serial one exactly.
+final class Money implements Comparable<Money> {
+    static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    static Money of(long whole) {
+        return ofCents(Math.multiplyExact(whole, 100));
+    }
+
+    // Throws NumberFormatException unless the text is a decimal with at most two places that fits in cents
+    static Money parse(String text) {
+        try {
+            return ofCents(new BigDecimal(text.trim()).movePointRight(2).longValueExact());
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new NumberFormatException("Invalid amount '" + text + "'; expected a number with at most two decimals.");
+        }
+    }
+
+    // Nearest cent of a binary amount, for values written before salaries were kept in cents
+    static Money fromDouble(double value) {
+        return ofCents(Math.round(value * 100));
+    }
+
+    public long getCents() { return cents; }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    // Share of the amount per part, rounded half away from zero to the cent
+    public Money dividedBy(long parts) {
+        long quotient = cents / parts;
+        long remainder = cents % parts;
+        if (Math.abs(remainder) * 2 >= Math.abs(parts)) {
+            quotient += (cents < 0) == (parts < 0) ? 1 : -1;
+        }
+        return ofCents(quotient);
+    }
+
+    // The amount as a balance a student owes, e.g. "owes $12.00", or "is in credit $10.50" when it
+    // is negative, rather than owing a negative amount
+    public String describeBalance() {
+        return cents < 0 ? "is in credit $" + toString().substring(1) : "owes $" + this;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money && ((Money) other).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    // Plain decimal with two places, e.g. 52000.50, so it reads back through parse and is valid JSON
+    @Override
+    public String toString() {
+        long whole = Math.abs(cents / 100);
+        long fraction = Math.abs(cents % 100);
+        return (cents < 0 ? "-" : "") + whole + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
@@ -0,0 +1,57 @@
+package school;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// OrdinalTable class mapping dense ordinals to values.
+//
+// Values live in fixed-size chunks that are never copied, so reading or setting a slot never
+// locks; only the first write into a new chunk does. Slots are read and written with volatile
+// semantics, so a value set on one thread is fully visible to any thread that reads it.
+final class OrdinalTable<V> {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicReferenceArray<V>[] chunks = newChunks(0);
+
+    // Value at the ordinal, or null if none was set
+    V get(int ordinal) {
+        AtomicReferenceArray<V>[] current = chunks;
+        int chunk = ordinal >>> CHUNK_BITS;
+        return chunk < current.length ? current[chunk].get(ordinal & CHUNK_MASK) : null;
+    }
+
+    void set(int ordinal, V value) {
+        chunk(ordinal).set(ordinal & CHUNK_MASK, value);
+    }
+
+    private AtomicReferenceArray<V> chunk(int ordinal) {
+        if (ordinal < 0) {
+            throw new IndexOutOfBoundsException("Negative ordinal " + ordinal);
+        }
+        int chunk = ordinal >>> CHUNK_BITS;
+        AtomicReferenceArray<V>[] current = chunks;
+        if (chunk < current.length) {
+            return current[chunk];
+        }
+        synchronized (this) {
+            current = chunks;
+            if (chunk >= current.length) {
+                AtomicReferenceArray<V>[] grown = Arrays.copyOf(current, Math.max(chunk + 1, current.length * 2));
+                for (int i = current.length; i < grown.length; i++) {
+                    grown[i] = new AtomicReferenceArray<>(CHUNK_SIZE);
+                }
+                chunks = grown;
+                current = grown;
+            }
+            return current[chunk];
+        }
+    }
+
+    // Arrays of a generic type cannot be created directly; the array only ever holds chunks of V
+    @SuppressWarnings("unchecked")
+    private static <V> AtomicReferenceArray<V>[] newChunks(int length) {
+        return (AtomicReferenceArray<V>[]) new AtomicReferenceArray<?>[length];
+    }
+}
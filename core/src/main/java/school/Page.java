@@ -0,0 +1,76 @@
+package school;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+// Page class holding one page of a listing and the cursor that continues after it.
+//
+// A cursor records the sort position of the page's last item rather than an offset, so the next
+// page starts right after it even if entities were added or removed in between.
+class Page<T> {
+    static final int MAX_SIZE = 1_000;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+
+    // Null on the last page
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasNext() { return nextCursor != null; }
+
+    public int size() { return items.size(); }
+
+    static void checkSize(int limit) {
+        if (limit < 1 || limit > MAX_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_SIZE + ".");
+        }
+    }
+
+    // Cursors are opaque to callers: the parts of a sort position, each as its UTF-8 length and
+    // bytes so a part may hold any character, URL-safe encoded
+    static String encodeCursor(String... parts) {
+        byte[][] encoded = new byte[parts.length][];
+        int length = 0;
+        for (int i = 0; i < parts.length; i++) {
+            encoded[i] = parts[i].getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + encoded[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] part : encoded) {
+            buffer.putInt(part.length).put(part);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    // Throws IllegalArgumentException unless the cursor holds exactly the expected number of parts
+    static String[] decodeCursor(String cursor, int parts) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            String[] decoded = new String[parts];
+            for (int i = 0; i < parts; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IllegalArgumentException();
+                }
+                decoded[i] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+            if (!buffer.hasRemaining()) {
+                return decoded;
+            }
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            // Not Base64, or parts missing or cut short; reported below
+        }
+        throw new IllegalArgumentException("Invalid page cursor.");
+    }
+}
@@ -0,0 +1,225 @@
+package school;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// RankTree class holding a set of distinct longs as an order-statistic tree.
+//
+// The tree is a treap: nodes are ordered by key and heap-ordered by a random priority, which keeps
+// its expected depth logarithmic whatever order keys arrive in. Every node also counts the nodes
+// below it, so how many keys are less than a given one, and which key has a given position, are
+// found on one walk from the root. Nodes are slots in parallel primitive arrays rather than
+// objects, slot 0 standing for the empty tree, and freed slots are reused, so a million keys take
+// about 24 MB. Not thread-safe: each tree is guarded by whoever owns it.
+final class RankTree {
+    private static final int NIL = 0;
+
+    private long[] keys = new long[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] counts = new int[16];
+    private int[] priorities = new int[16];
+    private int root = NIL;
+    // Next never-used slot, and the head of the freed slots chained through left
+    private int next = 1;
+    private int free = NIL;
+    private int seed = 0x9E3779B9;
+    // Results of split: the tree of keys below the split key, and the tree of the rest
+    private int below;
+    private int rest;
+
+    int size() {
+        return counts[root];
+    }
+
+    boolean contains(long key) {
+        int node = root;
+        while (node != NIL) {
+            if (key == keys[node]) {
+                return true;
+            }
+            node = key < keys[node] ? left[node] : right[node];
+        }
+        return false;
+    }
+
+    // Adds the key; returns false if it was already there
+    boolean add(long key) {
+        if (contains(key)) {
+            return false;
+        }
+        int node = allocate(key);
+        split(root, key);
+        root = merge(merge(below, node), rest);
+        return true;
+    }
+
+    // Removes the key; returns false if it was not there
+    boolean remove(long key) {
+        if (!contains(key)) {
+            return false;
+        }
+        int parent = NIL;
+        int node = root;
+        while (keys[node] != key) {
+            counts[node]--;
+            parent = node;
+            node = key < keys[node] ? left[node] : right[node];
+        }
+        int joined = merge(left[node], right[node]);
+        if (parent == NIL) {
+            root = joined;
+        } else if (left[parent] == node) {
+            left[parent] = joined;
+        } else {
+            right[parent] = joined;
+        }
+        left[node] = free;
+        free = node;
+        return true;
+    }
+
+    // Number of keys less than the given one, which need not be in the tree
+    int countBelow(long key) {
+        int count = 0;
+        int node = root;
+        while (node != NIL) {
+            if (keys[node] < key) {
+                count += counts[left[node]] + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    // The key with this many keys below it
+    long select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for " + size() + " keys");
+        }
+        int node = root;
+        while (true) {
+            int smaller = counts[left[node]];
+            if (index < smaller) {
+                node = left[node];
+            } else if (index == smaller) {
+                return keys[node];
+            } else {
+                index -= smaller + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    // Passes every key to the action in ascending order
+    void forEach(LongConsumer action) {
+        int[] path = new int[64];
+        int depth = 0;
+        int node = root;
+        while (node != NIL || depth > 0) {
+            while (node != NIL) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth++] = node;
+                node = left[node];
+            }
+            node = path[--depth];
+            action.accept(keys[node]);
+            node = right[node];
+        }
+    }
+
+    // Throws unless keys are in order, priorities heap-ordered and every count right
+    void verify() {
+        if (counts[NIL] != 0) {
+            throw new IllegalStateException("Rank tree's empty slot counts " + counts[NIL] + " keys");
+        }
+        check(root, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    private int check(int node, long low, long high, int maxPriority) {
+        if (node == NIL) {
+            return 0;
+        }
+        if (keys[node] < low || keys[node] > high || priorities[node] > maxPriority) {
+            throw new IllegalStateException("Rank tree node " + node + " with key " + keys[node] + " is out of place");
+        }
+        int count = check(left[node], low, keys[node] - 1, priorities[node])
+                + check(right[node], keys[node] + 1, high, priorities[node]) + 1;
+        if (counts[node] != count) {
+            throw new IllegalStateException("Rank tree node " + node + " counts " + counts[node] + " keys but holds " + count);
+        }
+        return count;
+    }
+
+    // Splits the tree into the keys below key, left in below, and the rest, left in rest
+    private void split(int node, long key) {
+        if (node == NIL) {
+            below = NIL;
+            rest = NIL;
+        } else if (keys[node] < key) {
+            split(right[node], key);
+            right[node] = below;
+            recount(node);
+            below = node;
+        } else {
+            split(left[node], key);
+            left[node] = rest;
+            recount(node);
+            rest = node;
+        }
+    }
+
+    // Joins two trees, every key of the first being less than every key of the second
+    private int merge(int first, int second) {
+        if (first == NIL) {
+            return second;
+        }
+        if (second == NIL) {
+            return first;
+        }
+        if (priorities[first] > priorities[second]) {
+            right[first] = merge(right[first], second);
+            recount(first);
+            return first;
+        }
+        left[second] = merge(first, left[second]);
+        recount(second);
+        return second;
+    }
+
+    private void recount(int node) {
+        counts[node] = counts[left[node]] + counts[right[node]] + 1;
+    }
+
+    private int allocate(long key) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+        } else {
+            if (next == keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                priorities = Arrays.copyOf(priorities, capacity);
+            }
+            node = next++;
+        }
+        // Xorshift is random enough to balance the tree and needs no allocation
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        keys[node] = key;
+        left[node] = NIL;
+        right[node] = NIL;
+        counts[node] = 1;
+        priorities[node] = seed;
+        return node;
+    }
+}
@@ -0,0 +1,323 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collector;
+
+// ReportEngine class that computes the school analytics as parallel reductions.
+//
+// The attendance table is split into row ranges on a fork-join pool. Each range is counted into
+// plain arrays indexed by student, course and week, and the partial counts are added together as
+// the tasks join. Grades come from the per-student counts afterwards, so the rows never touch a
+// Student object. Everything is read from one point-in-time view, so the payroll and attendance
+// agree while writers carry on, and the scan leaves out the rows of students and courses removed
+// before the view opened. Salaries are summed in whole cents, so the payroll is the same however
+// the teachers are split between workers. Departments and grades are grouped by their SymbolTable
+// codes and only named once the totals are in.
+class ReportEngine {
+    // Chronic absence is missing at least this share of sessions, after a minimum number of sessions
+    static final double CHRONIC_ABSENCE_RATE = 0.10;
+    static final int CHRONIC_MIN_SESSIONS = 10;
+
+    private final SchoolView view;
+    private final ForkJoinPool pool;
+
+    ReportEngine(SchoolView view, ForkJoinPool pool) {
+        this.view = view;
+        this.pool = pool;
+    }
+
+    public Analytics run() {
+        // Streams started from inside the pool run their parallel parts on it
+        Payrolls byDepartment = pool.submit(() -> view.teachers().parallel()
+                .collect(Collector.of(Payrolls::new, Payrolls::add, Payrolls::combine))).join();
+        Map<String, Payroll> salaries = new TreeMap<>();
+        for (int i = 0; i < byDepartment.payrolls.length; i++) {
+            if (byDepartment.payrolls[i] != null) {
+                // Slot 0 holds teachers without a department, listed under ""
+                String department = Objects.toString(SymbolTable.DEPARTMENTS.decode(i - 1), "");
+                salaries.merge(department, byDepartment.payrolls[i], Payroll::combine);
+            }
+        }
+
+        int rows = view.attendanceRows();
+        int[] days = view.attendanceDayRange();
+        if (rows == 0 || days == null) {
+            return new Analytics(salaries, new TreeMap<>(), new TreeMap<>(), new TreeMap<>(), List.of());
+        }
+        Scope scope = new Scope(view, weekStart(days[0]), weekStart(days[1]));
+        int leafRows = Math.max(4_096, rows / (pool.getParallelism() * 8));
+        Counts counts = pool.invoke(new CountTask(scope, 0, rows, leafRows));
+
+        Map<String, Presence> byCourse = new TreeMap<>();
+        for (int i = 0; i < scope.courses; i++) {
+            if (counts.courses[i * 2] + counts.courses[i * 2 + 1] > 0) {
+                byCourse.put(view.attendanceCourse(i).getCode(), new Presence(counts.courses[i * 2], counts.courses[i * 2 + 1]));
+            }
+        }
+        Map<LocalDate, Presence> byWeek = new TreeMap<>();
+        for (int i = 0; i < scope.weeks; i++) {
+            if (counts.weeks[i * 2] + counts.weeks[i * 2 + 1] > 0) {
+                byWeek.put(LocalDate.ofEpochDay(scope.firstWeek + 7L * i), new Presence(counts.weeks[i * 2], counts.weeks[i * 2 + 1]));
+            }
+        }
+        // Present/absent pairs by grade code, shifted by one so students without a grade use slot 0
+        long[] gradeCounts = new long[(SymbolTable.GRADES.size() + 1) * 2];
+        List<Absentee> chronic = new ArrayList<>();
+        for (int i = 0; i < scope.students; i++) {
+            long present = counts.students[i * 2];
+            long absent = counts.students[i * 2 + 1];
+            if (present + absent == 0) {
+                continue;
+            }
+            Student student = view.attendanceStudent(i);
+            int slot = (student.getGradeCode() + 1) * 2;
+            if (slot >= gradeCounts.length) {
+                // A grade first seen while the report was running
+                gradeCounts = Arrays.copyOf(gradeCounts, Math.max(gradeCounts.length * 2, slot + 2));
+            }
+            gradeCounts[slot] += present;
+            gradeCounts[slot + 1] += absent;
+            if (present + absent >= CHRONIC_MIN_SESSIONS && absent >= CHRONIC_ABSENCE_RATE * (present + absent)) {
+                chronic.add(new Absentee(student, new Presence(present, absent)));
+            }
+        }
+        Map<String, Presence> byGrade = new TreeMap<>();
+        for (int i = 0; i < gradeCounts.length; i += 2) {
+            if (gradeCounts[i] + gradeCounts[i + 1] > 0) {
+                byGrade.put(String.valueOf(SymbolTable.GRADES.decode(i / 2 - 1)), new Presence(gradeCounts[i], gradeCounts[i + 1]));
+            }
+        }
+        chronic.sort(Comparator.comparingDouble((Absentee absentee) -> absentee.getAttendance().getAbsenceRate()).reversed()
+                .thenComparing(absentee -> absentee.getStudent().getId()));
+        return new Analytics(salaries, byGrade, byCourse, byWeek, chronic);
+    }
+
+    // Monday of the ISO week holding the day; day 0, 1970-01-01, was a Thursday
+    static int weekStart(int epochDay) {
+        return epochDay - Math.floorMod(epochDay + 3, 7);
+    }
+
+    // Scope class fixing the dimensions every partial count is sized to
+    private static class Scope {
+        final SchoolView view;
+        final int students;
+        final int courses;
+        final int firstWeek;
+        final int weeks;
+
+        Scope(SchoolView view, int firstWeek, int lastWeek) {
+            this.view = view;
+            this.students = view.attendanceStudentCount();
+            this.courses = view.attendanceCourseCount();
+            this.firstWeek = firstWeek;
+            this.weeks = (lastWeek - firstWeek) / 7 + 1;
+        }
+    }
+
+    // CountTask class counting a range of rows, splitting it in half while it is above leafRows
+    private static class CountTask extends RecursiveTask<Counts> {
+        private static final long serialVersionUID = 1L;
+
+        private final Scope scope;
+        private final int from;
+        private final int to;
+        private final int leafRows;
+
+        CountTask(Scope scope, int from, int to, int leafRows) {
+            this.scope = scope;
+            this.from = from;
+            this.to = to;
+            this.leafRows = leafRows;
+        }
+
+        @Override
+        protected Counts compute() {
+            if (to - from <= leafRows) {
+                Counts counts = new Counts(scope);
+                scope.view.scanAttendance(from, to, counts);
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(scope, from, middle, leafRows);
+            left.fork();
+            Counts right = new CountTask(scope, middle, to, leafRows).compute();
+            return left.join().add(right);
+        }
+    }
+
+    // Counts class with present/absent pairs per student, course and week; slot 2 * i holds
+    // presents and 2 * i + 1 absents
+    private static class Counts implements AttendanceStore.RowVisitor {
+        private final Scope scope;
+        final int[] students;
+        final int[] courses;
+        final int[] weeks;
+
+        Counts(Scope scope) {
+            this.scope = scope;
+            this.students = new int[scope.students * 2];
+            this.courses = new int[scope.courses * 2];
+            this.weeks = new int[scope.weeks * 2];
+        }
+
+        @Override
+        public void visit(int student, int course, int epochDay, boolean isPresent) {
+            int slot = isPresent ? 0 : 1;
+            students[student * 2 + slot]++;
+            courses[course * 2 + slot]++;
+            weeks[(weekStart(epochDay) - scope.firstWeek) / 7 * 2 + slot]++;
+        }
+
+        Counts add(Counts other) {
+            addInto(students, other.students);
+            addInto(courses, other.courses);
+            addInto(weeks, other.weeks);
+            return this;
+        }
+
+        private static void addInto(int[] target, int[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+    }
+
+    // Payroll class with a department's headcount and salaries in cents. Partial payrolls combine
+    // exactly, so the split between workers never changes the result.
+    static class Payroll {
+        private long teachers;
+        private long totalCents;
+        private long minCents = Long.MAX_VALUE;
+        private long maxCents = Long.MIN_VALUE;
+
+        void add(Teacher teacher) {
+            long cents = teacher.getSalaryCents();
+            teachers++;
+            totalCents = Math.addExact(totalCents, cents);
+            minCents = Math.min(minCents, cents);
+            maxCents = Math.max(maxCents, cents);
+        }
+
+        Payroll combine(Payroll other) {
+            teachers += other.teachers;
+            totalCents = Math.addExact(totalCents, other.totalCents);
+            minCents = Math.min(minCents, other.minCents);
+            maxCents = Math.max(maxCents, other.maxCents);
+            return this;
+        }
+
+        public long getTeachers() { return teachers; }
+
+        public Money getTotal() { return Money.ofCents(totalCents); }
+
+        // Rounded to the cent
+        public Money getAverage() { return teachers == 0 ? Money.ZERO : getTotal().dividedBy(teachers); }
+
+        public Money getMin() { return teachers == 0 ? Money.ZERO : Money.ofCents(minCents); }
+
+        public Money getMax() { return teachers == 0 ? Money.ZERO : Money.ofCents(maxCents); }
+    }
+
+    // Payrolls class holding a Payroll per department code, with slot 0 for no department
+    private static class Payrolls {
+        Payroll[] payrolls = new Payroll[SymbolTable.DEPARTMENTS.size() + 1];
+
+        void add(Teacher teacher) {
+            slot(teacher.getDepartmentCode() + 1).add(teacher);
+        }
+
+        Payrolls combine(Payrolls other) {
+            for (int i = 0; i < other.payrolls.length; i++) {
+                if (other.payrolls[i] != null) {
+                    slot(i).combine(other.payrolls[i]);
+                }
+            }
+            return this;
+        }
+
+        private Payroll slot(int index) {
+            if (index >= payrolls.length) {
+                payrolls = Arrays.copyOf(payrolls, Math.max(payrolls.length * 2, index + 1));
+            }
+            if (payrolls[index] == null) {
+                payrolls[index] = new Payroll();
+            }
+            return payrolls[index];
+        }
+    }
+
+    // Presence class holding one present/absent pair
+    static class Presence {
+        private final long present;
+        private final long absent;
+
+        Presence(long present, long absent) {
+            this.present = present;
+            this.absent = absent;
+        }
+
+        public long getPresent() { return present; }
+
+        public long getAbsent() { return absent; }
+
+        public long getTotal() { return present + absent; }
+
+        // Percentages, as on the attendance report
+        public double getRate() {
+            return getTotal() == 0 ? 0 : (double) present / getTotal() * 100;
+        }
+
+        public double getAbsenceRate() {
+            return getTotal() == 0 ? 0 : (double) absent / getTotal() * 100;
+        }
+    }
+
+    // Absentee class pairing a chronically absent student with their attendance
+    static class Absentee {
+        private final Student student;
+        private final Presence attendance;
+
+        Absentee(Student student, Presence attendance) {
+            this.student = student;
+            this.attendance = attendance;
+        }
+
+        public Student getStudent() { return student; }
+
+        public Presence getAttendance() { return attendance; }
+    }
+
+    // Analytics class holding one run's results; maps are sorted by key
+    static class Analytics {
+        private final Map<String, Payroll> salaryByDepartment;
+        private final Map<String, Presence> attendanceByGrade;
+        private final Map<String, Presence> attendanceByCourse;
+        private final Map<LocalDate, Presence> attendanceByWeek;
+        private final List<Absentee> chronicAbsentees;
+
+        Analytics(Map<String, Payroll> salaryByDepartment, Map<String, Presence> attendanceByGrade,
+                  Map<String, Presence> attendanceByCourse, Map<LocalDate, Presence> attendanceByWeek,
+                  List<Absentee> chronicAbsentees) {
+            this.salaryByDepartment = salaryByDepartment;
+            this.attendanceByGrade = attendanceByGrade;
+            this.attendanceByCourse = attendanceByCourse;
+            this.attendanceByWeek = attendanceByWeek;
+            this.chronicAbsentees = chronicAbsentees;
+        }
+
+        public Map<String, Payroll> getSalaryByDepartment() { return salaryByDepartment; }
+
+        public Map<String, Presence> getAttendanceByGrade() { return attendanceByGrade; }
+
+        public Map<String, Presence> getAttendanceByCourse() { return attendanceByCourse; }
+
+        // Keyed by the Monday that starts each week
+        public Map<LocalDate, Presence> getAttendanceByWeek() { return attendanceByWeek; }
+
+        // Worst absence rate first
+        public List<Absentee> getChronicAbsentees() { return chronicAbsentees; }
+    }
+}
@@ -0,0 +1,256 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
+
+// ReportService class that builds the school reports as data. Each report but the aged debt reads
+// one point-in-time view of the school, so its entries and totals agree however busy the writers are.
+class ReportService {
+    private final School school;
+    private final EntityRegistry<Student> students;
+    private final FeeLedger feeLedger;
+    private final Metrics.Timer studentsTimer;
+    private final Metrics.Timer teachersTimer;
+    private final Metrics.Timer coursesTimer;
+    private final Metrics.Timer attendanceTimer;
+    private final Metrics.Timer analyticsTimer;
+    private final Metrics.Timer agedDebtTimer;
+
+    ReportService(School school, EntityRegistry<Student> students, FeeLedger feeLedger) {
+        this.school = school;
+        this.students = students;
+        this.feeLedger = feeLedger;
+        this.studentsTimer = school.getMetrics().timer("report.students");
+        this.teachersTimer = school.getMetrics().timer("report.teachers");
+        this.coursesTimer = school.getMetrics().timer("report.courses");
+        this.attendanceTimer = school.getMetrics().timer("report.attendance");
+        this.analyticsTimer = school.getMetrics().timer("report.analytics");
+        this.agedDebtTimer = school.getMetrics().timer("report.agedDebt");
+    }
+
+    public RosterReport<Student> studentReport() {
+        return studentsTimer.time(() -> {
+            try (SchoolView view = school.openView()) {
+                List<Student> entries = view.students().toList();
+                return new RosterReport<>(entries, entries.size());
+            }
+        });
+    }
+
+    public TeacherReport teacherReport() {
+        return teachersTimer.time(() -> {
+            try (SchoolView view = school.openView()) {
+                List<Teacher> entries = view.teachers().toList();
+                // Whole cents add up to the same total in any order
+                long totalCents = 0;
+                for (Teacher teacher : entries) {
+                    totalCents += teacher.getSalaryCents();
+                }
+                return new TeacherReport(entries, entries.size(), Money.ofCents(totalCents));
+            }
+        });
+    }
+
+    public RosterReport<Course> courseReport() {
+        return coursesTimer.time(() -> {
+            try (SchoolView view = school.openView()) {
+                List<Course> entries = view.courses().toList();
+                return new RosterReport<>(entries, entries.size());
+            }
+        });
+    }
+
+    // Counted from the view's rows rather than the running counts, which go on changing while they
+    // are read, so the total is always the sum of the courses
+    public AttendanceReport attendanceReport() {
+        return attendanceTimer.time(() -> {
+            try (SchoolView view = school.openView()) {
+                // Slot 2 * i holds presents and 2 * i + 1 absents
+                long[] counts = new long[view.attendanceCourseCount() * 2];
+                view.scanAttendance(0, view.attendanceRows(),
+                        (student, course, epochDay, isPresent) -> counts[course * 2 + (isPresent ? 0 : 1)]++);
+                // A course removed and added again is listed once under its code
+                Map<String, long[]> byCode = new TreeMap<>();
+                long present = 0;
+                long absent = 0;
+                for (int i = 0; i < view.attendanceCourseCount(); i++) {
+                    if (counts[i * 2] + counts[i * 2 + 1] > 0) {
+                        long[] tally = byCode.computeIfAbsent(view.attendanceCourse(i).getCode(), code -> new long[2]);
+                        tally[0] += counts[i * 2];
+                        tally[1] += counts[i * 2 + 1];
+                        present += counts[i * 2];
+                        absent += counts[i * 2 + 1];
+                    }
+                }
+                Map<String, AttendanceAggregates.Tally> byCourse = new LinkedHashMap<>();
+                byCode.forEach((code, tally) -> byCourse.put(code, AttendanceAggregates.Tally.of(tally[0], tally[1])));
+                return new AttendanceReport(AttendanceAggregates.Tally.of(present, absent), byCourse);
+            }
+        });
+    }
+
+    // Salary by department, attendance by grade, course and week, and chronic absentees, computed
+    // from scratch across all cores
+    public ReportEngine.Analytics analyticsReport() {
+        return analyticsReport(ForkJoinPool.commonPool());
+    }
+
+    public ReportEngine.Analytics analyticsReport(ForkJoinPool pool) {
+        return analyticsTimer.time(() -> {
+            try (SchoolView view = school.openView()) {
+                return new ReportEngine(view, pool).run();
+            }
+        });
+    }
+
+    // What every student owes on the day, split by how long it has been due, across all cores. Reads
+    // the live registry and ledger: balances are single reads of an append-only ledger.
+    public AgedDebtReport agedDebtReport(LocalDate asOf) {
+        return agedDebtReport(asOf, ForkJoinPool.commonPool());
+    }
+
+    // Each student's balance is read straight from the ledger and only owing students walk back
+    // along their own rows, so the report costs one pass over the students, not over the ledger
+    public AgedDebtReport agedDebtReport(LocalDate asOf, ForkJoinPool pool) {
+        return agedDebtTimer.time(() -> {
+            int asOfDay = (int) asOf.toEpochDay();
+            Aging aging = pool.submit(() -> students.values().parallelStream()
+                    .collect(Collector.of(() -> new Aging(asOfDay), Aging::add, Aging::combine))).join();
+            aging.debtors.sort(Comparator.comparingLong(Debtor::getBalanceCents).reversed()
+                    .thenComparing(debtor -> debtor.getStudent().getId()));
+            return new AgedDebtReport(asOf, aging.totals, aging.debtors);
+        });
+    }
+
+    // Aging class accumulating one worker's share of the aged-debt report
+    private class Aging {
+        final int asOfDay;
+        final long[] totals = new long[FeeLedger.AGING_BUCKETS.length];
+        final List<Debtor> debtors = new ArrayList<>();
+        // Reused for each student; only copied for those who owe something
+        long[] buckets = new long[totals.length];
+
+        Aging(int asOfDay) {
+            this.asOfDay = asOfDay;
+        }
+
+        void add(Student student) {
+            int ordinal = students.ordinalOf(student.getId());
+            if (ordinal == EntityRegistry.NO_ORDINAL) {
+                return;
+            }
+            long balance = feeLedger.age(ordinal, asOfDay, buckets);
+            if (balance > 0) {
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += buckets[i];
+                }
+                debtors.add(new Debtor(student, balance, buckets));
+                buckets = new long[totals.length];
+            }
+        }
+
+        Aging combine(Aging other) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += other.totals[i];
+            }
+            debtors.addAll(other.debtors);
+            return this;
+        }
+    }
+
+    // RosterReport class listing entities with their count
+    static class RosterReport<T> {
+        private final List<T> entries;
+        private final int total;
+
+        RosterReport(List<T> entries, int total) {
+            this.entries = entries;
+            this.total = total;
+        }
+
+        public List<T> getEntries() { return entries; }
+
+        public int getTotal() { return total; }
+    }
+
+    // TeacherReport class adding the salary expenditure to the roster
+    static class TeacherReport extends RosterReport<Teacher> {
+        private final Money totalSalary;
+
+        TeacherReport(List<Teacher> entries, int total, Money totalSalary) {
+            super(entries, total);
+            this.totalSalary = totalSalary;
+        }
+
+        public Money getTotalSalary() { return totalSalary; }
+    }
+
+    // AttendanceReport class with overall and per-course presence counts
+    static class AttendanceReport {
+        private final AttendanceAggregates.Tally total;
+        private final Map<String, AttendanceAggregates.Tally> byCourse;
+
+        AttendanceReport(AttendanceAggregates.Tally total, Map<String, AttendanceAggregates.Tally> byCourse) {
+            this.total = total;
+            this.byCourse = byCourse;
+        }
+
+        public AttendanceAggregates.Tally getTotal() { return total; }
+
+        public Map<String, AttendanceAggregates.Tally> getByCourse() { return byCourse; }
+    }
+
+    // AgedDebtReport class with what is owed in each aging bucket and the students who owe it, largest balance first
+    static class AgedDebtReport {
+        private final LocalDate asOf;
+        private final long[] totals;
+        private final List<Debtor> debtors;
+
+        AgedDebtReport(LocalDate asOf, long[] totals, List<Debtor> debtors) {
+            this.asOf = asOf;
+            this.totals = totals;
+            this.debtors = debtors;
+        }
+
+        public LocalDate getAsOf() { return asOf; }
+
+        // Owed in the bucket named FeeLedger.AGING_BUCKETS[bucket]
+        public Money getTotal(int bucket) { return Money.ofCents(totals[bucket]); }
+
+        public Money getTotal() {
+            long sum = 0;
+            for (long total : totals) {
+                sum += total;
+            }
+            return Money.ofCents(sum);
+        }
+
+        public List<Debtor> getDebtors() { return debtors; }
+    }
+
+    // Debtor class with one student's balance split by aging bucket
+    static class Debtor {
+        private final Student student;
+        private final long balanceCents;
+        private final long[] owedCents;
+
+        Debtor(Student student, long balanceCents, long[] owedCents) {
+            this.student = student;
+            this.balanceCents = balanceCents;
+            this.owedCents = owedCents;
+        }
+
+        public Student getStudent() { return student; }
+
+        public Money getBalance() { return Money.ofCents(balanceCents); }
+
+        public long getBalanceCents() { return balanceCents; }
+
+        public Money getOwed(int bucket) { return Money.ofCents(owedCents[bucket]); }
+
+        // The amount in the bucket without a Money wrapper, for writing many rows
+        public long getOwedCents(int bucket) { return owedCents[bucket]; }
+    }
+}
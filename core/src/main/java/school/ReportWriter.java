@@ -0,0 +1,610 @@
+package school;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+
+// ReportWriter class that streams report rows as CSV or as fixed-width text.
+//
+// Fields are encoded straight into one reusable character buffer, so no String is built per row,
+// and the buffer only goes to the underlying Writer when it is full or flushed. Attendance rows
+// are read from the store's columns without creating AttendanceRecord objects.
+class ReportWriter implements Flushable, Closeable {
+    private static final int BUFFER_CHARS = 64 * 1024;
+    // Attendance rows copied out of the store at a time
+    private static final int ATTENDANCE_BLOCK_ROWS = 4096;
+
+    private static final Column[] STUDENT_COLUMNS = {
+            new Column("ID", 10), new Column("Name", 24), new Column("Email", 32),
+            new Column("Grade", 12), new Column("Enrollment Date", 15)
+    };
+    private static final Column[] TEACHER_COLUMNS = {
+            new Column("ID", 10), new Column("Name", 24), new Column("Email", 32),
+            new Column("Department", 20), new Column("Salary", 12)
+    };
+    private static final Column[] COURSE_COLUMNS = {
+            new Column("Code", 10), new Column("Name", 24), new Column("Description", 40)
+    };
+    private static final Column[] MEETING_COLUMNS = {
+            new Column("Period", 6), new Column("Course Code", 11), new Column("Section", 7),
+            new Column("Course", 24), new Column("Teacher", 24), new Column("Room", 6), new Column("Students", 8)
+    };
+    private static final Column[] FEE_COLUMNS = {
+            new Column("Date", 10), new Column("Kind", 10), new Column("Description", 24), new Column("Due", 10),
+            new Column("Amount", 12), new Column("Balance", 12)
+    };
+    private static final Column[] AGED_DEBT_COLUMNS = {
+            new Column("Student ID", 10), new Column("Student", 24), new Column("Grade", 12), new Column("Balance", 12),
+            new Column(FeeLedger.AGING_BUCKETS[0], 12), new Column(FeeLedger.AGING_BUCKETS[1], 12),
+            new Column(FeeLedger.AGING_BUCKETS[2], 12), new Column(FeeLedger.AGING_BUCKETS[3], 12),
+            new Column(FeeLedger.AGING_BUCKETS[4], 12)
+    };
+    private static final Column[] ASSESSMENT_COLUMNS = {
+            new Column("Assessment", 24), new Column("Weight", 6), new Column("Out Of", 8)
+    };
+    private static final Column[] GRADE_COLUMNS = {
+            new Column("Course Code", 11), new Column("Course", 24), new Column("Score", 7), new Column("Letter", 6),
+            new Column("Rank", 8), new Column("Of", 8), new Column("Percentile", 10)
+    };
+    private static final Column[] COURSE_RANKING_COLUMNS = {
+            new Column("Rank", 8), new Column("Student ID", 10), new Column("Student", 24), new Column("Grade", 12),
+            new Column("Score", 7), new Column("Letter", 6)
+    };
+    private static final Column[] YEAR_RANKING_COLUMNS = {
+            new Column("Rank", 8), new Column("Student ID", 10), new Column("Student", 24), new Column("Grade", 12),
+            new Column("GPA", 5)
+    };
+    private static final Column[] ATTENDANCE_COLUMNS = {
+            new Column("Student ID", 10), new Column("Student", 24), new Column("Course Code", 11),
+            new Column("Course", 24), new Column("Date", 10), new Column("Present", 7)
+    };
+
+    // Output layouts
+    enum Layout {
+        CSV,
+        FIXED_WIDTH
+    }
+
+    // Reports that can be written from a whole school
+    enum Report {
+        STUDENTS,
+        TEACHERS,
+        COURSES,
+        ATTENDANCE,
+        AGED_DEBT
+    }
+
+    private final Writer out;
+    private final Layout layout;
+    private char[] buffer = new char[BUFFER_CHARS];
+    private char[] scratch = new char[256];
+    private int position;
+    private Column[] columns;
+    private int column;
+
+    public ReportWriter(Writer out, Layout layout) {
+        this.out = out;
+        this.layout = layout;
+    }
+
+    // Encodes as UTF-8; the stream is flushed but only closed by close()
+    public ReportWriter(OutputStream out, Layout layout) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8), layout);
+    }
+
+    // Writes one report with its header row; returns the number of data rows written. Every report
+    // but aged debt is read from a point-in-time view, so writers carry on meanwhile and none of
+    // their changes is written half made. Fees are not versioned, so aged debt is worked out from
+    // the live ledger as of today, with no view opened for it.
+    public long write(School school, Report report) throws IOException {
+        if (report == Report.AGED_DEBT) {
+            return writeAgedDebt(school.getReportService().agedDebtReport(LocalDate.now()).getDebtors());
+        }
+        try (SchoolView view = school.openView()) {
+            return write(view, report);
+        }
+    }
+
+    // Writes one report from a view the caller opened, so several reports can share one point in
+    // time; the view holds no fees, so aged debt has to go through write(School, Report)
+    public long write(SchoolView view, Report report) throws IOException {
+        return switch (report) {
+            case STUDENTS -> writeStudents(view.students()::iterator);
+            case TEACHERS -> writeTeachers(view.teachers()::iterator);
+            case COURSES -> writeCourses(view.courses()::iterator);
+            case ATTENDANCE -> writeAttendance(view);
+            case AGED_DEBT -> throw new IllegalArgumentException("Aged debt is read from the live ledger, not a view.");
+        };
+    }
+
+    public long writeStudents(Iterable<Student> students) throws IOException {
+        begin(STUDENT_COLUMNS);
+        long rows = 0;
+        for (Student student : students) {
+            text(student.getId());
+            text(student.getName());
+            email(student.getEmailLocalPart(), student.getEmailDomainCode());
+            text(student.getGrade());
+            date(student.getEnrollmentDate());
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    public long writeTeachers(Iterable<Teacher> teachers) throws IOException {
+        begin(TEACHER_COLUMNS);
+        long rows = 0;
+        for (Teacher teacher : teachers) {
+            text(teacher.getId());
+            text(teacher.getName());
+            email(teacher.getEmailLocalPart(), teacher.getEmailDomainCode());
+            text(teacher.getDepartment());
+            amount(teacher.getSalaryCents());
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    public long writeCourses(Iterable<Course> courses) throws IOException {
+        begin(COURSE_COLUMNS);
+        long rows = 0;
+        for (Course course : courses) {
+            text(course.getCode());
+            text(course.getName());
+            text(course.getDescription());
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    public long writeMeetings(Iterable<Timetable.Meeting> meetings) throws IOException {
+        begin(MEETING_COLUMNS);
+        long rows = 0;
+        for (Timetable.Meeting meeting : meetings) {
+            Timetable.Section section = meeting.getSection();
+            text(meeting.getSlotName());
+            text(section.getCourse().getCode());
+            text(String.valueOf(section.getNumber()));
+            text(section.getCourse().getName());
+            text(section.getTeacher().getName());
+            text(meeting.getRoom().getCode());
+            text(String.valueOf(section.getSize()));
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    // One student's statement, in the order the postings were made
+    public long writeFees(Iterable<FeeService.Entry> entries) throws IOException {
+        begin(FEE_COLUMNS);
+        long rows = 0;
+        for (FeeService.Entry entry : entries) {
+            date(entry.getDate());
+            text(entry.getKind().name());
+            text(entry.getDescription());
+            date(entry.getDueDate());
+            amount(entry.getAmount().getCents());
+            amount(entry.getBalance().getCents());
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    public long writeAgedDebt(Iterable<ReportService.Debtor> debtors) throws IOException {
+        begin(AGED_DEBT_COLUMNS);
+        long rows = 0;
+        for (ReportService.Debtor debtor : debtors) {
+            text(debtor.getStudent().getId());
+            text(debtor.getStudent().getName());
+            text(debtor.getStudent().getGrade());
+            amount(debtor.getBalanceCents());
+            for (int bucket = 0; bucket < FeeLedger.AGING_BUCKETS.length; bucket++) {
+                amount(debtor.getOwedCents(bucket));
+            }
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    public long writeAssessments(Iterable<Gradebook.Assessment> assessments) throws IOException {
+        begin(ASSESSMENT_COLUMNS);
+        long rows = 0;
+        for (Gradebook.Assessment assessment : assessments) {
+            text(assessment.getName());
+            text(String.valueOf(assessment.getWeight()));
+            text(GradebookService.points(assessment.getMaxPoints()));
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    // One student's grades, course by course, with their rank in each
+    public long writeGrades(Iterable<GradebookService.CourseGrade> grades) throws IOException {
+        begin(GRADE_COLUMNS);
+        long rows = 0;
+        for (GradebookService.CourseGrade grade : grades) {
+            Gradebook.Standing standing = grade.getStanding();
+            text(grade.getCourse().getCode());
+            text(grade.getCourse().getName());
+            text(grade.getScore());
+            text(grade.getLetter());
+            text(String.valueOf(standing.getRank()));
+            text(String.valueOf(standing.getCohort()));
+            text(String.format(Locale.ROOT, "%.1f", standing.getPercentile()));
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    public long writeCourseRanking(Iterable<Gradebook.Ranked> ranked) throws IOException {
+        begin(COURSE_RANKING_COLUMNS);
+        long rows = 0;
+        for (Gradebook.Ranked entry : ranked) {
+            rankedRow(entry);
+            text(Gradebook.letter(entry.getStanding().getScore()));
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    // A year group by GPA
+    public long writeYearRanking(Iterable<Gradebook.Ranked> ranked) throws IOException {
+        begin(YEAR_RANKING_COLUMNS);
+        long rows = 0;
+        for (Gradebook.Ranked entry : ranked) {
+            rankedRow(entry);
+            endRow();
+            rows++;
+        }
+        return rows;
+    }
+
+    private void rankedRow(Gradebook.Ranked entry) throws IOException {
+        text(String.valueOf(entry.getStanding().getRank()));
+        text(entry.getStudent().getId());
+        text(entry.getStudent().getName());
+        text(entry.getStudent().getGrade());
+        text(GradebookService.scaled(entry.getStanding().getScore()));
+    }
+
+    public long writeAttendance(Iterable<AttendanceRecord> records) throws IOException {
+        begin(ATTENDANCE_COLUMNS);
+        long rows = 0;
+        for (AttendanceRecord record : records) {
+            attendanceRow(record.getStudent(), record.getCourse(), (int) record.getDate().toEpochDay(), record.isPresent());
+            rows++;
+        }
+        return rows;
+    }
+
+    // A student or course appears on many rows, so its cells are encoded once into a cache indexed
+    // by dictionary index and copied from there; rows then touch no Student or Course objects. The
+    // view's rows are copied out of the store a block at a time.
+    public long writeAttendance(SchoolView view) throws IOException {
+        begin(ATTENDANCE_COLUMNS);
+        int rows = view.attendanceRows();
+        char[][] studentCells = new char[view.attendanceStudentCount()][];
+        char[][] courseCells = new char[view.attendanceCourseCount()][];
+        int[] students = new int[ATTENDANCE_BLOCK_ROWS];
+        int[] courses = new int[ATTENDANCE_BLOCK_ROWS];
+        int[] epochDays = new int[ATTENDANCE_BLOCK_ROWS];
+        boolean[] present = new boolean[ATTENDANCE_BLOCK_ROWS];
+        long written = 0;
+        for (int first = 0; first < rows; first += ATTENDANCE_BLOCK_ROWS) {
+            int count = view.copyAttendanceRows(first, Math.min(rows, first + ATTENDANCE_BLOCK_ROWS), students, courses,
+                    epochDays, present);
+            for (int i = 0; i < count; i++) {
+                char[] student = studentCells[students[i]];
+                if (student == null) {
+                    Student entity = view.attendanceStudent(students[i]);
+                    student = studentCells[students[i]] = encode(entity.getId(), entity.getName());
+                }
+                char[] course = courseCells[courses[i]];
+                if (course == null) {
+                    Course entity = view.attendanceCourse(courses[i]);
+                    course = courseCells[courses[i]] = encode(entity.getCode(), entity.getName());
+                }
+                copy(student, 2);
+                copy(course, 2);
+                date(epochDays[i]);
+                text(present[i] ? "Yes" : "No");
+                endRow();
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private void attendanceRow(Student student, Course course, int epochDay, boolean isPresent) throws IOException {
+        text(student.getId());
+        text(student.getName());
+        text(course.getCode());
+        text(course.getName());
+        date(epochDay);
+        text(isPresent ? "Yes" : "No");
+        endRow();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+        out.close();
+    }
+
+    // Field encoding
+
+    private void begin(Column[] columns) throws IOException {
+        this.columns = columns;
+        this.column = 0;
+        for (Column header : columns) {
+            text(header.name);
+        }
+        endRow();
+    }
+
+    private void text(String value) throws IOException {
+        if (value == null) {
+            value = "";
+        }
+        if (layout == Layout.CSV) {
+            separator();
+            if (needsQuotes(value)) {
+                quoted(value);
+            } else {
+                append(value, value.length());
+            }
+        } else {
+            int width = columns[column].width;
+            separator();
+            append(value, Math.min(value.length(), width));
+            // The last column is not padded, so lines carry no trailing spaces
+            if (column < columns.length - 1) {
+                pad(width - value.length());
+            }
+        }
+        column++;
+    }
+
+    // Writes an email from its local part and domain code without building the address; values
+    // that need quoting or truncating are rare enough to go through text
+    private void email(String localPart, int domainCode) throws IOException {
+        String domain = SymbolTable.EMAIL_DOMAINS.decode(domainCode);
+        int length = localPart == null || domain == null ? -1 : localPart.length() + 1 + domain.length();
+        boolean simple = length >= 0 && (layout == Layout.CSV
+                ? !needsQuotes(localPart) && !needsQuotes(domain)
+                : length <= columns[column].width);
+        if (!simple) {
+            text(SymbolTable.email(localPart, domainCode));
+            return;
+        }
+        separator();
+        append(localPart, localPart.length());
+        ensure(1);
+        buffer[position++] = '@';
+        append(domain, domain.length());
+        if (layout == Layout.FIXED_WIDTH && column < columns.length - 1) {
+            pad(columns[column].width - length);
+        }
+        column++;
+    }
+
+    private void date(LocalDate date) throws IOException {
+        if (date == null) {
+            text("");
+        } else {
+            date(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        }
+    }
+
+    // Converts with the civil-from-days algorithm, so no LocalDate is created per row
+    private void date(int epochDay) throws IOException {
+        long z = epochDay + 719_468L;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        date((int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0)), month, day);
+    }
+
+    // Writes yyyy-MM-dd, falling back to LocalDate for years outside 0000 to 9999
+    private void date(int year, int month, int day) throws IOException {
+        if (year < 0 || year > 9999) {
+            text(LocalDate.of(year, month, day).toString());
+            return;
+        }
+        separator();
+        ensure(10);
+        digits(year, 4);
+        buffer[position++] = '-';
+        digits(month, 2);
+        buffer[position++] = '-';
+        digits(day, 2);
+        if (layout == Layout.FIXED_WIDTH && column < columns.length - 1) {
+            pad(columns[column].width - 10);
+        }
+        column++;
+    }
+
+    // Writes an amount of cents with two decimals, right-aligned in fixed-width output
+    private void amount(long cents) throws IOException {
+        boolean negative = cents < 0;
+        long whole = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        int length = (negative ? 1 : 0) + digitCount(whole) + 3;
+        separator();
+        if (layout == Layout.FIXED_WIDTH) {
+            pad(columns[column].width - length);
+        }
+        ensure(length);
+        if (negative) {
+            buffer[position++] = '-';
+        }
+        int end = position + digitCount(whole);
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + whole % 10);
+            whole /= 10;
+        }
+        position = end;
+        buffer[position++] = '.';
+        digits(fraction, 2);
+        column++;
+    }
+
+    // Encodes two cells at the current column, including the separator in front of them, by
+    // pointing the writer at a scratch buffer big enough that it never drains
+    private char[] encode(String first, String second) {
+        first = first == null ? "" : first;
+        second = second == null ? "" : second;
+        int bound = 2 * (first.length() + second.length()) + columns[column].width + columns[column + 1].width + 6;
+        if (scratch.length < bound) {
+            scratch = new char[Math.max(bound, scratch.length * 2)];
+        }
+        char[] target = buffer;
+        int targetPosition = position;
+        int startColumn = column;
+        buffer = scratch;
+        position = 0;
+        try {
+            text(first);
+            text(second);
+            return Arrays.copyOf(scratch, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer = target;
+            position = targetPosition;
+            column = startColumn;
+        }
+    }
+
+    private void copy(char[] cells, int count) throws IOException {
+        if (cells.length > buffer.length) {
+            drain();
+            out.write(cells);
+        } else {
+            ensure(cells.length);
+            System.arraycopy(cells, 0, buffer, position, cells.length);
+            position += cells.length;
+        }
+        column += count;
+    }
+
+    private void separator() throws IOException {
+        if (column > 0) {
+            ensure(1);
+            buffer[position++] = layout == Layout.CSV ? ',' : ' ';
+        }
+    }
+
+    private void endRow() throws IOException {
+        ensure(1);
+        buffer[position++] = '\n';
+        column = 0;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void quoted(String value) throws IOException {
+        ensure(1);
+        buffer[position++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            ensure(2);
+            if (c == '"') {
+                buffer[position++] = '"';
+            }
+            buffer[position++] = c;
+        }
+        ensure(1);
+        buffer[position++] = '"';
+    }
+
+    private void append(String value, int length) throws IOException {
+        if (length > buffer.length) {
+            drain();
+            out.write(value, 0, length);
+            return;
+        }
+        ensure(length);
+        value.getChars(0, length, buffer, position);
+        position += length;
+    }
+
+    private void pad(int count) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+        ensure(count);
+        Arrays.fill(buffer, position, position + count, ' ');
+        position += count;
+    }
+
+    private void digits(int value, int count) {
+        for (int i = position + count - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        position += count;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private void ensure(int chars) throws IOException {
+        if (position + chars > buffer.length) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    // Column class naming a report column and its fixed-width size
+    private static class Column {
+        final String name;
+        final int width;
+
+        Column(String name, int width) {
+            this.name = name;
+            this.width = width;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package school;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Roster class holding a set of non-negative ints, such as student ordinals, as a compressed bitmap.
+//
+// Values are split by their high 16 bits into containers kept sorted by key. A container holds the
+// low 16 bits of its values as a sorted array while it has at most 4,096 of them, and as a
+// 65,536-bit bitmap beyond that, so a class of 30 takes about 60 bytes and a container never takes
+// more than 8 KB. Membership is a binary search over the keys, then a bit test or a search of at
+// most 4,096 entries; intersections and unions work container by container, and intersections skip
+// keys only one side has.
+// Not thread-safe: each roster is guarded by the lock of the entity it belongs to.
+final class Roster {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    // Parallel arrays, one slot per container: its key, and its sorted low bits while it is an
+    // array or its bitmap once it has grown past ARRAY_LIMIT; the other one is null
+    private char[] keys = new char[1];
+    private char[][] arrays = new char[1][];
+    private long[][] bitmaps = new long[1][];
+    private int[] counts = new int[1];
+    private int containers;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int value) {
+        int index = value < 0 ? -1 : indexOf((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        long[] bitmap = bitmaps[index];
+        if (bitmap != null) {
+            return (bitmap[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(arrays[index], 0, counts[index], low) >= 0;
+    }
+
+    // Adds the value; returns false if it was already there
+    boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Roster values cannot be negative: " + value);
+        }
+        char low = (char) value;
+        int index = indexOf((char) (value >>> 16));
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, (char) (value >>> 16));
+        }
+        long[] bitmap = bitmaps[index];
+        if (bitmap == null) {
+            char[] array = arrays[index];
+            int count = counts[index];
+            int position = Arrays.binarySearch(array, 0, count, low);
+            if (position >= 0) {
+                return false;
+            }
+            if (count == ARRAY_LIMIT) {
+                bitmap = toBitmap(index);
+            } else {
+                position = -position - 1;
+                if (count == array.length) {
+                    array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, count + (count >> 1) + 4));
+                    arrays[index] = array;
+                }
+                System.arraycopy(array, position, array, position + 1, count - position);
+                array[position] = low;
+            }
+        } else if ((bitmap[low >>> 6] & (1L << low)) != 0) {
+            return false;
+        }
+        if (bitmap != null) {
+            bitmap[low >>> 6] |= 1L << low;
+        }
+        counts[index]++;
+        size++;
+        return true;
+    }
+
+    // Removes the value; returns false if it was not there
+    boolean remove(int value) {
+        int index = value < 0 ? -1 : indexOf((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        long[] bitmap = bitmaps[index];
+        if (bitmap == null) {
+            char[] array = arrays[index];
+            int count = counts[index];
+            int position = Arrays.binarySearch(array, 0, count, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(array, position + 1, array, position, count - position - 1);
+        } else {
+            if ((bitmap[low >>> 6] & (1L << low)) == 0) {
+                return false;
+            }
+            bitmap[low >>> 6] &= ~(1L << low);
+        }
+        size--;
+        if (--counts[index] == 0) {
+            removeContainer(index);
+        } else if (bitmap != null && counts[index] <= ARRAY_LIMIT) {
+            arrays[index] = toArray(bitmap, counts[index]);
+            bitmaps[index] = null;
+        }
+        return true;
+    }
+
+    // Offers every value to the consumer in ascending order
+    void forEach(IntConsumer consumer) {
+        for (int index = 0; index < containers; index++) {
+            int high = keys[index] << 16;
+            long[] bitmap = bitmaps[index];
+            if (bitmap == null) {
+                char[] array = arrays[index];
+                for (int i = 0; i < counts[index]; i++) {
+                    consumer.accept(high | array[i]);
+                }
+            } else {
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long bits = bitmap[word];
+                    while (bits != 0) {
+                        consumer.accept(high | (word << 6) | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    int[] toArray() {
+        int[] values = new int[size];
+        int[] next = {0};
+        forEach(value -> values[next[0]++] = value);
+        return values;
+    }
+
+    Roster copy() {
+        Roster copy = new Roster();
+        copy.keys = Arrays.copyOf(keys, keys.length);
+        copy.arrays = new char[arrays.length][];
+        copy.bitmaps = new long[bitmaps.length][];
+        for (int index = 0; index < containers; index++) {
+            copy.arrays[index] = arrays[index] == null ? null : Arrays.copyOf(arrays[index], counts[index]);
+            copy.bitmaps[index] = bitmaps[index] == null ? null : bitmaps[index].clone();
+        }
+        copy.counts = Arrays.copyOf(counts, counts.length);
+        copy.containers = containers;
+        copy.size = size;
+        return copy;
+    }
+
+    // Values present in both rosters, as a new roster
+    static Roster and(Roster left, Roster right) {
+        Roster result = new Roster();
+        int i = 0;
+        int j = 0;
+        while (i < left.containers && j < right.containers) {
+            char leftKey = left.keys[i];
+            char rightKey = right.keys[j];
+            if (leftKey < rightKey) {
+                i++;
+            } else if (leftKey > rightKey) {
+                j++;
+            } else {
+                result.appendIntersection(leftKey, left, i++, right, j++);
+            }
+        }
+        return result;
+    }
+
+    // Values present in either roster, as a new roster
+    static Roster or(Roster left, Roster right) {
+        Roster result = new Roster();
+        int i = 0;
+        int j = 0;
+        while (i < left.containers || j < right.containers) {
+            if (j == right.containers || (i < left.containers && left.keys[i] < right.keys[j])) {
+                result.appendCopy(left, i++);
+            } else if (i == left.containers || left.keys[i] > right.keys[j]) {
+                result.appendCopy(right, j++);
+            } else {
+                result.appendUnion(left.keys[i], left, i++, right, j++);
+            }
+        }
+        return result;
+    }
+
+    // Appends the intersection of two containers with the same key, if it is not empty
+    private void appendIntersection(char key, Roster left, int i, Roster right, int j) {
+        long[] leftBitmap = left.bitmaps[i];
+        long[] rightBitmap = right.bitmaps[j];
+        if (leftBitmap != null && rightBitmap != null) {
+            long[] bitmap = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                bitmap[word] = leftBitmap[word] & rightBitmap[word];
+                count += Long.bitCount(bitmap[word]);
+            }
+            if (count > ARRAY_LIMIT) {
+                appendContainer(key, null, bitmap, count);
+            } else if (count > 0) {
+                appendContainer(key, toArray(bitmap, count), null, count);
+            }
+            return;
+        }
+        if (leftBitmap != null || rightBitmap != null) {
+            // Filter the array side through the bitmap side
+            char[] array = leftBitmap == null ? left.arrays[i] : right.arrays[j];
+            int arrayCount = leftBitmap == null ? left.counts[i] : right.counts[j];
+            long[] bitmap = leftBitmap == null ? rightBitmap : leftBitmap;
+            char[] matches = new char[arrayCount];
+            int count = 0;
+            for (int k = 0; k < arrayCount; k++) {
+                char low = array[k];
+                if ((bitmap[low >>> 6] & (1L << low)) != 0) {
+                    matches[count++] = low;
+                }
+            }
+            if (count > 0) {
+                appendContainer(key, matches, null, count);
+            }
+            return;
+        }
+        char[] leftArray = left.arrays[i];
+        char[] rightArray = right.arrays[j];
+        int leftCount = left.counts[i];
+        int rightCount = right.counts[j];
+        char[] matches = new char[Math.min(leftCount, rightCount)];
+        int count = 0;
+        int a = 0;
+        int b = 0;
+        while (a < leftCount && b < rightCount) {
+            if (leftArray[a] < rightArray[b]) {
+                a++;
+            } else if (leftArray[a] > rightArray[b]) {
+                b++;
+            } else {
+                matches[count++] = leftArray[a];
+                a++;
+                b++;
+            }
+        }
+        if (count > 0) {
+            appendContainer(key, matches, null, count);
+        }
+    }
+
+    // Appends the union of two containers with the same key, as a bitmap once it has more than
+    // ARRAY_LIMIT values
+    private void appendUnion(char key, Roster left, int i, Roster right, int j) {
+        long[] leftBitmap = left.bitmaps[i];
+        long[] rightBitmap = right.bitmaps[j];
+        if (leftBitmap != null || rightBitmap != null) {
+            // Set the array side's bits in a copy of the bitmap side, or OR two bitmaps
+            long[] bitmap = (leftBitmap != null ? leftBitmap : rightBitmap).clone();
+            if (leftBitmap != null && rightBitmap != null) {
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    bitmap[word] |= rightBitmap[word];
+                }
+            } else {
+                char[] array = leftBitmap == null ? left.arrays[i] : right.arrays[j];
+                int arrayCount = leftBitmap == null ? left.counts[i] : right.counts[j];
+                for (int k = 0; k < arrayCount; k++) {
+                    bitmap[array[k] >>> 6] |= 1L << array[k];
+                }
+            }
+            int count = 0;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                count += Long.bitCount(bitmap[word]);
+            }
+            appendContainer(key, null, bitmap, count);
+            return;
+        }
+        char[] leftArray = left.arrays[i];
+        char[] rightArray = right.arrays[j];
+        int leftCount = left.counts[i];
+        int rightCount = right.counts[j];
+        char[] merged = new char[leftCount + rightCount];
+        int count = 0;
+        int a = 0;
+        int b = 0;
+        while (a < leftCount || b < rightCount) {
+            if (b == rightCount || (a < leftCount && leftArray[a] < rightArray[b])) {
+                merged[count++] = leftArray[a++];
+            } else if (a == leftCount || leftArray[a] > rightArray[b]) {
+                merged[count++] = rightArray[b++];
+            } else {
+                merged[count++] = leftArray[a];
+                a++;
+                b++;
+            }
+        }
+        if (count > ARRAY_LIMIT) {
+            long[] bitmap = new long[BITMAP_WORDS];
+            for (int k = 0; k < count; k++) {
+                bitmap[merged[k] >>> 6] |= 1L << merged[k];
+            }
+            appendContainer(key, null, bitmap, count);
+        } else {
+            appendContainer(key, merged, null, count);
+        }
+    }
+
+    // Appends a copy of another roster's container
+    private void appendCopy(Roster other, int index) {
+        int count = other.counts[index];
+        appendContainer(other.keys[index],
+                other.arrays[index] == null ? null : Arrays.copyOf(other.arrays[index], count),
+                other.bitmaps[index] == null ? null : other.bitmaps[index].clone(), count);
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, containers, key);
+    }
+
+    private void insertContainer(int index, char key) {
+        ensureContainers(containers + 1);
+        int moved = containers - index;
+        System.arraycopy(keys, index, keys, index + 1, moved);
+        System.arraycopy(arrays, index, arrays, index + 1, moved);
+        System.arraycopy(bitmaps, index, bitmaps, index + 1, moved);
+        System.arraycopy(counts, index, counts, index + 1, moved);
+        keys[index] = key;
+        arrays[index] = new char[4];
+        bitmaps[index] = null;
+        counts[index] = 0;
+        containers++;
+    }
+
+    private void appendContainer(char key, char[] array, long[] bitmap, int count) {
+        ensureContainers(containers + 1);
+        keys[containers] = key;
+        arrays[containers] = array;
+        bitmaps[containers] = bitmap;
+        counts[containers] = count;
+        containers++;
+        size += count;
+    }
+
+    private void removeContainer(int index) {
+        int moved = containers - index - 1;
+        System.arraycopy(keys, index + 1, keys, index, moved);
+        System.arraycopy(arrays, index + 1, arrays, index, moved);
+        System.arraycopy(bitmaps, index + 1, bitmaps, index, moved);
+        System.arraycopy(counts, index + 1, counts, index, moved);
+        containers--;
+        arrays[containers] = null;
+        bitmaps[containers] = null;
+    }
+
+    private void ensureContainers(int needed) {
+        if (needed > keys.length) {
+            int capacity = Math.max(needed, keys.length * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            arrays = Arrays.copyOf(arrays, capacity);
+            bitmaps = Arrays.copyOf(bitmaps, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+    }
+
+    // Turns a full array container into a bitmap and returns the bitmap
+    private long[] toBitmap(int index) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        char[] array = arrays[index];
+        for (int i = 0; i < counts[index]; i++) {
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        bitmaps[index] = bitmap;
+        arrays[index] = null;
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap, int count) {
+        char[] array = new char[count];
+        int next = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                array[next++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+}
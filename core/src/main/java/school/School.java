@@ -0,0 +1,634 @@
+package school;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+
+// School class that owns the data and the services that operate on it
+class School {
+    // Seconds between compaction passes over the attendance rows of removed students and courses
+    static final long COMPACTION_INTERVAL_SECONDS = 10;
+    // Heap held by each entity with its registry entry, sort orders and search terms, measured on
+    // synthetic schools; rosters, marks and attendance are counted by their own stores
+    private static final long STUDENT_BYTES = 1_020;
+    private static final long TEACHER_BYTES = 880;
+    private static final long COURSE_BYTES = 490;
+    // One daemon thread compacts the attendance of every school in the process
+    private static final ScheduledExecutorService COMPACTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "school-attendance-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final Metrics metrics;
+    private final Versions versions;
+    private final EntityRegistry<Student> students;
+    private final EntityRegistry<Teacher> teachers;
+    private final EntityRegistry<Course> courses;
+    private final AttendanceStore attendanceRecords;
+    private final AttendanceAggregates attendanceTotals;
+    private final Enrollments enrollments;
+    private final FeeLedger feeLedger;
+    private final Gradebook gradebook;
+    private final SchoolJournal journal;
+    private final StudentService studentService;
+    private final TeacherService teacherService;
+    private final CourseService courseService;
+    private final EnrollmentService enrollmentService;
+    private final AttendanceService attendanceService;
+    private final TimetableService timetableService;
+    private final FeeService feeService;
+    private final GradebookService gradebookService;
+    private final ReportService reportService;
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    // Set while a bulk load runs its writes without waiting for each to reach the disk
+    private final ThreadLocal<Boolean> syncDeferred = ThreadLocal.withInitial(() -> false);
+    
+    // Creates an in-memory school that starts from the sample data
+    public School(String name) {
+        this(name, null);
+    }
+    
+    // Creates a school that recovers its state from the journal, or starts from the sample data if it is empty
+    public School(String name, SchoolJournal journal) {
+        this.name = name;
+        this.journal = journal;
+        this.metrics = new Metrics(name);
+        this.versions = new Versions();
+        this.students = new EntityRegistry<>(Student::getId);
+        this.teachers = new EntityRegistry<>(Teacher::getId);
+        this.courses = new EntityRegistry<>(Course::getCode);
+        students.versioned(versions, Student::copy);
+        teachers.versioned(versions, Teacher::copy);
+        courses.versioned(versions, Course::copy);
+        this.attendanceRecords = new AttendanceStore(versions);
+        this.attendanceTotals = new AttendanceAggregates();
+        this.studentService = new StudentService(this, students);
+        this.teacherService = new TeacherService(this, teachers);
+        this.courseService = new CourseService(this, courses);
+        this.enrollments = new Enrollments(students, teachers, courses);
+        this.gradebook = new Gradebook(students, courses);
+        this.enrollmentService = new EnrollmentService(this, students, teachers, courses, enrollments, gradebook);
+        this.attendanceService = new AttendanceService(this, students, courses, attendanceRecords, attendanceTotals,
+                enrollmentService);
+        this.timetableService = new TimetableService(students, courses, enrollments, metrics);
+        this.feeLedger = new FeeLedger();
+        this.feeService = new FeeService(this, students, feeLedger);
+        this.gradebookService = new GradebookService(this, students, courses, enrollments, gradebook);
+        this.reportService = new ReportService(this, students, feeLedger);
+        registerMetrics();
+        
+        boolean recovered = false;
+        if (journal != null) {
+            try {
+                recovered = journal.recover(new JournalReplay());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to recover school data", e);
+            }
+            attendanceTotals.recordAll(attendanceRecords);
+        }
+        
+        if (!recovered) {
+            // Add some sample data
+            initializeSampleData();
+        }
+        Compaction.schedule(attendanceRecords);
+    }
+    
+    // Sizes and heap estimates are only read when the metrics are
+    private void registerMetrics() {
+        metrics.size("students", students::size);
+        metrics.size("teachers", teachers::size);
+        metrics.size("courses", courses::size);
+        metrics.size("attendance_rows", attendanceRecords::count);
+        metrics.size("attendance_rows_deleted", () -> attendanceRecords.size() - attendanceRecords.count());
+        metrics.size("fee_ledger_rows", feeLedger::size);
+        metrics.size("open_views", versions::openViews);
+        metrics.heap("students", () -> students.size() * STUDENT_BYTES);
+        metrics.heap("teachers", () -> teachers.size() * TEACHER_BYTES);
+        metrics.heap("courses", () -> courses.size() * COURSE_BYTES);
+        metrics.heap("attendance", attendanceRecords::estimatedBytes);
+        metrics.heap("fee_ledger", feeLedger::estimatedBytes);
+    }
+    
+    private void initializeSampleData() {
+        // Add sample courses
+        courseService.add(new Course("MATH101", "Mathematics", "Basic Mathematics"));
+        courseService.add(new Course("ENG201", "English", "Advanced English"));
+        courseService.add(new Course("SCI301", "Science", "General Science"));
+        
+        // Add sample teachers
+        teacherService.add(new Teacher("T001", "John Smith", "jsmith@school.com", "Mathematics", Money.of(50_000)));
+        teacherService.add(new Teacher("T002", "Jane Doe", "jdoe@school.com", "English", Money.of(48_000)));
+        teacherService.add(new Teacher("T003", "Robert Johnson", "rjohnson@school.com", "Science", Money.of(52_000)));
+        
+        // Add sample students
+        studentService.add(new Student("S001", "Alice Brown", "alice@school.com", "10th Grade", LocalDate.of(2023, 9, 1)));
+        studentService.add(new Student("S002", "Bob Wilson", "bob@school.com", "10th Grade", LocalDate.of(2023, 9, 1)));
+        studentService.add(new Student("S003", "Charlie Davis", "charlie@school.com", "11th Grade", LocalDate.of(2022, 9, 1)));
+        
+        // Assign each teacher their subject and enroll every student in two courses
+        enrollmentService.assign("T001", "MATH101");
+        enrollmentService.assign("T002", "ENG201");
+        enrollmentService.assign("T003", "SCI301");
+        enrollmentService.enroll("S001", "MATH101");
+        enrollmentService.enroll("S001", "ENG201");
+        enrollmentService.enroll("S002", "MATH101");
+        enrollmentService.enroll("S002", "SCI301");
+        enrollmentService.enroll("S003", "ENG201");
+        enrollmentService.enroll("S003", "SCI301");
+        
+        // Bill everyone the first term's tuition; Alice has paid in full and Bob half
+        LocalDate termStart = LocalDate.of(2023, 9, 1);
+        feeService.invoiceAll(null, "Tuition Fall 2023", Money.of(1_200), termStart, termStart.plusDays(29));
+        feeService.pay("S001", Money.of(1_200), LocalDate.of(2023, 9, 15), null);
+        feeService.pay("S002", Money.of(600), LocalDate.of(2023, 10, 5), null);
+        
+        // Give each course a coursework mark and an exam, and mark the coursework
+        gradebookService.addAssessment("MATH101", "Coursework", 40, 50);
+        gradebookService.addAssessment("MATH101", "Final Exam", 60, 100);
+        gradebookService.addAssessment("ENG201", "Essay", 50, 100);
+        gradebookService.addAssessment("ENG201", "Final Exam", 50, 100);
+        gradebookService.addAssessment("SCI301", "Lab Reports", 30, 20);
+        gradebookService.addAssessment("SCI301", "Final Exam", 70, 100);
+        gradebookService.recordMark("S001", "MATH101", "Coursework", 46);
+        gradebookService.recordMark("S002", "MATH101", "Coursework", 39.5);
+        gradebookService.recordMark("S001", "ENG201", "Essay", 81);
+        gradebookService.recordMark("S003", "ENG201", "Essay", 88);
+        gradebookService.recordMark("S002", "SCI301", "Lab Reports", 17);
+        gradebookService.recordMark("S003", "SCI301", "Lab Reports", 15);
+    }
+    
+    public String getName() { return name; }
+    
+    public StudentService getStudentService() { return studentService; }
+    
+    public TeacherService getTeacherService() { return teacherService; }
+    
+    public CourseService getCourseService() { return courseService; }
+    
+    public EnrollmentService getEnrollmentService() { return enrollmentService; }
+    
+    public AttendanceService getAttendanceService() { return attendanceService; }
+    
+    public TimetableService getTimetableService() { return timetableService; }
+    
+    public FeeService getFeeService() { return feeService; }
+    
+    public GradebookService getGradebookService() { return gradebookService; }
+    
+    public ReportService getReportService() { return reportService; }
+    
+    public Metrics getMetrics() { return metrics; }
+    
+    // A consistent point-in-time view of the people, courses and attendance, for long reads that
+    // should not see writers' changes half made; close it when done
+    public SchoolView openView() {
+        return new SchoolView(versions, students, teachers, courses, attendanceRecords);
+    }
+    
+    // Runs the change as one commit, so a view sees all of it or none of it
+    <R> R commit(Supplier<R> change) {
+        return versions.commit(change);
+    }
+    
+    // Times a change that the journal records, and returns once it is on disk. Once the journal has
+    // failed the change is refused, as it could no longer be saved; one under way when it fails has
+    // been made in memory and is reported as not saved, and is lost on restart.
+    <T> ServiceResult<T> write(Metrics.Timer timer, Supplier<ServiceResult<T>> change) {
+        return timer.time(() -> {
+            if (journal != null && journal.failure() != null) {
+                return ServiceResult.unavailable("Changes cannot be saved: " + journal.failure().getMessage());
+            }
+            try {
+                ServiceResult<T> result = change.get();
+                // Waits outside the change's locks, so other writers can join the same commit
+                if (journal != null && !syncDeferred.get()) {
+                    journal.sync();
+                }
+                return result;
+            } catch (UncheckedIOException e) {
+                return ServiceResult.unavailable("The change could not be saved: " + e.getCause().getMessage());
+            } catch (IOException e) {
+                return ServiceResult.unavailable("The change could not be saved: " + e.getMessage());
+            }
+        });
+    }
+    
+    // Runs a bulk load's writes without each waiting for the disk, then waits once for all of them,
+    // so the load is not held to one write per force. Throws if they could not be saved.
+    void writeAll(Runnable writes) throws IOException {
+        syncDeferred.set(true);
+        try {
+            writes.run();
+        } finally {
+            syncDeferred.set(false);
+        }
+        if (journal != null) {
+            journal.sync();
+        }
+    }
+    
+    // Records a change in the journal; returns false if this school is not persistent. Throws
+    // UncheckedIOException if the journal has failed.
+    boolean log(Consumer<SchoolJournal> change) {
+        if (journal == null) {
+            return false;
+        }
+        change.accept(journal);
+        if (journal.isSnapshotDue() && snapshotRunning.compareAndSet(false, true)) {
+            // Snapshot in the background so the writer that crossed the threshold is not held up
+            Thread snapshotter = new Thread(() -> {
+                try {
+                    takeSnapshot();
+                } finally {
+                    snapshotRunning.set(false);
+                }
+            }, "school-snapshot");
+            snapshotter.setDaemon(true);
+            snapshotter.start();
+        }
+        return true;
+    }
+    
+    // Cross-checks the derived state against a full scan; throws IllegalStateException on a mismatch.
+    // Only meaningful while no writers are running.
+    void checkInvariants() {
+        attendanceTotals.verifyAgainst(attendanceRecords);
+        attendanceRecords.verifyIndex();
+        checkRegistry("student", students);
+        checkRegistry("teacher", teachers);
+        checkRegistry("course", courses);
+        studentService.verifySearch();
+        teacherService.verifySearch();
+        enrollments.verify();
+        feeLedger.verify();
+        gradebook.verify();
+    }
+    
+    private static <T> void checkRegistry(String label, EntityRegistry<T> registry) {
+        int listed = 0;
+        for (T ignored : registry) {
+            listed++;
+        }
+        if (listed != registry.size()) {
+            throw new IllegalStateException("The " + label + " registry lists " + listed + " entries but holds " + registry.size());
+        }
+        registry.verifyOrders();
+    }
+    
+    // Snapshots a persistent school, e.g. before shutting down
+    public void checkpoint() {
+        if (journal != null) {
+            takeSnapshot();
+        }
+    }
+    
+    // Writes the full state as a snapshot so restart time does not grow with history
+    private void takeSnapshot() {
+        try {
+            // The cut is the number of attendance rows and of ledger rows the snapshot holds
+            journal.snapshot(() -> new int[] {attendanceRecords.size(), feeLedger.size()}, (cut, snapshot) -> {
+                courses.forEach(snapshot::course);
+                teachers.forEach(snapshot::teacher);
+                students.forEach(snapshot::student);
+                for (Course course : courses) {
+                    // Each roster is copied under its course's read lock, then written without it
+                    ServiceResult<EnrollmentService.CourseRoster> roster = enrollmentService.roster(course.getCode());
+                    if (roster.isOk() && !(roster.getValue().getStudents().isEmpty() && roster.getValue().getTeachers().isEmpty())) {
+                        snapshot.courseRoster(course.getCode(), ids(roster.getValue().getStudents(), Student::getId),
+                                ids(roster.getValue().getTeachers(), Teacher::getId));
+                    }
+                    // Marks follow the rosters, as marking needs an enrollment
+                    GradebookService.Marksheet marksheet = gradebookService.marksheet(course.getCode());
+                    if (marksheet != null) {
+                        for (Gradebook.Assessment assessment : marksheet.getAssessments()) {
+                            snapshot.assessment(course.getCode(), assessment);
+                        }
+                        if (!marksheet.getStudentIds().isEmpty()) {
+                            snapshot.courseMarks(course.getCode(), marksheet.getStudentIds(),
+                                    marksheet.getAssessments().size(), marksheet.getPoints());
+                        }
+                    }
+                }
+                snapshot.attendance(attendanceRecords, cut[0], students, courses);
+                snapshot.fees(feeLedger, cut[1], students);
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to write snapshot: " + e.getMessage());
+        }
+    }
+    
+    private static <T> List<String> ids(List<T> entities, Function<T, String> idOf) {
+        List<String> ids = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            ids.add(idOf.apply(entity));
+        }
+        return ids;
+    }
+    
+    // JournalReplay class that applies recovered changes without journaling them again
+    private class JournalReplay implements SchoolJournal.Replay {
+        @Override
+        public void studentAdded(Student student) {
+            students.add(student);
+        }
+        
+        @Override
+        public void studentUpdated(Student update) {
+            students.update(update.getId(), student -> {
+                student.setName(update.getName());
+                student.setEmail(update.getEmail());
+                student.setGrade(update.getGrade());
+            });
+        }
+        
+        @Override
+        public void studentRemoved(String id) {
+            Student removed = students.remove(id);
+            if (removed != null) {
+                attendanceRecords.retireStudent(removed);
+            }
+        }
+        
+        @Override
+        public void teacherAdded(Teacher teacher) {
+            teachers.add(teacher);
+        }
+        
+        @Override
+        public void teacherUpdated(Teacher update) {
+            teachers.update(update.getId(), teacher -> {
+                teacher.setName(update.getName());
+                teacher.setEmail(update.getEmail());
+                teacher.setDepartment(update.getDepartment());
+                teacher.setSalary(update.getSalary());
+            });
+        }
+        
+        @Override
+        public void teacherRemoved(String id) {
+            teachers.remove(id);
+        }
+        
+        @Override
+        public void courseAdded(Course course) {
+            courses.add(course);
+        }
+        
+        @Override
+        public void courseUpdated(Course update) {
+            courses.update(update.getCode(), course -> {
+                course.setName(update.getName());
+                course.setDescription(update.getDescription());
+            });
+        }
+        
+        @Override
+        public void courseRemoved(String code) {
+            Course removed = courses.remove(code);
+            if (removed != null) {
+                attendanceRecords.retireCourse(removed);
+            }
+        }
+        
+        @Override
+        public void attendanceMarked(String studentId, String courseCode, LocalDate date, boolean isPresent) {
+            Student student = students.get(studentId);
+            Course course = courses.get(courseCode);
+            if (student != null && course != null) {
+                attendanceRecords.add(student, course, date, isPresent);
+            }
+        }
+        
+        @Override
+        public void rollCall(String courseCode, LocalDate date, String[] studentIds, boolean[] present) {
+            Course course = courses.get(courseCode);
+            if (course == null) {
+                return;
+            }
+            Student[] marked = new Student[studentIds.length];
+            boolean[] markedPresent = new boolean[studentIds.length];
+            int count = 0;
+            for (int i = 0; i < studentIds.length; i++) {
+                Student student = students.get(studentIds[i]);
+                if (student != null) {
+                    marked[count] = student;
+                    markedPresent[count++] = present[i];
+                }
+            }
+            // Every student of the roll call may have been removed since it was logged
+            if (count == 0) {
+                return;
+            }
+            attendanceRecords.addAll(course, date, Arrays.copyOf(marked, count), Arrays.copyOf(markedPresent, count));
+        }
+        
+        @Override
+        public void studentEnrolled(String studentId, String courseCode) {
+            int student = students.ordinalOf(studentId);
+            int course = courses.ordinalOf(courseCode);
+            if (student != EntityRegistry.NO_ORDINAL && course != EntityRegistry.NO_ORDINAL) {
+                enrollments.enroll(student, course);
+            }
+        }
+        
+        @Override
+        public void studentWithdrawn(String studentId, String courseCode) {
+            int student = students.ordinalOf(studentId);
+            int course = courses.ordinalOf(courseCode);
+            if (student != EntityRegistry.NO_ORDINAL && course != EntityRegistry.NO_ORDINAL) {
+                enrollments.withdraw(student, course);
+                gradebook.withdraw(student, course);
+            }
+        }
+        
+        @Override
+        public void teacherAssigned(String teacherId, String courseCode) {
+            int teacher = teachers.ordinalOf(teacherId);
+            int course = courses.ordinalOf(courseCode);
+            if (teacher != EntityRegistry.NO_ORDINAL && course != EntityRegistry.NO_ORDINAL) {
+                enrollments.assign(teacher, course);
+            }
+        }
+        
+        @Override
+        public void teacherUnassigned(String teacherId, String courseCode) {
+            int teacher = teachers.ordinalOf(teacherId);
+            int course = courses.ordinalOf(courseCode);
+            if (teacher != EntityRegistry.NO_ORDINAL && course != EntityRegistry.NO_ORDINAL) {
+                enrollments.unassign(teacher, course);
+            }
+        }
+        
+        @Override
+        public void courseRoster(String courseCode, String[] studentIds, String[] teacherIds) {
+            for (String studentId : studentIds) {
+                studentEnrolled(studentId, courseCode);
+            }
+            for (String teacherId : teacherIds) {
+                teacherAssigned(teacherId, courseCode);
+            }
+        }
+        
+        @Override
+        public void attendanceStudent(Student student, boolean live) {
+            // Rows of removed students keep pointing at a detached copy
+            if (live) {
+                Student current = students.get(student.getId());
+                if (current == null) {
+                    // Added again after the snapshot wrote its students; the journal replays that add
+                    students.add(student);
+                    current = student;
+                }
+                attendanceRecords.defineStudent(current);
+            } else {
+                attendanceRecords.defineStudent(student);
+                attendanceRecords.retireStudent(student);
+            }
+        }
+        
+        @Override
+        public void attendanceCourse(Course course, boolean live) {
+            if (live) {
+                Course current = courses.get(course.getCode());
+                if (current == null) {
+                    courses.add(course);
+                    current = course;
+                }
+                attendanceRecords.defineCourse(current);
+            } else {
+                attendanceRecords.defineCourse(course);
+                attendanceRecords.retireCourse(course);
+            }
+        }
+        
+        @Override
+        public void attendanceRows(int count, int[] studentIndexes, int[] courseIndexes, int[] epochDays, long[] presence) {
+            attendanceRecords.addRows(count, studentIndexes, courseIndexes, epochDays, presence);
+        }
+        
+        @Override
+        public void feePosted(String studentId, FeeLedger.Kind kind, long cents, int epochDay, int dueDay, String description) {
+            int student = students.ordinalOf(studentId);
+            if (student != EntityRegistry.NO_ORDINAL) {
+                feeLedger.post(student, kind, cents, epochDay, dueDay, description);
+            }
+        }
+        
+        @Override
+        public void feesInvoiced(String[] studentIds, long cents, int epochDay, int dueDay, String description) {
+            int[] ordinals = new int[studentIds.length];
+            int count = 0;
+            for (String studentId : studentIds) {
+                int student = students.ordinalOf(studentId);
+                if (student != EntityRegistry.NO_ORDINAL) {
+                    ordinals[count++] = student;
+                }
+            }
+            feeLedger.postAll(ordinals, count, FeeLedger.Kind.INVOICE, cents, epochDay, dueDay, description);
+        }
+        
+        @Override
+        public void feeRows(String[] studentIds, String[] descriptions, int count, int[] studentColumn, byte[] kinds,
+                            long[] cents, int[] epochDays, int[] dueDays, int[] descriptionColumn) {
+            int[] ordinals = new int[studentIds.length];
+            for (int i = 0; i < studentIds.length; i++) {
+                ordinals[i] = students.ordinalOf(studentIds[i]);
+            }
+            // The block's rows with the same description share its string
+            String[] descriptionTexts = new String[count];
+            // Only registered students' rows are written, and the snapshot adds its students first
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int student = ordinals[studentColumn[i]];
+                if (student != EntityRegistry.NO_ORDINAL) {
+                    studentColumn[kept] = student;
+                    kinds[kept] = kinds[i];
+                    cents[kept] = cents[i];
+                    epochDays[kept] = epochDays[i];
+                    dueDays[kept] = dueDays[i];
+                    descriptionTexts[kept++] = descriptions[descriptionColumn[i]];
+                }
+            }
+            feeLedger.addRows(kept, studentColumn, kinds, cents, epochDays, dueDays, descriptionTexts);
+        }
+        
+        @Override
+        public void assessmentAdded(String courseCode, Gradebook.Assessment assessment) {
+            int course = courses.ordinalOf(courseCode);
+            if (course != EntityRegistry.NO_ORDINAL) {
+                gradebook.addAssessment(course, assessment);
+            }
+        }
+        
+        @Override
+        public void markRecorded(String studentId, String courseCode, String assessment, int points) {
+            int student = students.ordinalOf(studentId);
+            int course = courses.ordinalOf(courseCode);
+            int index = course == EntityRegistry.NO_ORDINAL ? -1 : gradebook.assessmentIndex(course, assessment);
+            if (student != EntityRegistry.NO_ORDINAL && index >= 0) {
+                gradebook.record(student, course, index, points);
+            }
+        }
+        
+        @Override
+        public void courseMarks(String courseCode, String[] studentIds, int assessments, int[] points) {
+            int course = courses.ordinalOf(courseCode);
+            if (course == EntityRegistry.NO_ORDINAL) {
+                return;
+            }
+            for (int i = 0; i < studentIds.length; i++) {
+                int student = students.ordinalOf(studentIds[i]);
+                for (int assessment = 0; student != EntityRegistry.NO_ORDINAL && assessment < assessments; assessment++) {
+                    if (points[i * assessments + assessment] != Gradebook.UNMARKED) {
+                        gradebook.record(student, course, assessment, points[i * assessments + assessment]);
+                    }
+                }
+            }
+        }
+    }
+    
+    // Compaction class running an attendance store's compaction passes. It holds the store weakly,
+    // so a school that is no longer used is collected and its passes stop.
+    private static class Compaction implements Runnable {
+        private final WeakReference<AttendanceStore> store;
+        private volatile ScheduledFuture<?> task;
+        
+        private Compaction(AttendanceStore store) {
+            this.store = new WeakReference<>(store);
+        }
+        
+        static void schedule(AttendanceStore store) {
+            Compaction compaction = new Compaction(store);
+            compaction.task = COMPACTOR.scheduleWithFixedDelay(compaction, COMPACTION_INTERVAL_SECONDS,
+                    COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        
+        @Override
+        public void run() {
+            AttendanceStore current = store.get();
+            if (current == null) {
+                task.cancel(false);
+                return;
+            }
+            try {
+                current.compact();
+            } catch (RuntimeException e) {
+                // Rows not reclaimed by a failed pass are picked again by the next one
+                System.err.println("Attendance compaction failed: " + e);
+            }
+        }
+    }
+}
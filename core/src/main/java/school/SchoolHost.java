@@ -0,0 +1,416 @@
+package school;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// SchoolHost class running many schools, or tenants, in one process.
+//
+// Each school is placed on one of a fixed set of shards, one per core by default, and every change
+// to it runs on that shard's single thread, so a school has exactly one writer and its locks are
+// never contended. Schools are spread over the shards as they are added, the next one going to the
+// shard holding the fewest. Reads need no hop: the school's services are safe to read from any
+// thread, and reports read point-in-time views. District reports summarise every school at once
+// on the report pool, each from a view of its school, and merge the summaries; they never run on a
+// shard, so they hold up no school's writes. A persistent host keeps each school's
+// journal in a subdirectory of its data directory named after the tenant.
+class SchoolHost implements Closeable {
+    // Tenant IDs name directories and URL path segments
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]{0,63}");
+
+    private final Path dataDirectory;
+    private final Shard[] shards;
+    private final ConcurrentMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+    private final Queue<SchoolJournal> journals = new ConcurrentLinkedQueue<>();
+    private final ForkJoinPool reportPool;
+
+    // Creates a host with one shard per core; a null data directory keeps the schools in memory
+    public SchoolHost(Path dataDirectory) {
+        this(dataDirectory, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool());
+    }
+
+    // The report pool runs district reports, each school's summary and the parallel part of its analytics
+    public SchoolHost(Path dataDirectory, int shardCount, ForkJoinPool reportPool) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("A host needs at least one shard.");
+        }
+        this.dataDirectory = dataDirectory;
+        this.reportPool = reportPool;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    // Opens a persistent host with the listed tenants, or every subdirectory of the data directory
+    // if none are listed; the schools recover on their shards in parallel
+    static SchoolHost open(Path dataDirectory, List<String> tenantIds) throws IOException {
+        List<String> ids = tenantIds;
+        if (ids.isEmpty() && Files.isDirectory(dataDirectory)) {
+            try (Stream<Path> children = Files.list(dataDirectory)) {
+                ids = children.filter(Files::isDirectory).map(child -> child.getFileName().toString())
+                        .filter(id -> TENANT_ID.matcher(id).matches()).sorted().toList();
+            }
+        }
+        SchoolHost host = new SchoolHost(dataDirectory);
+        try {
+            List<CompletableFuture<School>> opening = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                opening.add(host.open(id));
+            }
+            for (CompletableFuture<School> school : opening) {
+                join(school);
+            }
+        } catch (RuntimeException e) {
+            host.close();
+            throw e;
+        }
+        return host;
+    }
+
+    // Adds a school named after the tenant, recovered from its journal on a persistent host and
+    // starting from the sample data otherwise; completes once the school is ready
+    public CompletableFuture<School> open(String tenantId) {
+        if (dataDirectory == null) {
+            return add(tenantId, () -> new School(tenantId));
+        }
+        return add(tenantId, () -> {
+            SchoolJournal journal;
+            try {
+                journal = SchoolJournal.open(dataDirectory.resolve(tenantId));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the journal of " + tenantId, e);
+            }
+            try {
+                School school = new School(tenantId, journal);
+                journals.add(journal);
+                return school;
+            } catch (RuntimeException e) {
+                closeQuietly(journal);
+                throw e;
+            }
+        });
+    }
+
+    // Adds the school the supplier creates, building it on the tenant's shard
+    public CompletableFuture<School> add(String tenantId, Supplier<School> create) {
+        if (tenantId == null || !TENANT_ID.matcher(tenantId).matches()) {
+            throw new IllegalArgumentException("Tenant IDs are letters, digits, '-' and '_', up to 64 characters.");
+        }
+        Tenant tenant;
+        synchronized (this) {
+            if (tenants.containsKey(tenantId)) {
+                throw new IllegalStateException("Tenant " + tenantId + " already exists.");
+            }
+            Shard shard = shards[0];
+            for (Shard candidate : shards) {
+                if (candidate.tenants < shard.tenants) {
+                    shard = candidate;
+                }
+            }
+            shard.tenants++;
+            tenant = new Tenant(tenantId, shard);
+            tenants.put(tenantId, tenant);
+        }
+        CompletableFuture.supplyAsync(create, tenant.shard.loop).whenComplete((school, failure) -> {
+            if (failure != null) {
+                synchronized (this) {
+                    tenants.remove(tenantId);
+                    tenant.shard.tenants--;
+                }
+                tenant.school.completeExceptionally(failure);
+            } else {
+                tenant.school.complete(school);
+            }
+        });
+        return tenant.school;
+    }
+
+    // The tenant's school, waiting for it to be ready, or null if there is no such tenant
+    public School school(String tenantId) {
+        Tenant tenant = tenants.get(tenantId);
+        return tenant == null ? null : join(tenant.school);
+    }
+
+    public List<String> tenantIds() {
+        List<String> ids = new ArrayList<>(tenants.keySet());
+        Collections.sort(ids);
+        return ids;
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    // Index of the shard the tenant's changes run on
+    public int shardOf(String tenantId) {
+        return tenant(tenantId).shard.index;
+    }
+
+    // Queues the change on the tenant's shard; the future completes with its result
+    public <R> CompletableFuture<R> submit(String tenantId, Function<School, R> change) {
+        Tenant tenant = tenant(tenantId);
+        return tenant.school.thenApplyAsync(change, tenant.shard.loop);
+    }
+
+    // Runs the change on the tenant's shard and waits for its result; a change made from the shard
+    // itself runs in place
+    public <R> R call(String tenantId, Function<School, R> change) {
+        Tenant tenant = tenant(tenantId);
+        if (Thread.currentThread() == tenant.shard.thread) {
+            return change.apply(join(tenant.school));
+        }
+        return join(tenant.school.thenApplyAsync(change, tenant.shard.loop));
+    }
+
+    // Every school's summary and the district totals. The schools are summarised at once on the
+    // report pool, each from one point-in-time view, while their shards carry on with writes.
+    public DistrictReport districtReport() {
+        List<ForkJoinTask<SchoolSummary>> parts = new ArrayList<>(tenants.size());
+        for (Tenant tenant : tenants.values()) {
+            // Schools still recovering, or that failed to, are left out
+            if (!tenant.school.isDone() || tenant.school.isCompletedExceptionally()) {
+                continue;
+            }
+            parts.add(reportPool.submit(() -> summarise(tenant.id, tenant.school.join())));
+        }
+        List<SchoolSummary> schools = new ArrayList<>(parts.size());
+        for (ForkJoinTask<SchoolSummary> part : parts) {
+            schools.add(part.join());
+        }
+        schools.sort(Comparator.comparing(SchoolSummary::getTenantId));
+        return new DistrictReport(schools);
+    }
+
+    private SchoolSummary summarise(String tenantId, School school) {
+        try (SchoolView view = school.openView()) {
+            long students = view.students().count();
+            long courses = view.courses().count();
+            return new SchoolSummary(tenantId, school.getName(), students, courses,
+                    new ReportEngine(view, reportPool).run());
+        }
+    }
+
+    // Checkpoints every school on its shard, then stops the shards and closes the journals
+    @Override
+    public void close() {
+        List<CompletableFuture<Void>> checkpoints = new ArrayList<>();
+        for (Tenant tenant : tenants.values()) {
+            checkpoints.add(tenant.school.thenAcceptAsync(School::checkpoint, tenant.shard.loop)
+                    .exceptionally(failure -> null));
+        }
+        CompletableFuture.allOf(checkpoints.toArray(CompletableFuture[]::new)).join();
+        for (Shard shard : shards) {
+            shard.loop.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.loop.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SchoolJournal journal : journals) {
+            closeQuietly(journal);
+        }
+    }
+
+    private Tenant tenant(String tenantId) {
+        Tenant tenant = tenants.get(tenantId);
+        if (tenant == null) {
+            throw new IllegalArgumentException("No school with tenant ID " + tenantId + ".");
+        }
+        return tenant;
+    }
+
+    // Waits for the future, rethrowing what it failed with
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(SchoolJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close a journal: " + e.getMessage());
+        }
+    }
+
+    // Shard class with the single thread that runs its schools' changes
+    private static final class Shard {
+        final int index;
+        final ExecutorService loop;
+        volatile Thread thread;
+        // Guarded by the host
+        int tenants;
+
+        Shard(int index) {
+            this.index = index;
+            this.loop = Executors.newSingleThreadExecutor(runnable -> {
+                Thread created = new Thread(runnable, "school-shard-" + index);
+                created.setDaemon(true);
+                thread = created;
+                return created;
+            });
+        }
+    }
+
+    // Tenant class pairing a tenant ID with its shard and its school, once the school is ready
+    private static final class Tenant {
+        final String id;
+        final Shard shard;
+        final CompletableFuture<School> school = new CompletableFuture<>();
+
+        Tenant(String id, Shard shard) {
+            this.id = id;
+            this.shard = shard;
+        }
+    }
+
+    // SchoolSummary class with one school's headcounts, payroll and attendance, read from one view
+    static class SchoolSummary {
+        private final String tenantId;
+        private final String name;
+        private final long students;
+        private final long courses;
+        private final ReportEngine.Analytics analytics;
+        private final long teachers;
+        private final long payrollCents;
+        private final ReportEngine.Presence attendance;
+
+        SchoolSummary(String tenantId, String name, long students, long courses, ReportEngine.Analytics analytics) {
+            this.tenantId = tenantId;
+            this.name = name;
+            this.students = students;
+            this.courses = courses;
+            this.analytics = analytics;
+            long teachers = 0;
+            long payrollCents = 0;
+            for (ReportEngine.Payroll payroll : analytics.getSalaryByDepartment().values()) {
+                teachers += payroll.getTeachers();
+                payrollCents = Math.addExact(payrollCents, payroll.getTotal().getCents());
+            }
+            this.teachers = teachers;
+            this.payrollCents = payrollCents;
+            long present = 0;
+            long absent = 0;
+            for (ReportEngine.Presence week : analytics.getAttendanceByWeek().values()) {
+                present += week.getPresent();
+                absent += week.getAbsent();
+            }
+            this.attendance = new ReportEngine.Presence(present, absent);
+        }
+
+        public String getTenantId() { return tenantId; }
+
+        public String getName() { return name; }
+
+        public long getStudents() { return students; }
+
+        public long getTeachers() { return teachers; }
+
+        public long getCourses() { return courses; }
+
+        public Money getPayroll() { return Money.ofCents(payrollCents); }
+
+        public ReportEngine.Presence getAttendance() { return attendance; }
+
+        public int getChronicAbsentees() { return analytics.getChronicAbsentees().size(); }
+
+        // The school's full analytics, which the district totals are merged from
+        public ReportEngine.Analytics getAnalytics() { return analytics; }
+    }
+
+    // DistrictReport class with every school's summary, by tenant ID, and the district totals.
+    // Courses are each school's own, so attendance is merged by grade and week but not by course.
+    static class DistrictReport {
+        private final List<SchoolSummary> schools;
+        private final long students;
+        private final long teachers;
+        private final long courses;
+        private final long chronicAbsentees;
+        private final long payrollCents;
+        private final ReportEngine.Presence attendance;
+        private final Map<String, ReportEngine.Payroll> salaryByDepartment = new TreeMap<>();
+        private final Map<String, ReportEngine.Presence> attendanceByGrade = new TreeMap<>();
+        private final Map<LocalDate, ReportEngine.Presence> attendanceByWeek = new TreeMap<>();
+
+        DistrictReport(List<SchoolSummary> schools) {
+            this.schools = schools;
+            long students = 0;
+            long teachers = 0;
+            long courses = 0;
+            long chronicAbsentees = 0;
+            long payrollCents = 0;
+            long present = 0;
+            long absent = 0;
+            for (SchoolSummary school : schools) {
+                students += school.getStudents();
+                teachers += school.getTeachers();
+                courses += school.getCourses();
+                chronicAbsentees += school.getChronicAbsentees();
+                payrollCents = Math.addExact(payrollCents, school.getPayroll().getCents());
+                present += school.getAttendance().getPresent();
+                absent += school.getAttendance().getAbsent();
+                ReportEngine.Analytics analytics = school.getAnalytics();
+                // Merged into fresh payrolls, as combining changes the payroll it is called on
+                analytics.getSalaryByDepartment().forEach((department, payroll) ->
+                        salaryByDepartment.computeIfAbsent(department, key -> new ReportEngine.Payroll()).combine(payroll));
+                analytics.getAttendanceByGrade().forEach((grade, presence) ->
+                        attendanceByGrade.merge(grade, presence, DistrictReport::add));
+                analytics.getAttendanceByWeek().forEach((week, presence) ->
+                        attendanceByWeek.merge(week, presence, DistrictReport::add));
+            }
+            this.students = students;
+            this.teachers = teachers;
+            this.courses = courses;
+            this.chronicAbsentees = chronicAbsentees;
+            this.payrollCents = payrollCents;
+            this.attendance = new ReportEngine.Presence(present, absent);
+        }
+
+        private static ReportEngine.Presence add(ReportEngine.Presence a, ReportEngine.Presence b) {
+            return new ReportEngine.Presence(a.getPresent() + b.getPresent(), a.getAbsent() + b.getAbsent());
+        }
+
+        public List<SchoolSummary> getSchools() { return schools; }
+
+        public long getStudents() { return students; }
+
+        public long getTeachers() { return teachers; }
+
+        public long getCourses() { return courses; }
+
+        public long getChronicAbsentees() { return chronicAbsentees; }
+
+        public Money getPayroll() { return Money.ofCents(payrollCents); }
+
+        public ReportEngine.Presence getAttendance() { return attendance; }
+
+        public Map<String, ReportEngine.Payroll> getSalaryByDepartment() { return salaryByDepartment; }
+
+        public Map<String, ReportEngine.Presence> getAttendanceByGrade() { return attendanceByGrade; }
+
+        // Keyed by the Monday that starts each week
+        public Map<LocalDate, ReportEngine.Presence> getAttendanceByWeek() { return attendanceByWeek; }
+    }
+}
@@ -0,0 +1,1330 @@
+package school;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+// SchoolHttpServer class exposing the school services as a JSON API.
+//
+//   GET/POST        /students            GET/PUT/DELETE /students/{id}
+//   GET/POST        /teachers            GET/PUT/DELETE /teachers/{id}
+//   GET/POST        /courses             GET/PUT/DELETE /courses/{code}
+//   GET/POST        /attendance          GET filters: studentId, courseCode, from, to, date, present, limit
+//   GET/POST/DELETE /enrollments         GET takes course (comma-separated codes give the students in
+//                                        all of them), studentId or teacherId; POST takes a body and
+//                                        DELETE query parameters with courseCode and studentId or teacherId
+//   GET/POST/PUT    /timetable           GET lists the meetings of the week, or only those of one course,
+//                                        studentId, teacherId or room; POST generates a timetable from
+//                                        optional rooms (0 for enough), capacity and meetings per week;
+//                                        PUT moves a meeting: courseCode, section, from, to and optional room
+//   GET             /timetable/conflicts
+//   POST            /fees                invoices every student, or one grade: description, amount,
+//                                        optional grade, date and dueDate
+//   GET/POST        /fees/{studentId}    GET gives the statement; POST posts kind (invoice, payment or
+//                                        adjustment), amount, description, optional date and dueDate
+//   GET/POST        /assessments/{code}  GET lists the course's assessments; POST adds one: name, weight
+//                                        and maxPoints
+//   GET/POST        /grades              GET ranks course (by score) or grade (by GPA) from the top,
+//                                        with optional from and limit; POST records a mark: studentId,
+//                                        courseCode, assessment and points
+//   GET             /grades/{studentId}  gives the transcript, or with course only that course's grade
+//
+// Listings are paged: GET takes sort, limit (default 100) and the cursor returned as nextCursor by
+// the previous page. Attendance without filters pages in date order. Students and teachers are
+// searched instead when GET has q (words of the name or email) or a grade, department or email
+// domain to filter on; fuzzy=true also matches misspelt words.
+//   GET             /reports/{students|teachers|courses|attendance|aged-debt}    ?format=csv streams the rows as CSV
+//   GET             /reports/analytics
+//   GET             /metrics             operation latencies, collection sizes and estimated heap in
+//                                        the Prometheus text format
+// The aged-debt report takes an optional asOf date, today by default.
+//
+// A server for a SchoolHost serves each school's API under its tenant ID instead:
+//   GET/POST        /schools             POST adds a school: id
+//   GET             /schools/{tenant}    gives the school's name and shard
+//   any             /schools/{tenant}/...   the API above, for that school
+//   GET             /district            every school's headcounts, payroll and attendance, and the
+//                                        district totals by department, grade and week
+//   GET             /metrics             every school's metrics, labelled by school
+// Changes run on the school's shard, with the request body read beforehand and the response held
+// in memory until the request's own thread sends it, so the shard never waits on the network;
+// reads run on the request's own thread.
+//
+// Each request runs on its own virtual thread when the JDK has them, and on a fixed pool of
+// platform threads otherwise. Idle keep-alive connections are parked on the server's selector
+// and hold no thread, so the connection count is bounded by file descriptors, not threads.
+class SchoolHttpServer implements Closeable {
+    static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 16_384;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_IDLE_CONNECTIONS = 65_536;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final Set<String> ATTENDANCE_FILTERS = Set.of("studentId", "courseCode", "from", "to", "date", "present");
+
+    // One of these is set: the school served, or the host whose schools are served
+    private final School school;
+    private final SchoolHost host;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public SchoolHttpServer(School school, InetSocketAddress address) throws IOException {
+        this(school, null, address);
+    }
+
+    public SchoolHttpServer(SchoolHost host, InetSocketAddress address) throws IOException {
+        this(null, host, address);
+    }
+
+    private SchoolHttpServer(School school, SchoolHost host, InetSocketAddress address) throws IOException {
+        this.school = school;
+        this.host = host;
+        // Server tuning is read when the server classes load. Small JSON responses should not wait on
+        // Nagle's algorithm, and the default of 200 idle keep-alive connections would make most
+        // tablets reconnect for every request.
+        defaultProperty("sun.net.httpserver.nodelay", "true");
+        defaultProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting requests, gives in-flight ones a second to finish, then stops the workers
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void defaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    // Uses a virtual thread per request where the runtime supports it (Java 21+)
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Handlers never block for long, so a few platform threads per core keep up
+            int threads = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "school-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+            String method = exchange.getRequestMethod();
+            try {
+                if (host == null) {
+                    route(exchange, school, method, path, 0);
+                } else {
+                    routeHost(exchange, method, path);
+                }
+            } catch (IllegalArgumentException | DateTimeException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, "Internal error: " + e);
+            }
+        }
+    }
+
+    // Serves one school's API, whose resource is path[from] and key path[from + 1]
+    private void route(HttpExchange exchange, School school, String method, String[] path, int from) throws IOException {
+        String key = path.length > from + 1 ? path[from + 1] : null;
+        if (path.length > from + 2) {
+            sendError(exchange, 404, "No such resource.");
+            return;
+        }
+        switch (path[from]) {
+            case "students" -> handleStudents(exchange, school, method, key);
+            case "teachers" -> handleTeachers(exchange, school, method, key);
+            case "courses" -> handleCourses(exchange, school, method, key);
+            case "enrollments" -> handleEnrollments(exchange, school, method, key);
+            case "attendance" -> handleAttendance(exchange, school, method, key);
+            case "timetable" -> handleTimetable(exchange, school, method, key);
+            case "fees" -> handleFees(exchange, school, method, key);
+            case "assessments" -> handleAssessments(exchange, school, method, key);
+            case "grades" -> handleGrades(exchange, school, method, key);
+            case "reports" -> handleReports(exchange, school, method, key);
+            case "metrics" -> handleMetrics(exchange, method, key, List.of(school.getMetrics()));
+            default -> sendError(exchange, 404, "No such resource.");
+        }
+    }
+
+    private void routeHost(HttpExchange exchange, String method, String[] path) throws IOException {
+        switch (path[0]) {
+            case "schools" -> {
+                if (path.length == 1) {
+                    handleSchools(exchange, method);
+                    return;
+                }
+                String tenantId = path[1];
+                School tenant = host.school(tenantId);
+                if (tenant == null) {
+                    sendError(exchange, 404, "No school with tenant ID " + tenantId + ".");
+                } else if (path.length == 2) {
+                    if (method.equals("GET")) {
+                        StringBuilder json = new StringBuilder(128).append("{\"school\":");
+                        appendSchool(json, tenantId);
+                        send(exchange, 200, json.append('}').toString());
+                    } else {
+                        sendMethodNotAllowed(exchange, "GET");
+                    }
+                } else if (method.equals("GET")) {
+                    route(exchange, tenant, method, path, 2);
+                } else {
+                    ShardExchange onShard = new ShardExchange(exchange,
+                            exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1));
+                    try {
+                        host.call(tenantId, shardSchool -> {
+                            try {
+                                route(onShard, shardSchool, method, path, 2);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            return null;
+                        });
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    onShard.send();
+                }
+            }
+            case "metrics" -> {
+                List<Metrics> schools = new ArrayList<>();
+                for (String tenantId : host.tenantIds()) {
+                    schools.add(host.school(tenantId).getMetrics());
+                }
+                handleMetrics(exchange, method, path.length > 1 ? path[1] : null, schools);
+            }
+            case "district" -> {
+                if (path.length > 1) {
+                    sendError(exchange, 404, "No such resource.");
+                } else if (method.equals("GET")) {
+                    send(exchange, 200, districtJson(host.districtReport()));
+                } else {
+                    sendMethodNotAllowed(exchange, "GET");
+                }
+            }
+            default -> sendError(exchange, 404, "No such resource.");
+        }
+    }
+
+    private static void handleMetrics(HttpExchange exchange, String method, String key, List<Metrics> schools)
+            throws IOException {
+        if (key != null) {
+            sendError(exchange, 404, "No such resource.");
+            return;
+        }
+        if (!method.equals("GET")) {
+            sendMethodNotAllowed(exchange, "GET");
+            return;
+        }
+        byte[] bytes = Metrics.prometheus(schools).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void handleSchools(HttpExchange exchange, String method) throws IOException {
+        switch (method) {
+            case "GET" -> sendList(exchange, host.tenantIds(), this::appendSchool);
+            case "POST" -> {
+                String tenantId = required(readBody(exchange), "id");
+                if (host.school(tenantId) != null) {
+                    sendError(exchange, 409, "Tenant " + tenantId + " already exists.");
+                    return;
+                }
+                try {
+                    host.open(tenantId).join();
+                } catch (IllegalStateException e) {
+                    sendError(exchange, 409, e.getMessage());
+                    return;
+                }
+                StringBuilder json = new StringBuilder(128).append("{\"message\":\"School added.\",\"school\":");
+                appendSchool(json, tenantId);
+                send(exchange, 201, json.append('}').toString());
+            }
+            default -> sendMethodNotAllowed(exchange, "GET, POST");
+        }
+    }
+
+    private void appendSchool(StringBuilder json, String tenantId) {
+        json.append("{\"id\":");
+        Json.quote(json, tenantId).append(",\"name\":");
+        Json.quote(json, host.school(tenantId).getName()).append(",\"shard\":").append(host.shardOf(tenantId)).append('}');
+    }
+
+    private void handleStudents(HttpExchange exchange, School school, String method, String id) throws IOException {
+        StudentService students = school.getStudentService();
+        if (id == null) {
+            switch (method) {
+                case "GET" -> {
+                    Map<String, String> paging = queryParameters(exchange);
+                    if (paging.containsKey("q") || paging.containsKey("grade") || paging.containsKey("domain")) {
+                        sendSearch(exchange, "students", students.search(searchQuery(paging, "grade")),
+                                SchoolHttpServer::appendStudent);
+                        return;
+                    }
+                    sendPage(exchange, "students", students.page(paging.getOrDefault("sort", "id"), paging.get("cursor"),
+                            pageSize(paging)), SchoolHttpServer::appendStudent);
+                }
+                case "POST" -> {
+                    Map<String, String> body = readBody(exchange);
+                    String enrollmentDate = body.get("enrollmentDate");
+                    sendResult(exchange, 201, "student", students.add(required(body, "id"), required(body, "name"),
+                            required(body, "email"), required(body, "grade"),
+                            enrollmentDate == null ? LocalDate.now() : LocalDate.parse(enrollmentDate)),
+                            SchoolHttpServer::appendStudent);
+                }
+                default -> sendMethodNotAllowed(exchange, "GET, POST");
+            }
+            return;
+        }
+        switch (method) {
+            case "GET" -> sendFound(exchange, "student", students.find(id), "Student with ID " + id + " not found.",
+                    SchoolHttpServer::appendStudent);
+            case "PUT" -> {
+                Map<String, String> body = readBody(exchange);
+                StudentService.StudentUpdate update = new StudentService.StudentUpdate()
+                        .name(body.get("name"))
+                        .email(body.get("email"))
+                        .grade(body.get("grade"));
+                sendResult(exchange, 200, "student", students.update(id, update), SchoolHttpServer::appendStudent);
+            }
+            case "DELETE" -> sendResult(exchange, 200, "student", students.remove(id), SchoolHttpServer::appendStudent);
+            default -> sendMethodNotAllowed(exchange, "GET, PUT, DELETE");
+        }
+    }
+
+    private void handleTeachers(HttpExchange exchange, School school, String method, String id) throws IOException {
+        TeacherService teachers = school.getTeacherService();
+        if (id == null) {
+            switch (method) {
+                case "GET" -> {
+                    Map<String, String> paging = queryParameters(exchange);
+                    if (paging.containsKey("q") || paging.containsKey("department") || paging.containsKey("domain")) {
+                        sendSearch(exchange, "teachers", teachers.search(searchQuery(paging, "department")),
+                                SchoolHttpServer::appendTeacher);
+                        return;
+                    }
+                    sendPage(exchange, "teachers", teachers.page(paging.getOrDefault("sort", "id"), paging.get("cursor"),
+                            pageSize(paging)), SchoolHttpServer::appendTeacher);
+                }
+                case "POST" -> {
+                    Map<String, String> body = readBody(exchange);
+                    sendResult(exchange, 201, "teacher", teachers.add(required(body, "id"), required(body, "name"),
+                            required(body, "email"), required(body, "department"),
+                            Money.parse(required(body, "salary"))), SchoolHttpServer::appendTeacher);
+                }
+                default -> sendMethodNotAllowed(exchange, "GET, POST");
+            }
+            return;
+        }
+        switch (method) {
+            case "GET" -> sendFound(exchange, "teacher", teachers.find(id), "Teacher with ID " + id + " not found.",
+                    SchoolHttpServer::appendTeacher);
+            case "PUT" -> {
+                Map<String, String> body = readBody(exchange);
+                TeacherService.TeacherUpdate update = new TeacherService.TeacherUpdate()
+                        .name(body.get("name"))
+                        .email(body.get("email"))
+                        .department(body.get("department"));
+                if (body.get("salary") != null) {
+                    update.salary(Money.parse(body.get("salary")));
+                }
+                sendResult(exchange, 200, "teacher", teachers.update(id, update), SchoolHttpServer::appendTeacher);
+            }
+            case "DELETE" -> sendResult(exchange, 200, "teacher", teachers.remove(id), SchoolHttpServer::appendTeacher);
+            default -> sendMethodNotAllowed(exchange, "GET, PUT, DELETE");
+        }
+    }
+
+    private void handleCourses(HttpExchange exchange, School school, String method, String code) throws IOException {
+        CourseService courses = school.getCourseService();
+        if (code == null) {
+            switch (method) {
+                case "GET" -> {
+                    Map<String, String> paging = queryParameters(exchange);
+                    sendPage(exchange, "courses", courses.page(paging.getOrDefault("sort", "code"), paging.get("cursor"),
+                            pageSize(paging)), SchoolHttpServer::appendCourse);
+                }
+                case "POST" -> {
+                    Map<String, String> body = readBody(exchange);
+                    sendResult(exchange, 201, "course", courses.add(required(body, "code"), required(body, "name"),
+                            required(body, "description")), SchoolHttpServer::appendCourse);
+                }
+                default -> sendMethodNotAllowed(exchange, "GET, POST");
+            }
+            return;
+        }
+        switch (method) {
+            case "GET" -> sendFound(exchange, "course", courses.find(code), "Course with code " + code + " not found.",
+                    SchoolHttpServer::appendCourse);
+            case "PUT" -> {
+                Map<String, String> body = readBody(exchange);
+                CourseService.CourseUpdate update = new CourseService.CourseUpdate()
+                        .name(body.get("name"))
+                        .description(body.get("description"));
+                sendResult(exchange, 200, "course", courses.update(code, update), SchoolHttpServer::appendCourse);
+            }
+            case "DELETE" -> sendResult(exchange, 200, "course", courses.remove(code), SchoolHttpServer::appendCourse);
+            default -> sendMethodNotAllowed(exchange, "GET, PUT, DELETE");
+        }
+    }
+
+    private void handleEnrollments(HttpExchange exchange, School school, String method, String key) throws IOException {
+        if (key != null) {
+            sendError(exchange, 404, "No such resource.");
+            return;
+        }
+        EnrollmentService enrollments = school.getEnrollmentService();
+        switch (method) {
+            case "GET" -> {
+                Map<String, String> parameters = queryParameters(exchange);
+                if (parameters.containsKey("course")) {
+                    sendSearch(exchange, "students", enrollments.studentsInAll(
+                            Arrays.asList(parameters.get("course").split(","))), SchoolHttpServer::appendStudent);
+                } else if (parameters.containsKey("studentId")) {
+                    sendSearch(exchange, "courses", enrollments.coursesOfStudent(parameters.get("studentId")),
+                            SchoolHttpServer::appendCourse);
+                } else if (parameters.containsKey("teacherId")) {
+                    sendSearch(exchange, "courses", enrollments.coursesOfTeacher(parameters.get("teacherId")),
+                            SchoolHttpServer::appendCourse);
+                } else {
+                    throw new IllegalArgumentException("One of course, studentId or teacherId is required.");
+                }
+            }
+            case "POST", "DELETE" -> {
+                Map<String, String> fields = method.equals("POST") ? readBody(exchange) : queryParameters(exchange);
+                String courseCode = required(fields, "courseCode");
+                boolean join = method.equals("POST");
+                ServiceResult<Course> result;
+                if (fields.containsKey("studentId")) {
+                    String studentId = fields.get("studentId");
+                    result = join ? enrollments.enroll(studentId, courseCode) : enrollments.withdraw(studentId, courseCode);
+                } else if (fields.containsKey("teacherId")) {
+                    String teacherId = fields.get("teacherId");
+                    result = join ? enrollments.assign(teacherId, courseCode) : enrollments.unassign(teacherId, courseCode);
+                } else {
+                    throw new IllegalArgumentException("Field 'studentId' or 'teacherId' is required.");
+                }
+                sendResult(exchange, join ? 201 : 200, "course", result, SchoolHttpServer::appendCourse);
+            }
+            default -> sendMethodNotAllowed(exchange, "GET, POST, DELETE");
+        }
+    }
+
+    private void handleTimetable(HttpExchange exchange, School school, String method, String key) throws IOException {
+        TimetableService timetable = school.getTimetableService();
+        if (key != null) {
+            if (!key.equals("conflicts")) {
+                sendError(exchange, 404, "No such resource.");
+            } else if (!method.equals("GET")) {
+                sendMethodNotAllowed(exchange, "GET");
+            } else {
+                sendSearch(exchange, "conflicts", timetable.conflicts(), SchoolHttpServer::appendConflict);
+            }
+            return;
+        }
+        switch (method) {
+            case "GET" -> {
+                Map<String, String> parameters = queryParameters(exchange);
+                ServiceResult<List<Timetable.Meeting>> meetings;
+                if (parameters.containsKey("course")) {
+                    meetings = timetable.courseTimetable(parameters.get("course"));
+                } else if (parameters.containsKey("studentId")) {
+                    meetings = timetable.studentTimetable(parameters.get("studentId"));
+                } else if (parameters.containsKey("teacherId")) {
+                    meetings = timetable.teacherTimetable(parameters.get("teacherId"));
+                } else if (parameters.containsKey("room")) {
+                    meetings = timetable.roomTimetable(parameters.get("room"));
+                } else {
+                    ServiceResult<Timetable> current = timetable.current();
+                    meetings = current.isOk() ? ServiceResult.ok(current.getValue().meetings(), current.getMessage())
+                            : ServiceResult.notFound(current.getMessage());
+                }
+                sendSearch(exchange, "meetings", meetings, SchoolHttpServer::appendMeeting);
+            }
+            case "POST" -> {
+                Map<String, String> body = readBody(exchange);
+                sendResult(exchange, 201, "timetable", timetable.generate(intField(body, "rooms", 0),
+                        intField(body, "capacity", TimetableService.DEFAULT_ROOM_CAPACITY),
+                        intField(body, "meetings", TimetableService.DEFAULT_MEETINGS)), SchoolHttpServer::appendTimetable);
+            }
+            case "PUT" -> {
+                Map<String, String> body = readBody(exchange);
+                sendResult(exchange, 200, "meeting", timetable.move(required(body, "courseCode"),
+                        intField(body, "section", 1), required(body, "from"), required(body, "to"), body.get("room")),
+                        SchoolHttpServer::appendMeeting);
+            }
+            default -> sendMethodNotAllowed(exchange, "GET, POST, PUT");
+        }
+    }
+
+    private void handleFees(HttpExchange exchange, School school, String method, String studentId) throws IOException {
+        FeeService fees = school.getFeeService();
+        if (studentId == null) {
+            if (!method.equals("POST")) {
+                sendMethodNotAllowed(exchange, "POST");
+                return;
+            }
+            Map<String, String> body = readBody(exchange);
+            sendResult(exchange, 201, "invoiceRun", fees.invoiceAll(body.get("grade"), required(body, "description"),
+                    Money.parse(required(body, "amount")), dateField(body, "date", LocalDate.now()),
+                    dateField(body, "dueDate", null)), SchoolHttpServer::appendInvoiceRun);
+            return;
+        }
+        switch (method) {
+            case "GET" -> sendResult(exchange, 200, "statement", fees.statement(studentId), SchoolHttpServer::appendStatement);
+            case "POST" -> {
+                Map<String, String> body = readBody(exchange);
+                Money amount = Money.parse(required(body, "amount"));
+                LocalDate date = dateField(body, "date", LocalDate.now());
+                String description = body.get("description");
+                ServiceResult<FeeService.Entry> result = switch (required(body, "kind")) {
+                    case "invoice" -> fees.invoice(studentId, description, amount, date, dateField(body, "dueDate", null));
+                    case "payment" -> fees.pay(studentId, amount, date, description);
+                    case "adjustment" -> fees.adjust(studentId, amount, date, description);
+                    default -> throw new IllegalArgumentException("Field 'kind' must be invoice, payment or adjustment.");
+                };
+                sendResult(exchange, 201, "entry", result, SchoolHttpServer::appendFeeEntry);
+            }
+            default -> sendMethodNotAllowed(exchange, "GET, POST");
+        }
+    }
+
+    private void handleAssessments(HttpExchange exchange, School school, String method, String courseCode) throws IOException {
+        if (courseCode == null) {
+            sendError(exchange, 404, "No such resource.");
+            return;
+        }
+        GradebookService gradebook = school.getGradebookService();
+        switch (method) {
+            case "GET" -> sendSearch(exchange, "assessments", gradebook.assessments(courseCode),
+                    SchoolHttpServer::appendAssessment);
+            case "POST" -> {
+                Map<String, String> body = readBody(exchange);
+                sendResult(exchange, 201, "assessment", gradebook.addAssessment(courseCode, required(body, "name"),
+                        intField(body, "weight", 1), numberField(body, "maxPoints")), SchoolHttpServer::appendAssessment);
+            }
+            default -> sendMethodNotAllowed(exchange, "GET, POST");
+        }
+    }
+
+    private void handleGrades(HttpExchange exchange, School school, String method, String studentId) throws IOException {
+        GradebookService gradebook = school.getGradebookService();
+        if (studentId != null) {
+            if (!method.equals("GET")) {
+                sendMethodNotAllowed(exchange, "GET");
+                return;
+            }
+            Map<String, String> parameters = queryParameters(exchange);
+            if (parameters.containsKey("course")) {
+                sendResult(exchange, 200, "grade", gradebook.courseGrade(studentId, parameters.get("course")),
+                        SchoolHttpServer::appendCourseGrade);
+            } else {
+                sendResult(exchange, 200, "transcript", gradebook.transcript(studentId), SchoolHttpServer::appendTranscript);
+            }
+            return;
+        }
+        switch (method) {
+            case "GET" -> {
+                Map<String, String> parameters = queryParameters(exchange);
+                int from = intField(parameters, "from", 0);
+                int limit = intField(parameters, "limit", GradebookService.DEFAULT_RANKING_SIZE);
+                if (parameters.containsKey("course")) {
+                    sendSearch(exchange, "ranking", gradebook.courseRanking(parameters.get("course"), from, limit),
+                            SchoolHttpServer::appendRanked);
+                } else if (parameters.containsKey("grade")) {
+                    sendSearch(exchange, "ranking", gradebook.yearRanking(parameters.get("grade"), from, limit),
+                            SchoolHttpServer::appendRanked);
+                } else {
+                    throw new IllegalArgumentException("Parameter 'course' or 'grade' is required.");
+                }
+            }
+            case "POST" -> {
+                Map<String, String> body = readBody(exchange);
+                sendResult(exchange, 201, "grade", gradebook.recordMark(required(body, "studentId"),
+                        required(body, "courseCode"), required(body, "assessment"), numberField(body, "points")),
+                        SchoolHttpServer::appendCourseGrade);
+            }
+            default -> sendMethodNotAllowed(exchange, "GET, POST");
+        }
+    }
+
+    private void handleAttendance(HttpExchange exchange, School school, String method, String key) throws IOException {
+        if (key != null) {
+            sendError(exchange, 404, "No such resource.");
+            return;
+        }
+        AttendanceService attendance = school.getAttendanceService();
+        switch (method) {
+            case "GET" -> {
+                Map<String, String> filters = queryParameters(exchange);
+                if (Collections.disjoint(filters.keySet(), ATTENDANCE_FILTERS)) {
+                    sendPage(exchange, "attendance", attendance.page(filters.get("cursor"), pageSize(filters)),
+                            SchoolHttpServer::appendAttendance);
+                    return;
+                }
+                AttendanceService.Query query = new AttendanceService.Query()
+                        .student(filters.get("studentId"))
+                        .course(filters.get("courseCode"));
+                if (filters.containsKey("date")) {
+                    query.on(LocalDate.parse(filters.get("date")));
+                } else {
+                    query.between(filters.containsKey("from") ? LocalDate.parse(filters.get("from")) : null,
+                            filters.containsKey("to") ? LocalDate.parse(filters.get("to")) : null);
+                }
+                if (filters.containsKey("present")) {
+                    query.present(Boolean.parseBoolean(filters.get("present")));
+                }
+                if (filters.containsKey("limit")) {
+                    query.limit(Integer.parseInt(filters.get("limit")));
+                }
+                ServiceResult<List<AttendanceRecord>> result = attendance.find(query);
+                if (!result.isOk()) {
+                    sendError(exchange, statusOf(result.getStatus()), result.getMessage());
+                    return;
+                }
+                sendList(exchange, result.getValue(), SchoolHttpServer::appendAttendance);
+            }
+            case "POST" -> {
+                Map<String, String> body = readBody(exchange);
+                String date = body.get("date");
+                String present = required(body, "present");
+                if (!present.equals("true") && !present.equals("false")) {
+                    throw new IllegalArgumentException("Field 'present' must be true or false.");
+                }
+                sendResult(exchange, 201, "attendance", attendance.mark(required(body, "studentId"),
+                        required(body, "courseCode"), date == null ? LocalDate.now() : LocalDate.parse(date),
+                        present.equals("true")), SchoolHttpServer::appendAttendance);
+            }
+            default -> sendMethodNotAllowed(exchange, "GET, POST");
+        }
+    }
+
+    private void handleReports(HttpExchange exchange, School school, String method, String report) throws IOException {
+        if (!method.equals("GET")) {
+            sendMethodNotAllowed(exchange, "GET");
+            return;
+        }
+        String format = queryParameters(exchange).getOrDefault("format", "json");
+        if (format.equals("csv")) {
+            sendCsv(exchange, school, report);
+            return;
+        }
+        if (!format.equals("json")) {
+            sendError(exchange, 400, "Unknown format; expected json or csv.");
+            return;
+        }
+        ReportService reports = school.getReportService();
+        switch (report == null ? "" : report) {
+            case "students" -> {
+                ReportService.RosterReport<Student> students = reports.studentReport();
+                sendReport(exchange, "{\"total\":" + students.getTotal(), "students", students.getEntries(),
+                        SchoolHttpServer::appendStudent);
+            }
+            case "teachers" -> {
+                ReportService.TeacherReport teachers = reports.teacherReport();
+                sendReport(exchange, "{\"total\":" + teachers.getTotal() + ",\"totalSalary\":" + teachers.getTotalSalary(),
+                        "teachers", teachers.getEntries(), SchoolHttpServer::appendTeacher);
+            }
+            case "courses" -> {
+                ReportService.RosterReport<Course> courses = reports.courseReport();
+                sendReport(exchange, "{\"total\":" + courses.getTotal(), "courses", courses.getEntries(),
+                        SchoolHttpServer::appendCourse);
+            }
+            case "attendance" -> {
+                ReportService.AttendanceReport attendance = reports.attendanceReport();
+                StringBuilder json = new StringBuilder(256);
+                appendTally(json, attendance.getTotal());
+                json.setLength(json.length() - 1);
+                json.append(",\"byCourse\":{");
+                boolean first = true;
+                for (Map.Entry<String, AttendanceAggregates.Tally> course : attendance.getByCourse().entrySet()) {
+                    if (!first) {
+                        json.append(',');
+                    }
+                    first = false;
+                    Json.quote(json, course.getKey()).append(':');
+                    appendTally(json, course.getValue());
+                }
+                send(exchange, 200, json.append("}}").toString());
+            }
+            case "analytics" -> send(exchange, 200, analyticsJson(reports.analyticsReport()));
+            case "aged-debt" -> {
+                ReportService.AgedDebtReport debt = reports.agedDebtReport(
+                        dateField(queryParameters(exchange), "asOf", LocalDate.now()));
+                StringBuilder head = new StringBuilder(256).append("{\"asOf\":");
+                Json.quote(head, debt.getAsOf().toString()).append(",\"total\":").append(debt.getTotal())
+                        .append(",\"byAge\":{");
+                for (int bucket = 0; bucket < FeeLedger.AGING_BUCKETS.length; bucket++) {
+                    if (bucket > 0) {
+                        head.append(',');
+                    }
+                    Json.quote(head, FeeLedger.AGING_BUCKETS[bucket]).append(':').append(debt.getTotal(bucket));
+                }
+                sendReport(exchange, head.append('}').toString(), "debtors", debt.getDebtors(),
+                        SchoolHttpServer::appendDebtor);
+            }
+            default -> sendError(exchange, 404,
+                    "Unknown report; expected students, teachers, courses, attendance, aged-debt or analytics.");
+        }
+    }
+
+    private static String analyticsJson(ReportEngine.Analytics analytics) {
+        StringBuilder json = new StringBuilder(4096).append("{\"salaryByDepartment\":");
+        appendPayrolls(json, analytics.getSalaryByDepartment());
+        json.append(",\"attendanceByGrade\":");
+        appendPresenceMap(json, analytics.getAttendanceByGrade());
+        json.append(",\"attendanceByCourse\":");
+        appendPresenceMap(json, analytics.getAttendanceByCourse());
+        json.append(",\"attendanceByWeek\":");
+        appendPresenceMap(json, analytics.getAttendanceByWeek());
+        json.append(",\"chronicAbsentees\":[");
+        boolean first = true;
+        for (ReportEngine.Absentee absentee : analytics.getChronicAbsentees()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"studentId\":");
+            Json.quote(json, absentee.getStudent().getId()).append(",\"attendance\":");
+            appendPresence(json, absentee.getAttendance());
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private String districtJson(SchoolHost.DistrictReport district) {
+        StringBuilder json = new StringBuilder(4096).append("{\"students\":").append(district.getStudents())
+                .append(",\"teachers\":").append(district.getTeachers())
+                .append(",\"courses\":").append(district.getCourses())
+                .append(",\"payroll\":").append(district.getPayroll())
+                .append(",\"chronicAbsentees\":").append(district.getChronicAbsentees())
+                .append(",\"attendance\":");
+        appendPresence(json, district.getAttendance());
+        json.append(",\"salaryByDepartment\":");
+        appendPayrolls(json, district.getSalaryByDepartment());
+        json.append(",\"attendanceByGrade\":");
+        appendPresenceMap(json, district.getAttendanceByGrade());
+        json.append(",\"attendanceByWeek\":");
+        appendPresenceMap(json, district.getAttendanceByWeek());
+        json.append(",\"schools\":[");
+        boolean first = true;
+        for (SchoolHost.SchoolSummary school : district.getSchools()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"id\":");
+            Json.quote(json, school.getTenantId()).append(",\"name\":");
+            Json.quote(json, school.getName()).append(",\"shard\":").append(host.shardOf(school.getTenantId()))
+                    .append(",\"students\":").append(school.getStudents())
+                    .append(",\"teachers\":").append(school.getTeachers())
+                    .append(",\"courses\":").append(school.getCourses())
+                    .append(",\"payroll\":").append(school.getPayroll())
+                    .append(",\"chronicAbsentees\":").append(school.getChronicAbsentees())
+                    .append(",\"attendance\":");
+            appendPresence(json, school.getAttendance());
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void appendPayrolls(StringBuilder json, Map<String, ReportEngine.Payroll> payrolls) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<String, ReportEngine.Payroll> department : payrolls.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            ReportEngine.Payroll payroll = department.getValue();
+            Json.quote(json, department.getKey()).append(":{\"teachers\":").append(payroll.getTeachers())
+                    .append(",\"total\":").append(payroll.getTotal())
+                    .append(",\"average\":").append(payroll.getAverage())
+                    .append(",\"min\":").append(payroll.getMin())
+                    .append(",\"max\":").append(payroll.getMax()).append('}');
+        }
+        json.append('}');
+    }
+
+    private static void appendPresenceMap(StringBuilder json, Map<?, ReportEngine.Presence> presence) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ReportEngine.Presence> entry : presence.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Json.quote(json, entry.getKey().toString()).append(':');
+            appendPresence(json, entry.getValue());
+        }
+        json.append('}');
+    }
+
+    private void sendCsv(HttpExchange exchange, School school, String name) throws IOException {
+        ReportWriter.Report report;
+        try {
+            report = ReportWriter.Report.valueOf(name == null ? "" : name.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 404, "Unknown report; expected students, teachers, courses, attendance or aged-debt.");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (ReportWriter writer = new ReportWriter(exchange.getResponseBody(), ReportWriter.Layout.CSV)) {
+            writer.write(school, report);
+        }
+    }
+
+    // Request helpers
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("Request body is larger than " + MAX_BODY_BYTES + " bytes.");
+        }
+        return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    private static int pageSize(Map<String, String> parameters) {
+        String limit = parameters.get("limit");
+        return limit == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limit);
+    }
+
+    private static SearchIndex.Query searchQuery(Map<String, String> parameters, String filter) {
+        SearchIndex.Query query = new SearchIndex.Query(parameters.getOrDefault("q", ""))
+                .filter(parameters.get(filter))
+                .domain(parameters.get("domain"))
+                .fuzzy(Boolean.parseBoolean(parameters.get("fuzzy")));
+        if (parameters.containsKey("limit")) {
+            query.limit(Integer.parseInt(parameters.get("limit")));
+        }
+        return query;
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null) {
+            throw new IllegalArgumentException("Field '" + field + "' is required.");
+        }
+        return value;
+    }
+
+    private static int intField(Map<String, String> body, String field, int defaultValue) {
+        String value = body.get(field);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field '" + field + "' must be a whole number.");
+        }
+    }
+
+    private static double numberField(Map<String, String> body, String field) {
+        try {
+            return Double.parseDouble(required(body, field).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field '" + field + "' must be a number.");
+        }
+    }
+
+    private static LocalDate dateField(Map<String, String> body, String field, LocalDate defaultValue) {
+        String value = body.get(field);
+        return value == null || value.isBlank() ? defaultValue : LocalDate.parse(value.trim());
+    }
+
+    // Response helpers
+
+    private static <T> void sendResult(HttpExchange exchange, int okStatus, String name, ServiceResult<T> result,
+                                       JsonAppender<T> appender) throws IOException {
+        if (!result.isOk()) {
+            sendError(exchange, statusOf(result.getStatus()), result.getMessage());
+            return;
+        }
+        StringBuilder json = new StringBuilder(256).append("{\"message\":");
+        Json.quote(json, result.getMessage()).append(",\"").append(name).append("\":");
+        appender.append(json, result.getValue());
+        send(exchange, okStatus, json.append('}').toString());
+    }
+
+    private static <T> void sendFound(HttpExchange exchange, String name, T value, String notFoundMessage,
+                                      JsonAppender<T> appender) throws IOException {
+        if (value == null) {
+            sendError(exchange, 404, notFoundMessage);
+            return;
+        }
+        StringBuilder json = new StringBuilder(256).append("{\"").append(name).append("\":");
+        appender.append(json, value);
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    private static <T> void sendPage(HttpExchange exchange, String name, ServiceResult<Page<T>> result,
+                                     JsonAppender<T> appender) throws IOException {
+        if (!result.isOk()) {
+            sendError(exchange, statusOf(result.getStatus()), result.getMessage());
+            return;
+        }
+        Page<T> page = result.getValue();
+        StringBuilder json = new StringBuilder(128 + 128 * page.size()).append("{\"").append(name).append("\":[");
+        boolean first = true;
+        for (T value : page.getItems()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appender.append(json, value);
+        }
+        json.append("],\"nextCursor\":");
+        if (page.hasNext()) {
+            Json.quote(json, page.getNextCursor());
+        } else {
+            json.append("null");
+        }
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    private static <T> void sendSearch(HttpExchange exchange, String name, ServiceResult<List<T>> result,
+                                       JsonAppender<T> appender) throws IOException {
+        sendResult(exchange, 200, name, result, (json, values) -> {
+            json.append('[');
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                appender.append(json, values.get(i));
+            }
+            json.append(']');
+        });
+    }
+
+    private static <T> void sendList(HttpExchange exchange, Iterable<T> values, JsonAppender<T> appender) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = responseWriter(exchange)) {
+            writeArray(out, values, appender);
+        }
+    }
+
+    private static <T> void sendReport(HttpExchange exchange, String head, String name, Iterable<T> values,
+                                       JsonAppender<T> appender) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = responseWriter(exchange)) {
+            out.write(head);
+            out.write(",\"" + name + "\":");
+            writeArray(out, values, appender);
+            out.write('}');
+        }
+    }
+
+    // Large collections are streamed in chunks instead of being built in memory first
+    private static <T> void writeArray(Writer out, Iterable<T> values, JsonAppender<T> appender) throws IOException {
+        StringBuilder json = new StringBuilder(256);
+        out.write('[');
+        boolean first = true;
+        for (T value : values) {
+            json.setLength(0);
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appender.append(json, value);
+            out.append(json);
+        }
+        out.write(']');
+    }
+
+    private static Writer responseWriter(HttpExchange exchange) {
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, Json.quote(new StringBuilder("{\"error\":"), message).append('}').toString());
+    }
+
+    private static void sendMethodNotAllowed(HttpExchange exchange, String allowed) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        sendError(exchange, 405, "Method not allowed; use " + allowed + ".");
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    static int statusOf(ServiceResult.Status status) {
+        return switch (status) {
+            case OK -> 200;
+            case NOT_FOUND -> 404;
+            case DUPLICATE -> 409;
+            case INVALID -> 400;
+            case UNAVAILABLE -> 503;
+        };
+    }
+
+    // Entity encoders
+
+    private static void appendStudent(StringBuilder json, Student student) {
+        json.append("{\"id\":");
+        Json.quote(json, student.getId()).append(",\"name\":");
+        Json.quote(json, student.getName()).append(",\"email\":");
+        Json.quote(json, student.getEmail()).append(",\"grade\":");
+        Json.quote(json, student.getGrade()).append(",\"enrollmentDate\":");
+        Json.quote(json, String.valueOf(student.getEnrollmentDate())).append('}');
+    }
+
+    private static void appendTeacher(StringBuilder json, Teacher teacher) {
+        json.append("{\"id\":");
+        Json.quote(json, teacher.getId()).append(",\"name\":");
+        Json.quote(json, teacher.getName()).append(",\"email\":");
+        Json.quote(json, teacher.getEmail()).append(",\"department\":");
+        Json.quote(json, teacher.getDepartment()).append(",\"salary\":").append(teacher.getSalary()).append('}');
+    }
+
+    private static void appendCourse(StringBuilder json, Course course) {
+        json.append("{\"code\":");
+        Json.quote(json, course.getCode()).append(",\"name\":");
+        Json.quote(json, course.getName()).append(",\"description\":");
+        Json.quote(json, course.getDescription()).append('}');
+    }
+
+    private static void appendAttendance(StringBuilder json, AttendanceRecord record) {
+        json.append("{\"studentId\":");
+        Json.quote(json, record.getStudent().getId()).append(",\"courseCode\":");
+        Json.quote(json, record.getCourse().getCode()).append(",\"date\":");
+        Json.quote(json, record.getDate().toString()).append(",\"present\":").append(record.isPresent()).append('}');
+    }
+
+    private static void appendMeeting(StringBuilder json, Timetable.Meeting meeting) {
+        Timetable.Section section = meeting.getSection();
+        json.append("{\"period\":");
+        Json.quote(json, meeting.getSlotName()).append(",\"courseCode\":");
+        Json.quote(json, section.getCourse().getCode()).append(",\"section\":").append(section.getNumber())
+                .append(",\"teacherId\":");
+        Json.quote(json, section.getTeacher().getId()).append(",\"room\":");
+        Json.quote(json, meeting.getRoom().getCode()).append(",\"students\":").append(section.getSize()).append('}');
+    }
+
+    private static void appendTimetable(StringBuilder json, Timetable timetable) {
+        json.append("{\"sections\":").append(timetable.getSections().size())
+                .append(",\"rooms\":").append(timetable.getRooms().size()).append(",\"unplaced\":[");
+        List<Timetable.Section> unplaced = timetable.getUnplaced();
+        for (int i = 0; i < unplaced.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            Json.quote(json, unplaced.get(i).toString());
+        }
+        json.append("]}");
+    }
+
+    private static void appendConflict(StringBuilder json, Timetable.Conflict conflict) {
+        json.append("{\"kind\":");
+        Json.quote(json, conflict.getKind().name().toLowerCase()).append(",\"who\":");
+        Json.quote(json, conflict.getWho()).append(",\"period\":");
+        Json.quote(json, Timetable.slotName(conflict.getSlot())).append(",\"sections\":[");
+        Json.quote(json, String.valueOf(conflict.getFirst())).append(',');
+        Json.quote(json, String.valueOf(conflict.getSecond())).append("]}");
+    }
+
+    private static void appendFeeEntry(StringBuilder json, FeeService.Entry entry) {
+        json.append("{\"kind\":");
+        Json.quote(json, entry.getKind().name().toLowerCase()).append(",\"amount\":").append(entry.getAmount())
+                .append(",\"date\":");
+        Json.quote(json, entry.getDate().toString()).append(",\"dueDate\":");
+        if (entry.getDueDate() == null) {
+            json.append("null");
+        } else {
+            Json.quote(json, entry.getDueDate().toString());
+        }
+        json.append(",\"description\":");
+        Json.quote(json, entry.getDescription()).append(",\"balance\":").append(entry.getBalance()).append('}');
+    }
+
+    private static void appendStatement(StringBuilder json, FeeService.Statement statement) {
+        json.append("{\"studentId\":");
+        Json.quote(json, statement.getStudent().getId()).append(",\"balance\":").append(statement.getBalance())
+                .append(",\"entries\":[");
+        List<FeeService.Entry> entries = statement.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendFeeEntry(json, entries.get(i));
+        }
+        json.append("]}");
+    }
+
+    private static void appendInvoiceRun(StringBuilder json, FeeService.InvoiceRun run) {
+        json.append("{\"invoiced\":").append(run.getInvoiced()).append(",\"total\":").append(run.getTotal()).append('}');
+    }
+
+    private static void appendDebtor(StringBuilder json, ReportService.Debtor debtor) {
+        json.append("{\"studentId\":");
+        Json.quote(json, debtor.getStudent().getId()).append(",\"balance\":").append(debtor.getBalance())
+                .append(",\"byAge\":[");
+        for (int bucket = 0; bucket < FeeLedger.AGING_BUCKETS.length; bucket++) {
+            if (bucket > 0) {
+                json.append(',');
+            }
+            json.append(debtor.getOwed(bucket));
+        }
+        json.append("]}");
+    }
+
+    private static void appendAssessment(StringBuilder json, Gradebook.Assessment assessment) {
+        json.append("{\"name\":");
+        Json.quote(json, assessment.getName()).append(",\"weight\":").append(assessment.getWeight())
+                .append(",\"maxPoints\":").append(GradebookService.points(assessment.getMaxPoints())).append('}');
+    }
+
+    private static void appendStanding(StringBuilder json, Gradebook.Standing standing) {
+        json.append("{\"rank\":").append(standing.getRank()).append(",\"cohort\":").append(standing.getCohort())
+                .append(",\"percentile\":").append(String.format(Locale.ROOT, "%.1f", standing.getPercentile())).append('}');
+    }
+
+    private static void appendCourseGrade(StringBuilder json, GradebookService.CourseGrade grade) {
+        json.append("{\"courseCode\":");
+        Json.quote(json, grade.getCourse().getCode()).append(",\"score\":").append(grade.getScore())
+                .append(",\"letter\":");
+        Json.quote(json, grade.getLetter()).append(",\"standing\":");
+        appendStanding(json, grade.getStanding());
+        json.append(",\"marks\":[");
+        List<GradebookService.Mark> marks = grade.getMarks();
+        for (int i = 0; i < marks.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"assessment\":");
+            Json.quote(json, marks.get(i).getAssessment().getName()).append(",\"points\":")
+                    .append(marks.get(i).getPoints() == null ? "null" : marks.get(i).getPoints()).append('}');
+        }
+        json.append("]}");
+    }
+
+    private static void appendTranscript(StringBuilder json, GradebookService.Transcript transcript) {
+        json.append("{\"studentId\":");
+        Json.quote(json, transcript.getStudent().getId()).append(",\"gpa\":").append(transcript.getGpa())
+                .append(",\"yearStanding\":");
+        if (transcript.getYearStanding() == null) {
+            json.append("null");
+        } else {
+            appendStanding(json, transcript.getYearStanding());
+        }
+        json.append(",\"courses\":[");
+        List<GradebookService.CourseGrade> grades = transcript.getCourses();
+        for (int i = 0; i < grades.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendCourseGrade(json, grades.get(i));
+        }
+        json.append("]}");
+    }
+
+    // The score is a percentage in a course ranking and a GPA in a year group's
+    private static void appendRanked(StringBuilder json, Gradebook.Ranked ranked) {
+        json.append("{\"rank\":").append(ranked.getStanding().getRank()).append(",\"studentId\":");
+        Json.quote(json, ranked.getStudent().getId()).append(",\"name\":");
+        Json.quote(json, ranked.getStudent().getName()).append(",\"score\":")
+                .append(GradebookService.scaled(ranked.getStanding().getScore())).append('}');
+    }
+
+    private static void appendTally(StringBuilder json, AttendanceAggregates.Tally tally) {
+        json.append("{\"present\":").append(tally.getPresent())
+                .append(",\"absent\":").append(tally.getAbsent())
+                .append(",\"total\":").append(tally.getTotal())
+                .append(",\"rate\":").append(tally.getRate()).append('}');
+    }
+
+    private static void appendPresence(StringBuilder json, ReportEngine.Presence presence) {
+        json.append("{\"present\":").append(presence.getPresent())
+                .append(",\"absent\":").append(presence.getAbsent())
+                .append(",\"total\":").append(presence.getTotal())
+                .append(",\"rate\":").append(presence.getRate()).append('}');
+    }
+
+    // Command-line entry point: serve [port]; runs until the process is stopped
+    static void run(School school, String[] args) throws IOException {
+        SchoolHttpServer server = new SchoolHttpServer(school, new InetSocketAddress(port(args)));
+        serveUntilStopped(server, school.getName() + " API");
+        school.checkpoint();
+    }
+
+    // Command-line entry point: host [port] [tenant...]; runs until the process is stopped, and the
+    // caller then closes the host, which checkpoints every school
+    static void run(SchoolHost host, String[] args) throws IOException {
+        SchoolHttpServer server = new SchoolHttpServer(host, new InetSocketAddress(port(args)));
+        serveUntilStopped(server, "API for " + host.tenantIds().size() + " schools on " + host.shardCount() + " shards");
+    }
+
+    private static int port(String[] args) {
+        return args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+    }
+
+    private static void serveUntilStopped(SchoolHttpServer server, String label) {
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread mainThread = Thread.currentThread();
+        // The JVM exits once shutdown hooks return, so let the caller checkpoint and close the journal first
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            stopped.countDown();
+            try {
+                mainThread.join(30_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "school-http-shutdown"));
+        server.start();
+        System.out.println(label + " listening on port " + server.getPort());
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // JsonAppender interface writing one value as JSON
+    @FunctionalInterface
+    interface JsonAppender<T> {
+        void append(StringBuilder json, T value);
+    }
+
+    // ShardExchange class standing in for an exchange while a change runs on a shard: the request
+    // body was read beforehand, and the response is held in memory until send() writes it out
+    private static final class ShardExchange extends HttpExchange {
+        private final HttpExchange exchange;
+        private final InputStream requestBody;
+        private final Headers responseHeaders = new Headers();
+        private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream(256);
+        private int responseCode = -1;
+        private long responseLength;
+
+        ShardExchange(HttpExchange exchange, byte[] requestBody) {
+            this.exchange = exchange;
+            this.requestBody = new ByteArrayInputStream(requestBody);
+        }
+
+        // Sends the response the change produced
+        void send() throws IOException {
+            if (responseCode < 0) {
+                throw new IllegalStateException("No response was produced");
+            }
+            exchange.getResponseHeaders().putAll(responseHeaders);
+            byte[] bytes = responseBody.toByteArray();
+            exchange.sendResponseHeaders(responseCode, responseLength < 0 || bytes.length == 0 ? -1 : bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+
+        @Override
+        public Headers getRequestHeaders() { return exchange.getRequestHeaders(); }
+
+        @Override
+        public Headers getResponseHeaders() { return responseHeaders; }
+
+        @Override
+        public URI getRequestURI() { return exchange.getRequestURI(); }
+
+        @Override
+        public String getRequestMethod() { return exchange.getRequestMethod(); }
+
+        @Override
+        public HttpContext getHttpContext() { return exchange.getHttpContext(); }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public InputStream getRequestBody() { return requestBody; }
+
+        @Override
+        public OutputStream getResponseBody() { return responseBody; }
+
+        @Override
+        public void sendResponseHeaders(int code, long length) {
+            responseCode = code;
+            responseLength = length;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() { return exchange.getRemoteAddress(); }
+
+        @Override
+        public int getResponseCode() { return responseCode; }
+
+        @Override
+        public InetSocketAddress getLocalAddress() { return exchange.getLocalAddress(); }
+
+        @Override
+        public String getProtocol() { return exchange.getProtocol(); }
+
+        @Override
+        public Object getAttribute(String name) { return exchange.getAttribute(name); }
+
+        @Override
+        public void setAttribute(String name, Object value) { exchange.setAttribute(name, value); }
+
+        @Override
+        public void setStreams(InputStream in, OutputStream out) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() { return exchange.getPrincipal(); }
+    }
+}
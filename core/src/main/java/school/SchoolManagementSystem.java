@@ -0,0 +1,1308 @@
+package school;
+
+import java.util.*;
+import java.util.function.Function;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+// Main class to run the system
+public class SchoolManagementSystem {
+    public static void main(String[] args) throws IOException {
+        // State is kept in a journal directory so it survives restarts
+        Path dataDirectory = Path.of(System.getProperty("school.dataDir", "school-data"));
+        if (args.length > 0 && args[0].equals("host")) {
+            // Many schools in one process, each journaled in a subdirectory named after its tenant ID:
+            // host [port] [tenant...]; with no tenants listed, every subdirectory is opened
+            List<String> tenants = Arrays.asList(args).subList(Math.min(2, args.length), args.length);
+            try (SchoolHost host = SchoolHost.open(dataDirectory, tenants)) {
+                SchoolHttpServer.run(host, args);
+            }
+            return;
+        }
+        try (SchoolJournal journal = SchoolJournal.open(dataDirectory)) {
+            School school = new School("ABC School", journal);
+            if (args.length > 0 && args[0].equals("import")) {
+                // Non-interactive bulk load: import <students|teachers|courses|enrollments|attendance> <file>...
+                BulkImporter.run(school, args);
+            } else if (args.length > 0 && args[0].equals("serve")) {
+                // JSON API for tablets and other clients: serve [port]
+                SchoolHttpServer.run(school, args);
+            } else {
+                new SchoolConsole(school).run();
+            }
+        }
+    }
+}
+
+// SchoolConsole class that drives the services from an interactive menu
+class SchoolConsole {
+    private static final int PAGE_SIZE = 20;
+    
+    private final School school;
+    private final StudentService studentService;
+    private final TeacherService teacherService;
+    private final CourseService courseService;
+    private final EnrollmentService enrollmentService;
+    private final AttendanceService attendanceService;
+    private final TimetableService timetableService;
+    private final FeeService feeService;
+    private final GradebookService gradebookService;
+    private final ReportService reportService;
+    private final Scanner scanner;
+    
+    public SchoolConsole(School school) {
+        this.school = school;
+        this.studentService = school.getStudentService();
+        this.teacherService = school.getTeacherService();
+        this.courseService = school.getCourseService();
+        this.enrollmentService = school.getEnrollmentService();
+        this.attendanceService = school.getAttendanceService();
+        this.timetableService = school.getTimetableService();
+        this.feeService = school.getFeeService();
+        this.gradebookService = school.getGradebookService();
+        this.reportService = school.getReportService();
+        this.scanner = new Scanner(System.in);
+    }
+    
+    public void run() {
+        boolean exit = false;
+        
+        while (!exit) {
+            System.out.println("\n=== " + school.getName() + " Management System ===");
+            System.out.println("1. Student Management");
+            System.out.println("2. Teacher Management");
+            System.out.println("3. Course Management");
+            System.out.println("4. Enrollment Management");
+            System.out.println("5. Attendance Management");
+            System.out.println("6. Timetable");
+            System.out.println("7. Fees");
+            System.out.println("8. Gradebook");
+            System.out.println("9. Generate Reports");
+            System.out.println("10. Exit");
+            System.out.print("Please select an option: ");
+            
+            int choice = getIntInput();
+            
+            switch (choice) {
+                case 1 -> studentManagement();
+                case 2 -> teacherManagement();
+                case 3 -> courseManagement();
+                case 4 -> enrollmentManagement();
+                case 5 -> attendanceManagement();
+                case 6 -> timetableManagement();
+                case 7 -> feeManagement();
+                case 8 -> gradebook();
+                case 9 -> generateReports();
+                case 10 -> {
+                    exit = true;
+                    school.checkpoint();
+                    System.out.println("Exiting system. Goodbye!");
+                }
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    private void studentManagement() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Student Management ===");
+            System.out.println("1. Add New Student");
+            System.out.println("2. View All Students");
+            System.out.println("3. Search Students");
+            System.out.println("4. Update Student Information");
+            System.out.println("5. Remove Student");
+            System.out.println("6. Back to Main Menu");
+            System.out.print("Please select an option: ");
+            
+            int choice = getIntInput();
+            
+            switch (choice) {
+                case 1 -> addStudent();
+                case 2 -> viewAllStudents();
+                case 3 -> searchStudents();
+                case 4 -> updateStudent();
+                case 5 -> removeStudent();
+                case 6 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    private void addStudent() {
+        System.out.println("\n--- Add New Student ---");
+        System.out.print("Enter Student ID: ");
+        String id = scanner.nextLine();
+        
+        // Check if student ID already exists
+        if (studentService.exists(id)) {
+            System.out.println("Student with this ID already exists.");
+            return;
+        }
+        
+        System.out.print("Enter Student Name: ");
+        String studentName = scanner.nextLine();
+        
+        System.out.print("Enter Email: ");
+        String email = scanner.nextLine();
+        
+        System.out.print("Enter Grade: ");
+        String grade = scanner.nextLine();
+        
+        ServiceResult<Student> result = studentService.add(id, studentName, email, grade, LocalDate.now());
+        System.out.println(result.getMessage());
+    }
+    
+    private void viewAllStudents() {
+        System.out.println("\n--- All Students ---");
+        if (studentService.count() == 0) {
+            System.out.println("No students found.");
+            return;
+        }
+        
+        System.out.print("Sort by id, name, grade or enrollmentDate (or press Enter for id): ");
+        String order = sortOrder("id");
+        browse(cursor -> studentService.page(order, cursor, PAGE_SIZE), ReportWriter::writeStudents);
+    }
+    
+    // Finds students by words of their name or email, e.g. "brown" in 10th Grade
+    private void searchStudents() {
+        System.out.println("\n--- Search Students ---");
+        System.out.print("Enter name or email words (the start of each word is enough): ");
+        SearchIndex.Query query = searchQuery();
+        System.out.print("Enter Grade to search in (or press Enter for all grades): ");
+        String grade = scanner.nextLine().trim();
+        if (!grade.isEmpty()) {
+            query.filter(grade);
+        }
+        
+        ServiceResult<List<Student>> result = studentService.search(query);
+        System.out.println(result.getMessage());
+        printTable(result.getValue(), ReportWriter::writeStudents);
+    }
+    
+    private void updateStudent() {
+        System.out.println("\n--- Update Student Information ---");
+        System.out.print("Enter Student ID to update: ");
+        String id = scanner.nextLine();
+        
+        Student student = studentService.find(id);
+        if (student != null) {
+            StudentService.StudentUpdate update = new StudentService.StudentUpdate();
+            System.out.print("Enter new Name (current: " + student.getName() + "): ");
+            String studentName = scanner.nextLine();
+            if (!studentName.isEmpty()) {
+                update.name(studentName);
+            }
+            
+            System.out.print("Enter new Email (current: " + student.getEmail() + "): ");
+            String email = scanner.nextLine();
+            if (!email.isEmpty()) {
+                update.email(email);
+            }
+            
+            System.out.print("Enter new Grade (current: " + student.getGrade() + "): ");
+            String grade = scanner.nextLine();
+            if (!grade.isEmpty()) {
+                update.grade(grade);
+            }
+            
+            System.out.println(studentService.update(id, update).getMessage());
+            return;
+        }
+        
+        System.out.println("Student with ID " + id + " not found.");
+    }
+    
+    private void removeStudent() {
+        System.out.println("\n--- Remove Student ---");
+        System.out.print("Enter Student ID to remove: ");
+        String id = scanner.nextLine();
+        
+        System.out.println(studentService.remove(id).getMessage());
+    }
+    
+    private void teacherManagement() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Teacher Management ===");
+            System.out.println("1. Add New Teacher");
+            System.out.println("2. View All Teachers");
+            System.out.println("3. Search Teachers");
+            System.out.println("4. Update Teacher Information");
+            System.out.println("5. Remove Teacher");
+            System.out.println("6. Back to Main Menu");
+            System.out.print("Please select an option: ");
+            
+            int choice = getIntInput();
+            
+            switch (choice) {
+                case 1 -> addTeacher();
+                case 2 -> viewAllTeachers();
+                case 3 -> searchTeachers();
+                case 4 -> updateTeacher();
+                case 5 -> removeTeacher();
+                case 6 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    private void addTeacher() {
+        System.out.println("\n--- Add New Teacher ---");
+        System.out.print("Enter Teacher ID: ");
+        String id = scanner.nextLine();
+        
+        // Check if teacher ID already exists
+        if (teacherService.exists(id)) {
+            System.out.println("Teacher with this ID already exists.");
+            return;
+        }
+        
+        System.out.print("Enter Teacher Name: ");
+        String teacherName = scanner.nextLine();
+        
+        System.out.print("Enter Email: ");
+        String email = scanner.nextLine();
+        
+        System.out.print("Enter Department: ");
+        String department = scanner.nextLine();
+        
+        System.out.print("Enter Salary: ");
+        Money salary = getMoneyInput();
+        
+        ServiceResult<Teacher> result = teacherService.add(id, teacherName, email, department, salary);
+        System.out.println(result.getMessage());
+    }
+    
+    private void viewAllTeachers() {
+        System.out.println("\n--- All Teachers ---");
+        if (teacherService.count() == 0) {
+            System.out.println("No teachers found.");
+            return;
+        }
+        
+        System.out.print("Sort by id, name or department (or press Enter for id): ");
+        String order = sortOrder("id");
+        browse(cursor -> teacherService.page(order, cursor, PAGE_SIZE), ReportWriter::writeTeachers);
+    }
+    
+    private void searchTeachers() {
+        System.out.println("\n--- Search Teachers ---");
+        System.out.print("Enter name or email words (the start of each word is enough): ");
+        SearchIndex.Query query = searchQuery();
+        System.out.print("Enter Department to search in (or press Enter for all departments): ");
+        String department = scanner.nextLine().trim();
+        if (!department.isEmpty()) {
+            query.filter(department);
+        }
+        
+        ServiceResult<List<Teacher>> result = teacherService.search(query);
+        System.out.println(result.getMessage());
+        printTable(result.getValue(), ReportWriter::writeTeachers);
+    }
+    
+    private void updateTeacher() {
+        System.out.println("\n--- Update Teacher Information ---");
+        System.out.print("Enter Teacher ID to update: ");
+        String id = scanner.nextLine();
+        
+        Teacher teacher = teacherService.find(id);
+        if (teacher != null) {
+            TeacherService.TeacherUpdate update = new TeacherService.TeacherUpdate();
+            System.out.print("Enter new Name (current: " + teacher.getName() + "): ");
+            String teacherName = scanner.nextLine();
+            if (!teacherName.isEmpty()) {
+                update.name(teacherName);
+            }
+            
+            System.out.print("Enter new Email (current: " + teacher.getEmail() + "): ");
+            String email = scanner.nextLine();
+            if (!email.isEmpty()) {
+                update.email(email);
+            }
+            
+            System.out.print("Enter new Department (current: " + teacher.getDepartment() + "): ");
+            String department = scanner.nextLine();
+            if (!department.isEmpty()) {
+                update.department(department);
+            }
+            
+            System.out.print("Enter new Salary (current: " + teacher.getSalary() + "): ");
+            String salaryInput = scanner.nextLine();
+            if (!salaryInput.isEmpty()) {
+                try {
+                    update.salary(Money.parse(salaryInput));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid salary format. Salary not updated.");
+                }
+            }
+            
+            System.out.println(teacherService.update(id, update).getMessage());
+            return;
+        }
+        
+        System.out.println("Teacher with ID " + id + " not found.");
+    }
+    
+    private void removeTeacher() {
+        System.out.println("\n--- Remove Teacher ---");
+        System.out.print("Enter Teacher ID to remove: ");
+        String id = scanner.nextLine();
+        
+        System.out.println(teacherService.remove(id).getMessage());
+    }
+    
+    private void courseManagement() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Course Management ===");
+            System.out.println("1. Add New Course");
+            System.out.println("2. View All Courses");
+            System.out.println("3. Update Course Information");
+            System.out.println("4. Remove Course");
+            System.out.println("5. Back to Main Menu");
+            System.out.print("Please select an option: ");
+            
+            int choice = getIntInput();
+            
+            switch (choice) {
+                case 1 -> addCourse();
+                case 2 -> viewAllCourses();
+                case 3 -> updateCourse();
+                case 4 -> removeCourse();
+                case 5 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    private void addCourse() {
+        System.out.println("\n--- Add New Course ---");
+        System.out.print("Enter Course Code: ");
+        String code = scanner.nextLine();
+        
+        // Check if course code already exists
+        if (courseService.exists(code)) {
+            System.out.println("Course with this code already exists.");
+            return;
+        }
+        
+        System.out.print("Enter Course Name: ");
+        String courseName = scanner.nextLine();
+        
+        System.out.print("Enter Course Description: ");
+        String description = scanner.nextLine();
+        
+        ServiceResult<Course> result = courseService.add(code, courseName, description);
+        System.out.println(result.getMessage());
+    }
+    
+    private void viewAllCourses() {
+        System.out.println("\n--- All Courses ---");
+        if (courseService.count() == 0) {
+            System.out.println("No courses found.");
+            return;
+        }
+        
+        System.out.print("Sort by code or name (or press Enter for code): ");
+        String order = sortOrder("code");
+        browse(cursor -> courseService.page(order, cursor, PAGE_SIZE), ReportWriter::writeCourses);
+    }
+    
+    private void updateCourse() {
+        System.out.println("\n--- Update Course Information ---");
+        System.out.print("Enter Course Code to update: ");
+        String code = scanner.nextLine();
+        
+        Course course = courseService.find(code);
+        if (course != null) {
+            CourseService.CourseUpdate update = new CourseService.CourseUpdate();
+            System.out.print("Enter new Name (current: " + course.getName() + "): ");
+            String courseName = scanner.nextLine();
+            if (!courseName.isEmpty()) {
+                update.name(courseName);
+            }
+            
+            System.out.print("Enter new Description (current: " + course.getDescription() + "): ");
+            String description = scanner.nextLine();
+            if (!description.isEmpty()) {
+                update.description(description);
+            }
+            
+            System.out.println(courseService.update(code, update).getMessage());
+            return;
+        }
+        
+        System.out.println("Course with code " + code + " not found.");
+    }
+    
+    private void removeCourse() {
+        System.out.println("\n--- Remove Course ---");
+        System.out.print("Enter Course Code to remove: ");
+        String code = scanner.nextLine();
+        
+        System.out.println(courseService.remove(code).getMessage());
+    }
+    
+    private void enrollmentManagement() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Enrollment Management ===");
+            System.out.println("1. Enroll Student in Course");
+            System.out.println("2. Withdraw Student from Course");
+            System.out.println("3. Assign Teacher to Course");
+            System.out.println("4. Unassign Teacher from Course");
+            System.out.println("5. View Course Roster");
+            System.out.println("6. View Courses of a Student or Teacher");
+            System.out.println("7. Find Students Taking Several Courses");
+            System.out.println("8. Back to Main Menu");
+            System.out.print("Please select an option: ");
+            
+            int choice = getIntInput();
+            
+            switch (choice) {
+                case 1 -> changeEnrollment(true, true);
+                case 2 -> changeEnrollment(true, false);
+                case 3 -> changeEnrollment(false, true);
+                case 4 -> changeEnrollment(false, false);
+                case 5 -> viewCourseRoster();
+                case 6 -> viewCoursesOf();
+                case 7 -> findStudentsInCourses();
+                case 8 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    // Enrolls or withdraws a student, or assigns or unassigns a teacher
+    private void changeEnrollment(boolean student, boolean join) {
+        String person = student ? "Student" : "Teacher";
+        System.out.println("\n--- " + (student ? (join ? "Enroll Student" : "Withdraw Student")
+                : (join ? "Assign Teacher" : "Unassign Teacher")) + " ---");
+        System.out.print("Enter " + person + " ID: ");
+        String id = scanner.nextLine().trim();
+        
+        System.out.print("Enter Course Code: ");
+        String courseCode = scanner.nextLine().trim();
+        
+        ServiceResult<Course> result;
+        if (student) {
+            result = join ? enrollmentService.enroll(id, courseCode) : enrollmentService.withdraw(id, courseCode);
+        } else {
+            result = join ? enrollmentService.assign(id, courseCode) : enrollmentService.unassign(id, courseCode);
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    private void viewCourseRoster() {
+        System.out.println("\n--- Course Roster ---");
+        System.out.print("Enter Course Code: ");
+        ServiceResult<EnrollmentService.CourseRoster> result = enrollmentService.roster(scanner.nextLine().trim());
+        if (result.isOk()) {
+            printTable(result.getValue().getTeachers(), ReportWriter::writeTeachers);
+            printTable(result.getValue().getStudents(), ReportWriter::writeStudents);
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    private void viewCoursesOf() {
+        System.out.println("\n--- Courses of a Student or Teacher ---");
+        System.out.print("Enter Student or Teacher ID: ");
+        String id = scanner.nextLine().trim();
+        
+        ServiceResult<List<Course>> result = studentService.exists(id)
+                ? enrollmentService.coursesOfStudent(id) : enrollmentService.coursesOfTeacher(id);
+        if (result.isOk()) {
+            printTable(result.getValue(), ReportWriter::writeCourses);
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    // Answers questions like "who takes both MATH101 and SCI301" by intersecting course rosters
+    private void findStudentsInCourses() {
+        System.out.println("\n--- Students Taking Several Courses ---");
+        System.out.print("Enter Course Codes, separated by commas: ");
+        List<String> courseCodes = new ArrayList<>();
+        for (String code : scanner.nextLine().split(",")) {
+            if (!code.isBlank()) {
+                courseCodes.add(code.trim());
+            }
+        }
+        
+        ServiceResult<List<Student>> result = enrollmentService.studentsInAll(courseCodes);
+        if (result.isOk()) {
+            printTable(result.getValue(), ReportWriter::writeStudents);
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    private void attendanceManagement() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Attendance Management ===");
+            System.out.println("1. Mark Attendance");
+            System.out.println("2. View Attendance Records");
+            System.out.println("3. Take Roll Call");
+            System.out.println("4. Search Attendance Records");
+            System.out.println("5. Back to Main Menu");
+            System.out.print("Please select an option: ");
+            
+            int choice = getIntInput();
+            
+            switch (choice) {
+                case 1 -> markAttendance();
+                case 2 -> viewAttendanceRecords();
+                case 3 -> takeRollCall();
+                case 4 -> searchAttendanceRecords();
+                case 5 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    private void markAttendance() {
+        System.out.println("\n--- Mark Attendance ---");
+        
+        Student student = promptStudent();
+        if (student == null) {
+            return;
+        }
+        String studentId = student.getId();
+        
+        Course course = promptCourse();
+        if (course == null) {
+            return;
+        }
+        String courseCode = course.getCode();
+        
+        System.out.print("Enter Date (YYYY-MM-DD) or press Enter for today: ");
+        String dateInput = scanner.nextLine();
+        LocalDate date;
+        
+        if (dateInput.isEmpty()) {
+            date = LocalDate.now();
+        } else {
+            try {
+                date = LocalDate.parse(dateInput);
+            } catch (Exception e) {
+                System.out.println("Invalid date format. Using today's date.");
+                date = LocalDate.now();
+            }
+        }
+        
+        System.out.print("Is the student present? (Y/N): ");
+        String presentInput = scanner.nextLine();
+        boolean isPresent = presentInput.equalsIgnoreCase("Y");
+        
+        System.out.println(attendanceService.mark(studentId, courseCode, date, isPresent).getMessage());
+    }
+    
+    // Reads a student ID; anything else is searched for by name or email and the matches listed, one
+    // page at a time, until an ID is entered. Returns null if nothing matches or the input is empty.
+    private Student promptStudent() {
+        while (true) {
+            System.out.print("Enter Student ID, or name or email words to search: ");
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            Student student = studentService.find(input);
+            if (student != null) {
+                return student;
+            }
+            ServiceResult<List<Student>> result = studentService.search(new SearchIndex.Query(input).limit(PAGE_SIZE));
+            if (!result.isOk() || result.getValue().isEmpty()) {
+                System.out.println("Student not found.");
+                return null;
+            }
+            printTable(result.getValue(), ReportWriter::writeStudents);
+        }
+    }
+    
+    // Reads a course code; an empty input pages through the courses first
+    private Course promptCourse() {
+        System.out.print("Enter Course Code (or press Enter to list the courses): ");
+        String courseCode = scanner.nextLine().trim();
+        if (courseCode.isEmpty()) {
+            browse(cursor -> courseService.page("code", cursor, PAGE_SIZE), ReportWriter::writeCourses);
+            System.out.print("Enter Course Code: ");
+            courseCode = scanner.nextLine().trim();
+        }
+        Course course = courseService.find(courseCode);
+        if (course == null) {
+            System.out.println("Course not found.");
+        }
+        return course;
+    }
+    
+    // Marks everyone enrolled in a course for one date in a single step; only absentees need to be entered
+    private void takeRollCall() {
+        System.out.println("\n--- Roll Call ---");
+        
+        System.out.print("Enter Course Code: ");
+        String courseCode = scanner.nextLine();
+        
+        ServiceResult<EnrollmentService.CourseRoster> roster = enrollmentService.roster(courseCode);
+        if (!roster.isOk()) {
+            System.out.println(roster.getMessage());
+            return;
+        }
+        
+        if (roster.getValue().getStudents().isEmpty()) {
+            System.out.println("No students are enrolled in " + courseCode + ".");
+            return;
+        }
+        for (Student student : roster.getValue().getStudents()) {
+            System.out.println(student.getId() + " - " + student.getName());
+        }
+        
+        System.out.print("Enter Date (YYYY-MM-DD) or press Enter for today: ");
+        String dateInput = scanner.nextLine();
+        LocalDate date;
+        
+        if (dateInput.isEmpty()) {
+            date = LocalDate.now();
+        } else {
+            try {
+                date = LocalDate.parse(dateInput);
+            } catch (Exception e) {
+                System.out.println("Invalid date format. Using today's date.");
+                date = LocalDate.now();
+            }
+        }
+        
+        System.out.print("Enter IDs of absent students, separated by commas (or press Enter if none): ");
+        List<String> absentees = new ArrayList<>();
+        for (String id : scanner.nextLine().split(",")) {
+            if (!id.isBlank()) {
+                absentees.add(id.trim());
+            }
+        }
+        
+        System.out.println(attendanceService.rollCall(courseCode, date, absentees).getMessage());
+    }
+    
+    private void viewAttendanceRecords() {
+        System.out.println("\n--- Attendance Records ---");
+        if (attendanceService.count() == 0) {
+            System.out.println("No attendance records found.");
+            return;
+        }
+        
+        browse(cursor -> attendanceService.page(cursor, PAGE_SIZE), ReportWriter::writeAttendance);
+    }
+    
+    // Answers questions like "absences for S002 in March" from the attendance indexes
+    private void searchAttendanceRecords() {
+        System.out.println("\n--- Search Attendance Records ---");
+        AttendanceService.Query query = new AttendanceService.Query();
+        
+        System.out.print("Enter Student ID (or press Enter for any): ");
+        String studentId = scanner.nextLine().trim();
+        if (!studentId.isEmpty()) {
+            query.student(studentId);
+        }
+        
+        System.out.print("Enter Course Code (or press Enter for any): ");
+        String courseCode = scanner.nextLine().trim();
+        if (!courseCode.isEmpty()) {
+            query.course(courseCode);
+        }
+        
+        try {
+            System.out.print("Enter From Date (YYYY-MM-DD) or press Enter for no limit: ");
+            String from = scanner.nextLine().trim();
+            System.out.print("Enter To Date (YYYY-MM-DD) or press Enter for no limit: ");
+            String to = scanner.nextLine().trim();
+            query.between(from.isEmpty() ? null : LocalDate.parse(from), to.isEmpty() ? null : LocalDate.parse(to));
+        } catch (Exception e) {
+            System.out.println("Invalid date format.");
+            return;
+        }
+        
+        System.out.print("Show (A)ll, (P)resent only or a(B)sent only? ");
+        String presence = scanner.nextLine().trim();
+        if (presence.equalsIgnoreCase("P")) {
+            query.present(true);
+        } else if (presence.equalsIgnoreCase("B")) {
+            query.present(false);
+        }
+        
+        ServiceResult<List<AttendanceRecord>> result = attendanceService.find(query);
+        if (result.isOk() && !result.getValue().isEmpty()) {
+            try {
+                ReportWriter writer = new ReportWriter(System.out, ReportWriter.Layout.FIXED_WIDTH);
+                writer.writeAttendance(result.getValue());
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    private String sortOrder(String defaultOrder) {
+        String order = scanner.nextLine().trim();
+        return order.isEmpty() ? defaultOrder : order;
+    }
+    
+    // Reads the search words, then whether to allow misspellings
+    private SearchIndex.Query searchQuery() {
+        SearchIndex.Query query = new SearchIndex.Query(scanner.nextLine()).limit(PAGE_SIZE);
+        System.out.print("Allow misspellings? (y/N): ");
+        return query.fuzzy(scanner.nextLine().trim().equalsIgnoreCase("y"));
+    }
+    
+    private <T> void printTable(List<T> rows, PageRenderer<T> renderer) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            ReportWriter writer = new ReportWriter(System.out, ReportWriter.Layout.FIXED_WIDTH);
+            renderer.render(writer, rows);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Prints a listing one page at a time, each as a table, until it ends or the user stops
+    private <T> void browse(Function<String, ServiceResult<Page<T>>> pages, PageRenderer<T> renderer) {
+        String cursor = null;
+        while (true) {
+            ServiceResult<Page<T>> result = pages.apply(cursor);
+            if (!result.isOk()) {
+                System.out.println(result.getMessage());
+                return;
+            }
+            Page<T> page = result.getValue();
+            printTable(page.getItems(), renderer);
+            if (!page.hasNext()) {
+                return;
+            }
+            System.out.print("Press Enter for the next page, or Q to stop: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("Q")) {
+                return;
+            }
+            cursor = page.getNextCursor();
+        }
+    }
+    
+    // PageRenderer interface writing one page of a listing through a ReportWriter
+    private interface PageRenderer<T> {
+        long render(ReportWriter writer, List<T> items) throws IOException;
+    }
+    
+    private void timetableManagement() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Timetable ===");
+            System.out.println("1. Generate Timetable");
+            System.out.println("2. View Timetable of a Course");
+            System.out.println("3. View Timetable of a Student or Teacher");
+            System.out.println("4. View Timetable of a Room");
+            System.out.println("5. Move a Meeting");
+            System.out.println("6. Check for Clashes");
+            System.out.println("7. Back to Main Menu");
+            System.out.print("Please select an option: ");
+            
+            int choice = getIntInput();
+            
+            switch (choice) {
+                case 1 -> generateTimetable();
+                case 2 -> {
+                    System.out.print("Enter Course Code: ");
+                    printMeetings(timetableService.courseTimetable(scanner.nextLine().trim()));
+                }
+                case 3 -> {
+                    System.out.print("Enter Student or Teacher ID: ");
+                    String id = scanner.nextLine().trim();
+                    printMeetings(studentService.exists(id)
+                            ? timetableService.studentTimetable(id) : timetableService.teacherTimetable(id));
+                }
+                case 4 -> {
+                    System.out.print("Enter Room Code: ");
+                    printMeetings(timetableService.roomTimetable(scanner.nextLine().trim()));
+                }
+                case 5 -> moveMeeting();
+                case 6 -> checkTimetable();
+                case 7 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    private void generateTimetable() {
+        System.out.println("\n--- Generate Timetable ---");
+        System.out.print("Enter Number of Rooms (0 for as many as needed): ");
+        int rooms = getIntInput();
+        
+        System.out.print("Enter Room Capacity (e.g. " + TimetableService.DEFAULT_ROOM_CAPACITY + "): ");
+        int capacity = getIntInput();
+        
+        System.out.print("Enter Periods per Week for Each Course (e.g. " + TimetableService.DEFAULT_MEETINGS + "): ");
+        int meetings = getIntInput();
+        
+        ServiceResult<Timetable> result = timetableService.generate(rooms, capacity, meetings);
+        System.out.println(result.getMessage());
+        if (result.isOk()) {
+            for (Timetable.Section section : result.getValue().getUnplaced()) {
+                System.out.println("  Not placed: " + section + " (" + section.getSize() + " students)");
+            }
+        }
+    }
+    
+    private void moveMeeting() {
+        System.out.println("\n--- Move a Meeting ---");
+        System.out.print("Enter Course Code: ");
+        String courseCode = scanner.nextLine().trim();
+        
+        System.out.print("Enter Section Number: ");
+        int section = getIntInput();
+        
+        System.out.print("Enter Current Period (e.g. Mon P1): ");
+        String from = scanner.nextLine();
+        
+        System.out.print("Enter New Period (e.g. Tue P3): ");
+        String to = scanner.nextLine();
+        
+        System.out.print("Enter New Room Code (leave empty to keep the room): ");
+        String room = scanner.nextLine().trim();
+        
+        System.out.println(timetableService.move(courseCode, section, from, to, room).getMessage());
+    }
+    
+    private void checkTimetable() {
+        ServiceResult<List<Timetable.Conflict>> result = timetableService.conflicts();
+        if (result.isOk()) {
+            for (Timetable.Conflict conflict : result.getValue()) {
+                System.out.println("  " + conflict);
+            }
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    private void printMeetings(ServiceResult<List<Timetable.Meeting>> result) {
+        if (result.isOk()) {
+            printTable(result.getValue(), ReportWriter::writeMeetings);
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    private void feeManagement() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Fees ===");
+            System.out.println("1. Invoice a Student");
+            System.out.println("2. Record a Payment");
+            System.out.println("3. Post an Adjustment");
+            System.out.println("4. View Balance");
+            System.out.println("5. View Statement");
+            System.out.println("6. Invoice All Students");
+            System.out.println("7. Back to Main Menu");
+            System.out.print("Please select an option: ");
+        
+            int choice = getIntInput();
+        
+            switch (choice) {
+                case 1 -> postFee(FeeLedger.Kind.INVOICE);
+                case 2 -> postFee(FeeLedger.Kind.PAYMENT);
+                case 3 -> postFee(FeeLedger.Kind.ADJUSTMENT);
+                case 4 -> {
+                    System.out.print("Enter Student ID: ");
+                    System.out.println(feeService.balance(scanner.nextLine().trim()).getMessage());
+                }
+                case 5 -> viewStatement();
+                case 6 -> invoiceAllStudents();
+                case 7 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    private void postFee(FeeLedger.Kind kind) {
+        System.out.println("\n--- " + switch (kind) {
+            case INVOICE -> "Invoice a Student";
+            case PAYMENT -> "Record a Payment";
+            case ADJUSTMENT -> "Post an Adjustment";
+        } + " ---");
+        System.out.print("Enter Student ID: ");
+        String studentId = scanner.nextLine().trim();
+        
+        System.out.print(kind == FeeLedger.Kind.ADJUSTMENT
+                ? "Enter Amount (negative for a credit): " : "Enter Amount: ");
+        Money amount = getMoneyInput();
+        
+        System.out.print(kind == FeeLedger.Kind.PAYMENT
+                ? "Enter Description (or press Enter for Payment): " : "Enter Description: ");
+        String description = scanner.nextLine().trim();
+        
+        System.out.print("Enter Date (YYYY-MM-DD) or press Enter for today: ");
+        LocalDate date = getDateInput(LocalDate.now());
+        
+        ServiceResult<FeeService.Entry> result;
+        if (kind == FeeLedger.Kind.INVOICE) {
+            System.out.print("Enter Due Date (YYYY-MM-DD) or press Enter for " + FeeService.DEFAULT_TERMS_DAYS
+                    + " days later: ");
+            result = feeService.invoice(studentId, description, amount, date, getDateInput(null));
+        } else if (kind == FeeLedger.Kind.PAYMENT) {
+            result = feeService.pay(studentId, amount, date, description);
+        } else {
+            result = feeService.adjust(studentId, amount, date, description);
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    private void viewStatement() {
+        System.out.println("\n--- Statement ---");
+        System.out.print("Enter Student ID: ");
+        ServiceResult<FeeService.Statement> result = feeService.statement(scanner.nextLine().trim());
+        if (result.isOk()) {
+            Student student = result.getValue().getStudent();
+            System.out.println(student.getId() + " " + student.getName());
+            printTable(result.getValue().getEntries(), ReportWriter::writeFees);
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    // Bills the same fee to every student, or to one grade, in one batched run
+    private void invoiceAllStudents() {
+        System.out.println("\n--- Invoice All Students ---");
+        System.out.print("Enter Grade (or press Enter for every student): ");
+        String grade = scanner.nextLine().trim();
+        
+        System.out.print("Enter Description: ");
+        String description = scanner.nextLine().trim();
+        
+        System.out.print("Enter Amount per Student: ");
+        Money amount = getMoneyInput();
+        
+        System.out.print("Enter Invoice Date (YYYY-MM-DD) or press Enter for today: ");
+        LocalDate date = getDateInput(LocalDate.now());
+        
+        System.out.print("Enter Due Date (YYYY-MM-DD) or press Enter for " + FeeService.DEFAULT_TERMS_DAYS
+                + " days later: ");
+        LocalDate dueDate = getDateInput(null);
+        
+        System.out.println(feeService.invoiceAll(grade.isEmpty() ? null : grade, description, amount, date, dueDate)
+                .getMessage());
+    }
+    
+    private void gradebook() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Gradebook ===");
+            System.out.println("1. Add an Assessment");
+            System.out.println("2. View Assessments of a Course");
+            System.out.println("3. Record a Mark");
+            System.out.println("4. View Transcript");
+            System.out.println("5. Course Ranking");
+            System.out.println("6. Year Group Ranking");
+            System.out.println("7. Back to Main Menu");
+            System.out.print("Please select an option: ");
+        
+            int choice = getIntInput();
+        
+            switch (choice) {
+                case 1 -> addAssessment();
+                case 2 -> {
+                    System.out.print("Enter Course Code: ");
+                    ServiceResult<List<Gradebook.Assessment>> result = gradebookService.assessments(scanner.nextLine().trim());
+                    if (result.isOk()) {
+                        printTable(result.getValue(), ReportWriter::writeAssessments);
+                    }
+                    System.out.println(result.getMessage());
+                }
+                case 3 -> recordMark();
+                case 4 -> viewTranscript();
+                case 5 -> {
+                    System.out.print("Enter Course Code: ");
+                    ServiceResult<List<Gradebook.Ranked>> result = gradebookService.courseRanking(scanner.nextLine().trim(), 0,
+                            GradebookService.DEFAULT_RANKING_SIZE);
+                    if (result.isOk()) {
+                        printTable(result.getValue(), ReportWriter::writeCourseRanking);
+                    }
+                    System.out.println(result.getMessage());
+                }
+                case 6 -> {
+                    System.out.print("Enter Grade: ");
+                    ServiceResult<List<Gradebook.Ranked>> result = gradebookService.yearRanking(scanner.nextLine().trim(), 0,
+                            GradebookService.DEFAULT_RANKING_SIZE);
+                    if (result.isOk()) {
+                        printTable(result.getValue(), ReportWriter::writeYearRanking);
+                    }
+                    System.out.println(result.getMessage());
+                }
+                case 7 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    private void addAssessment() {
+        System.out.println("\n--- Add an Assessment ---");
+        System.out.print("Enter Course Code: ");
+        String courseCode = scanner.nextLine().trim();
+        
+        System.out.print("Enter Assessment Name: ");
+        String name = scanner.nextLine().trim();
+        
+        System.out.print("Enter Weight (e.g. 40 for 40% of the course): ");
+        int weight = getIntInput();
+        
+        System.out.print("Enter Points it is Marked Out Of: ");
+        double maxPoints = getPointsInput();
+        
+        System.out.println(gradebookService.addAssessment(courseCode, name, weight, maxPoints).getMessage());
+    }
+    
+    private void recordMark() {
+        System.out.println("\n--- Record a Mark ---");
+        System.out.print("Enter Student ID: ");
+        String studentId = scanner.nextLine().trim();
+        
+        System.out.print("Enter Course Code: ");
+        String courseCode = scanner.nextLine().trim();
+        
+        System.out.print("Enter Assessment Name: ");
+        String assessment = scanner.nextLine().trim();
+        
+        System.out.print("Enter Points: ");
+        double points = getPointsInput();
+        
+        System.out.println(gradebookService.recordMark(studentId, courseCode, assessment, points).getMessage());
+    }
+    
+    private void viewTranscript() {
+        System.out.println("\n--- Transcript ---");
+        System.out.print("Enter Student ID: ");
+        ServiceResult<GradebookService.Transcript> result = gradebookService.transcript(scanner.nextLine().trim());
+        if (result.isOk()) {
+            Student student = result.getValue().getStudent();
+            System.out.println(student.getId() + " " + student.getName() + ", " + student.getGrade());
+            printTable(result.getValue().getCourses(), ReportWriter::writeGrades);
+        }
+        System.out.println(result.getMessage());
+    }
+    
+    private void generateReports() {
+        boolean back = false;
+        
+        while (!back) {
+            System.out.println("\n=== Generate Reports ===");
+            System.out.println("1. Student Report");
+            System.out.println("2. Teacher Report");
+            System.out.println("3. Course Report");
+            System.out.println("4. Attendance Report");
+            System.out.println("5. School Analytics");
+            System.out.println("6. Aged Debt Report");
+            System.out.println("7. Export Report to CSV File");
+            System.out.println("8. Operation Metrics");
+            System.out.println("9. Back to Main Menu");
+            System.out.print("Please select an option: ");
+            
+            int choice = getIntInput();
+            
+            switch (choice) {
+                case 1 -> generateStudentReport();
+                case 2 -> generateTeacherReport();
+                case 3 -> generateCourseReport();
+                case 4 -> generateAttendanceReport();
+                case 5 -> generateAnalyticsReport();
+                case 6 -> generateAgedDebtReport();
+                case 7 -> exportReport();
+                case 8 -> showMetrics();
+                case 9 -> back = true;
+                default -> System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+    
+    // Latencies of the operations run so far, with the collection sizes and estimated heap
+    private void showMetrics() {
+        System.out.println("\n--- Operation Metrics ---");
+        if (!Metrics.ENABLED) {
+            System.out.println("Timing is off (-Dschool.metrics=false); only sizes are shown.");
+        }
+        System.out.print(school.getMetrics().dump());
+    }
+    
+    private void generateAnalyticsReport() {
+        System.out.println("\n--- School Analytics ---");
+        ReportEngine.Analytics analytics = reportService.analyticsReport();
+        
+        System.out.println("Salary by Department:");
+        for (Map.Entry<String, ReportEngine.Payroll> department : analytics.getSalaryByDepartment().entrySet()) {
+            ReportEngine.Payroll payroll = department.getValue();
+            System.out.printf("  %-20s %4d teachers  total $%s  average $%s%n", department.getKey(),
+                    payroll.getTeachers(), payroll.getTotal(), payroll.getAverage());
+        }
+        
+        System.out.println("Attendance by Grade:");
+        analytics.getAttendanceByGrade().forEach((grade, presence) -> printPresence(grade, presence));
+        System.out.println("Attendance by Course:");
+        analytics.getAttendanceByCourse().forEach((course, presence) -> printPresence(course, presence));
+        System.out.println("Attendance by Week:");
+        analytics.getAttendanceByWeek().forEach((week, presence) -> printPresence("Week of " + week, presence));
+        
+        List<ReportEngine.Absentee> absentees = analytics.getChronicAbsentees();
+        System.out.printf("Chronic Absentees (absent from %.0f%% or more of at least %d sessions): %d%n",
+                ReportEngine.CHRONIC_ABSENCE_RATE * 100, ReportEngine.CHRONIC_MIN_SESSIONS, absentees.size());
+        for (ReportEngine.Absentee absentee : absentees.subList(0, Math.min(absentees.size(), PAGE_SIZE))) {
+            printPresence(absentee.getStudent().getId() + " " + absentee.getStudent().getName(), absentee.getAttendance());
+        }
+        if (absentees.size() > PAGE_SIZE) {
+            System.out.println("  ... and " + (absentees.size() - PAGE_SIZE) + " more");
+        }
+    }
+    
+    private void generateAgedDebtReport() {
+        System.out.println("\n--- Aged Debt Report ---");
+        ReportService.AgedDebtReport report = reportService.agedDebtReport(LocalDate.now());
+        List<ReportService.Debtor> debtors = report.getDebtors();
+        printTable(debtors.subList(0, Math.min(debtors.size(), PAGE_SIZE)), ReportWriter::writeAgedDebt);
+        if (debtors.size() > PAGE_SIZE) {
+            System.out.println("  ... and " + (debtors.size() - PAGE_SIZE) + " more");
+        }
+        
+        System.out.println("Owed as of " + report.getAsOf() + ":");
+        for (int bucket = 0; bucket < FeeLedger.AGING_BUCKETS.length; bucket++) {
+            System.out.printf("  %-14s $%s%n", FeeLedger.AGING_BUCKETS[bucket], report.getTotal(bucket));
+        }
+        System.out.println("Students Owing: " + debtors.size());
+        System.out.println("Total Owed: $" + report.getTotal());
+    }
+    
+    private void printPresence(String label, ReportEngine.Presence presence) {
+        System.out.printf("  %-32s %8d present  %8d absent  %6.2f%%%n", label, presence.getPresent(),
+                presence.getAbsent(), presence.getRate());
+    }
+    
+    private void exportReport() {
+        System.out.println("\n--- Export Report to CSV File ---");
+        System.out.print("Enter report (Students/Teachers/Courses/Attendance/Aged Debt): ");
+        ReportWriter.Report report;
+        try {
+            report = ReportWriter.Report.valueOf(scanner.nextLine().trim().toUpperCase().replace(' ', '_'));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown report.");
+            return;
+        }
+        
+        System.out.print("Enter file path: ");
+        Path file = Path.of(scanner.nextLine().trim());
+        try (ReportWriter writer = new ReportWriter(Files.newOutputStream(file), ReportWriter.Layout.CSV)) {
+            long rows = writer.write(school, report);
+            System.out.println(rows + " rows written to " + file + ".");
+        } catch (IOException e) {
+            System.out.println("Could not write report: " + e.getMessage());
+        }
+    }
+    
+    private void generateStudentReport() {
+        System.out.println("\n--- Student Report ---");
+        viewAllStudents();
+        System.out.println("Total Students: " + reportService.studentReport().getTotal());
+    }
+    
+    private void generateTeacherReport() {
+        System.out.println("\n--- Teacher Report ---");
+        // The table and the totals come from the same view, so they agree
+        ReportService.TeacherReport report = reportService.teacherReport();
+        printTable(report.getEntries(), ReportWriter::writeTeachers);
+        System.out.println("Total Teachers: " + report.getTotal());
+        System.out.println("Total Salary Expenditure: $" + report.getTotalSalary());
+    }
+    
+    private void generateCourseReport() {
+        System.out.println("\n--- Course Report ---");
+        viewAllCourses();
+        System.out.println("Total Courses: " + reportService.courseReport().getTotal());
+    }
+    
+    private void generateAttendanceReport() {
+        System.out.println("\n--- Attendance Report ---");
+        
+        // Counted from one view of the records, so the courses add up to the total
+        ReportService.AttendanceReport report = reportService.attendanceReport();
+        AttendanceAggregates.Tally total = report.getTotal();
+        if (total.getTotal() == 0) {
+            System.out.println("No attendance records found.");
+            return;
+        }
+        
+        System.out.println("Total Attendance Records: " + total.getTotal());
+        System.out.println("Present: " + total.getPresent());
+        System.out.println("Absent: " + total.getAbsent());
+        System.out.printf("Attendance Rate: %.2f%%\n", total.getRate());
+        
+        System.out.println("By Course:");
+        for (Map.Entry<String, AttendanceAggregates.Tally> entry : report.getByCourse().entrySet()) {
+            AttendanceAggregates.Tally tally = entry.getValue();
+            System.out.printf("  %s - Present: %d, Absent: %d, Rate: %.2f%%\n",
+                    entry.getKey(), tally.getPresent(), tally.getAbsent(), tally.getRate());
+        }
+    }
+    
+    // Utility method to get integer input
+    private int getIntInput() {
+        while (true) {
+            try {
+                return Integer.parseInt(scanner.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid input. Please enter a number: ");
+            }
+        }
+    }
+    
+    // Utility method to get a date; an empty answer gives whenEmpty
+    private LocalDate getDateInput(LocalDate whenEmpty) {
+        while (true) {
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return whenEmpty;
+            }
+            try {
+                return LocalDate.parse(input);
+            } catch (DateTimeException e) {
+                System.out.print("Invalid date. Please enter a date as YYYY-MM-DD: ");
+            }
+        }
+    }
+    
+    // Utility method to get a number of points, which may have a fraction
+    private double getPointsInput() {
+        while (true) {
+            try {
+                return Double.parseDouble(scanner.nextLine().trim());
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid input. Please enter a number: ");
+            }
+        }
+    }
+    
+    // Utility method to get an amount of money
+    private Money getMoneyInput() {
+        while (true) {
+            try {
+                return Money.parse(scanner.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid input. Please enter an amount with at most two decimals: ");
+            }
+        }
+    }
+}
+
@@ -0,0 +1,124 @@
+package school;
+
+import java.util.stream.Stream;
+
+// SchoolView class giving a consistent point-in-time view of the school's students, teachers,
+// courses and attendance, for long reports and exports.
+//
+// The view reads at one version of the school's Versions: it holds every change committed before
+// it opened and none after, while writers carry on at full speed. Entities come back as detached
+// copies. Attendance is read up to the row count taken just before the version, so every row in
+// the view belongs to a student and course the view also holds. Close the view when done, as the
+// registries keep older versions and compaction holds off while it is open.
+class SchoolView implements AutoCloseable {
+    private final Versions versions;
+    private final long version;
+    private final EntityRegistry<Student> students;
+    private final EntityRegistry<Teacher> teachers;
+    private final EntityRegistry<Course> courses;
+    private final AttendanceStore attendanceRecords;
+    private final int attendanceRows;
+    // Views of the attendance dictionaries' entries, filled in as rows are read
+    private final Student[] attendanceStudents;
+    private final Course[] attendanceCourses;
+    private boolean closed;
+
+    SchoolView(Versions versions, EntityRegistry<Student> students, EntityRegistry<Teacher> teachers,
+               EntityRegistry<Course> courses, AttendanceStore attendanceRecords) {
+        this.versions = versions;
+        this.students = students;
+        this.teachers = teachers;
+        this.courses = courses;
+        this.attendanceRecords = attendanceRecords;
+        // Rows are counted before the version is read: each row's student and course were added
+        // by commits that ended before the row was marked
+        this.attendanceRows = attendanceRecords.size();
+        this.version = versions.open();
+        // Dictionaries only grow, so sizes read after the row count cover every row below it
+        this.attendanceStudents = new Student[attendanceRecords.studentCount()];
+        this.attendanceCourses = new Course[attendanceRecords.courseCount()];
+    }
+
+    public long getVersion() { return version; }
+
+    // Streams can run in parallel
+    public Stream<Student> students() {
+        return students.at(version);
+    }
+
+    public Stream<Teacher> teachers() {
+        return teachers.at(version);
+    }
+
+    public Stream<Course> courses() {
+        return courses.at(version);
+    }
+
+    // Number of attendance rows the view covers, deleted ones included; row numbers run below it
+    public int attendanceRows() {
+        return attendanceRows;
+    }
+
+    // Offers the view's attendance rows in [from, to) to the visitor, with dictionary indexes
+    public void scanAttendance(int from, int to, AttendanceStore.RowVisitor visitor) {
+        checkRows(to);
+        attendanceRecords.scan(from, to, version, visitor);
+    }
+
+    // Copies the view's attendance rows in [from, to) into the columns, as AttendanceStore.copyRows does
+    public int copyAttendanceRows(int from, int to, int[] studentColumn, int[] courseColumn, int[] epochDays,
+                                  boolean[] present) {
+        checkRows(to);
+        return attendanceRecords.copyRows(from, to, version, studentColumn, courseColumn, epochDays, present);
+    }
+
+    // Earliest and latest recorded days, or null if there are no rows; covers every row of the view
+    public int[] attendanceDayRange() {
+        return attendanceRecords.dayRange();
+    }
+
+    public int attendanceStudentCount() {
+        return attendanceStudents.length;
+    }
+
+    public int attendanceCourseCount() {
+        return attendanceCourses.length;
+    }
+
+    // The view's copy of the student with this attendance dictionary index, or null if the view does
+    // not hold it. Copies are cached, so this is for one thread at a time.
+    public Student attendanceStudent(int index) {
+        Student student = attendanceStudents[index];
+        if (student == null) {
+            Student live = attendanceRecords.studentAt(index);
+            student = live == null ? null : students.at(live, version);
+            attendanceStudents[index] = student;
+        }
+        return student;
+    }
+
+    // As attendanceStudent, for a course
+    public Course attendanceCourse(int index) {
+        Course course = attendanceCourses[index];
+        if (course == null) {
+            Course live = attendanceRecords.courseAt(index);
+            course = live == null ? null : courses.at(live, version);
+            attendanceCourses[index] = course;
+        }
+        return course;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            versions.close(version);
+        }
+    }
+
+    private void checkRows(int to) {
+        if (to > attendanceRows) {
+            throw new IndexOutOfBoundsException("Row " + to + " is past the " + attendanceRows + " rows of the view");
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package school;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+// SearchIndex class that finds entities by the words of their text fields, such as name and email.
+//
+// Fields are split into lower-case words ("Alice Brown" and "abrown12" give alice, brown and
+// abrown12), and a sorted dictionary maps each word to the entities that contain it. Email domains
+// are shared by nearly every entity, so they are not words: the domain is already a code in
+// SymbolTable.EMAIL_DOMAINS and is matched as a filter, like the "@school.com" of a query. A
+// prefix query reads one range of the dictionary. A fuzzy query walks it with an edit-distance
+// table, one row per character, and seeks past every word under a prefix that is already too far
+// from the query word, so it only visits a small part of the dictionary. Every query word must
+// match a word of the entity, and filters narrow the results to one value of a dictionary-encoded
+// attribute and one email domain. The index follows its registry as a listener, so it changes with
+// every add, update and removal; queries never lock.
+//
+// A word's postings only grow under writers: an entity that loses the word stays listed until
+// half the list is such entries, when the list is rebuilt without them, so a removal costs O(1)
+// amortised however many entities share the word. Queries check each candidate's current words.
+class SearchIndex<T> implements EntityRegistry.Listener<T> {
+    static final int DEFAULT_LIMIT = 20;
+
+    private final List<Function<T, String>> fields;
+    private final SymbolTable filterSymbols;
+    private final ToIntFunction<T> filterCodeOf;
+    private final ToIntFunction<T> domainCodeOf;
+    private final ConcurrentSkipListMap<String, Postings<T>> words = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Document<T>> documents = new ConcurrentHashMap<>();
+
+    // Indexes the given fields; filters match the attribute whose codes are in filterSymbols, and
+    // the email domain whose code is in SymbolTable.EMAIL_DOMAINS
+    SearchIndex(List<Function<T, String>> fields, SymbolTable filterSymbols, ToIntFunction<T> filterCodeOf,
+                ToIntFunction<T> domainCodeOf) {
+        this.fields = fields;
+        this.filterSymbols = filterSymbols;
+        this.filterCodeOf = filterCodeOf;
+        this.domainCodeOf = domainCodeOf;
+    }
+
+    // A document lists its words before it is posted under them, and stops listing a word before it
+    // is unposted, so a postings rebuild never drops a document that still has the word
+    @Override
+    public void added(String key, int ordinal, T entity) {
+        Document<T> document = new Document<>(entity, filterCodeOf.applyAsInt(entity), domainCodeOf.applyAsInt(entity));
+        String[] current = wordsOf(entity);
+        for (int i = 0; i < current.length; i++) {
+            // Documents keep the dictionary's copy of each word rather than one of their own
+            current[i] = canonical(current[i]);
+        }
+        document.words = current;
+        for (String word : current) {
+            post(word, document);
+        }
+        documents.put(key, document);
+    }
+
+    @Override
+    public void updated(String key, int ordinal, T entity) {
+        Document<T> document = documents.get(key);
+        String[] previous = document.words;
+        String[] current = wordsOf(entity);
+        for (int i = 0; i < current.length; i++) {
+            int at = indexOf(previous, current[i]);
+            current[i] = at >= 0 ? previous[at] : canonical(current[i]);
+        }
+        document.filterCode = filterCodeOf.applyAsInt(entity);
+        document.domainCode = domainCodeOf.applyAsInt(entity);
+        document.words = current;
+        for (String word : current) {
+            if (indexOf(previous, word) < 0) {
+                post(word, document);
+            }
+        }
+        for (String word : previous) {
+            if (indexOf(current, word) < 0) {
+                unpost(word, document);
+            }
+        }
+    }
+
+    @Override
+    public void removed(String key, int ordinal, T entity) {
+        Document<T> document = documents.remove(key);
+        document.removed = true;
+        for (String word : document.words) {
+            unpost(word, document);
+        }
+    }
+
+    // Up to the query's limit of matching entities, in dictionary order of the words they matched
+    // for the most selective query word. An email address in the text searches its local part's
+    // words within its domain.
+    public List<T> search(Query query) {
+        String text = query.text == null ? "" : query.text;
+        String domain = query.domain;
+        int at = text.lastIndexOf('@');
+        if (at >= 0) {
+            int end = at + 1;
+            while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+                end++;
+            }
+            if (domain == null && end > at + 1) {
+                domain = text.substring(at + 1, end);
+            }
+            text = text.substring(0, at) + text.substring(end);
+        }
+        String[] queryWords = distinct(split(text));
+        boolean[] filter = query.filter == null ? null : filterSymbols.matchIgnoreCase(query.filter);
+        boolean[] domains = domain == null ? null : SymbolTable.EMAIL_DOMAINS.matchIgnoreCase(domain);
+        List<T> results = new ArrayList<>(Math.min(query.limit, 64));
+        if (queryWords.length == 0) {
+            for (Document<T> document : documents.values()) {
+                if (results.size() == query.limit) {
+                    break;
+                }
+                if (passes(document, filter, domains)) {
+                    results.add(document.entity);
+                }
+            }
+            return results;
+        }
+
+        // Each query word becomes the dictionary entries it matches and a test for a document's words
+        List<Collection<Postings<T>>> matches = new ArrayList<>(queryWords.length);
+        List<Predicate<String>> tests = new ArrayList<>(queryWords.length);
+        for (String word : queryWords) {
+            if (query.fuzzy) {
+                List<Postings<T>> similar = similar(word, maxEdits(word));
+                Set<String> accepted = new HashSet<>();
+                for (Postings<T> postings : similar) {
+                    accepted.add(postings.word);
+                }
+                matches.add(similar);
+                tests.add(accepted::contains);
+            } else {
+                matches.add(words.subMap(word, true, word + Character.MAX_VALUE, false).values());
+                tests.add(candidate -> candidate.startsWith(word));
+            }
+        }
+
+        // Candidates come from the query word with the fewest postings and are checked against the rest
+        int driver = 0;
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < matches.size() && matches.size() > 1; i++) {
+            long postings = countPostings(matches.get(i), fewest);
+            if (postings < fewest) {
+                fewest = postings;
+                driver = i;
+            }
+        }
+        Set<Document<T>> seen = new HashSet<>();
+        for (Postings<T> postings : matches.get(driver)) {
+            View<T> view = postings.view;
+            for (int i = 0; i < view.size; i++) {
+                Document<T> document = view.documents[i];
+                // Entries of documents that lost the word since the postings were rebuilt fail matchesAll
+                if (passes(document, filter, domains) && matchesAll(document.words, tests) && seen.add(document)) {
+                    results.add(document.entity);
+                    if (results.size() == query.limit) {
+                        return results;
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // Throws IllegalStateException unless the index holds exactly the registry's entities under their current words
+    public void verify(EntityRegistry<T> registry, Function<T, String> keyOf) {
+        if (documents.size() != registry.size()) {
+            throw new IllegalStateException("Search index holds " + documents.size() + " entities but the registry holds "
+                    + registry.size());
+        }
+        long posted = 0;
+        for (T entity : registry) {
+            Document<T> document = documents.get(keyOf.apply(entity));
+            if (document == null || document.entity != entity) {
+                throw new IllegalStateException("Search index is missing " + keyOf.apply(entity));
+            }
+            if (!new HashSet<>(Arrays.asList(document.words)).equals(new HashSet<>(Arrays.asList(wordsOf(entity))))
+                    || document.filterCode != filterCodeOf.applyAsInt(entity)
+                    || document.domainCode != domainCodeOf.applyAsInt(entity)) {
+                throw new IllegalStateException("Search index holds " + keyOf.apply(entity) + " under out-of-date words");
+            }
+            for (String word : document.words) {
+                Postings<T> postings = words.get(word);
+                if (postings == null || !postings.contains(document)) {
+                    throw new IllegalStateException("Search index does not list " + keyOf.apply(entity) + " under " + word);
+                }
+            }
+            posted += document.words.length;
+        }
+        long postings = 0;
+        for (Postings<T> entry : words.values()) {
+            postings += entry.listed();
+        }
+        if (postings != posted) {
+            throw new IllegalStateException("Search index holds " + postings + " postings for " + posted + " words");
+        }
+    }
+
+    // Edits allowed for a fuzzy match: none for short words, where one edit changes too much
+    static int maxEdits(String word) {
+        return word.length() < 3 ? 0 : word.length() < 6 ? 1 : 2;
+    }
+
+    private static boolean passes(Document<?> document, boolean[] filter, boolean[] domains) {
+        return !document.removed && matches(document.filterCode, filter) && matches(document.domainCode, domains);
+    }
+
+    private static boolean matches(int code, boolean[] accepted) {
+        return accepted == null || (code >= 0 && code < accepted.length && accepted[code]);
+    }
+
+    private static boolean matchesAll(String[] documentWords, List<Predicate<String>> tests) {
+        for (Predicate<String> test : tests) {
+            boolean matched = false;
+            for (String word : documentWords) {
+                if (test.test(word)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Stops counting once past the bound, so a broad prefix costs no more than the best word so far.
+    // Entries waiting for a rebuild are counted too; they are at most half of each list.
+    private static long countPostings(Collection<? extends Postings<?>> matched, long bound) {
+        long count = 0;
+        for (Postings<?> postings : matched) {
+            count += postings.view.size;
+            if (count >= bound) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    // Dictionary entries within maxEdits of the word. Row i of the edit-distance table holds the
+    // distances from the first i characters of a dictionary word to every prefix of the query word,
+    // so words that share a prefix share rows, and once a row's minimum exceeds maxEdits nothing
+    // under that prefix can match and the walk seeks past it. Only words with the query word's first
+    // letter are walked: first letters are rarely misspelt, and it keeps the walk to a small part
+    // of a dictionary that holds every email address.
+    private List<Postings<T>> similar(String word, int maxEdits) {
+        List<Postings<T>> similar = new ArrayList<>();
+        if (maxEdits == 0) {
+            Postings<T> exact = words.get(word);
+            if (exact != null) {
+                similar.add(exact);
+            }
+            return similar;
+        }
+        int length = word.length();
+        int[][] rows = new int[length + maxEdits + 2][length + 1];
+        for (int j = 0; j <= length; j++) {
+            rows[0][j] = j;
+        }
+        String previous = "";
+        int valid = 0;
+        String end = successor(word, 1);
+        String candidate = words.ceilingKey(word.substring(0, 1));
+        walk:
+        while (candidate != null && (end == null || candidate.compareTo(end) < 0)) {
+            int depth = Math.min(valid, sharedPrefix(previous, candidate));
+            while (depth < candidate.length()) {
+                if (depth + 1 == rows.length) {
+                    // Longer than the query word by more than maxEdits, so no longer word under this prefix matches
+                    break;
+                }
+                int[] above = rows[depth];
+                int[] row = rows[depth + 1];
+                char c = candidate.charAt(depth);
+                row[0] = depth + 1;
+                int minimum = row[0];
+                for (int j = 1; j <= length; j++) {
+                    int cost = word.charAt(j - 1) == c ? 0 : 1;
+                    row[j] = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+                    minimum = Math.min(minimum, row[j]);
+                }
+                depth++;
+                if (minimum > maxEdits) {
+                    previous = candidate;
+                    valid = depth;
+                    String next = successor(candidate, depth);
+                    candidate = next == null ? null : words.ceilingKey(next);
+                    continue walk;
+                }
+            }
+            previous = candidate;
+            valid = depth;
+            if (depth == candidate.length() && rows[depth][length] <= maxEdits) {
+                Postings<T> postings = words.get(candidate);
+                if (postings != null) {
+                    similar.add(postings);
+                }
+            }
+            candidate = depth < candidate.length()
+                    ? nextOrNull(successor(candidate, depth))
+                    : words.higherKey(candidate);
+        }
+        return similar;
+    }
+
+    private String nextOrNull(String bound) {
+        return bound == null ? null : words.ceilingKey(bound);
+    }
+
+    // The first string after every string that starts with the word's first length characters
+    private static String successor(String word, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            char c = word.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return word.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    private static int sharedPrefix(String a, String b) {
+        int limit = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < limit && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // The dictionary's copy of the word, or the word itself if it is new
+    private String canonical(String word) {
+        Postings<T> postings = words.get(word);
+        return postings == null ? word : postings.word;
+    }
+
+    private void post(String word, Document<T> document) {
+        while (true) {
+            Postings<T> postings = words.computeIfAbsent(word, Postings::new);
+            synchronized (postings) {
+                // An emptied entry is dropped from the dictionary; start again with a fresh one
+                if (!postings.dropped) {
+                    postings.add(document);
+                    return;
+                }
+            }
+        }
+    }
+
+    // The document no longer lists the word, or has been removed
+    private void unpost(String word, Document<T> document) {
+        Postings<T> postings = words.get(word);
+        if (postings == null) {
+            return;
+        }
+        synchronized (postings) {
+            if (postings.unlisted() && postings.view.size == 0) {
+                postings.dropped = true;
+                words.remove(word, postings);
+            }
+        }
+    }
+
+    private String[] wordsOf(T entity) {
+        List<String> all = new ArrayList<>(8);
+        for (Function<T, String> field : fields) {
+            all.addAll(Arrays.asList(split(field.apply(entity))));
+        }
+        return distinct(all.toArray(new String[0]));
+    }
+
+    // Lower-case runs of letters and digits
+    static String[] split(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        List<String> parts = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                parts.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return parts.toArray(new String[0]);
+    }
+
+    private static String[] distinct(String[] words) {
+        return new LinkedHashSet<>(Arrays.asList(words)).toArray(new String[0]);
+    }
+
+    private static int indexOf(String[] words, String word) {
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].equals(word)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Query class describing one search; the text is required, the rest optional
+    static class Query {
+        private final String text;
+        private String filter;
+        private String domain;
+        private boolean fuzzy;
+        private int limit = DEFAULT_LIMIT;
+
+        Query(String text) {
+            this.text = text;
+        }
+
+        // Only entities whose filter attribute equals the value, ignoring case
+        public Query filter(String value) {
+            this.filter = value;
+            return this;
+        }
+
+        // Only entities whose email is at the domain, ignoring case
+        public Query domain(String domain) {
+            this.domain = domain;
+            return this;
+        }
+
+        // Matches words within a few edits of each query word instead of words starting with it
+        public Query fuzzy(boolean fuzzy) {
+            this.fuzzy = fuzzy;
+            return this;
+        }
+
+        public Query limit(int limit) {
+            Page.checkSize(limit);
+            this.limit = limit;
+            return this;
+        }
+    }
+
+    // Document class with an entity's indexed words, filter code and email domain code
+    private static final class Document<T> {
+        final T entity;
+        volatile String[] words = new String[0];
+        volatile int filterCode;
+        volatile int domainCode;
+        volatile boolean removed;
+
+        Document(T entity, int filterCode, int domainCode) {
+            this.entity = entity;
+            this.filterCode = filterCode;
+            this.domainCode = domainCode;
+        }
+
+        boolean lists(String word) {
+            return !removed && indexOf(words, word) >= 0;
+        }
+    }
+
+    // Postings class listing the documents that contain one word, and some that no longer do.
+    // Readers take the current view without locking; writers hold the postings' monitor. Adds fill
+    // spare capacity behind the published size, and a rebuild publishes a fresh array, so a view
+    // never changes under a reader.
+    private static final class Postings<T> {
+        final String word;
+        volatile View<T> view = new View<>(newArray(1), 0);
+        // Entries left behind by documents that lost the word since the last rebuild
+        int stale;
+        boolean dropped;
+
+        Postings(String word) {
+            this.word = word;
+        }
+
+        void add(Document<T> document) {
+            View<T> current = view;
+            Document<T>[] documents = current.documents;
+            if (current.size == documents.length) {
+                documents = Arrays.copyOf(documents, documents.length * 2);
+            }
+            documents[current.size] = document;
+            view = new View<>(documents, current.size + 1);
+        }
+
+        // Counts a document's entry as stale; once half the entries are, rebuilds the list with only
+        // the documents that still list the word. Returns whether it rebuilt.
+        boolean unlisted() {
+            stale++;
+            View<T> current = view;
+            if (stale * 2 < current.size) {
+                return false;
+            }
+            // A document unposted and posted again since the last rebuild has two entries
+            Set<Document<T>> kept = new LinkedHashSet<>();
+            for (int i = 0; i < current.size; i++) {
+                Document<T> document = current.documents[i];
+                if (document.lists(word)) {
+                    kept.add(document);
+                }
+            }
+            Document<T>[] documents = newArray(Math.max(1, kept.size()));
+            view = new View<>(kept.toArray(documents), kept.size());
+            stale = 0;
+            return true;
+        }
+
+        boolean contains(Document<T> document) {
+            View<T> current = view;
+            for (int i = 0; i < current.size; i++) {
+                if (current.documents[i] == document) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Number of distinct documents that still list the word
+        int listed() {
+            View<T> current = view;
+            Set<Document<T>> listed = new HashSet<>();
+            for (int i = 0; i < current.size; i++) {
+                if (current.documents[i].lists(word)) {
+                    listed.add(current.documents[i]);
+                }
+            }
+            return listed.size();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Document<T>[] newArray(int length) {
+            return (Document<T>[]) new Document<?>[length];
+        }
+    }
+
+    // View class pairing a postings array with the number of documents in use
+    private static final class View<T> {
+        final Document<T>[] documents;
+        final int size;
+
+        View(Document<T>[] documents, int size) {
+            this.documents = documents;
+            this.size = size;
+        }
+    }
+}
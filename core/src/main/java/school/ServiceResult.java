@@ -0,0 +1,51 @@
+package school;
+
+// ServiceResult class carrying the outcome of a service call
+class ServiceResult<T> {
+    enum Status { OK, NOT_FOUND, DUPLICATE, INVALID, UNAVAILABLE }
+
+    private final Status status;
+    private final T value;
+    private final String message;
+
+    private ServiceResult(Status status, T value, String message) {
+        this.status = status;
+        this.value = value;
+        this.message = message;
+    }
+
+    public static <T> ServiceResult<T> ok(T value, String message) {
+        return new ServiceResult<>(Status.OK, value, message);
+    }
+
+    public static <T> ServiceResult<T> notFound(String message) {
+        return new ServiceResult<>(Status.NOT_FOUND, null, message);
+    }
+
+    public static <T> ServiceResult<T> duplicate(String message) {
+        return new ServiceResult<>(Status.DUPLICATE, null, message);
+    }
+
+    public static <T> ServiceResult<T> invalid(String message) {
+        return new ServiceResult<>(Status.INVALID, null, message);
+    }
+
+    // The change could not be saved, so it is refused
+    public static <T> ServiceResult<T> unavailable(String message) {
+        return new ServiceResult<>(Status.UNAVAILABLE, null, message);
+    }
+
+    public boolean isOk() { return status == Status.OK; }
+
+    public Status getStatus() { return status; }
+
+    // The affected entity on success, otherwise null
+    public T getValue() { return value; }
+
+    public String getMessage() { return message; }
+
+    @Override
+    public String toString() {
+        return status + ": " + message;
+    }
+}
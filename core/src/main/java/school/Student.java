@@ -0,0 +1,66 @@
+package school;
+
+import java.time.LocalDate;
+
+// Student class; fields are volatile so lock-free readers see updates made under the registry locks.
+// The grade and email domain are held as SymbolTable codes, shared by every student.
+class Student {
+    private volatile String id;
+    private volatile String name;
+    private volatile String emailLocalPart;
+    private volatile int emailDomain;
+    private volatile int grade;
+    private volatile LocalDate enrollmentDate;
+    
+    public Student(String id, String name, String email, String grade, LocalDate enrollmentDate) {
+        this.id = id;
+        this.name = name;
+        setEmail(email);
+        this.grade = SymbolTable.GRADES.encode(grade);
+        this.enrollmentDate = enrollmentDate;
+    }
+    
+    private Student(Student other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.emailLocalPart = other.emailLocalPart;
+        this.emailDomain = other.emailDomain;
+        this.grade = other.grade;
+        this.enrollmentDate = other.enrollmentDate;
+    }
+    
+    // A detached copy, as point-in-time views hand out
+    public Student copy() { return new Student(this); }
+    
+    // Getters and setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getEmail() { return SymbolTable.email(emailLocalPart, emailDomain); }
+    public void setEmail(String email) {
+        this.emailLocalPart = SymbolTable.localPart(email);
+        this.emailDomain = SymbolTable.domainCode(email);
+    }
+    
+    public String getGrade() { return SymbolTable.GRADES.decode(grade); }
+    public void setGrade(String grade) { this.grade = SymbolTable.GRADES.encode(grade); }
+    
+    // Code of the grade in SymbolTable.GRADES, for grouping and filtering without comparing strings
+    public int getGradeCode() { return grade; }
+    
+    // The email as stored: the part before the '@' and a code in SymbolTable.EMAIL_DOMAINS
+    public String getEmailLocalPart() { return emailLocalPart; }
+    public int getEmailDomainCode() { return emailDomain; }
+    
+    public LocalDate getEnrollmentDate() { return enrollmentDate; }
+    public void setEnrollmentDate(LocalDate enrollmentDate) { this.enrollmentDate = enrollmentDate; }
+    
+    @Override
+    public String toString() {
+        return "Student [ID: " + id + ", Name: " + name + ", Email: " + getEmail() + 
+               ", Grade: " + getGrade() + ", Enrollment Date: " + enrollmentDate + "]";
+    }
+}
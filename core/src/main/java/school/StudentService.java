@@ -0,0 +1,150 @@
+package school;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+// StudentService class with the non-interactive student operations
+class StudentService {
+    private final School school;
+    private final EntityRegistry<Student> students;
+    private final SearchIndex<Student> search;
+    private final Metrics.Timer addTimer;
+    private final Metrics.Timer updateTimer;
+    private final Metrics.Timer removeTimer;
+    private final Metrics.Timer searchTimer;
+
+    StudentService(School school, EntityRegistry<Student> students) {
+        this.school = school;
+        this.students = students;
+        this.addTimer = school.getMetrics().timer("student.add");
+        this.updateTimer = school.getMetrics().timer("student.update");
+        this.removeTimer = school.getMetrics().timer("student.remove");
+        this.searchTimer = school.getMetrics().timer("student.search");
+        students.sortBy("id", Student::getId);
+        students.sortBy("name", Student::getName);
+        students.sortBy("grade", Student::getGrade);
+        // ISO dates sort as strings in date order
+        students.sortBy("enrollmentDate", student -> student.getEnrollmentDate() == null ? null : student.getEnrollmentDate().toString());
+        this.search = new SearchIndex<>(List.of(Student::getName, Student::getEmailLocalPart), SymbolTable.GRADES,
+                Student::getGradeCode, Student::getEmailDomainCode);
+        students.listen(search);
+    }
+
+    public ServiceResult<Student> add(String id, String name, String email, String grade, LocalDate enrollmentDate) {
+        return add(new Student(id, name, email, grade, enrollmentDate));
+    }
+
+    public ServiceResult<Student> add(Student student) {
+        return school.write(addTimer, () -> {
+            if (student.getId() == null || student.getId().isBlank()) {
+                return ServiceResult.invalid("Student ID cannot be empty.");
+            }
+            // Journal under the key's lock so the log sees changes to one student in the order they happened
+            return students.write(student.getId(), () -> {
+                if (!students.add(student)) {
+                    return ServiceResult.duplicate("Student with this ID already exists.");
+                }
+                school.log(journal -> journal.studentAdded(student));
+                return ServiceResult.ok(student, "Student added successfully!");
+            });
+        });
+    }
+
+    public Student find(String id) {
+        return students.get(id);
+    }
+
+    public boolean exists(String id) {
+        return students.contains(id);
+    }
+
+    public Collection<Student> list() {
+        return students.values();
+    }
+
+    public int count() {
+        return students.size();
+    }
+
+    // One page of students in a sort order: id, name, grade, enrollmentDate; a null cursor starts from the first page
+    public ServiceResult<Page<Student>> page(String order, String cursor, int limit) {
+        try {
+            Page<Student> page = students.page(order, cursor, limit);
+            return ServiceResult.ok(page, page.size() + " students listed.");
+        } catch (IllegalArgumentException e) {
+            return ServiceResult.invalid(e.getMessage());
+        }
+    }
+
+    // Students whose name and email words match the query; its filter is a grade
+    public ServiceResult<List<Student>> search(SearchIndex.Query query) {
+        return searchTimer.time(() -> {
+            List<Student> found = search.search(query);
+            return ServiceResult.ok(found, found.size() + " students found.");
+        });
+    }
+
+    void verifySearch() {
+        search.verify(students, Student::getId);
+    }
+
+    // Applies the non-null fields of the update
+    public ServiceResult<Student> update(String id, StudentUpdate update) {
+        return school.write(updateTimer, () -> students.write(id, () -> apply(id, update)));
+    }
+
+    private ServiceResult<Student> apply(String id, StudentUpdate update) {
+        Student student = students.update(id, changed -> {
+            if (update.name != null) {
+                changed.setName(update.name);
+            }
+            if (update.email != null) {
+                changed.setEmail(update.email);
+            }
+            if (update.grade != null) {
+                changed.setGrade(update.grade);
+            }
+        });
+        if (student == null) {
+            return ServiceResult.notFound("Student with ID " + id + " not found.");
+        }
+        school.log(journal -> journal.studentUpdated(student));
+        return ServiceResult.ok(student, "Student information updated successfully!");
+    }
+
+    public ServiceResult<Student> remove(String id) {
+        // One commit, so no view holds the student's attendance without the student
+        return school.write(removeTimer, () -> students.write(id, () -> school.commit(() -> {
+            Student student = students.remove(id);
+            if (student == null) {
+                return ServiceResult.notFound("Student with ID " + id + " not found.");
+            }
+            school.getAttendanceService().retire(student);
+            school.log(journal -> journal.studentRemoved(id));
+            return ServiceResult.ok(student, "Student removed successfully!");
+        })));
+    }
+
+    // StudentUpdate class listing the fields to change; null leaves a field as it is
+    static class StudentUpdate {
+        private String name;
+        private String email;
+        private String grade;
+
+        public StudentUpdate name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public StudentUpdate email(String email) {
+            this.email = email;
+            return this;
+        }
+
+        public StudentUpdate grade(String grade) {
+            this.grade = grade;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package school;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// SymbolTable class that dictionary-encodes a low-cardinality attribute as small int codes.
+//
+// Grades, departments and email domains repeat across thousands of entities, so those hold the
+// code and the table holds each distinct value once. Codes are handed out in first-seen order and
+// never reused, so a code stays valid for the life of the process; null is encoded as NULL. The
+// tables are shared by every school in the process and never shrink, so they only suit attributes
+// with few distinct values.
+// Lookups are lock-free; only a value seen for the first time takes the table's lock.
+final class SymbolTable {
+    static final int NULL = -1;
+
+    static final SymbolTable GRADES = new SymbolTable();
+    static final SymbolTable DEPARTMENTS = new SymbolTable();
+    static final SymbolTable EMAIL_DOMAINS = new SymbolTable();
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[16];
+    private volatile int size;
+
+    // Code of the value, adding it if it is new
+    int encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size * 2);
+        }
+        symbols[size] = value;
+        // The symbol is stored before its code is published, so anyone holding a code can read it
+        codes.put(value, size);
+        return size++;
+    }
+
+    // Code of the value, or NULL if it was never encoded; does not add it
+    int find(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NULL : code;
+    }
+
+    String decode(int code) {
+        return code == NULL ? null : symbols[code];
+    }
+
+    // Number of codes handed out so far; every code is below it
+    int size() {
+        return size;
+    }
+
+    // Flags, indexed by code, of the values equal to the given one ignoring case
+    boolean[] matchIgnoreCase(String value) {
+        int count = size;
+        String[] current = symbols;
+        boolean[] matches = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            matches[i] = current[i].equalsIgnoreCase(value);
+        }
+        return matches;
+    }
+
+    // Email addresses are held as the part before the last '@' and a code for the domain after it
+    static String localPart(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        return at < 0 ? email : email.substring(0, at);
+    }
+
+    static int domainCode(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        return at < 0 ? NULL : EMAIL_DOMAINS.encode(email.substring(at + 1));
+    }
+
+    static String email(String localPart, int domainCode) {
+        return domainCode == NULL ? localPart : localPart + "@" + EMAIL_DOMAINS.decode(domainCode);
+    }
+}
@@ -0,0 +1,65 @@
+package school;
+
+// Teacher class; the department and email domain are SymbolTable codes, as on Student
+class Teacher {
+    private volatile String id;
+    private volatile String name;
+    private volatile String emailLocalPart;
+    private volatile int emailDomain;
+    private volatile int department;
+    // Kept in cents so payroll totals are exact
+    private volatile long salaryCents;
+    
+    public Teacher(String id, String name, String email, String department, Money salary) {
+        this.id = id;
+        this.name = name;
+        setEmail(email);
+        this.department = SymbolTable.DEPARTMENTS.encode(department);
+        this.salaryCents = salary.getCents();
+    }
+    
+    private Teacher(Teacher other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.emailLocalPart = other.emailLocalPart;
+        this.emailDomain = other.emailDomain;
+        this.department = other.department;
+        this.salaryCents = other.salaryCents;
+    }
+    
+    public Teacher copy() { return new Teacher(this); }
+    
+    // Getters and setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getEmail() { return SymbolTable.email(emailLocalPart, emailDomain); }
+    public void setEmail(String email) {
+        this.emailLocalPart = SymbolTable.localPart(email);
+        this.emailDomain = SymbolTable.domainCode(email);
+    }
+    
+    public String getDepartment() { return SymbolTable.DEPARTMENTS.decode(department); }
+    public void setDepartment(String department) { this.department = SymbolTable.DEPARTMENTS.encode(department); }
+    
+    // Code of the department in SymbolTable.DEPARTMENTS
+    public int getDepartmentCode() { return department; }
+    
+    public String getEmailLocalPart() { return emailLocalPart; }
+    public int getEmailDomainCode() { return emailDomain; }
+    
+    public Money getSalary() { return Money.ofCents(salaryCents); }
+    public void setSalary(Money salary) { this.salaryCents = salary.getCents(); }
+    
+    // The salary without a Money wrapper, for summing over many teachers
+    public long getSalaryCents() { return salaryCents; }
+    
+    @Override
+    public String toString() {
+        return "Teacher [ID: " + id + ", Name: " + name + ", Email: " + getEmail() + 
+               ", Department: " + getDepartment() + ", Salary: $" + getSalary() + "]";
+    }
+}
@@ -0,0 +1,156 @@
+package school;
+
+import java.util.Collection;
+import java.util.List;
+
+// TeacherService class with the non-interactive teacher operations
+class TeacherService {
+    private final School school;
+    private final EntityRegistry<Teacher> teachers;
+    private final SearchIndex<Teacher> search;
+    private final Metrics.Timer addTimer;
+    private final Metrics.Timer updateTimer;
+    private final Metrics.Timer removeTimer;
+    private final Metrics.Timer searchTimer;
+
+    TeacherService(School school, EntityRegistry<Teacher> teachers) {
+        this.school = school;
+        this.teachers = teachers;
+        this.addTimer = school.getMetrics().timer("teacher.add");
+        this.updateTimer = school.getMetrics().timer("teacher.update");
+        this.removeTimer = school.getMetrics().timer("teacher.remove");
+        this.searchTimer = school.getMetrics().timer("teacher.search");
+        teachers.sortBy("id", Teacher::getId);
+        teachers.sortBy("name", Teacher::getName);
+        teachers.sortBy("department", Teacher::getDepartment);
+        this.search = new SearchIndex<>(List.of(Teacher::getName, Teacher::getEmailLocalPart), SymbolTable.DEPARTMENTS,
+                Teacher::getDepartmentCode, Teacher::getEmailDomainCode);
+        teachers.listen(search);
+    }
+
+    public ServiceResult<Teacher> add(String id, String name, String email, String department, Money salary) {
+        return add(new Teacher(id, name, email, department, salary));
+    }
+
+    public ServiceResult<Teacher> add(Teacher teacher) {
+        return school.write(addTimer, () -> {
+            if (teacher.getId() == null || teacher.getId().isBlank()) {
+                return ServiceResult.invalid("Teacher ID cannot be empty.");
+            }
+            // Journal under the key's lock so the log sees changes to one teacher in the order they happened
+            return teachers.write(teacher.getId(), () -> {
+                if (!teachers.add(teacher)) {
+                    return ServiceResult.duplicate("Teacher with this ID already exists.");
+                }
+                school.log(journal -> journal.teacherAdded(teacher));
+                return ServiceResult.ok(teacher, "Teacher added successfully!");
+            });
+        });
+    }
+
+    public Teacher find(String id) {
+        return teachers.get(id);
+    }
+
+    public boolean exists(String id) {
+        return teachers.contains(id);
+    }
+
+    public Collection<Teacher> list() {
+        return teachers.values();
+    }
+
+    public int count() {
+        return teachers.size();
+    }
+
+    // One page of teachers in a sort order: id, name, department; a null cursor starts from the first page
+    public ServiceResult<Page<Teacher>> page(String order, String cursor, int limit) {
+        try {
+            Page<Teacher> page = teachers.page(order, cursor, limit);
+            return ServiceResult.ok(page, page.size() + " teachers listed.");
+        } catch (IllegalArgumentException e) {
+            return ServiceResult.invalid(e.getMessage());
+        }
+    }
+
+    // Teachers whose name and email words match the query; its filter is a department
+    public ServiceResult<List<Teacher>> search(SearchIndex.Query query) {
+        return searchTimer.time(() -> {
+            List<Teacher> found = search.search(query);
+            return ServiceResult.ok(found, found.size() + " teachers found.");
+        });
+    }
+
+    void verifySearch() {
+        search.verify(teachers, Teacher::getId);
+    }
+
+    // Applies the non-null fields of the update
+    public ServiceResult<Teacher> update(String id, TeacherUpdate update) {
+        return school.write(updateTimer, () -> teachers.write(id, () -> apply(id, update)));
+    }
+
+    private ServiceResult<Teacher> apply(String id, TeacherUpdate update) {
+        Teacher teacher = teachers.update(id, changed -> {
+            if (update.name != null) {
+                changed.setName(update.name);
+            }
+            if (update.email != null) {
+                changed.setEmail(update.email);
+            }
+            if (update.department != null) {
+                changed.setDepartment(update.department);
+            }
+            if (update.salary != null) {
+                changed.setSalary(update.salary);
+            }
+        });
+        if (teacher == null) {
+            return ServiceResult.notFound("Teacher with ID " + id + " not found.");
+        }
+        school.log(journal -> journal.teacherUpdated(teacher));
+        return ServiceResult.ok(teacher, "Teacher information updated successfully!");
+    }
+
+    public ServiceResult<Teacher> remove(String id) {
+        return school.write(removeTimer, () -> {
+            return teachers.write(id, () -> {
+                Teacher teacher = teachers.remove(id);
+                if (teacher == null) {
+                    return ServiceResult.notFound("Teacher with ID " + id + " not found.");
+                }
+                school.log(journal -> journal.teacherRemoved(id));
+                return ServiceResult.ok(teacher, "Teacher removed successfully!");
+            });
+        });
+    }
+
+    // TeacherUpdate class listing the fields to change; null leaves a field as it is
+    static class TeacherUpdate {
+        private String name;
+        private String email;
+        private String department;
+        private Money salary;
+
+        public TeacherUpdate name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public TeacherUpdate email(String email) {
+            this.email = email;
+            return this;
+        }
+
+        public TeacherUpdate department(String department) {
+            this.department = department;
+            return this;
+        }
+
+        public TeacherUpdate salary(Money salary) {
+            this.salary = salary;
+            return this;
+        }
+    }
+}
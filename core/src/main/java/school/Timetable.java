@@ -0,0 +1,378 @@
+package school;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+// Timetable class holding one weekly schedule: the sections courses are taught in, each with its
+// teacher, its students, and the period and room of every meeting.
+//
+// The week has DAYS days of PERIODS periods, and slot day * PERIODS + period names one of them, so
+// the slots a section, teacher, room or student is busy in fit in one long. Clashes are found with
+// those masks: a teacher or room is indexed by slot, and each student by the mask of slots already
+// taken, so a clash is one AND per section member. A timetable is never changed once built; moving
+// a meeting builds a new one.
+final class Timetable {
+    static final int DAYS = 5;
+    static final int PERIODS = 8;
+    static final int SLOTS = DAYS * PERIODS;
+    static final long WEEK = (1L << SLOTS) - 1;
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri"};
+
+    private final EntityRegistry<Student> students;
+    private final List<Room> rooms;
+    private final List<Section> sections;
+    private final List<Section> unplaced;
+
+    Timetable(EntityRegistry<Student> students, List<Room> rooms, List<Section> sections, List<Section> unplaced) {
+        this.students = students;
+        this.rooms = List.copyOf(rooms);
+        this.sections = List.copyOf(sections);
+        this.unplaced = List.copyOf(unplaced);
+    }
+
+    static String slotName(int slot) {
+        return DAY_NAMES[slot / PERIODS] + " P" + (slot % PERIODS + 1);
+    }
+
+    // Reads a slot written as "Tue P3" or "tue 3"
+    static int parseSlot(String text) {
+        String[] parts = text.trim().split("\\s+");
+        if (parts.length == 2) {
+            String period = parts[1].toUpperCase().startsWith("P") ? parts[1].substring(1) : parts[1];
+            for (int day = 0; day < DAYS; day++) {
+                if (DAY_NAMES[day].equalsIgnoreCase(parts[0])) {
+                    try {
+                        int number = Integer.parseInt(period);
+                        if (number >= 1 && number <= PERIODS) {
+                            return day * PERIODS + number - 1;
+                        }
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown period '" + text + "'; expected a day and period such as Tue P3.");
+    }
+
+    public List<Room> getRooms() { return rooms; }
+
+    public List<Section> getSections() { return sections; }
+
+    // Sections the solver found no teacher, period or room for
+    public List<Section> getUnplaced() { return unplaced; }
+
+    public Room room(String code) {
+        for (Room room : rooms) {
+            if (room.getCode().equals(code)) {
+                return room;
+            }
+        }
+        return null;
+    }
+
+    public Section section(String courseCode, int number) {
+        for (Section section : sections) {
+            if (section.getCourse().getCode().equals(courseCode) && section.getNumber() == number) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+    public List<Meeting> meetings() {
+        return meetings(section -> true);
+    }
+
+    public List<Meeting> meetingsOfCourse(String courseCode) {
+        return meetings(section -> section.getCourse().getCode().equals(courseCode));
+    }
+
+    public List<Meeting> meetingsOfTeacher(String teacherId) {
+        return meetings(section -> section.getTeacher().getId().equals(teacherId));
+    }
+
+    public List<Meeting> meetingsOfStudent(int studentOrdinal) {
+        return meetings(section -> section.hasStudent(studentOrdinal));
+    }
+
+    public List<Meeting> meetingsInRoom(String roomCode) {
+        List<Meeting> found = new ArrayList<>();
+        for (Meeting meeting : meetings()) {
+            if (meeting.getRoom().getCode().equals(roomCode)) {
+                found.add(meeting);
+            }
+        }
+        return found;
+    }
+
+    // Meetings of the matching sections in the order of the week
+    private List<Meeting> meetings(Predicate<Section> filter) {
+        List<Meeting> found = new ArrayList<>();
+        for (Section section : sections) {
+            if (filter.test(section)) {
+                for (int i = 0; i < section.slots.length; i++) {
+                    found.add(new Meeting(section, section.slots[i], section.rooms[i]));
+                }
+            }
+        }
+        found.sort(Comparator.comparingInt(Meeting::getSlot)
+                .thenComparing(meeting -> meeting.getSection().getCourse().getCode())
+                .thenComparingInt(meeting -> meeting.getSection().getNumber()));
+        return found;
+    }
+
+    // Every teacher, room and student clash, each reported once per slot against the section that
+    // had the slot first
+    public List<Conflict> conflicts() {
+        List<Conflict> found = new ArrayList<>();
+        Map<String, Section[]> teacherSlots = new HashMap<>();
+        Map<String, Section[]> roomSlots = new HashMap<>();
+        // Slots each student is already busy in, by ordinal
+        long[] studentBusy = new long[maxStudentOrdinal() + 1];
+        for (int index = 0; index < sections.size(); index++) {
+            Section section = sections.get(index);
+            Section[] teaching = teacherSlots.computeIfAbsent(section.getTeacher().getId(), id -> new Section[SLOTS]);
+            for (int i = 0; i < section.slots.length; i++) {
+                int slot = section.slots[i];
+                if (teaching[slot] != null) {
+                    found.add(new Conflict(Conflict.Kind.TEACHER, section.getTeacher().getId(), slot, teaching[slot], section));
+                } else {
+                    teaching[slot] = section;
+                }
+                Section[] booked = roomSlots.computeIfAbsent(section.rooms[i].getCode(), code -> new Section[SLOTS]);
+                if (booked[slot] != null) {
+                    found.add(new Conflict(Conflict.Kind.ROOM, section.rooms[i].getCode(), slot, booked[slot], section));
+                } else {
+                    booked[slot] = section;
+                }
+            }
+            long mask = section.slotMask();
+            int before = index;
+            section.students.forEach(student -> {
+                long clashes = studentBusy[student] & mask;
+                while (clashes != 0) {
+                    int slot = Long.numberOfTrailingZeros(clashes);
+                    found.add(new Conflict(Conflict.Kind.STUDENT, studentName(student), slot,
+                            sectionAt(student, slot, before), section));
+                    clashes &= clashes - 1;
+                }
+                studentBusy[student] |= mask;
+            });
+        }
+        return found;
+    }
+
+    // Clashes that involve the section
+    public List<Conflict> conflictsOf(Section section) {
+        List<Conflict> found = new ArrayList<>();
+        for (Conflict conflict : conflicts()) {
+            if (conflict.getFirst() == section || conflict.getSecond() == section) {
+                found.add(conflict);
+            }
+        }
+        return found;
+    }
+
+    // A copy with one meeting of the section moved to another slot and room
+    Timetable withMeetingMoved(Section section, int fromSlot, int toSlot, Room room) {
+        int[] slots = section.slots.clone();
+        Room[] meetingRooms = section.rooms.clone();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == fromSlot) {
+                slots[i] = toSlot;
+                meetingRooms[i] = room;
+            }
+        }
+        Section moved = new Section(section.getCourse(), section.getNumber(), section.getTeacher(), section.students,
+                slots, meetingRooms);
+        List<Section> changed = new ArrayList<>(sections);
+        changed.set(changed.indexOf(section), moved);
+        return new Timetable(students, rooms, changed, unplaced);
+    }
+
+    private int maxStudentOrdinal() {
+        int max = -1;
+        for (Section section : sections) {
+            int[] members = section.students.toArray();
+            if (members.length > 0) {
+                max = Math.max(max, members[members.length - 1]);
+            }
+        }
+        return max;
+    }
+
+    // The section before `upTo` that the student is in at the slot
+    private Section sectionAt(int student, int slot, int upTo) {
+        for (int index = 0; index < upTo; index++) {
+            Section section = sections.get(index);
+            if ((section.slotMask() & (1L << slot)) != 0 && section.hasStudent(student)) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+    private String studentName(int ordinal) {
+        Student student = students.atOrdinal(ordinal);
+        return student == null ? "#" + ordinal : student.getId();
+    }
+
+    // Room class for a room that holds up to `capacity` students
+    static final class Room {
+        private final String code;
+        private final int capacity;
+
+        Room(String code, int capacity) {
+            this.code = code;
+            this.capacity = capacity;
+        }
+
+        // Rooms R01, R02, ... of the same capacity
+        static List<Room> numbered(int count, int capacity) {
+            List<Room> rooms = new ArrayList<>(count);
+            for (int i = 1; i <= count; i++) {
+                rooms.add(new Room(String.format("R%02d", i), capacity));
+            }
+            return rooms;
+        }
+
+        public String getCode() { return code; }
+
+        public int getCapacity() { return capacity; }
+    }
+
+    // Section class for one group of a course's students taught together by one teacher.
+    // Slots are in the order of the week and rooms[i] is where the meeting in slots[i] is held.
+    static final class Section {
+        private final Course course;
+        private final int number;
+        private final Teacher teacher;
+        private final Roster students;
+        private final int[] slots;
+        private final Room[] rooms;
+
+        Section(Course course, int number, Teacher teacher, Roster students, int[] slots, Room[] rooms) {
+            this.course = course;
+            this.number = number;
+            this.teacher = teacher;
+            this.students = students;
+            Integer[] order = new Integer[slots.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> slots[i]));
+            this.slots = new int[slots.length];
+            this.rooms = new Room[slots.length];
+            for (int i = 0; i < order.length; i++) {
+                this.slots[i] = slots[order[i]];
+                this.rooms[i] = rooms[order[i]];
+            }
+        }
+
+        public Course getCourse() { return course; }
+
+        public int getNumber() { return number; }
+
+        // null for a section that could not be placed
+        public Teacher getTeacher() { return teacher; }
+
+        public int getSize() { return students.size(); }
+
+        public boolean hasStudent(int studentOrdinal) {
+            return students.contains(studentOrdinal);
+        }
+
+        public boolean meetsAt(int slot) {
+            return roomAt(slot) != null;
+        }
+
+        // The room of the meeting in the slot, or null if the section does not meet then
+        public Room roomAt(int slot) {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] == slot) {
+                    return rooms[i];
+                }
+            }
+            return null;
+        }
+
+        long slotMask() {
+            long mask = 0;
+            for (int slot : slots) {
+                mask |= 1L << slot;
+            }
+            return mask;
+        }
+
+        @Override
+        public String toString() {
+            return course.getCode() + "/" + number;
+        }
+    }
+
+    // Meeting class for one period of one section
+    static final class Meeting {
+        private final Section section;
+        private final int slot;
+        private final Room room;
+
+        Meeting(Section section, int slot, Room room) {
+            this.section = section;
+            this.slot = slot;
+            this.room = room;
+        }
+
+        public Section getSection() { return section; }
+
+        public int getSlot() { return slot; }
+
+        public String getSlotName() { return slotName(slot); }
+
+        public Room getRoom() { return room; }
+    }
+
+    // Conflict class for two sections that need the same teacher, room or student in one slot
+    static final class Conflict {
+        enum Kind {
+            TEACHER,
+            ROOM,
+            STUDENT
+        }
+
+        private final Kind kind;
+        private final String who;
+        private final int slot;
+        private final Section first;
+        private final Section second;
+
+        Conflict(Kind kind, String who, int slot, Section first, Section second) {
+            this.kind = kind;
+            this.who = who;
+            this.slot = slot;
+            this.first = first;
+            this.second = second;
+        }
+
+        public Kind getKind() { return kind; }
+
+        // The teacher or student ID, or the room code
+        public String getWho() { return who; }
+
+        public int getSlot() { return slot; }
+
+        public Section getFirst() { return first; }
+
+        public Section getSecond() { return second; }
+
+        @Override
+        public String toString() {
+            String subject = switch (kind) {
+                case TEACHER -> "Teacher " + who;
+                case ROOM -> "Room " + who;
+                case STUDENT -> "Student " + who;
+            };
+            return subject + " is needed by " + first + " and " + second + " on " + slotName(slot) + ".";
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package school;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+// TimetableService class that schedules the school's courses and answers timetable questions.
+//
+// A timetable is built from the enrollments as they stand when it is generated and is kept in
+// memory only, so enrollment changes show up the next time it is generated. Moving a meeting by
+// hand is checked for clashes before the moved timetable replaces the current one.
+class TimetableService {
+    static final int DEFAULT_MEETINGS = 4;
+    static final int DEFAULT_ROOM_CAPACITY = 35;
+    // Rooms beyond the bare minimum when the caller leaves the count to the service
+    private static final double ROOM_SLACK = 1.25;
+    private static final long SEED = 42;
+
+    private final EntityRegistry<Student> students;
+    private final EntityRegistry<Course> courses;
+    private final Enrollments enrollments;
+    private final Metrics.Timer generateTimer;
+    private final Metrics.Timer moveTimer;
+    private volatile Timetable timetable;
+
+    TimetableService(EntityRegistry<Student> students, EntityRegistry<Course> courses, Enrollments enrollments,
+                     Metrics metrics) {
+        this.students = students;
+        this.courses = courses;
+        this.enrollments = enrollments;
+        this.generateTimer = metrics.timer("timetable.generate");
+        this.moveTimer = metrics.timer("timetable.move");
+    }
+
+    // Schedules every enrolled course into `rooms` numbered rooms, or enough of them when rooms is 0
+    public ServiceResult<Timetable> generate(int rooms, int capacity, int meetings) {
+        return generateTimer.time(() -> {
+            if (rooms < 0 || capacity < 1) {
+                return ServiceResult.invalid("Rooms cannot be negative and must hold at least one student.");
+            }
+            if (meetings < 1 || meetings > Timetable.SLOTS) {
+                return ServiceResult.invalid("Meetings per week must be between 1 and " + Timetable.SLOTS + ".");
+            }
+            Inputs inputs = inputs();
+            int count = rooms > 0 ? rooms : roomsNeeded(inputs, capacity, meetings);
+            return generate(inputs, Timetable.Room.numbered(count, capacity), meetings, ForkJoinPool.commonPool());
+        });
+    }
+
+    public ServiceResult<Timetable> generate(List<Timetable.Room> rooms, int meetings, ForkJoinPool pool) {
+        return generateTimer.time(() -> generate(inputs(), rooms, meetings, pool));
+    }
+
+    private synchronized ServiceResult<Timetable> generate(Inputs inputs, List<Timetable.Room> rooms, int meetings,
+                                                           ForkJoinPool pool) {
+        TimetableSolver.Problem problem;
+        try {
+            problem = new TimetableSolver.Problem(inputs.courses, inputs.students, inputs.teachers, rooms, meetings);
+        } catch (IllegalArgumentException e) {
+            return ServiceResult.invalid(e.getMessage());
+        }
+        Timetable built = new TimetableSolver(problem, pool, Math.max(8, pool.getParallelism() * 2), SEED).solve(students);
+        List<Timetable.Conflict> clashes = built.conflicts();
+        if (!clashes.isEmpty()) {
+            throw new IllegalStateException("The solver scheduled a clash: " + clashes.get(0));
+        }
+        timetable = built;
+        String message = "Scheduled " + built.getSections().size() + " sections in " + rooms.size() + " rooms, "
+                + meetings + " periods a week each.";
+        if (!built.getUnplaced().isEmpty()) {
+            message += " " + built.getUnplaced().size() + " sections could not be placed.";
+        }
+        return ServiceResult.ok(built, message);
+    }
+
+    public ServiceResult<Timetable> current() {
+        Timetable current = timetable;
+        if (current == null) {
+            return ServiceResult.notFound("No timetable has been generated yet.");
+        }
+        return ServiceResult.ok(current, current.getSections().size() + " sections scheduled.");
+    }
+
+    public ServiceResult<List<Timetable.Meeting>> courseTimetable(String courseCode) {
+        if (!courses.contains(courseCode)) {
+            return ServiceResult.notFound("Course not found.");
+        }
+        return meetings(current -> current.meetingsOfCourse(courseCode), courseCode);
+    }
+
+    public ServiceResult<List<Timetable.Meeting>> teacherTimetable(String teacherId) {
+        return meetings(current -> current.meetingsOfTeacher(teacherId), teacherId);
+    }
+
+    public ServiceResult<List<Timetable.Meeting>> studentTimetable(String studentId) {
+        int student = students.ordinalOf(studentId);
+        if (student == EntityRegistry.NO_ORDINAL) {
+            return ServiceResult.notFound("Student not found.");
+        }
+        return meetings(current -> current.meetingsOfStudent(student), studentId);
+    }
+
+    public ServiceResult<List<Timetable.Meeting>> roomTimetable(String roomCode) {
+        Timetable current = timetable;
+        if (current != null && current.room(roomCode) == null) {
+            return ServiceResult.notFound("Room not found.");
+        }
+        return meetings(found -> found.meetingsInRoom(roomCode), roomCode);
+    }
+
+    public ServiceResult<List<Timetable.Conflict>> conflicts() {
+        Timetable current = timetable;
+        if (current == null) {
+            return ServiceResult.notFound("No timetable has been generated yet.");
+        }
+        List<Timetable.Conflict> clashes = current.conflicts();
+        return ServiceResult.ok(clashes, clashes.isEmpty() ? "No clashes found." : clashes.size() + " clashes found.");
+    }
+
+    // Moves one meeting of a section to another period, and to another room if roomCode is given.
+    // The move is refused if it would leave a teacher, room or student in two places at once.
+    public synchronized ServiceResult<Timetable.Meeting> move(String courseCode, int sectionNumber, String from,
+                                                              String to, String roomCode) {
+        return moveTimer.time(() -> {
+            Timetable current = timetable;
+            if (current == null) {
+                return ServiceResult.notFound("No timetable has been generated yet.");
+            }
+            Timetable.Section section = current.section(courseCode, sectionNumber);
+            if (section == null) {
+                return ServiceResult.notFound("Section " + courseCode + "/" + sectionNumber + " not found.");
+            }
+            int fromSlot;
+            int toSlot;
+            try {
+                fromSlot = Timetable.parseSlot(from);
+                toSlot = Timetable.parseSlot(to);
+            } catch (IllegalArgumentException e) {
+                return ServiceResult.invalid(e.getMessage());
+            }
+            if (!section.meetsAt(fromSlot)) {
+                return ServiceResult.invalid(section + " does not meet on " + Timetable.slotName(fromSlot) + ".");
+            }
+            if (fromSlot != toSlot && section.meetsAt(toSlot)) {
+                return ServiceResult.invalid(section + " already meets on " + Timetable.slotName(toSlot) + ".");
+            }
+            Timetable.Room room = roomCode == null || roomCode.isBlank() ? section.roomAt(fromSlot) : current.room(roomCode);
+            if (room == null) {
+                return ServiceResult.notFound("Room not found.");
+            }
+            if (room.getCapacity() < section.getSize()) {
+                return ServiceResult.invalid("Room " + room.getCode() + " holds " + room.getCapacity() + " students but "
+                        + section + " has " + section.getSize() + ".");
+            }
+
+            Timetable moved = current.withMeetingMoved(section, fromSlot, toSlot, room);
+            Timetable.Section movedSection = moved.section(courseCode, sectionNumber);
+            List<Timetable.Conflict> clashes = moved.conflictsOf(movedSection);
+            if (!clashes.isEmpty()) {
+                return ServiceResult.invalid(clashes.get(0) + (clashes.size() > 1
+                        ? " The move makes " + (clashes.size() - 1) + " more clashes." : ""));
+            }
+            timetable = moved;
+            return ServiceResult.ok(new Timetable.Meeting(movedSection, toSlot, room), "Meeting moved successfully!");
+        });
+    }
+
+    private ServiceResult<List<Timetable.Meeting>> meetings(Function<Timetable, List<Timetable.Meeting>> query,
+                                                          String subject) {
+        Timetable current = timetable;
+        if (current == null) {
+            return ServiceResult.notFound("No timetable has been generated yet.");
+        }
+        List<Timetable.Meeting> found = query.apply(current);
+        return ServiceResult.ok(found, subject + " has " + found.size() + " periods a week.");
+    }
+
+    // Enough rooms for every meeting of the week, plus some slack for the solver
+    private static int roomsNeeded(Inputs inputs, int capacity, int meetings) {
+        long sections = 0;
+        for (Roster roster : inputs.students) {
+            sections += (roster.size() + capacity - 1) / capacity;
+        }
+        return Math.max(1, (int) Math.ceil(sections * meetings * ROOM_SLACK / Timetable.SLOTS));
+    }
+
+    // Copies each course's roster and teachers under the course's read lock
+    private Inputs inputs() {
+        Inputs inputs = new Inputs();
+        for (Course course : courses) {
+            courses.read(course.getCode(), () -> {
+                int ordinal = courses.ordinalOf(course.getCode());
+                if (ordinal != EntityRegistry.NO_ORDINAL) {
+                    Roster enrolled = enrollments.studentRoster(ordinal);
+                    if (!enrolled.isEmpty()) {
+                        inputs.courses.add(courses.get(course.getCode()));
+                        inputs.students.add(enrolled);
+                        inputs.teachers.add(enrollments.teachers(enrollments.teacherRoster(ordinal)));
+                    }
+                }
+                return null;
+            });
+        }
+        return inputs;
+    }
+
+    // Inputs class with the courses that have students, their rosters and their teachers
+    private static class Inputs {
+        private final List<Course> courses = new ArrayList<>();
+        private final List<Roster> students = new ArrayList<>();
+        private final List<List<Teacher>> teachers = new ArrayList<>();
+    }
+}
@@ -0,0 +1,353 @@
+package school;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+// TimetableSolver class that builds a clash-free weekly timetable with a randomised DSatur search.
+//
+// Sections are the vertices of a graph joined where two share a student, and the slots of the week
+// are its colours, each section needing `meetings` of them. Sections are placed one at a time, always
+// the one with the fewest slots left to choose from once its neighbours, teachers and rooms are
+// accounted for, ties going to the section with more neighbours and then to chance. Each placement
+// takes the course teacher with the most free slots, spreads the meetings over different days in
+// the periods with the most rooms left, and books the smallest free room that holds the section.
+// The slots a section's neighbours, a teacher or a room are busy in are each one long, so weighing
+// a section is a few ANDs and a bit count.
+// Attempts differ only in their random seed and run in parallel on a fork-join pool; the first
+// to place every section stops the rest, otherwise the attempt that placed the most wins.
+class TimetableSolver {
+    private final Problem problem;
+    private final ForkJoinPool pool;
+    private final int attempts;
+    private final long seed;
+
+    TimetableSolver(Problem problem, ForkJoinPool pool, int attempts, long seed) {
+        this.problem = problem;
+        this.pool = pool;
+        this.attempts = Math.max(1, attempts);
+        this.seed = seed;
+    }
+
+    public Timetable solve(EntityRegistry<Student> students) {
+        AtomicBoolean solved = new AtomicBoolean();
+        AtomicReference<Attempt> best = new AtomicReference<>();
+        pool.submit(() -> IntStream.range(0, attempts).parallel().forEach(index -> {
+            Attempt attempt = attempt(index, solved);
+            if (attempt != null) {
+                best.accumulateAndGet(attempt, (current, next) -> current == null || next.unplaced < current.unplaced
+                        || (next.unplaced == current.unplaced && next.index < current.index) ? next : current);
+                if (attempt.unplaced == 0) {
+                    solved.set(true);
+                }
+            }
+        })).join();
+        return best.get().toTimetable(students);
+    }
+
+    // One randomised DSatur pass; returns null if another attempt has already placed every section
+    private Attempt attempt(int index, AtomicBoolean solved) {
+        SplittableRandom random = new SplittableRandom(seed + index * 0x9E3779B97F4A7C15L);
+        int sections = problem.sections();
+        int meetings = problem.meetings;
+        Timetable.Room[] rooms = problem.rooms;
+        long[] blocked = new long[sections];
+        long[] teacherBusy = new long[problem.teachers.length];
+        long[] roomBusy = new long[rooms.length];
+        // freeFrom[r] has the slots in which some room from r onwards is free
+        long[] freeFrom = new long[rooms.length + 1];
+        freeRooms(roomBusy, freeFrom);
+        int[] roomsLeft = new int[Timetable.SLOTS];
+        Arrays.fill(roomsLeft, rooms.length);
+        boolean[] done = new boolean[sections];
+        Attempt attempt = new Attempt(index, sections);
+
+        for (int step = 0; step < sections; step++) {
+            if (solved.get()) {
+                return null;
+            }
+            int next = -1;
+            int nextSlack = Integer.MAX_VALUE;
+            int ties = 0;
+            for (int section = 0; section < sections; section++) {
+                if (done[section]) {
+                    continue;
+                }
+                long teachable = 0;
+                for (int teacher : problem.candidates[section]) {
+                    teachable |= ~teacherBusy[teacher];
+                }
+                int slack = Long.bitCount(~blocked[section] & freeFrom[problem.fit[section]] & teachable & Timetable.WEEK);
+                int order = Integer.compare(slack, nextSlack);
+                if (order == 0) {
+                    order = Integer.compare(problem.neighbours[next].length, problem.neighbours[section].length);
+                }
+                if (order < 0) {
+                    next = section;
+                    nextSlack = slack;
+                    ties = 1;
+                } else if (order == 0 && random.nextInt(++ties) == 0) {
+                    next = section;
+                }
+            }
+            done[next] = true;
+
+            long open = ~blocked[next] & freeFrom[problem.fit[next]] & Timetable.WEEK;
+            int teacher = -1;
+            long teacherOpen = 0;
+            int teacherTies = 0;
+            for (int candidate : problem.candidates[next]) {
+                long candidateOpen = open & ~teacherBusy[candidate];
+                int order = teacher < 0 ? -1 : Integer.compare(Long.bitCount(teacherOpen), Long.bitCount(candidateOpen));
+                if (order < 0) {
+                    teacher = candidate;
+                    teacherOpen = candidateOpen;
+                    teacherTies = 1;
+                } else if (order == 0 && random.nextInt(++teacherTies) == 0) {
+                    teacher = candidate;
+                    teacherOpen = candidateOpen;
+                }
+            }
+            if (teacher < 0 || Long.bitCount(teacherOpen) < meetings) {
+                attempt.unplaced++;
+                continue;
+            }
+
+            int[] slots = spread(teacherOpen, meetings, roomsLeft, random);
+            int[] booked = new int[meetings];
+            long mask = 0;
+            for (int i = 0; i < meetings; i++) {
+                long bit = 1L << slots[i];
+                int room = problem.fit[next];
+                while ((roomBusy[room] & bit) != 0) {
+                    room++;
+                }
+                roomBusy[room] |= bit;
+                roomsLeft[slots[i]]--;
+                booked[i] = room;
+                mask |= bit;
+            }
+            freeRooms(roomBusy, freeFrom);
+            teacherBusy[teacher] |= mask;
+            for (int neighbour : problem.neighbours[next]) {
+                blocked[neighbour] |= mask;
+            }
+            attempt.teachers[next] = teacher;
+            attempt.slots[next] = slots;
+            attempt.rooms[next] = booked;
+        }
+        return attempt;
+    }
+
+    // Picks `count` of the open slots, on different days while there are days left, taking the slot
+    // with the most rooms still free so rooms fill evenly over the week; ties go to chance
+    private static int[] spread(long open, int count, int[] roomsLeft, SplittableRandom random) {
+        int[] slots = new int[count];
+        long usedDays = 0;
+        for (int i = 0; i < count; i++) {
+            long fresh = open & ~usedDays;
+            long candidates = fresh != 0 ? fresh : open;
+            int slot = -1;
+            int ties = 0;
+            for (long bits = candidates; bits != 0; bits &= bits - 1) {
+                int candidate = Long.numberOfTrailingZeros(bits);
+                int order = slot < 0 ? 1 : Integer.compare(roomsLeft[candidate], roomsLeft[slot]);
+                if (order > 0) {
+                    slot = candidate;
+                    ties = 1;
+                } else if (order == 0 && random.nextInt(++ties) == 0) {
+                    slot = candidate;
+                }
+            }
+            slots[i] = slot;
+            open &= ~(1L << slot);
+            usedDays |= dayMask(slot / Timetable.PERIODS);
+        }
+        return slots;
+    }
+
+    private static long dayMask(int day) {
+        return ((1L << Timetable.PERIODS) - 1) << (day * Timetable.PERIODS);
+    }
+
+    private static void freeRooms(long[] roomBusy, long[] freeFrom) {
+        for (int room = roomBusy.length - 1; room >= 0; room--) {
+            freeFrom[room] = freeFrom[room + 1] | (~roomBusy[room] & Timetable.WEEK);
+        }
+    }
+
+    // Attempt class with the teacher, slots and rooms chosen for each section, by section index
+    private final class Attempt {
+        private final int index;
+        private final int[] teachers;
+        private final int[][] slots;
+        private final int[][] rooms;
+        private int unplaced;
+
+        Attempt(int index, int sections) {
+            this.index = index;
+            this.teachers = new int[sections];
+            this.slots = new int[sections][];
+            this.rooms = new int[sections][];
+            Arrays.fill(teachers, -1);
+        }
+
+        Timetable toTimetable(EntityRegistry<Student> students) {
+            List<Timetable.Section> placed = new ArrayList<>();
+            List<Timetable.Section> left = new ArrayList<>();
+            for (int section = 0; section < teachers.length; section++) {
+                if (slots[section] == null) {
+                    left.add(new Timetable.Section(problem.courses[section], problem.numbers[section], null,
+                            problem.members[section], new int[0], new Timetable.Room[0]));
+                    continue;
+                }
+                Timetable.Room[] booked = new Timetable.Room[rooms[section].length];
+                for (int i = 0; i < booked.length; i++) {
+                    booked[i] = problem.rooms[rooms[section][i]];
+                }
+                placed.add(new Timetable.Section(problem.courses[section], problem.numbers[section],
+                        problem.teachers[teachers[section]], problem.members[section], slots[section], booked));
+            }
+            return new Timetable(students, Arrays.asList(problem.rooms), placed, left);
+        }
+    }
+
+    // Problem class with the sections to place and what constrains them.
+    //
+    // A course whose students do not fit the largest room is split into sections of that size,
+    // taking its roster in ordinal order, so students who joined the school together, such as a
+    // class, stay together. Every section of a course may be taught by any of the course's teachers.
+    static final class Problem {
+        private final Course[] courses;
+        private final int[] numbers;
+        private final Roster[] members;
+        private final Teacher[] teachers;
+        private final int[][] candidates;
+        private final Timetable.Room[] rooms;
+        // Index of the smallest room each section fits in
+        private final int[] fit;
+        private final int[][] neighbours;
+        private final int meetings;
+
+        // courseStudents and courseTeachers hold each course's roster ordinals and teachers
+        Problem(List<Course> courseList, List<Roster> courseStudents, List<List<Teacher>> courseTeachers,
+                List<Timetable.Room> roomList, int meetings) {
+            if (roomList.isEmpty()) {
+                throw new IllegalArgumentException("At least one room is required.");
+            }
+            if (meetings < 1 || meetings > Timetable.SLOTS) {
+                throw new IllegalArgumentException("Meetings per week must be between 1 and " + Timetable.SLOTS + ".");
+            }
+            this.meetings = meetings;
+            this.rooms = roomList.toArray(new Timetable.Room[0]);
+            Arrays.sort(rooms, Comparator.comparingInt(Timetable.Room::getCapacity));
+            int capacity = rooms[rooms.length - 1].getCapacity();
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Rooms must hold at least one student.");
+            }
+
+            Map<Teacher, Integer> teacherIndexes = new IdentityHashMap<>();
+            List<Course> sectionCourses = new ArrayList<>();
+            List<Integer> sectionNumbers = new ArrayList<>();
+            List<Roster> sectionMembers = new ArrayList<>();
+            List<int[]> sectionCandidates = new ArrayList<>();
+            for (int course = 0; course < courseList.size(); course++) {
+                int[] enrolled = courseStudents.get(course).toArray();
+                List<Teacher> teaching = courseTeachers.get(course);
+                int[] candidateIndexes = new int[teaching.size()];
+                for (int i = 0; i < candidateIndexes.length; i++) {
+                    candidateIndexes[i] = teacherIndexes.computeIfAbsent(teaching.get(i), teacher -> teacherIndexes.size());
+                }
+                for (int first = 0, number = 1; first < enrolled.length; first += capacity, number++) {
+                    Roster section = new Roster();
+                    for (int i = first; i < Math.min(enrolled.length, first + capacity); i++) {
+                        section.add(enrolled[i]);
+                    }
+                    sectionCourses.add(courseList.get(course));
+                    sectionNumbers.add(number);
+                    sectionMembers.add(section);
+                    sectionCandidates.add(candidateIndexes);
+                }
+            }
+            this.courses = sectionCourses.toArray(new Course[0]);
+            this.numbers = sectionNumbers.stream().mapToInt(Integer::intValue).toArray();
+            this.members = sectionMembers.toArray(new Roster[0]);
+            this.candidates = sectionCandidates.toArray(new int[0][]);
+            this.teachers = new Teacher[teacherIndexes.size()];
+            teacherIndexes.forEach((teacher, teacherIndex) -> teachers[teacherIndex] = teacher);
+            this.fit = new int[courses.length];
+            for (int section = 0; section < fit.length; section++) {
+                while (rooms[fit[section]].getCapacity() < members[section].size()) {
+                    fit[section]++;
+                }
+            }
+            this.neighbours = neighbours(members);
+        }
+
+        int sections() {
+            return courses.length;
+        }
+
+        // Joins sections that share a student: every (student, section) membership is sorted by
+        // student, and the sections of each student are paired up
+        private static int[][] neighbours(Roster[] members) {
+            long memberships = 0;
+            for (Roster roster : members) {
+                memberships += roster.size();
+            }
+            long[] pairs = new long[Math.toIntExact(memberships)];
+            int count = 0;
+            for (int section = 0; section < members.length; section++) {
+                for (int student : members[section].toArray()) {
+                    pairs[count++] = ((long) student << 32) | section;
+                }
+            }
+            Arrays.sort(pairs);
+            long[] edges = new long[16];
+            int edgeCount = 0;
+            for (int start = 0; start < pairs.length; ) {
+                int end = start;
+                while (end < pairs.length && (pairs[end] >>> 32) == (pairs[start] >>> 32)) {
+                    end++;
+                }
+                for (int i = start; i < end; i++) {
+                    for (int j = i + 1; j < end; j++) {
+                        if (edgeCount + 2 > edges.length) {
+                            edges = Arrays.copyOf(edges, edges.length * 2);
+                        }
+                        int a = (int) pairs[i];
+                        int b = (int) pairs[j];
+                        edges[edgeCount++] = ((long) a << 32) | b;
+                        edges[edgeCount++] = ((long) b << 32) | a;
+                    }
+                }
+                start = end;
+            }
+            Arrays.sort(edges, 0, edgeCount);
+            int[] degree = new int[members.length];
+            long previous = -1;
+            for (int i = 0; i < edgeCount; i++) {
+                if (edges[i] != previous) {
+                    degree[(int) (edges[i] >>> 32)]++;
+                    previous = edges[i];
+                }
+            }
+            int[][] neighbours = new int[members.length][];
+            for (int section = 0; section < members.length; section++) {
+                neighbours[section] = new int[degree[section]];
+                degree[section] = 0;
+            }
+            previous = -1;
+            for (int i = 0; i < edgeCount; i++) {
+                if (edges[i] != previous) {
+                    int section = (int) (edges[i] >>> 32);
+                    neighbours[section][degree[section]++] = (int) edges[i];
+                    previous = edges[i];
+                }
+            }
+            return neighbours;
+        }
+    }
+}
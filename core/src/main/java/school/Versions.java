@@ -0,0 +1,142 @@
+package school;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Versions class that stamps commits and tracks the point-in-time views reading them.
+//
+// A commit takes its stamp from a clock as it ends, once everything it changed is in place, and a
+// view reads at the clock value it opened at: it sees every commit stamped at or below that and
+// none after. While a commit runs, whatever it changed points at it, so a view that meets it waits
+// for the stamp to learn which side of the view it falls on. Writers never wait for views. The
+// structures keep the earlier versions an open view may still read, and let them go as views close.
+class Versions {
+    // Stamp of a commit that is still running; also the oldest version when no view is open
+    static final long PENDING = Long.MAX_VALUE;
+    // Commit standing for everything done before any open view
+    static final Commit BASE = new Commit(0);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger open = new AtomicInteger();
+    // Open views by version, with how many read at each; guarded by this
+    private final TreeMap<Long, Integer> openAt = new TreeMap<>();
+    private final ThreadLocal<Commit> running = new ThreadLocal<>();
+    private final List<Runnable> onClose = new CopyOnWriteArrayList<>();
+
+    // Starts a commit, or joins the one this thread already has running
+    Commit begin() {
+        Commit commit = running.get();
+        if (commit == null) {
+            commit = new Commit(PENDING);
+            running.set(commit);
+        }
+        commit.depth++;
+        return commit;
+    }
+
+    // Ends the commit; the outermost end stamps it and then runs what was left for afterwards
+    void end(Commit commit) {
+        if (--commit.depth > 0) {
+            return;
+        }
+        running.remove();
+        commit.stamp = clock.incrementAndGet();
+        List<Runnable> afterwards = commit.afterwards;
+        commit.afterwards = null;
+        if (afterwards != null) {
+            for (Runnable action : afterwards) {
+                action.run();
+            }
+        }
+    }
+
+    // Runs the change as one commit, so a view sees all of it or none of it
+    <R> R commit(Supplier<R> change) {
+        Commit commit = begin();
+        try {
+            return change.get();
+        } finally {
+            end(commit);
+        }
+    }
+
+    // Opens a view at the current version and returns it; every open must be closed. The view is
+    // counted before the clock is read, so a commit that ends after it sees that a view is open.
+    synchronized long open() {
+        open.incrementAndGet();
+        long version = clock.get();
+        openAt.merge(version, 1, Integer::sum);
+        return version;
+    }
+
+    void close(long version) {
+        synchronized (this) {
+            Integer count = openAt.get(version);
+            if (count == null) {
+                throw new IllegalStateException("No view is open at version " + version);
+            }
+            if (count == 1) {
+                openAt.remove(version);
+            } else {
+                openAt.put(version, count - 1);
+            }
+            open.decrementAndGet();
+        }
+        for (Runnable prune : onClose) {
+            prune.run();
+        }
+    }
+
+    boolean anyOpen() {
+        return open.get() > 0;
+    }
+
+    int openViews() {
+        return open.get();
+    }
+
+    // Version of the oldest open view, or PENDING if none is open
+    synchronized long oldest() {
+        return openAt.isEmpty() ? PENDING : openAt.firstKey();
+    }
+
+    // Runs the action after every view closes, to let go of the versions kept for it
+    void whenClosed(Runnable prune) {
+        onClose.add(prune);
+    }
+
+    // Commit class standing for one set of changes; its stamp is PENDING until it ends
+    static final class Commit {
+        private volatile long stamp;
+        // Only used by the committing thread
+        private int depth;
+        private List<Runnable> afterwards;
+
+        private Commit(long stamp) {
+            this.stamp = stamp;
+        }
+
+        // The stamp, waiting for the commit to end if it is still running
+        long stamp() {
+            long current = stamp;
+            while (current == PENDING) {
+                Thread.yield();
+                current = stamp;
+            }
+            return current;
+        }
+
+        // Runs the action on the committing thread once the commit is stamped, before it lets go of its locks
+        void afterwards(Runnable action) {
+            if (afterwards == null) {
+                afterwards = new ArrayList<>(2);
+            }
+            afterwards.add(action);
+        }
+    }
+}
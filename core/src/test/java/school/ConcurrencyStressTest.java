@@ -0,0 +1,263 @@
+package school;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Hammers one persistent School from many threads, then checks its invariants against a full
+// rescan (School.checkInvariants) and that a restart from the journal reproduces the same state.
+// The build runs a short pass; a longer one runs from the project root with
+//   mvn -B test -pl core -Dtest=ConcurrencyStressTest -Dstress.threads=16 -Dstress.operations=50000
+class ConcurrencyStressTest {
+    private static final int STUDENTS = 2_000;
+    private static final int COURSES = 20;
+
+    @Test
+    void invariantsHoldUnderConcurrentWritesAndAfterRecovery(@TempDir Path directory) throws Exception {
+        int threads = Integer.getInteger("stress.threads", 8);
+        int operations = Integer.getInteger("stress.operations", 5_000);
+
+        LongAdder marked = new LongAdder();
+        int students;
+        int teachers;
+        int attendance;
+        long enrollments;
+        long owed;
+        long grades;
+        try (SchoolJournal journal = SchoolJournal.open(directory, 100_000)) {
+            School school = new School("Stress School", journal);
+            for (int i = 0; i < STUDENTS; i++) {
+                school.getStudentService().add("X" + i, "Student " + i, "x" + i + "@school.com", "10th Grade", LocalDate.of(2023, 9, 1));
+            }
+            for (int i = 0; i < COURSES; i++) {
+                school.getCourseService().add("C" + i, "Course " + i, "Stress course");
+            }
+            for (int i = 0; i < STUDENTS; i++) {
+                enrollEverywhere(school, "X" + i);
+            }
+            school.getFeeService().invoiceAll(null, "Tuition", Money.of(1_000), LocalDate.of(2023, 9, 1), null);
+            for (int i = 0; i < COURSES; i++) {
+                school.getGradebookService().addAssessment("C" + i, "Test", 40, 50);
+                school.getGradebookService().addAssessment("C" + i, "Exam", 60, 100);
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> writers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                writers.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    start.await();
+                    for (int i = 0; i < operations; i++) {
+                        String studentId = "X" + random.nextInt(STUDENTS);
+                        int dice = random.nextInt(100);
+                        if (dice < 70) {
+                            ServiceResult<AttendanceRecord> result = school.getAttendanceService().mark(studentId,
+                                    "C" + random.nextInt(COURSES), LocalDate.of(2024, 1, 1).plusDays(random.nextInt(120)),
+                                    random.nextBoolean());
+                            if (result.isOk()) {
+                                marked.increment();
+                            }
+                        } else if (dice < 75) {
+                            // Racing with withdrawals and removals, so a mark may be refused
+                            school.getGradebookService().recordMark(studentId, "C" + random.nextInt(COURSES),
+                                    random.nextBoolean() ? "Test" : "Exam", random.nextInt(101) / 2.0);
+                        } else if (dice < 80) {
+                            // A class of 30 consecutive students with a couple absent
+                            int first = random.nextInt(STUDENTS - 30);
+                            List<String> cohort = new ArrayList<>();
+                            for (int s = first; s < first + 30; s++) {
+                                cohort.add("X" + s);
+                            }
+                            ServiceResult<AttendanceService.RollCall> result = school.getAttendanceService().rollCall(
+                                    "C" + random.nextInt(COURSES), LocalDate.of(2024, 1, 1).plusDays(random.nextInt(120)),
+                                    cohort, List.of(cohort.get(random.nextInt(30)), cohort.get(random.nextInt(30))));
+                            if (result.isOk()) {
+                                marked.add(result.getValue().getPresent() + result.getValue().getAbsent());
+                            }
+                        } else if (dice < 86) {
+                            // Moving year group moves the student's GPA between rankings
+                            school.getStudentService().update(studentId, new StudentService.StudentUpdate().name("Renamed " + i)
+                                    .grade(random.nextBoolean() ? "10th Grade" : "11th Grade"));
+                        } else if (dice < 91) {
+                            // Leaves a course and joins it again, so marks racing with it may be refused
+                            String courseCode = "C" + random.nextInt(COURSES);
+                            if (school.getEnrollmentService().withdraw(studentId, courseCode).isOk()) {
+                                school.getEnrollmentService().enroll(studentId, courseCode);
+                            }
+                        } else if (dice < 95) {
+                            school.getStudentService().remove(studentId);
+                            school.getStudentService().add(studentId, "Readded " + i, "r@school.com", "11th Grade", LocalDate.of(2024, 1, 1));
+                            enrollEverywhere(school, studentId);
+                        } else if (dice < 98) {
+                            // Racing with removals, so a posting may find its student gone
+                            if (random.nextBoolean()) {
+                                school.getFeeService().pay(studentId, Money.of(1 + random.nextInt(500)),
+                                        LocalDate.of(2024, 1, 1).plusDays(random.nextInt(120)), null);
+                            } else {
+                                school.getFeeService().invoice(studentId, "Lab Fee", Money.of(50),
+                                        LocalDate.of(2024, 1, 1).plusDays(random.nextInt(120)), null);
+                            }
+                        } else {
+                            school.getTeacherService().update("T00" + (1 + random.nextInt(3)),
+                                    new TeacherService.TeacherUpdate().salary(Money.of(40_000 + random.nextInt(20_000))));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // What the compactor or the viewer failed with, rethrown once the writers are done
+            AtomicReference<RuntimeException> backgroundFailure = new AtomicReference<>();
+            // Compacts away the rows of removed students while the marking goes on
+            LongAdder reclaimed = new LongAdder();
+            Thread compactor = new Thread(() -> {
+                try {
+                    while (!pool.isTerminated()) {
+                        reclaimed.add(school.getAttendanceService().compact());
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+                    }
+                } catch (RuntimeException e) {
+                    backgroundFailure.compareAndSet(null, e);
+                }
+            });
+            // Reads point-in-time views while the writers carry on, checking each holds still and holds together
+            LongAdder views = new LongAdder();
+            Thread viewer = new Thread(() -> {
+                try {
+                    while (!pool.isTerminated()) {
+                        try (SchoolView view = school.openView()) {
+                            checkView(view);
+                        }
+                        views.increment();
+                    }
+                } catch (RuntimeException e) {
+                    backgroundFailure.compareAndSet(null, e);
+                }
+            });
+            long began = System.nanoTime();
+            start.countDown();
+            compactor.start();
+            viewer.start();
+            pool.shutdown();
+            if (!pool.awaitTermination(10, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Stress run did not finish");
+            }
+            long elapsed = System.nanoTime() - began;
+            compactor.join();
+            viewer.join();
+            // Rethrows what any writer failed with
+            for (Future<Void> writer : writers) {
+                writer.get();
+            }
+            if (backgroundFailure.get() != null) {
+                throw backgroundFailure.get();
+            }
+
+            school.checkInvariants();
+            attendance = school.getAttendanceService().count();
+            assertEquals(marked.sum(), school.getAttendanceService().recorded(), "Rows recorded for the successful marks");
+            students = school.getStudentService().count();
+            teachers = school.getTeacherService().count();
+            enrollments = enrollments(school);
+            owed = owed(school);
+            grades = grades(school);
+            System.out.printf("%d threads x %d operations in %.2f s (%.0f ops/sec), %d marks, %d live, %d reclaimed, "
+                    + "%d views%n", threads, operations, elapsed / 1e9, threads * (double) operations * 1e9 / elapsed,
+                    marked.sum(), attendance, reclaimed.sum(), views.sum());
+        }
+
+        try (SchoolJournal journal = SchoolJournal.open(directory)) {
+            School recovered = new School("Stress School", journal);
+            recovered.checkInvariants();
+            assertEquals(attendance, recovered.getAttendanceService().count(), "Attendance rows after recovery");
+            assertEquals(students, recovered.getStudentService().count(), "Students after recovery");
+            assertEquals(teachers, recovered.getTeacherService().count(), "Teachers after recovery");
+            assertEquals(enrollments, enrollments(recovered), "Enrollments after recovery");
+            assertEquals(owed, owed(recovered), "Fees owed after recovery");
+            assertEquals(grades, grades(recovered), "Grades after recovery");
+        }
+    }
+
+    // Every row in the view belongs to a student and course it holds, no student is held twice, and
+    // reading it again gives the same answers however much was written meanwhile
+    private static void checkView(SchoolView view) {
+        long[] first = viewTotals(view);
+        for (int i = 0; i < view.attendanceStudentCount(); i++) {
+            if (first[3 + i] > 0 && view.attendanceStudent(i) == null) {
+                throw new IllegalStateException("View " + view.getVersion() + " has rows of a student it does not hold");
+            }
+        }
+        List<String> ids = view.students().map(Student::getId).toList();
+        if (ids.stream().distinct().count() != ids.size()) {
+            throw new IllegalStateException("View " + view.getVersion() + " holds a student twice");
+        }
+        long[] again = viewTotals(view);
+        for (int i = 0; i < 3; i++) {
+            if (first[i] != again[i]) {
+                throw new IllegalStateException("View " + view.getVersion() + " changed while it was read");
+            }
+        }
+    }
+
+    // Rows, salary total and student count, then rows per attendance student
+    private static long[] viewTotals(SchoolView view) {
+        long[] totals = new long[3 + view.attendanceStudentCount()];
+        view.scanAttendance(0, view.attendanceRows(), (student, course, epochDay, isPresent) -> {
+            if (view.attendanceCourse(course) == null) {
+                throw new IllegalStateException("View " + view.getVersion() + " has rows of a course it does not hold");
+            }
+            totals[0]++;
+            totals[3 + student]++;
+        });
+        totals[1] = view.teachers().mapToLong(Teacher::getSalaryCents).sum();
+        totals[2] = view.students().map(Student::getName).filter(name -> name.startsWith("Renamed")).count();
+        return totals;
+    }
+
+    private static void enrollEverywhere(School school, String studentId) {
+        for (int i = 0; i < COURSES; i++) {
+            school.getEnrollmentService().enroll(studentId, "C" + i);
+        }
+    }
+
+    // Sum of every stress student's fee balance, in cents
+    private static long owed(School school) {
+        long cents = 0;
+        for (int i = 0; i < STUDENTS; i++) {
+            cents += school.getFeeService().balance("X" + i).getValue().getCents();
+        }
+        return cents;
+    }
+
+    // Every stress student's scores, course ranks, GPA and year group rank, added up
+    private static long grades(School school) {
+        long sum = 0;
+        for (int i = 0; i < STUDENTS; i++) {
+            GradebookService.Transcript transcript = school.getGradebookService().transcript("X" + i).getValue();
+            for (GradebookService.CourseGrade grade : transcript.getCourses()) {
+                sum += grade.getStanding().getScore() * 31 + grade.getStanding().getRank();
+            }
+            if (transcript.getYearStanding() != null) {
+                sum += transcript.getYearStanding().getScore() * 31 + transcript.getYearStanding().getRank();
+            }
+        }
+        return sum;
+    }
+
+    private static long enrollments(School school) {
+        long enrolled = 0;
+        for (int i = 0; i < COURSES; i++) {
+            enrolled += school.getEnrollmentService().roster("C" + i).getValue().getStudents().size();
+        }
+        return enrolled;
+    }
+}
@@ -0,0 +1,108 @@
+package school;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+// Checks the standings the Gradebook reads off its rankings, ties included, against ranks worked
+// out by counting higher scores directly.
+class GradebookTest {
+    private final EntityRegistry<Student> students = new EntityRegistry<>(Student::getId);
+    private final EntityRegistry<Course> courses = new EntityRegistry<>(Course::getCode);
+    private final Gradebook gradebook = new Gradebook(students, courses);
+
+    @Test
+    void equalScoresShareARankAndTheNextRankSkipsPastThem() {
+        int course = course("MATH101", new Gradebook.Assessment("Exam", 100, 100_00));
+        int alice = student("S1", "10th Grade");
+        int bob = student("S2", "10th Grade");
+        int carol = student("S3", "10th Grade");
+        gradebook.record(alice, course, 0, 90_00);
+        gradebook.record(bob, course, 0, 90_00);
+        gradebook.record(carol, course, 0, 80_00);
+
+        assertStanding(gradebook.courseStanding(alice, course), 90, 1, 3);
+        assertStanding(gradebook.courseStanding(bob, course), 90, 1, 3);
+        assertStanding(gradebook.courseStanding(carol, course), 80, 3, 3);
+        List<Integer> ranks = new ArrayList<>();
+        for (Gradebook.Ranked ranked : gradebook.courseRanking(course, 0, 10)) {
+            ranks.add(ranked.getStanding().getRank());
+        }
+        assertEquals(List.of(1, 1, 3), ranks);
+        // 90 is an A- for both, 80 a B- for Carol
+        assertEquals(1, gradebook.yearStanding(alice).getRank());
+        assertEquals(1, gradebook.yearStanding(bob).getRank());
+        assertEquals(3, gradebook.yearStanding(carol).getRank());
+
+        // A new mark moves Carol past both, who now share second place
+        gradebook.record(carol, course, 0, 95_00);
+        assertStanding(gradebook.courseStanding(carol, course), 95, 1, 3);
+        assertStanding(gradebook.courseStanding(alice, course), 90, 2, 3);
+        assertStanding(gradebook.courseStanding(bob, course), 90, 2, 3);
+
+        gradebook.withdraw(alice, course);
+        assertNull(gradebook.courseStanding(alice, course));
+        assertStanding(gradebook.courseStanding(bob, course), 90, 2, 2);
+        gradebook.verify();
+    }
+
+    @Test
+    void standingsMatchCountsOfHigherScoresUnderRandomMarking() {
+        SplittableRandom random = new SplittableRandom(11);
+        int course = course("ENG201", new Gradebook.Assessment("Essay", 50, 20_00),
+                new Gradebook.Assessment("Exam", 50, 100_00));
+        int[] ordinals = new int[300];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = student("S" + i, i % 2 == 0 ? "10th Grade" : "11th Grade");
+        }
+        for (int round = 0; round < 2_000; round++) {
+            int student = ordinals[random.nextInt(ordinals.length)];
+            // Whole-point marks out of a short range, so many students tie
+            gradebook.record(student, course, random.nextInt(2), random.nextInt(15, 21) * 100);
+        }
+        List<Long> scores = new ArrayList<>();
+        for (int student : ordinals) {
+            long score = gradebook.score(student, course);
+            if (score != Gradebook.NO_SCORE) {
+                scores.add(score);
+            }
+        }
+        for (int student : ordinals) {
+            long score = gradebook.score(student, course);
+            Gradebook.Standing standing = gradebook.courseStanding(student, course);
+            if (score == Gradebook.NO_SCORE) {
+                assertNull(standing);
+                continue;
+            }
+            long higher = scores.stream().filter(other -> other > score).count();
+            assertEquals(higher + 1, standing.getRank());
+            assertEquals(scores.size(), standing.getCohort());
+        }
+        gradebook.verify();
+    }
+
+    private int course(String code, Gradebook.Assessment... assessments) {
+        courses.add(new Course(code, code, code));
+        int ordinal = courses.ordinalOf(code);
+        for (Gradebook.Assessment assessment : assessments) {
+            gradebook.addAssessment(ordinal, assessment);
+        }
+        return ordinal;
+    }
+
+    private int student(String id, String grade) {
+        students.add(new Student(id, "Student " + id, id.toLowerCase() + "@school.com", grade, LocalDate.of(2023, 9, 1)));
+        return students.ordinalOf(id);
+    }
+
+    private static void assertStanding(Gradebook.Standing standing, long percent, int rank, int cohort) {
+        assertEquals(percent * Gradebook.SCALE, standing.getScore());
+        assertEquals(rank, standing.getRank());
+        assertEquals(cohort, standing.getCohort());
+    }
+}
@@ -0,0 +1,96 @@
+package school;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+// Checks RankTree's ranks against a sorted list of the same keys after random adds and removals,
+// including rounds that empty the tree and refill it from its freed slots.
+class RankTreeTest {
+    @Test
+    void ranksMatchASortedListUnderRandomAddsAndRemovals() {
+        SplittableRandom random = new SplittableRandom(42);
+        RankTree tree = new RankTree();
+        TreeSet<Long> reference = new TreeSet<>();
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 100; i++) {
+                // A narrow key range so adds meet existing keys and removals find them
+                long key = random.nextLong(-500, 500);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(reference.remove(key), tree.remove(key));
+                } else {
+                    assertEquals(reference.add(key), tree.add(key));
+                }
+            }
+            assertSameRanks(reference, tree, random);
+        }
+    }
+
+    @Test
+    void freedSlotsAreReusedWithoutLosingKeys() {
+        SplittableRandom random = new SplittableRandom(7);
+        RankTree tree = new RankTree();
+        TreeSet<Long> reference = new TreeSet<>();
+        for (int round = 0; round < 20; round++) {
+            // Fill past the initial capacity, then free most slots, or all of them every few rounds
+            while (reference.size() < 1_000) {
+                long key = random.nextLong();
+                assertEquals(reference.add(key), tree.add(key));
+            }
+            List<Long> keys = new ArrayList<>(reference);
+            Collections.shuffle(keys, new Random(round));
+            int keep = round % 4 == 0 ? 0 : random.nextInt(100);
+            for (Long key : keys.subList(keep, keys.size())) {
+                assertTrue(tree.remove(key));
+                reference.remove(key);
+            }
+            assertSameRanks(reference, tree, random);
+        }
+    }
+
+    @Test
+    void extremeKeysAndMissingKeysAreHandled() {
+        RankTree tree = new RankTree();
+        assertEquals(0, tree.countBelow(0));
+        assertFalse(tree.remove(1));
+        assertTrue(tree.add(Long.MIN_VALUE));
+        assertTrue(tree.add(Long.MAX_VALUE));
+        assertTrue(tree.add(0));
+        assertFalse(tree.add(0));
+        assertEquals(0, tree.countBelow(Long.MIN_VALUE));
+        assertEquals(2, tree.countBelow(Long.MAX_VALUE));
+        assertEquals(1, tree.countBelow(-1));
+        assertEquals(Long.MIN_VALUE, tree.select(0));
+        assertEquals(Long.MAX_VALUE, tree.select(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(-1));
+        tree.verify();
+    }
+
+    private static void assertSameRanks(TreeSet<Long> reference, RankTree tree, SplittableRandom random) {
+        tree.verify();
+        List<Long> sorted = new ArrayList<>(reference);
+        assertEquals(sorted.size(), tree.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), tree.select(i));
+            assertEquals(i, tree.countBelow(sorted.get(i)));
+            assertTrue(tree.contains(sorted.get(i)));
+        }
+        for (int i = 0; i < 50; i++) {
+            long probe = random.nextLong(-600, 600);
+            assertEquals(reference.headSet(probe).size(), tree.countBelow(probe));
+        }
+        List<Long> walked = new ArrayList<>();
+        tree.forEach(walked::add);
+        assertEquals(sorted, walked);
+    }
+}
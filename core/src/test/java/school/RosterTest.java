@@ -0,0 +1,183 @@
+package school;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+// Checks Roster against a BitSet holding the same values while containers grow past 4,096 values
+// into bitmaps and shrink back into arrays, and checks its intersections and unions for every pair
+// of container kinds.
+class RosterTest {
+    private static final int ARRAY_LIMIT = 4096;
+
+    @Test
+    void addAndRemoveMatchABitSetAcrossTheArrayLimit() {
+        SplittableRandom random = new SplittableRandom(3);
+        Roster roster = new Roster();
+        BitSet reference = new BitSet();
+        // Values in three containers, so one grows past the limit while its neighbours stay small
+        for (int i = 0; i < 6_000; i++) {
+            int value = 65_536 + random.nextInt(8_000);
+            assertEquals(!reference.get(value), roster.add(value));
+            reference.set(value);
+            if (i % 500 == 0) {
+                int other = random.nextBoolean() ? random.nextInt(100) : 131_072 + random.nextInt(100);
+                assertEquals(!reference.get(other), roster.add(other));
+                reference.set(other);
+            }
+            if (i % 1_000 == 0) {
+                assertMatches(reference, roster);
+            }
+        }
+        assertTrue(reference.get(65_536, 131_072).cardinality() > ARRAY_LIMIT);
+        assertMatches(reference, roster);
+
+        // Remove back below the limit and on to empty, checking each side of the conversion
+        int[] values = reference.stream().toArray();
+        shuffle(values, random);
+        for (int value : values) {
+            assertTrue(roster.remove(value));
+            assertFalse(roster.remove(value));
+            reference.clear(value);
+            int container = reference.get(65_536, 131_072).cardinality();
+            if (container >= ARRAY_LIMIT - 1 && container <= ARRAY_LIMIT + 1 || reference.cardinality() % 700 == 0) {
+                assertMatches(reference, roster);
+            }
+        }
+        assertTrue(roster.isEmpty());
+        assertMatches(reference, roster);
+    }
+
+    @Test
+    void bitmapContainersTurnBackIntoArraysAndGrowAgain() {
+        Roster roster = new Roster();
+        BitSet reference = new BitSet();
+        for (int round = 0; round < 3; round++) {
+            for (int value = 0; value <= ARRAY_LIMIT; value++) {
+                roster.add(value * 3);
+                reference.set(value * 3);
+            }
+            assertMatches(reference, roster);
+            for (int value = ARRAY_LIMIT; value > ARRAY_LIMIT / 2; value--) {
+                roster.remove(value * 3);
+                reference.clear(value * 3);
+            }
+            assertMatches(reference, roster);
+        }
+    }
+
+    @Test
+    void copiesAreIndependentOfTheOriginal() {
+        Roster roster = new Roster();
+        BitSet reference = new BitSet();
+        for (int value = 0; value < 10_000; value += 2) {
+            roster.add(value);
+            reference.set(value);
+        }
+        roster.add(200_000);
+        reference.set(200_000);
+        Roster copy = roster.copy();
+        BitSet copied = (BitSet) reference.clone();
+        roster.remove(4);
+        roster.add(5);
+        roster.remove(200_000);
+        reference.clear(4);
+        reference.set(5);
+        reference.clear(200_000);
+        copy.add(7);
+        copied.set(7);
+        assertMatches(reference, roster);
+        assertMatches(copied, copy);
+    }
+
+    @Test
+    void andAndOrMatchABitSetForEveryPairOfContainerKinds() {
+        SplittableRandom random = new SplittableRandom(5);
+        // Sparse sides stay arrays, dense sides become bitmaps, and middling ones fall on either
+        // side of the limit, so results of both kinds come out of each pair
+        int[] densities = {10, 2_000, 4_000, 4_500, 20_000, 60_000};
+        for (int leftDensity : densities) {
+            for (int rightDensity : densities) {
+                BitSet leftValues = new BitSet();
+                BitSet rightValues = new BitSet();
+                Roster left = new Roster();
+                Roster right = new Roster();
+                // Container 0 is shared; container 1 is only on the left and container 2 only on the right
+                fill(left, leftValues, 0, leftDensity, random);
+                fill(right, rightValues, 0, rightDensity, random);
+                fill(left, leftValues, 1, leftDensity / 10 + 1, random);
+                fill(right, rightValues, 2, rightDensity / 10 + 1, random);
+
+                BitSet and = (BitSet) leftValues.clone();
+                and.and(rightValues);
+                assertMatches(and, Roster.and(left, right));
+                BitSet or = (BitSet) leftValues.clone();
+                or.or(rightValues);
+                Roster union = Roster.or(left, right);
+                assertMatches(or, union);
+
+                // The results are rosters in their own right, and leave their inputs alone
+                union.add(300_000);
+                union.remove(or.nextSetBit(0));
+                or.set(300_000);
+                or.clear(or.nextSetBit(0));
+                assertMatches(or, union);
+                assertMatches(leftValues, left);
+                assertMatches(rightValues, right);
+            }
+        }
+    }
+
+    @Test
+    void emptyRostersAndNegativeValues() {
+        Roster empty = new Roster();
+        Roster roster = new Roster();
+        roster.add(1);
+        roster.add(70_000);
+        assertMatches(new BitSet(), Roster.and(empty, roster));
+        assertArrayEquals(new int[] {1, 70_000}, Roster.or(empty, roster).toArray());
+        assertArrayEquals(new int[] {1, 70_000}, Roster.or(roster, empty).toArray());
+        assertFalse(roster.contains(-1));
+        assertFalse(roster.remove(-1));
+        assertThrows(IllegalArgumentException.class, () -> roster.add(-1));
+        assertFalse(roster.contains(Integer.MAX_VALUE));
+        assertTrue(roster.add(Integer.MAX_VALUE));
+        assertArrayEquals(new int[] {1, 70_000, Integer.MAX_VALUE}, roster.toArray());
+    }
+
+    private static void fill(Roster roster, BitSet values, int container, int count, SplittableRandom random) {
+        for (int i = 0; i < count; i++) {
+            int value = (container << 16) | random.nextInt(65_536);
+            roster.add(value);
+            values.set(value);
+        }
+    }
+
+    private static void shuffle(int[] values, SplittableRandom random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private static void assertMatches(BitSet reference, Roster roster) {
+        assertEquals(reference.cardinality(), roster.size());
+        assertEquals(reference.isEmpty(), roster.isEmpty());
+        assertArrayEquals(reference.stream().toArray(), roster.toArray());
+        for (int value = reference.nextSetBit(0); value >= 0; value = reference.nextSetBit(value + 1)) {
+            assertTrue(roster.contains(value));
+            // Neighbours that are absent from the reference must be absent from the roster
+            if (!reference.get(value + 1)) {
+                assertFalse(roster.contains(value + 1));
+            }
+        }
+    }
+}